@@ -0,0 +1,25 @@
+-- Removes the contents of uploaded files from the database, once they have
+-- been copied to the file store. The server copies them when it starts (see
+-- UploadedFileMigration), recording the hash of each file in computed_hash;
+-- this script refuses to run while any uploaded file has no computed hash.
+-- Back up the file store before running it: afterwards, the file store holds
+-- the only copy of each uploaded file.
+--
+-- Run as the owner of the corla database, for example:
+--   PGPASSWORD=corla psql -U corla -h localhost -d corla -f drop-uploaded-file-blobs.sql
+
+begin;
+
+do $$
+begin
+  if exists (select 1 from uploaded_file where computed_hash is null) then
+    raise exception 'some uploaded files have not been copied to the file store; '
+                    'start the server with file_store_directory set first';
+  end if;
+end
+$$;
+
+select lo_unlink(file) from uploaded_file where file is not null;
+alter table uploaded_file drop column file;
+
+commit;
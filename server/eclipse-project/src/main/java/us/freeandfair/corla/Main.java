@@ -61,12 +61,16 @@ import us.freeandfair.corla.asm.PersistentASMState;
 import us.freeandfair.corla.auth.AuthenticationInterface;
 import us.freeandfair.corla.endpoint.CORSFilter;
 import us.freeandfair.corla.endpoint.Endpoint;
+import us.freeandfair.corla.filestore.FileStore;
+import us.freeandfair.corla.filestore.UploadedFileMigration;
 import us.freeandfair.corla.json.FreeAndFairNamingStrategy;
 import us.freeandfair.corla.json.InstantTypeAdapter;
 import us.freeandfair.corla.json.VersionExclusionStrategy;
+import us.freeandfair.corla.math.Audit;
 import us.freeandfair.corla.model.County;
 import us.freeandfair.corla.model.CountyDashboard;
 import us.freeandfair.corla.model.DoSDashboard;
+import us.freeandfair.corla.persistence.LogVerifier;
 import us.freeandfair.corla.persistence.Persistence;
 import us.freeandfair.corla.query.PersistentASMStateQueries;
 import us.freeandfair.corla.util.SuppressFBWarnings;
@@ -156,6 +160,11 @@ public final class Main {
    * Which authentication subsystem implementation are we to use?
    */
   private static AuthenticationInterface static_authentication;
+
+  /**
+   * Which file store implementation are we to use?
+   */
+  private static FileStore static_file_store;
   
   /**
    * The properties loaded from the properties file.
@@ -222,6 +231,14 @@ public final class Main {
     return static_authentication;
   }
   
+  /**
+   * @return the implementation of `FileStore` demanded by the system's
+   * properties file and loaded at startup.
+   */
+  public static FileStore fileStore() {
+    return static_file_store;
+  }
+  
   /**
    * @return a read-only view of the properties in use by the system at runtime.
    */
@@ -275,6 +292,37 @@ public final class Main {
     }
   }
   
+  /**
+   * Setup the file store according to the property setting `file_store_class`
+   * in the system's properties file.
+   * 
+   * @exception IllegalStateException if the file store cannot be set up;
+   * the server does not run without one, since uploaded files are kept there.
+   */
+  private void setupFileStore() {
+    String file_store_class = null;
+    try {
+      file_store_class = static_properties.getProperty("file_store_class");
+      if (file_store_class == null) {
+        file_store_class = "us.freeandfair.corla.filestore.LocalFileStore";
+      }
+      static_file_store = (FileStore) Class.forName(file_store_class).newInstance();
+      static_file_store.initialize(properties());
+      LOGGER.info("Initialized file store `" + file_store_class + "'");
+    } catch (final ClassNotFoundException | 
+        IllegalAccessException | InstantiationException e) {
+      LOGGER.fatal("File store class '" + file_store_class + "' not found.");
+      LOGGER.fatal("Check the value of `file_store_class` in your RLA Tool " + 
+          "system properties.");
+      throw new IllegalStateException("could not set up file store", e);
+    } catch (final IOException e) {
+      LOGGER.fatal("Could not initialize file store `" + file_store_class + "': " + e);
+      LOGGER.fatal("Check the value of `file_store_directory` in your RLA Tool " + 
+          "system properties.");
+      throw new IllegalStateException("could not set up file store", e);
+    }
+  }
+  
   /**
    * Parse a port number from properties.
    * 
@@ -524,6 +572,16 @@ public final class Main {
     // provide properties to the persistence engine
     Persistence.setProperties(static_properties);
 
+    // configure the sample size computation
+    try {
+      Audit.setFastPathEpsilon(Double.parseDouble(
+          static_properties.getProperty(Audit.EPSILON_PROPERTY,
+                                        String.valueOf(Audit.DEFAULT_EPSILON))));
+    } catch (final IllegalArgumentException e) {
+      LOGGER.info("could not read property " + Audit.EPSILON_PROPERTY +
+                  ", using default " + Audit.DEFAULT_EPSILON);
+    }
+
     if (Persistence.beginTransaction()) {
       initializeASMsAndDashboards(initializeCounties());
       try {
@@ -536,6 +594,10 @@ public final class Main {
       return;
     }
     
+    // file store for uploaded files
+    setupFileStore();
+    UploadedFileMigration.migrate(static_file_store);
+    
     // secure the session cookies by adding an embedded server handler
     EmbeddedServers.add(EmbeddedServers.Identifiers.JETTY, 
         (final Routes the_route_matcher, 
@@ -598,6 +660,9 @@ public final class Main {
     // authentication subsystem
     setupAuthentication();
     
+    // periodic verification of the log hash chain
+    LogVerifier.schedule(properties());
+    
     // static files location
     staticFileLocation("/us/freeandfair/corla/static");
 
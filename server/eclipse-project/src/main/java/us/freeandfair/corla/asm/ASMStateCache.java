@@ -0,0 +1,271 @@
+/*
+ * Colorado RLA System
+ */
+
+package us.freeandfair.corla.asm;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.transaction.Synchronization;
+
+import us.freeandfair.corla.persistence.EntityChangeNotifier;
+import us.freeandfair.corla.persistence.Persistence;
+import us.freeandfair.corla.query.PersistentASMStateQueries;
+
+/**
+ * A write-through cache of persistent ASM states, keyed by ASM class and
+ * identity, so that loading an ASM does not query the database.
+ *
+ * Committed states are shared by all threads, and are kept current by
+ * listening for committed changes to persistent ASM states. A state saved
+ * by a transaction is visible only to that transaction's thread until the
+ * transaction commits (when the change listener publishes it) or rolls back
+ * (when it is forgotten). Each cached state carries the version of the
+ * persistent state it was read from; a save checks that version against
+ * the persistent state, so an ASM stepped from a state that has since
+ * changed is never saved over the newer state.
+ */
+public final class ASMStateCache {
+  /**
+   * The key used for ASMs without an identity.
+   */
+  private static final String NO_IDENTITY = "";
+
+  /**
+   * The committed states, by ASM class name and identity.
+   */
+  private static final Map<String, Map<String, Snapshot>> COMMITTED =
+      new ConcurrentHashMap<>();
+
+  /**
+   * The states saved by the current thread's transaction, by ASM class name
+   * and identity, or null if there are none.
+   */
+  private static final ThreadLocal<Map<String, Map<String, Snapshot>>> UNCOMMITTED =
+      new ThreadLocal<>();
+
+  static {
+    EntityChangeNotifier.addListener(new EntityChangeNotifier.Listener() {
+      @Override
+      public void entityChanged(final Object the_entity) {
+        if (the_entity instanceof PersistentASMState) {
+          offer((PersistentASMState) the_entity);
+        }
+      }
+
+      @Override
+      public void allChanged() {
+        COMMITTED.clear();
+      }
+    });
+  }
+
+  /**
+   * Private constructor to prevent instantiation.
+   */
+  private ASMStateCache() {
+    // do nothing
+  }
+
+  /**
+   * @param the_identity An ASM identity.
+   * @return the key for the identity.
+   */
+  private static String key(final String the_identity) {
+    String result = the_identity;
+    if (result == null) {
+      result = NO_IDENTITY;
+    }
+    return result;
+  }
+
+  /**
+   * Looks up a state in the specified states.
+   *
+   * @param the_states The states.
+   * @param the_class_name The ASM class name.
+   * @param the_identity The ASM identity.
+   * @return the state, or null if there is none.
+   */
+  private static Snapshot lookup(final Map<String, Map<String, Snapshot>> the_states,
+                                 final String the_class_name,
+                                 final String the_identity) {
+    Snapshot result = null;
+    if (the_states != null) {
+      final Map<String, Snapshot> by_identity = the_states.get(the_class_name);
+      if (by_identity != null) {
+        result = by_identity.get(key(the_identity));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Gets the state of the ASM of the specified class and identity, as seen
+   * by the current transaction, reading it from the database only if it is
+   * not cached.
+   *
+   * @param the_class The ASM class.
+   * @param the_identity The ASM identity.
+   * @return the state, or null if there is no persistent state for the ASM.
+   */
+  static Snapshot get(final Class<? extends AbstractStateMachine> the_class,
+                      final String the_identity) {
+    Snapshot result = lookup(UNCOMMITTED.get(), the_class.getName(), the_identity);
+    if (result == null) {
+      result = lookup(COMMITTED, the_class.getName(), the_identity);
+    }
+    if (result == null) {
+      final PersistentASMState state =
+          PersistentASMStateQueries.get(the_class, the_identity);
+      if (state != null) {
+        result = offer(state);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Saves the state of the specified ASM, which must have been loaded from
+   * its persistent state, to the database. This method must be called
+   * within a transaction.
+   *
+   * @param the_asm The ASM.
+   * @return true if the state was saved, false if there is no persistent
+   * state for the ASM or the persistent state has changed since the ASM was
+   * loaded.
+   * @exception javax.persistence.PersistenceException if the state cannot
+   * be saved.
+   */
+  static boolean save(final AbstractStateMachine the_asm) {
+    final String class_name = the_asm.getClass().getName();
+    final Snapshot cached = get(the_asm.getClass(), the_asm.identity());
+    if (cached == null) {
+      return false;
+    }
+    final PersistentASMState state =
+        Persistence.getByID(cached.my_id, PersistentASMState.class);
+    if (state == null || the_asm.persistentVersion() != null &&
+                         !the_asm.persistentVersion().equals(state.version())) {
+      // our idea of the state was out of date; forget it
+      invalidate(class_name, the_asm.identity());
+      return false;
+    }
+    state.updateFrom(the_asm);
+    Persistence.saveOrUpdate(state);
+    // flush, so that the version we record is the version being committed
+    Persistence.flush();
+    the_asm.setPersistentVersion(state.version());
+    Map<String, Map<String, Snapshot>> uncommitted = UNCOMMITTED.get();
+    if (uncommitted == null) {
+      uncommitted = new HashMap<>();
+      UNCOMMITTED.set(uncommitted);
+      Persistence.currentSession().getTransaction().registerSynchronization(
+          new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+              // nothing to do until the outcome is known
+            }
+
+            @Override
+            public void afterCompletion(final int the_status) {
+              // committed states are published by the change listener
+              UNCOMMITTED.remove();
+            }
+          });
+    }
+    uncommitted.computeIfAbsent(class_name, c -> new HashMap<>()).
+        put(key(the_asm.identity()),
+            new Snapshot(state.id(), state.version(), the_asm.currentState()));
+    return true;
+  }
+
+  /**
+   * Caches a committed persistent state, unless a newer version of it is
+   * already cached.
+   *
+   * @param the_state The persistent state.
+   * @return the cached state, which is the newer of the two.
+   */
+  private static Snapshot offer(final PersistentASMState the_state) {
+    final Snapshot snapshot =
+        new Snapshot(the_state.id(), the_state.version(),
+                     PersistentASMState.asmStateFor(the_state));
+    return COMMITTED.computeIfAbsent(the_state.asmClass(),
+                                     c -> new ConcurrentHashMap<>()).
+        merge(key(the_state.asmIdentity()), snapshot,
+              (old, offered) -> old.isNewerThan(offered) ? old : offered);
+  }
+
+  /**
+   * Forgets the committed state of the ASM of the specified class and
+   * identity, so that it is read from the database next time.
+   *
+   * @param the_class_name The ASM class name.
+   * @param the_identity The ASM identity.
+   */
+  private static void invalidate(final String the_class_name, final String the_identity) {
+    final Map<String, Snapshot> by_identity = COMMITTED.get(the_class_name);
+    if (by_identity != null) {
+      by_identity.remove(key(the_identity));
+    }
+  }
+
+  /**
+   * A cached persistent ASM state.
+   */
+  static final class Snapshot {
+    /**
+     * The ID of the persistent state.
+     */
+    private final Long my_id;
+
+    /**
+     * The version of the persistent state.
+     */
+    private final Long my_version;
+
+    /**
+     * The state.
+     */
+    private final ASMState my_state;
+
+    /**
+     * Constructs a snapshot.
+     *
+     * @param the_id The ID of the persistent state.
+     * @param the_version The version of the persistent state.
+     * @param the_state The state.
+     */
+    Snapshot(final Long the_id, final Long the_version, final ASMState the_state) {
+      my_id = the_id;
+      my_version = the_version;
+      my_state = the_state;
+    }
+
+    /**
+     * @return the version of the persistent state.
+     */
+    Long version() {
+      return my_version;
+    }
+
+    /**
+     * @return the state, or null if the persistent state is invalid.
+     */
+    ASMState state() {
+      return my_state;
+    }
+
+    /**
+     * @param the_other Another snapshot of the same persistent state.
+     * @return true if this snapshot is of a newer version, false otherwise.
+     */
+    boolean isNewerThan(final Snapshot the_other) {
+      return my_version != null && the_other.my_version != null &&
+             my_version > the_other.my_version;
+    }
+  }
+}
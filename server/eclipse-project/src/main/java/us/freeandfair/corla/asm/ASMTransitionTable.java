@@ -0,0 +1,237 @@
+/*
+ * Colorado RLA System
+ */
+
+package us.freeandfair.corla.asm;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The transition function of a class of ASM, compiled into arrays indexed
+ * by the ordinals of its state and event enums. Each class of ASM has one
+ * table, compiled the first time an ASM of the class is constructed and
+ * shared by all its instances, so that stepping an ASM or asking which
+ * events it enables is an array lookup rather than a search of its
+ * transitions.
+ */
+public final class ASMTransitionTable {
+  /**
+   * The tables, by ASM class.
+   */
+  private static final Map<Class<?>, ASMTransitionTable> TABLES =
+      new ConcurrentHashMap<>();
+
+  /**
+   * The enum class of the states.
+   */
+  private final Class<?> my_state_class;
+
+  /**
+   * The enum class of the events.
+   */
+  private final Class<?> my_event_class;
+
+  /**
+   * The initial state.
+   */
+  private final ASMState my_initial_state;
+
+  /**
+   * The next state for each state and event, indexed by state ordinal and
+   * event ordinal; null where there is no transition.
+   */
+  private final ASMState[][] my_next;
+
+  /**
+   * The (unmodifiable) set of events enabled in each state, indexed by
+   * state ordinal.
+   */
+  private final Set<ASMEvent>[] my_enabled;
+
+  /**
+   * Compiles a transition table.
+   *
+   * @param the_states The states.
+   * @param the_events The events.
+   * @param the_transition_function The transitions.
+   * @param the_initial_state The initial state.
+   * @exception IllegalArgumentException if the states or events are not
+   * all constants of a single enum, or the transitions are not deterministic.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"}) // generic arrays cannot be created directly
+  private ASMTransitionTable(final Set<ASMState> the_states,
+                             final Set<ASMEvent> the_events,
+                             final Set<ASMTransition> the_transition_function,
+                             final ASMState the_initial_state) {
+    my_state_class = enumClassOf(the_states);
+    my_event_class = enumClassOf(the_events);
+    my_initial_state = the_initial_state;
+    final int state_count = my_state_class.getEnumConstants().length;
+    final int event_count = my_event_class.getEnumConstants().length;
+    my_next = new ASMState[state_count][event_count];
+    final Set<ASMEvent>[] enabled = new Set[state_count];
+    for (int i = 0; i < state_count; i++) {
+      enabled[i] = new HashSet<>();
+    }
+    for (final ASMTransition t : the_transition_function) {
+      for (final ASMState s : t.startStates()) {
+        final int state_index = stateIndex(s);
+        for (final ASMEvent e : t.events()) {
+          final int event_index = eventIndex(e);
+          if (state_index < 0 || event_index < 0) {
+            throw new IllegalArgumentException("transition " + t + " is not in " +
+                                               my_state_class.getSimpleName() + " x " +
+                                               my_event_class.getSimpleName());
+          }
+          final ASMState existing = my_next[state_index][event_index];
+          if (existing != null && !existing.equals(t.endState())) {
+            throw new IllegalArgumentException("nondeterministic transitions from (" + s +
+                                               ", " + e + ")");
+          }
+          my_next[state_index][event_index] = t.endState();
+          enabled[state_index].add(e);
+        }
+      }
+    }
+    for (int i = 0; i < state_count; i++) {
+      enabled[i] = Collections.unmodifiableSet(enabled[i]);
+    }
+    my_enabled = enabled;
+  }
+
+  /**
+   * Gets the transition table for the class of the specified ASM, compiling
+   * it from the ASM's states, events and transitions if this is the first
+   * ASM of its class.
+   *
+   * @param the_asm The ASM.
+   * @return the transition table.
+   */
+  public static ASMTransitionTable forASM(final AbstractStateMachine the_asm) {
+    ASMTransitionTable result = TABLES.get(the_asm.getClass());
+    if (result == null) {
+      final ASMTransitionTable table =
+          new ASMTransitionTable(the_asm.my_states, the_asm.my_events,
+                                 the_asm.my_transition_function,
+                                 the_asm.my_initial_state);
+      result = TABLES.putIfAbsent(the_asm.getClass(), table);
+      if (result == null) {
+        result = table;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Gets the transition table for the specified class of ASM, if an ASM of
+   * that class has been constructed.
+   *
+   * @param the_class The class.
+   * @return the transition table, or null if none has been compiled.
+   */
+  public static ASMTransitionTable forClass(final Class<? extends AbstractStateMachine>
+                                            the_class) {
+    return TABLES.get(the_class);
+  }
+
+  /**
+   * @param the_values The values.
+   * @return the enum class of which all the values are constants.
+   * @exception IllegalArgumentException if there is no such class.
+   */
+  private static Class<?> enumClassOf(final Set<?> the_values) {
+    Class<?> result = null;
+    for (final Object o : the_values) {
+      if (!(o instanceof Enum<?>) ||
+          result != null && !result.equals(((Enum<?>) o).getDeclaringClass())) {
+        throw new IllegalArgumentException("values are not all constants of one enum: " +
+                                           the_values);
+      }
+      result = ((Enum<?>) o).getDeclaringClass();
+    }
+    if (result == null) {
+      throw new IllegalArgumentException("no values");
+    }
+    return result;
+  }
+
+  /**
+   * @param the_state The state.
+   * @return the index of the state, or -1 if it is not one of ours.
+   */
+  private int stateIndex(final ASMState the_state) {
+    int result = -1;
+    if (the_state instanceof Enum<?> &&
+        ((Enum<?>) the_state).getDeclaringClass().equals(my_state_class)) {
+      result = ((Enum<?>) the_state).ordinal();
+    }
+    return result;
+  }
+
+  /**
+   * @param the_event The event.
+   * @return the index of the event, or -1 if it is not one of ours.
+   */
+  private int eventIndex(final ASMEvent the_event) {
+    int result = -1;
+    if (the_event instanceof Enum<?> &&
+        ((Enum<?>) the_event).getDeclaringClass().equals(my_event_class)) {
+      result = ((Enum<?>) the_event).ordinal();
+    }
+    return result;
+  }
+
+  /**
+   * @return the initial state.
+   */
+  public ASMState initialState() {
+    return my_initial_state;
+  }
+
+  /**
+   * Gives the state reached from the specified state on the specified event.
+   *
+   * @param the_state The state.
+   * @param the_event The event.
+   * @return the next state, or null if there is no such transition.
+   */
+  public ASMState next(final ASMState the_state, final ASMEvent the_event) {
+    final int state_index = stateIndex(the_state);
+    final int event_index = eventIndex(the_event);
+    ASMState result = null;
+    if (state_index >= 0 && event_index >= 0) {
+      result = my_next[state_index][event_index];
+    }
+    return result;
+  }
+
+  /**
+   * Gives the events enabled in the specified state.
+   *
+   * @param the_state The state.
+   * @return the (unmodifiable) set of enabled events.
+   */
+  public Set<ASMEvent> enabledEvents(final ASMState the_state) {
+    final int state_index = stateIndex(the_state);
+    final Set<ASMEvent> result;
+    if (state_index < 0) {
+      result = Collections.emptySet();
+    } else {
+      result = my_enabled[state_index];
+    }
+    return result;
+  }
+
+  /**
+   * @param the_state The state.
+   * @param the_event The event.
+   * @return true if the event is enabled in the state, false otherwise.
+   */
+  public boolean isEnabled(final ASMState the_state, final ASMEvent the_event) {
+    return next(the_state, the_event) != null;
+  }
+}
@@ -13,12 +13,12 @@ package us.freeandfair.corla.asm;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.persistence.PersistenceException;
 
 import us.freeandfair.corla.Main;
-import us.freeandfair.corla.persistence.Persistence;
-import us.freeandfair.corla.query.PersistentASMStateQueries;
 
 /**
  * Utility classes that are generally useful for working with ASMs.
@@ -27,6 +27,12 @@ import us.freeandfair.corla.query.PersistentASMStateQueries;
  * @version 1.0.0
  */
 public final class ASMUtilities {
+  /**
+   * The constructors used to instantiate ASMs, by ASM class.
+   */
+  private static final Map<Class<?>, Constructor<?>> CONSTRUCTORS =
+      new ConcurrentHashMap<>();
+  
   /**
    * Private constructor to prevent instantiation.
    */
@@ -36,74 +42,147 @@ public final class ASMUtilities {
   
   /**
    * Gets the ASM for the specified ASM class and identity, initialized to its
-   * state on the database.
+   * state on the database. The state is read from the ASM state cache, so
+   * the database is queried only if it is not cached.
    * 
    * @param the_class The class.
    * @param the_identity The identity.
    * @return the ASM, or null if the ASM cannot be instantiated.
+   * @exception IllegalArgumentException if the persistent state of the ASM
+   * is invalid.
    */
   public static <T extends AbstractStateMachine> T asmFor(final Class<T> the_class, 
                                                           final String the_identity) {
+    final T result = newASM(the_class, the_identity);
+    final ASMStateCache.Snapshot asm_state = ASMStateCache.get(the_class, the_identity);
+    
+    if (asm_state == null) {
+      Main.LOGGER.error("Unable to retrieve ASM state for class " + the_class + 
+                        " with identity " + the_identity);
+    } else if (result != null) {
+      if (asm_state.state() == null) {
+        throw new IllegalArgumentException("invalid ASM state for class " + the_class +
+                                           " with identity " + the_identity);
+      }
+      result.setCurrentState(asm_state.state());
+      result.setPersistentVersion(asm_state.version());
+    } 
+    
+    return result;
+  }
+  
+  /**
+   * Checks whether the specified event is enabled in the current state of
+   * the ASM of the specified class and identity, without constructing the
+   * ASM. The state is read from the ASM state cache.
+   * 
+   * @param the_class The class.
+   * @param the_identity The identity.
+   * @param the_event The event.
+   * @return true if the event is enabled, false otherwise.
+   * @exception IllegalArgumentException if the persistent state of the ASM
+   * is invalid.
+   */
+  public static boolean isEnabled(final Class<? extends AbstractStateMachine> the_class,
+                                  final String the_identity,
+                                  final ASMEvent the_event) {
+    ASMTransitionTable table = ASMTransitionTable.forClass(the_class);
+    if (table == null) {
+      // no ASM of this class has been constructed yet; constructing one
+      // compiles its transition table
+      newASM(the_class, the_identity);
+      table = ASMTransitionTable.forClass(the_class);
+    }
+    if (table == null) {
+      return false;
+    }
+    
+    final ASMStateCache.Snapshot asm_state = ASMStateCache.get(the_class, the_identity);
+    ASMState state = table.initialState();
+    if (asm_state == null) {
+      Main.LOGGER.error("Unable to retrieve ASM state for class " + the_class + 
+                        " with identity " + the_identity);
+    } else if (asm_state.state() == null) {
+      throw new IllegalArgumentException("invalid ASM state for class " + the_class +
+                                         " with identity " + the_identity);
+    } else {
+      state = asm_state.state();
+    }
+    
+    return table.isEnabled(state, the_event);
+  }
+  
+  /**
+   * Constructs an ASM of the specified class and identity, in its initial
+   * state.
+   * 
+   * @param the_class The class.
+   * @param the_identity The identity.
+   * @return the ASM, or null if the ASM cannot be instantiated.
+   */
+  private static <T extends AbstractStateMachine> T newASM(final Class<T> the_class,
+                                                           final String the_identity) {
     T result = null;
     
     try {
-      // first, check for a no-argument constructor
-      final Constructor<?>[] constructors = the_class.getConstructors();
-      for (final Constructor<?> c : constructors) {
-        @SuppressWarnings("unchecked") // this cast is safe because of the call above
-        final Constructor<T> constructor = (Constructor<T>) c;
-        if (constructor.getParameterTypes().length == 0) {
-          // default constructor
-          result = constructor.newInstance();
-          break;
-        } else if (constructor.getParameterTypes().length == 1 &&
-                   constructor.getParameterTypes()[0].equals(String.class)) {
-          // 1-argument constructor that takes a String
-          result = constructor.newInstance(the_identity);
-          break;
-        }
+      Constructor<?> constructor = CONSTRUCTORS.get(the_class);
+      if (constructor == null) {
+        constructor = constructorFor(the_class);
+        CONSTRUCTORS.put(the_class, constructor);
+      }
+      if (constructor.getParameterCount() == 0) {
+        // default constructor
+        result = the_class.cast(constructor.newInstance());
+      } else {
+        // 1-argument constructor that takes a String
+        result = the_class.cast(constructor.newInstance(the_identity));
       }
     } catch (final IllegalAccessException | InstantiationException | 
-                   InvocationTargetException e) {
+                   InvocationTargetException | NoSuchMethodException e) {
       Main.LOGGER.error("Unable to construct ASM of class " + the_class +
                         " with identity " + the_identity);
     }
     
-    final PersistentASMState asm_state = 
-        PersistentASMStateQueries.get(the_class, the_identity);
-    
-    if (asm_state == null) {
-      Main.LOGGER.error("Unable to retrieve ASM state for class " + the_class + 
-                        " with identity " + the_identity);
-    } else if (result != null) {
-      asm_state.applyTo(result);
-    } 
-    
     return result;
   }
   
   /**
-   * Saves the state of the specified ASM to the database.
+   * Finds the constructor to use for ASMs of the specified class.
+   * 
+   * @param the_class The class.
+   * @return a public constructor that takes either no arguments or the
+   * identity of the ASM.
+   * @exception NoSuchMethodException if there is no such constructor.
+   */
+  private static Constructor<?> constructorFor(final Class<?> the_class) 
+      throws NoSuchMethodException {
+    for (final Constructor<?> c : the_class.getConstructors()) {
+      if (c.getParameterCount() == 0 ||
+          c.getParameterCount() == 1 && c.getParameterTypes()[0].equals(String.class)) {
+        return c;
+      }
+    }
+    throw new NoSuchMethodException("no ASM constructor for " + the_class);
+  }
+  
+  /**
+   * Saves the state of the specified ASM to the database, through the ASM
+   * state cache.
    * 
    * @param the_asm The ASM.
-   * @return true if the save was successful, false otherwise
+   * @return true if the save was successful, false otherwise (including
+   * when the persistent state has changed since the ASM was loaded).
    */
   public static boolean save(final AbstractStateMachine the_asm) {
     boolean result = false;
     
-    final PersistentASMState asm_state = 
-        PersistentASMStateQueries.get(the_asm.getClass(), the_asm.identity());
-    
-    if (asm_state == null) {
-      Main.LOGGER.error("Unable to retrieve ASM state for " + the_asm);
-    } else {
-      asm_state.updateFrom(the_asm);
-      try {
-        Persistence.saveOrUpdate(asm_state);
-        result = true;
-      } catch (final PersistenceException e) {
-        Main.LOGGER.error("Could not save state for ASM " + the_asm);
+    try {
+      result = ASMStateCache.save(the_asm);
+      if (!result) {
+        Main.LOGGER.error("Unable to retrieve current ASM state for " + the_asm);
       }
+    } catch (final PersistenceException e) {
+      Main.LOGGER.error("Could not save state for ASM " + the_asm);
     }
     
     return result;
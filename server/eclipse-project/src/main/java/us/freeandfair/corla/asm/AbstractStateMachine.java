@@ -66,11 +66,17 @@ public abstract class AbstractStateMachine implements Serializable {
   protected final Set<ASMTransition> my_transition_function;
 
   /**
-   * The relation between UI events and ASM transitions.
+   * The relation between UI events and ASM transitions, which is the same
+   * for every ASM.
    */
-  protected final UIToASMEventRelation my_ui_to_asm_relation =
+  private static final UIToASMEventRelation UI_TO_ASM_RELATION =
       new UIToASMEventRelation();
 
+  /**
+   * The relation between UI events and ASM transitions.
+   */
+  protected final UIToASMEventRelation my_ui_to_asm_relation = UI_TO_ASM_RELATION;
+
   /**
    * The current state of this ASM. Initialized to the initial state
    * provided in the constructor.
@@ -83,9 +89,16 @@ public abstract class AbstractStateMachine implements Serializable {
    */
   protected String my_identity;
 
+  /**
+   * The version of the persistent state this ASM was loaded from, or null
+   * if it was not loaded from a persistent state.
+   */
+  private Long my_persistent_version;
+
   /**
    * Constructs an ASM. This constructor takes ownership of all the
-   * Collections passed to it.
+   * Collections passed to it; they are never modified, so ASMs of the
+   * same class may share them.
    *
    * @param the_states the states of the new ASM.
    * @param the_events the events of the new ASM.
@@ -110,6 +123,7 @@ public abstract class AbstractStateMachine implements Serializable {
     my_current_state = the_initial_state;
     my_final_states = the_final_states;
     my_identity = the_identity;
+    ASMTransitionTable.forASM(this);
   }
 
   /**
@@ -168,6 +182,23 @@ public abstract class AbstractStateMachine implements Serializable {
     my_identity = the_identity;
   }
 
+  /**
+   * @return the version of the persistent state this ASM was loaded from,
+   * or null if it was not loaded from a persistent state.
+   */
+  Long persistentVersion() {
+    return my_persistent_version;
+  }
+
+  /**
+   * Sets the version of the persistent state this ASM was loaded from.
+   *
+   * @param the_version The version.
+   */
+  void setPersistentVersion(final Long the_version) {
+    my_persistent_version = the_version;
+  }
+
   /**
    * @return the UI events enabled in this ASM.  I.e., which UI events
    * correspond to those states reachable from the current state?
@@ -185,17 +216,11 @@ public abstract class AbstractStateMachine implements Serializable {
   /**
    * @return the transitions of this ASM that are enabled. I.e., which
    * states are reachable from the current state, given any possible
-   * event?
+   * event? The returned set is unmodifiable.
    * @trace asm.enabled_events
    */
   public Set<ASMEvent> enabledASMEvents() {
-    final Set<ASMEvent> result = new HashSet<>();
-    for (final ASMTransition t : my_transition_function) {
-      if (t.startStates().contains(my_current_state)) {
-        result.addAll(t.events());
-      }
-    }
-    return result;
+    return ASMTransitionTable.forASM(this).enabledEvents(my_current_state);
   }
 
   /**
@@ -233,17 +258,10 @@ public abstract class AbstractStateMachine implements Serializable {
    * @throws IllegalStateException is this ASM cannot transition given
    * the provided event.
    */
-  @SuppressWarnings("PMD.CyclomaticComplexity")
   public ASMState stepEvent(final ASMEvent the_event)
       throws IllegalStateException {
-    ASMState result = null;
-    for (final ASMTransition t : my_transition_function) {
-      if (t.startStates().contains(my_current_state) &&
-          t.events().contains(the_event)) {
-        result = t.endState();
-        break;
-      }
-    }
+    final ASMState result =
+        ASMTransitionTable.forASM(this).next(my_current_state, the_event);
     if (result == null) {
       LOGGER.error("ASM event " + the_event +
                    " failed from state " + my_current_state);
@@ -12,7 +12,9 @@
 package us.freeandfair.corla.asm;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Set;
 
 import javax.persistence.DiscriminatorValue;
 import javax.persistence.Entity;
@@ -43,6 +45,33 @@ public class CountyDashboardASM extends AbstractStateMachine {
       {CountyDashboardState.DEADLINE_MISSED,
        CountyDashboardState.COUNTY_AUDIT_COMPLETE};
 
+  /**
+   * The states of this ASM.
+   */
+  private static final Set<ASMState> STATES =
+      Collections.unmodifiableSet
+      (new HashSet<ASMState>(Arrays.asList(CountyDashboardState.values())));
+
+  /**
+   * The events of this ASM.
+   */
+  private static final Set<ASMEvent> EVENTS =
+      Collections.unmodifiableSet
+      (new HashSet<ASMEvent>(Arrays.asList(CountyDashboardEvent.values())));
+
+  /**
+   * The transitions of this ASM.
+   */
+  private static final Set<ASMTransition> TRANSITIONS =
+      Collections.unmodifiableSet
+      (transitionsFor(Arrays.asList(CountyDashboardTransitionFunction.values())));
+
+  /**
+   * The final states of this ASM, as a set.
+   */
+  private static final Set<ASMState> FINAL_STATE_SET =
+      Collections.unmodifiableSet(SetCreator.setOf(FINAL_STATES));
+
   /**
    * Create the County Dashboard ASM.
    * 
@@ -51,12 +80,9 @@ public class CountyDashboardASM extends AbstractStateMachine {
    */
   //@ requires the_county_id != null
   public CountyDashboardASM(final String the_county_id) {
-    super(new HashSet<ASMState>(Arrays.asList(CountyDashboardState.values())),
-          new HashSet<ASMEvent>(Arrays.asList(CountyDashboardEvent.values())),
-          transitionsFor(Arrays.
-                         asList(CountyDashboardTransitionFunction.values())),
+    super(STATES, EVENTS, TRANSITIONS,
           CountyDashboardState.COUNTY_INITIAL_STATE,
-          SetCreator.setOf(FINAL_STATES),
+          FINAL_STATE_SET,
           the_county_id);
   }
 }
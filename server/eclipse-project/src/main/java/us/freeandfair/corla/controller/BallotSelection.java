@@ -5,6 +5,7 @@ package us.freeandfair.corla.controller;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -12,6 +13,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -21,12 +23,15 @@ import org.apache.log4j.Logger;
 import us.freeandfair.corla.crypto.PseudoRandomNumberGenerator;
 import us.freeandfair.corla.json.CVRToAuditResponse;
 import us.freeandfair.corla.model.BallotManifestInfo;
+import us.freeandfair.corla.model.CVRAuditInfo;
 import us.freeandfair.corla.model.CastVoteRecord;
 import us.freeandfair.corla.model.ContestResult;
-import us.freeandfair.corla.model.CVRAuditInfo;
+import us.freeandfair.corla.persistence.EntityChangeNotifier;
 import us.freeandfair.corla.persistence.Persistence;
 import us.freeandfair.corla.query.BallotManifestInfoQueries;
+import us.freeandfair.corla.query.CVRAuditInfoQueries;
 import us.freeandfair.corla.query.CastVoteRecordQueries;
+import us.freeandfair.corla.util.BallotManifestIndex;
 import us.freeandfair.corla.util.BallotSequencer;
 import us.freeandfair.corla.util.PhantomBallots;
 
@@ -39,12 +44,76 @@ public final class BallotSelection {
   public static final Logger LOGGER =
       LogManager.getLogger(BallotSelection.class);
 
+  /**
+   * The last audited prefix found for each contest result, by ID.
+   */
+  private static final Map<Long, AuditedPrefix> AUDITED_PREFIXES =
+      new ConcurrentHashMap<>();
+
+  static {
+    EntityChangeNotifier.addListener(new EntityChangeNotifier.Listener() {
+      @Override
+      public void entityChanged(final Object the_entity) {
+        if (the_entity instanceof ContestResult) {
+          // its audit sequence may have been rebuilt
+          AUDITED_PREFIXES.remove(((ContestResult) the_entity).id());
+        } else if (the_entity instanceof CVRAuditInfo &&
+                   ((CVRAuditInfo) the_entity).acvr() == null) {
+          // a ballot is no longer audited, and any contest may include it
+          AUDITED_PREFIXES.clear();
+        }
+      }
+
+      @Override
+      public void allChanged() {
+        AUDITED_PREFIXES.clear();
+      }
+    });
+  }
+
   /**
    * Prevent construction
    */
   private BallotSelection() {
   }
 
+  /**
+   * An audited prefix of a contest's audit sequence, with the hash of the
+   * IDs in it so that a cached prefix of a rebuilt sequence is not used.
+   */
+  private static final class AuditedPrefix {
+    /**
+     * The length of the prefix.
+     */
+    private final int my_length;
+
+    /**
+     * The hash of the list of IDs in the prefix.
+     */
+    private final int my_ids_hash;
+
+    /**
+     * Constructs a new AuditedPrefix.
+     *
+     * @param the_ids The audit sequence.
+     * @param the_length The length of its audited prefix.
+     */
+    AuditedPrefix(final List<Long> the_ids, final int the_length) {
+      my_length = the_length;
+      my_ids_hash = the_ids.subList(0, the_length).hashCode();
+    }
+
+    /**
+     * @param the_ids An audit sequence.
+     * @return true if the sequence starts with the IDs in this prefix,
+     * false otherwise.
+     */
+    boolean prefixOf(final List<Long> the_ids) {
+      return my_length <= the_ids.size() &&
+             the_ids.subList(0, my_length).hashCode() == my_ids_hash;
+    }
+  }
+
   /**
    * An ADT to wrap up some fiddly bits
    **/
@@ -270,6 +339,62 @@ public final class BallotSelection {
                                           final String seed,
                                           final Integer minIndex,
                                           final Integer maxIndex) {
+    return randomSelection(contestResult, seed, minIndex, maxIndex,
+                           BallotSelection::manifestIndex);
+  }
+
+  /**
+   * create a random list of numbers and divide them into the appropriate
+   * counties, using a manifest index obtained from the given function; this
+   * lets callers selecting for several contests share one index among
+   * contests with the same counties.
+   **/
+  public static Selection randomSelection(final ContestResult contestResult,
+                                          final String seed,
+                                          final Integer minIndex,
+                                          final Integer maxIndex,
+                                          final Function<Set<Long>, BallotManifestIndex> indexes) {
+    final Set<Long> countyIds = contestResult.countyIDs();
+    final Selection selection;
+    if (minIndex > maxIndex) {
+      // you are done, silly
+      selection = theoreticalSelection(contestResult, countyIds, seed,
+                                       minIndex, maxIndex, 0, null);
+    } else {
+      selection = theoreticalSelection(contestResult, countyIds, seed,
+                                       minIndex, maxIndex,
+                                       ballotsCast(countyIds).intValue(),
+                                       indexes.apply(countyIds));
+      // get the CVRs from the theoretical
+      resolveSelection(selection);
+    }
+    return selection;
+  }
+
+  /**
+   * Draw the random numbers for a contest and divide them into the
+   * appropriate counties, without looking for the CVRs.
+   *
+   * This does not touch the database, so selections for different
+   * contests can be made concurrently; all the database work (counting
+   * ballots, building the manifest index) is done by the caller.
+   *
+   * @param contestResult the contest
+   * @param countyIds the counties of the contest
+   * @param seed the random seed
+   * @param minIndex the index of the first random number to draw
+   * @param maxIndex the index of the last random number to draw
+   * @param domainSize the number of ballots cast in the counties
+   * @param index an index over the manifests of the counties
+   * @return the selection, with tributes but no CVRs
+   **/
+  public static Selection theoreticalSelection(final ContestResult contestResult,
+                                               final Set<Long> countyIds,
+                                               final String seed,
+                                               final Integer minIndex,
+                                               final Integer maxIndex,
+                                               final int domainSize,
+                                               final BallotManifestIndex index) {
     if (minIndex > maxIndex) {
       // you are done, silly
       final Selection selection = new Selection();
@@ -277,14 +402,13 @@ public final class BallotSelection {
       return selection;
     }
 
-    final int domainSize = ballotsCast(contestResult.countyIDs()).intValue();
     final PseudoRandomNumberGenerator gen =
       new PseudoRandomNumberGenerator(seed, true, 1, domainSize);
 
     final List<Integer> generatedNumbers = gen.getRandomNumbers(minIndex, maxIndex);
 
     // make the theoretical selections (avoiding cvrs)
-    final Selection selection = select(generatedNumbers, contestResult.countyIDs());
+    final Selection selection = select(generatedNumbers, countyIds, index);
 
     selection.contestResult = contestResult;
     selection.contestName = contestResult.getContestName();//posterity
@@ -295,8 +419,6 @@ public final class BallotSelection {
                               selection.generatedNumbers.size(),
                               contestResult.getContestName()));
     LOGGER.debug("randomSelection: selection= " + selection);
-    // get the CVRs from the theoretical
-    resolveSelection(selection);
     return selection;
   }
 
@@ -326,17 +448,38 @@ public final class BallotSelection {
   public static Selection select(final List<Integer> generatedNumbers,
                                  final Set<Long> countyIds,
                                  final Set<BallotManifestInfo> contestBmis) {
+    return select(generatedNumbers, countyIds, new BallotManifestIndex(contestBmis));
+  }
+
+  /**
+   * Divide a list of random numbers into segments by county, using an
+   * index over the manifests of those counties
+   **/
+  public static Selection select(final List<Integer> generatedNumbers,
+                                 final Set<Long> countyIds,
+                                 final BallotManifestIndex index) {
     final Selection selection = new Selection();
     countyIds.forEach(id -> selection.initCounty(id));
     generatedNumbers.forEach(rand -> {
-        final BallotManifestInfo bmi = selectCountyId(Long.valueOf(rand), contestBmis);
+        final BallotManifestInfo bmi = index.holding(rand);
+        if (bmi == null) {
+          throw new MissingBallotManifestException(
+              "Could not find BallotManifestInfo holding random number: " + rand);
+        }
         selection.addBallotPosition(bmi,
                                     // translate rand from Contest scope to bmi/batch scope
-                                    bmi.translateRand(rand));
+                                    index.translateRand(rand));
     });
     return selection;
   }
 
+  /**
+   * Build an index over the ballot manifests of a set of counties
+   **/
+  public static BallotManifestIndex manifestIndex(final Set<Long> countyIds) {
+    return new BallotManifestIndex(BallotManifestInfoQueries.getMatching(countyIds));
+  }
+
   /**
    * When we draw more than one phantom ballot, we need to make sure
    * that the persistence context knows about only one instance of each.
@@ -369,19 +512,43 @@ public final class BallotSelection {
 
   /** look for the cvrs, some may be phantom records **/
   public static Selection resolveSelection(final Selection selection) {
-    selection.allSegments().forEach(segment -> {
-        final List<CastVoteRecord> cvrs =
-          dedupePhantomBallots(CastVoteRecordQueries.atPosition(segment.tributes));
-
-        segment.addCvrs(cvrs);
-        segment.addCvrIds(cvrs); // keep raw data separate
-      });
+    resolveSelections(Collections.singletonList(selection));
     LOGGER.debug(String.format("[resolveSelection: selection=%s, combinedSegments=%s]",
                                selection.segments,
                                Selection.combineSegments(selection.allSegments()).cvrIds));
     return selection;
   }
 
+  /**
+   * look for the cvrs of several selections at once, some may be phantom
+   * records; the tributes of every segment are resolved together, so
+   * positions drawn by more than one contest are looked up only once
+   **/
+  public static List<Selection> resolveSelections(final List<Selection> selections) {
+    final List<Segment> segments = new ArrayList<>();
+    final List<Tribute> tributes = new ArrayList<>();
+    for (final Selection selection : selections) {
+      for (final Segment segment : selection.allSegments()) {
+        segments.add(segment);
+        tributes.addAll(segment.tributes);
+      }
+    }
+
+    final List<CastVoteRecord> cvrs =
+      dedupePhantomBallots(CastVoteRecordQueries.atPosition(tributes));
+
+    // the cvrs are in tribute order, so each segment gets the next run of them
+    int offset = 0;
+    for (final Segment segment : segments) {
+      final List<CastVoteRecord> segmentCvrs =
+        cvrs.subList(offset, offset + segment.tributes.size());
+      segment.addCvrs(segmentCvrs);
+      segment.addCvrIds(segmentCvrs); // keep raw data separate
+      offset = offset + segment.tributes.size();
+    }
+    return selections;
+  }
+
   /**
    * project a sequence across counties
    *
@@ -406,46 +573,106 @@ public final class BallotSelection {
    * @return the number of ballot cards that have been audited
    */
   public static Integer auditedPrefixLength(final List<Long> cvrIds) {
-    // FIXME extract-fn, then use
-    // Map <Long, Boolean> isAuditedById = checkAudited(cvrIds);
+    return auditedPrefixLength(cvrIds, 0, CVRAuditInfoQueries::audited);
+  }
 
-    if (cvrIds.isEmpty()) { return 0; }
+  /**
+   * How much of an audit sequence have we checked, scanning forward from
+   * a point already known to be audited?
+   *
+   * @param cvrIds A list of IDs to check.
+   * @param from The length of a prefix of cvrIds known to be audited.
+   * @param auditedq How to find which of a collection of IDs are audited.
+   * @return the number of ballot cards that have been audited
+   */
+  public static Integer auditedPrefixLength(final List<Long> cvrIds,
+                                            final int from,
+                                            final AUDITEDQ auditedq) {
+    if (cvrIds.size() <= from) { return from; }
+
+    final List<Long> remaining = cvrIds.subList(from, cvrIds.size());
+    final Set<Long> audited = auditedq.apply(remaining);
+
+    Integer idx = from;
+    for (final Long cvrId : remaining) {
+      if (audited.contains(cvrId)) {
+        idx = idx + 1;
+      } else { break; }
+    }
+    LOGGER.debug(String.format("[auditedPrefixLength: from=%d, audited=%d of %d, apl=%d]",
+                               from, audited.size(), remaining.size(), idx));
+    return idx;
+  }
 
-    final Map <Long, Boolean> isAuditedById = new HashMap<>();
+  /**
+   * How much of a contest's audit sequence have we checked?
+   *
+   * The audit sequence only ever grows, and an audited ballot stays
+   * audited, so the last prefix length found for each contest is cached
+   * and later calls only look at the IDs past it. The cache entry for a
+   * contest is dropped when the contest result changes, and the whole
+   * cache when a ballot stops being audited or the database is reset.
+   *
+   * @param contestResult the contest
+   * @return the number of ballot cards that have been audited
+   */
+  public static Integer auditedPrefixLength(final ContestResult contestResult) {
+    return auditedPrefixLength(contestResult, CVRAuditInfoQueries::audited);
+  }
 
-    for (final Long cvrId: cvrIds) {
-      final CVRAuditInfo cvrai = Persistence.getByID(cvrId, CVRAuditInfo.class);
-      // has an acvr
-      final boolean isAudited = cvrai != null && cvrai.acvr() != null;
-      isAuditedById.put(cvrId, isAudited);
+  /**
+   * How much of a contest's audit sequence have we checked, using the
+   * cached prefix length for the contest and the given query?
+   *
+   * @param contestResult the contest
+   * @param auditedq How to find which of a collection of IDs are audited.
+   * @return the number of ballot cards that have been audited
+   */
+  public static Integer auditedPrefixLength(final ContestResult contestResult,
+                                            final AUDITEDQ auditedq) {
+    final List<Long> cvrIds = contestResult.getContestCVRIds();
+    if (contestResult.id() == null) {
+      // not persistent, so nothing to key the cache by
+      return auditedPrefixLength(cvrIds, 0, auditedq);
+    }
+    final AuditedPrefix cached = AUDITED_PREFIXES.get(contestResult.id());
+    int from = 0;
+    if (cached != null && cached.prefixOf(cvrIds)) {
+      from = cached.my_length;
     }
 
-    Integer idx = 0;
-    for (int i=0; i < cvrIds.size(); i++) {
-      final boolean audited = isAuditedById.get(cvrIds.get(i));
-      if (audited) {
-        idx = i + 1;
-      } else { break; }
+    final int result;
+    if (from == 0) {
+      result = auditedPrefixLength(cvrIds, 0, auditedq);
+    } else {
+      // check the last ID of the cached prefix along with the rest, in case
+      // an audit was removed without a change being reported
+      final int withLast = auditedPrefixLength(cvrIds, from - 1, auditedq);
+      if (withLast < from) {
+        result = auditedPrefixLength(cvrIds, 0, auditedq);
+      } else {
+        result = withLast;
+      }
     }
-    LOGGER.debug(String.format("[auditedPrefixLength: isAuditedById=%s, apl=%d]",
-                                isAuditedById, idx));
-    return idx;
+    AUDITED_PREFIXES.put(contestResult.id(), new AuditedPrefix(cvrIds, result));
+    return result;
   }
 
   /**
    * Find the manifest entry holding a random selection
+   *
+   * This projects and indexes the whole set for a single lookup; to place
+   * many random numbers, build a BallotManifestIndex once instead.
    */
   public static BallotManifestInfo selectCountyId(final Long rand,
                                                   final Set<BallotManifestInfo> bmis) {
-    final Optional<BallotManifestInfo> holding = projectUltimateSequence(bmis).stream()
-      .filter(bmi -> bmi.isHolding(rand))
-      .findFirst();
-    if (holding.isPresent()) {
-      return holding.get();
-    } else {
+    final BallotManifestInfo holding =
+      new BallotManifestIndex(projectUltimateSequence(bmis)).holding(rand);
+    if (holding == null) {
       final String msg = "Could not find BallotManifestInfo holding random number: " + rand;
       throw new MissingBallotManifestException(msg);
     }
+    return holding;
   }
 
   /**
@@ -580,6 +807,15 @@ public final class BallotSelection {
     Optional<BallotManifestInfo> apply(CastVoteRecord cvr);
   }
 
+  /**
+   * a functional interface to pass a function as an argument
+   **/
+  public interface AUDITEDQ {
+
+    /** how to query the database **/
+    Set<Long> apply(final Collection<Long> cvr_ids);
+  }
+
   /**
    * a functional interface to pass a function as an argument
    **/
@@ -20,6 +20,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.OptionalInt;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
@@ -35,6 +37,7 @@ import us.freeandfair.corla.model.ComparisonAudit;
 import us.freeandfair.corla.model.CountyDashboard;
 import us.freeandfair.corla.model.Round;
 import us.freeandfair.corla.persistence.Persistence;
+import us.freeandfair.corla.query.CVRAuditInfoQueries;
 import us.freeandfair.corla.query.CastVoteRecordQueries;
 
 /**
@@ -353,12 +356,16 @@ public final class ComparisonAuditController {
    */
   private static void updateRound(final CountyDashboard cdb,
                                   final Round round) {
-    for (final Long cvrID : new HashSet<>(round.auditSubsequence())) {
+    final Set<Long> cvrIDs = new HashSet<>(round.auditSubsequence());
+    // every CVR/ACVR pair in the round is loaded at once, rather than one
+    // pair (and its contest information) at a time
+    final Map<Long, CVRAuditInfo> infos = CVRAuditInfoQueries.withRecords(cvrIDs);
+    for (final Long cvrID : cvrIDs) {
       final Map<String, AuditReason> auditReasons = new HashMap<>();
       final Set<AuditReason> discrepancies = new HashSet<>();
       final Set<AuditReason> disagreements = new HashSet<>();
 
-      CVRAuditInfo cvrai = Persistence.getByID(cvrID, CVRAuditInfo.class);
+      CVRAuditInfo cvrai = infos.get(cvrID);
       if (cvrai == null) {
         cvrai = new CVRAuditInfo(Persistence.getByID(cvrID, CastVoteRecord.class));
       }
@@ -625,30 +632,67 @@ public final class ComparisonAuditController {
     final Round round = cdb.currentRound();
 
     if (round != null) {
-      final Set<Long> checked_ids = new HashSet<>();
-      int index = round.actualAuditedPrefixLength() - round.startAuditedPrefixLength();
+      final int index =
+          replay(round.auditSubsequence(),
+                 round.actualAuditedPrefixLength() - round.startAuditedPrefixLength(),
+                 CVRAuditInfoQueries::withRecords,
+                 cai -> {
+                   final int audit_count = audit(cdb, cai, false);
+                   cdb.setAuditedSampleCount(cdb.auditedSampleCount() + audit_count);
+                 });
+      // FIXME audited prefix length might not mean the same things that
+      // it once meant.
+      cdb.setAuditedPrefixLength(index + round.startAuditedPrefixLength());
+      cdb.updateAuditStatus();
+    }
+  }
 
-      while (index < round.auditSubsequence().size()) {
-        final Long cvr_id = round.auditSubsequence().get(index);
-        if (!checked_ids.contains(cvr_id)) {
-          checked_ids.add(cvr_id);
+  /**
+   * Replays the CVR/ACVR pairs of an audit subsequence, from the specified
+   * index up to the first CVR that lacks an ACVR. The pairs are loaded in
+   * windows that double in size, so replaying a round takes a logarithmic
+   * number of queries, while the usual case (the next CVR has not been
+   * audited) takes one small one. A CVR that appears more than once in the
+   * subsequence is replayed only the first time.
+   *
+   * @param the_subsequence The audit subsequence.
+   * @param the_index The index to start from.
+   * @param the_query A function that returns the CVR/ACVR pairs for the
+   * given CVR IDs, by CVR ID.
+   * @param the_audit A function that audits a CVR/ACVR pair.
+   * @return the index of the first CVR that lacks an ACVR, or the length of
+   * the subsequence if there is none.
+   */
+  public static int replay(final List<Long> the_subsequence, final int the_index,
+                           final Function<List<Long>, Map<Long, CVRAuditInfo>> the_query,
+                           final Consumer<CVRAuditInfo> the_audit) {
+    final Set<Long> checked_ids = new HashSet<>();
+    int index = the_index;
+    Map<Long, CVRAuditInfo> window = new HashMap<>();
+    int window_end = index;
+    int window_size = 1;
+
+    while (index < the_subsequence.size()) {
+      if (index == window_end) {
+        window_end = Math.min(index + window_size, the_subsequence.size());
+        window = the_query.apply(the_subsequence.subList(index, window_end));
+        window_size = window_size * 2;
+      }
+      final Long cvr_id = the_subsequence.get(index);
+      if (!checked_ids.contains(cvr_id)) {
+        checked_ids.add(cvr_id);
 
-          final CVRAuditInfo cai = Persistence.getByID(cvr_id, CVRAuditInfo.class);
+        final CVRAuditInfo cai = window.get(cvr_id);
 
-          if (cai == null || cai.acvr() == null) {
-            break;              // ok, so this hasn't been audited yet.
-          } else {
-            final int audit_count = audit(cdb, cai, false);
-            cdb.setAuditedSampleCount(cdb.auditedSampleCount() + audit_count);
-          }
+        if (cai == null || cai.acvr() == null) {
+          break;              // ok, so this hasn't been audited yet.
+        } else {
+          the_audit.accept(cai);
         }
-        index = index + 1;
       }
-      // FIXME audited prefix length might not mean the same things that
-      // it once meant.
-      cdb.setAuditedPrefixLength(index + round.startAuditedPrefixLength());
-      cdb.updateAuditStatus();
+      index = index + 1;
     }
+    return index;
   }
 
   /**
@@ -62,9 +62,12 @@ public final class HashChecker {
    */
   public static String hashFile(final File a_file) {
     String result = null;
+    final MessageDigest md = newDigest();
+    if (md == null) {
+      return result;
+    }
     try {
       final byte[] buffer = new byte[BUFFER_SIZE];
-      final MessageDigest md = MessageDigest.getInstance("SHA-256");
       final InputStream is = new FileInputStream(a_file);
       final DigestInputStream dis = new DigestInputStream(is, md);
       try {
@@ -72,14 +75,10 @@ public final class HashChecker {
         do {
           bytes = dis.read(buffer);
         } while (bytes != -1);
-        final BigInteger bi = new BigInteger(1, md.digest());
-        result = String.format("%0" + (md.digest().length << 1) + "X", bi);
+        result = hashString(md);
       } finally {
         dis.close();
       }
-    } catch (final NoSuchAlgorithmException e) {
-      Main.LOGGER.error("No Java security framework installed.");
-      Main.LOGGER.info("Unable to compute SHA-256 hashes.");
     } catch (final FileNotFoundException e) {
       Main.LOGGER.warn("File to hash '" + a_file + 
                        "' disappeared before it could be hashed.");
@@ -90,4 +89,33 @@ public final class HashChecker {
     
     return result;
   }
+
+  /**
+   * @trace cryptography.sha256
+   * @return a new SHA-256 message digest, for hashing data as it is read
+   * or written (for example, with a DigestInputStream), or null if SHA-256
+   * is unavailable.
+   */
+  public static MessageDigest newDigest() {
+    MessageDigest result = null;
+    try {
+      result = MessageDigest.getInstance("SHA-256");
+    } catch (final NoSuchAlgorithmException e) {
+      Main.LOGGER.error("No Java security framework installed.");
+      Main.LOGGER.info("Unable to compute SHA-256 hashes.");
+    }
+    return result;
+  }
+
+  /**
+   * Completes a digest and encodes it in the same way as hashFile().
+   *
+   * @param a_digest The digest, which is reset.
+   * @return the hash, encoded as a hexadecimal string.
+   */
+  public static String hashString(final MessageDigest a_digest) {
+    final int length = a_digest.getDigestLength();
+    final BigInteger bi = new BigInteger(1, a_digest.digest());
+    return String.format("%0" + (length << 1) + "X", bi);
+  }
 }
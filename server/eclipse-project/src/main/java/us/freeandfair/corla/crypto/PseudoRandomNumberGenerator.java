@@ -11,11 +11,13 @@
 
 package us.freeandfair.corla.crypto;
 
-import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 
 /**
@@ -37,15 +39,58 @@ public class PseudoRandomNumberGenerator {
    */
   public static final int MINIMUM_SEED_LENGTH = 20;
   
+  /**
+   * The length of a SHA-256 hash, in bytes.
+   */
+  private static final int HASH_LENGTH = 32;
+
+  /**
+   * The maximum number of characters in the decimal representation of
+   * a positive int.
+   */
+  private static final int MAX_COUNT_DIGITS = 10;
+
+  /**
+   * The initial capacity of the random number array.
+   */
+  private static final int INITIAL_CAPACITY = 64;
+
   /**
    * The message digest we will use for generating hashes.
    */
   private MessageDigest my_sha256_digest;
 
   /**
-   * The random numbers generated so far.
+   * The hash input, "seed,count" in UTF-8; the seed and comma never change,
+   * and the count is rewritten in place for every draw.
+   */
+  private final byte[] my_hash_input;
+
+  /**
+   * The offset of the count in the hash input.
+   */
+  private final int my_count_offset;
+
+  /**
+   * The hash output, reused for every draw.
+   */
+  private final byte[] my_hash_output = new byte[HASH_LENGTH];
+
+  /**
+   * The random numbers generated so far; only the first my_size are valid.
+   */
+  private int[] my_random_numbers = new int[INITIAL_CAPACITY];
+
+  /**
+   * The number of random numbers generated so far.
    */
-  private final List<Integer> my_random_numbers;
+  private int my_size;
+
+  /**
+   * The numbers drawn so far, as offsets from the minimum; only maintained
+   * when drawing without replacement.
+   */
+  private final BitSet my_drawn;
 
   /**
    * The current number to use for generation.
@@ -108,13 +153,21 @@ public class PseudoRandomNumberGenerator {
     } catch (final NoSuchAlgorithmException e) {
       assert false;
     }
-    my_random_numbers = new LinkedList<Integer>();
     my_with_replacement = the_with_replacement;
     my_seed = the_seed;
+    final byte[] seed_bytes = (the_seed + ",").getBytes(StandardCharsets.UTF_8);
+    my_hash_input = Arrays.copyOf(seed_bytes, seed_bytes.length + MAX_COUNT_DIGITS);
+    my_count_offset = seed_bytes.length;
     assert the_minimum < the_maximum;
     my_minimum = the_minimum;
     my_maximum = the_maximum;
     my_maximum_index = my_maximum - my_minimum + 1;
+    if (the_with_replacement) {
+      my_drawn = null;
+    } else {
+      // grows as needed, so a wide range costs nothing up front
+      my_drawn = new BitSet();
+    }
   }
 
   /**
@@ -131,11 +184,15 @@ public class PseudoRandomNumberGenerator {
   public List<Integer> getRandomNumbers(final int the_from, final int the_to) {
     assert the_from <= the_to;
     assert my_with_replacement || the_to <= my_maximum_index;
-    if (the_to + 1 > my_random_numbers.size()) {
+    if (the_to + 1 > my_size) {
       extendList(the_to + 1);
     }
-    // subList has an exclusive upper bound, but we have an inclusive one
-    return my_random_numbers.subList(the_from, the_to + 1);
+    // the upper bound is inclusive
+    final List<Integer> result = new ArrayList<>(the_to - the_from + 1);
+    for (int i = the_from; i <= the_to; i++) {
+      result.add(my_random_numbers[i]);
+    }
+    return result;
   }
 
   /**
@@ -144,9 +201,13 @@ public class PseudoRandomNumberGenerator {
    */
   //@ private behavior
   //@   requires 0 <= the_length;
-  //@   ensures my_random_numbers.size() == the_length;
+  //@   ensures my_size == the_length;
   private void extendList(final int the_length) {
-    while (my_random_numbers.size() < the_length) {
+    if (my_random_numbers.length < the_length) {
+      my_random_numbers =
+          Arrays.copyOf(my_random_numbers, Math.max(the_length, 2 * my_random_numbers.length));
+    }
+    while (my_size < the_length) {
       generateNext();
     }
   }
@@ -155,24 +216,74 @@ public class PseudoRandomNumberGenerator {
    * Attempt to generate the next random number. This will either extend the
    * list of random numbers in length or leave it the same. It will always 
    * advance the count.
+   *
+   * The number is SHA-256("seed,count"), read as an unsigned big-endian
+   * integer, reduced modulo the size of the range; the reduction is done
+   * a 32-bit word at a time, so no intermediate objects are created.
    */
   public void generateNext() {
     my_count++;
     assert my_with_replacement || my_count <= my_maximum_index;
 
-    final String hash_input = my_seed + "," + my_count;
+    final int length = my_count_offset + writeCount();
+    my_sha256_digest.update(my_hash_input, 0, length);
+    try {
+      my_sha256_digest.digest(my_hash_output, 0, HASH_LENGTH);
+    } catch (final DigestException e) {
+      throw new IllegalStateException("could not compute hash", e);
+    }
+
+    final long range = (long) my_maximum - my_minimum + 1;
+    long in_range = 0;
+    for (int i = 0; i < HASH_LENGTH; i = i + 4) {
+      final long word = ((my_hash_output[i] & 0xFFL) << 24)
+                        | ((my_hash_output[i + 1] & 0xFFL) << 16)
+                        | ((my_hash_output[i + 2] & 0xFFL) << 8)
+                        | (my_hash_output[i + 3] & 0xFFL);
+      // in_range < range <= 2^32, so the shift cannot lose any bits
+      in_range = Long.remainderUnsigned((in_range << 32) | word, range);
+    }
+    final int pick = (int) (my_minimum + in_range);
 
-    final byte[] hash_output =
-        my_sha256_digest.digest(hash_input.getBytes(StandardCharsets.UTF_8));
-    final BigInteger int_output = new BigInteger(1, hash_output);
+    if (my_with_replacement) {
+      append(pick);
+    } else if (!my_drawn.get((int) in_range)) {
+      my_drawn.set((int) in_range);
+      append(pick);
+    }
+  }
 
-    final BigInteger in_range =
-        int_output.mod(BigInteger.valueOf(my_maximum - my_minimum + 1));
-    final int pick = my_minimum + in_range.intValueExact();
+  /**
+   * Writes the decimal representation of the current count into the hash
+   * input, after the seed and comma.
+   *
+   * @return the number of digits written.
+   */
+  private int writeCount() {
+    final int start = my_count_offset;
+    int digits = 1;
+    for (int n = my_count / 10; n > 0; n = n / 10) {
+      digits = digits + 1;
+    }
+    int n = my_count;
+    for (int i = start + digits - 1; i >= start; i--) {
+      my_hash_input[i] = (byte) ('0' + n % 10);
+      n = n / 10;
+    }
+    return digits;
+  }
 
-    if (my_with_replacement || !my_random_numbers.contains(pick)) {
-      my_random_numbers.add(pick);
+  /**
+   * Adds a number to the generated numbers, growing the array if needed.
+   *
+   * @param the_pick The number.
+   */
+  private void append(final int the_pick) {
+    if (my_size == my_random_numbers.length) {
+      my_random_numbers = Arrays.copyOf(my_random_numbers, 2 * my_size);
     }
+    my_random_numbers[my_size] = the_pick;
+    my_size = my_size + 1;
   }
   
   /**
@@ -36,6 +36,7 @@ import org.apache.commons.text.WordUtils;
 import org.apache.log4j.Logger;
 import org.apache.log4j.LogManager;
 
+import us.freeandfair.corla.metrics.Metrics;
 import us.freeandfair.corla.model.CVRContestInfo;
 import us.freeandfair.corla.model.CastVoteRecord;
 import us.freeandfair.corla.model.CastVoteRecord.RecordType;
@@ -44,9 +45,12 @@ import us.freeandfair.corla.model.Contest;
 import us.freeandfair.corla.model.County;
 import us.freeandfair.corla.model.CountyContestResult;
 import us.freeandfair.corla.model.CountyDashboard;
+import us.freeandfair.corla.persistence.CastVoteRecordCopyLoader;
 import us.freeandfair.corla.persistence.Persistence;
 import us.freeandfair.corla.query.CountyContestResultQueries;
 import us.freeandfair.corla.util.ExponentialBackoffHelper;
+import us.freeandfair.corla.util.OrderedParallelProcessor;
+import us.freeandfair.corla.util.Pair;
 
 /**
  * Parser for Dominion CVR export files.
@@ -73,6 +77,33 @@ public class DominionCVRExportParser implements CVRExportParser {
    */
   public static final String BATCH_SIZE_PROPERTY = "cvr_import_batch_size";
 
+  /**
+   * The name of the parallelism (number of parser threads) property.
+   */
+  public static final String PARALLELISM_PROPERTY = "cvr_import_parallelism";
+
+  /**
+   * The name of the queue size (maximum number of CVRs in flight between
+   * reading and writing) property.
+   */
+  public static final String QUEUE_SIZE_PROPERTY = "cvr_import_queue_size";
+
+  /**
+   * The name of the persistence mode property; its value is either
+   * HIBERNATE_MODE or COPY_MODE.
+   */
+  public static final String MODE_PROPERTY = "cvr_import_mode";
+
+  /**
+   * The persistence mode that saves CVRs through Hibernate.
+   */
+  public static final String HIBERNATE_MODE = "hibernate";
+
+  /**
+   * The persistence mode that streams CVRs to PostgreSQL with COPY.
+   */
+  public static final String COPY_MODE = "copy";
+
   /**
    * The number of times to retry a county dashboard update operation.
    */
@@ -98,6 +129,17 @@ public class DominionCVRExportParser implements CVRExportParser {
    */
   private static final int DEFAULT_TRANSACTION_SIZE = 400;
 
+  /**
+   * The default number of parser threads.
+   */
+  private static final int DEFAULT_PARALLELISM =
+      Runtime.getRuntime().availableProcessors();
+
+  /**
+   * The default maximum number of CVRs in flight between reading and writing.
+   */
+  private static final int DEFAULT_QUEUE_SIZE = 1000;
+
   /**
    * The column containing the CVR number in a Dominion export file.
    */
@@ -209,6 +251,17 @@ public class DominionCVRExportParser implements CVRExportParser {
    */
   private final Set<CastVoteRecord> my_parsed_cvrs = new HashSet<>();
 
+  /**
+   * The list of parsed CVRs that haven't yet been copied to the database,
+   * in file order; only used in COPY mode.
+   */
+  private final List<CastVoteRecord> my_copy_cvrs = new ArrayList<>();
+
+  /**
+   * The COPY loader, or null if CVRs are saved through Hibernate.
+   */
+  private final CastVoteRecordCopyLoader my_copy_loader;
+
   /**
    * The size of a batch of CVRs to be flushed to the database.
    */
@@ -219,6 +272,16 @@ public class DominionCVRExportParser implements CVRExportParser {
    */
   private final int my_transaction_size;
 
+  /**
+   * The number of threads used to turn CSV records into CVRs.
+   */
+  private final int my_parallelism;
+
+  /**
+   * The maximum number of CVRs in flight between reading and writing.
+   */
+  private final int my_queue_size;
+
   /**
    * A flag that indicates whether the parse is processed as multiple
    * transactions.
@@ -232,7 +295,7 @@ public class DominionCVRExportParser implements CVRExportParser {
    * @param the_reader The reader from which to read the CSV to parse.
    * @param the_county The county whose CVRs are to be parsed.
    * @param the_properties The properties from which to read any overrides to the
-   * default transaction and batch sizes.
+   * default transaction and batch sizes, parallelism and queue size.
    * @param the_multi_transaction true to commit the CVRs in multiple transactions,
    * false otherwise. If this is true, the parser assumes that a transaction is
    * in progress when invoked, and periodically commits that transaction and
@@ -250,6 +313,16 @@ public class DominionCVRExportParser implements CVRExportParser {
                                   DEFAULT_BATCH_SIZE);
     my_transaction_size = parseProperty(the_properties, TRANSACTION_SIZE_PROPERTY,
                                         DEFAULT_TRANSACTION_SIZE);
+    my_parallelism = parseProperty(the_properties, PARALLELISM_PROPERTY,
+                                   DEFAULT_PARALLELISM);
+    my_queue_size = parseProperty(the_properties, QUEUE_SIZE_PROPERTY,
+                                  DEFAULT_QUEUE_SIZE);
+    if (COPY_MODE.equalsIgnoreCase(the_properties.getProperty(MODE_PROPERTY,
+                                                              HIBERNATE_MODE).trim())) {
+      my_copy_loader = new CastVoteRecordCopyLoader();
+    } else {
+      my_copy_loader = null;
+    }
   }
 
   /**
@@ -267,6 +340,9 @@ public class DominionCVRExportParser implements CVRExportParser {
     my_multi_transaction = false;
     my_batch_size = DEFAULT_BATCH_SIZE;
     my_transaction_size = DEFAULT_TRANSACTION_SIZE;
+    my_parallelism = DEFAULT_PARALLELISM;
+    my_queue_size = DEFAULT_QUEUE_SIZE;
+    my_copy_loader = null;
   }
 
   /**
@@ -411,11 +487,24 @@ public class DominionCVRExportParser implements CVRExportParser {
     }
 
     if (my_record_count % my_batch_size == 0) {
+      flushCVRs();
+    }
+  }
+
+  /**
+   * Writes the outstanding CVRs to the database, either by flushing them
+   * from the session or, in COPY mode, by copying them.
+   */
+  private void flushCVRs() {
+    if (my_copy_loader == null) {
       Persistence.flush();
       for (final CastVoteRecord cvr : my_parsed_cvrs) {
         Persistence.evict(cvr);
       }
       my_parsed_cvrs.clear();
+    } else {
+      my_copy_loader.write(my_copy_cvrs);
+      my_copy_cvrs.clear();
     }
   }
 
@@ -425,6 +514,7 @@ public class DominionCVRExportParser implements CVRExportParser {
    */
   private void commitCVRsAndUpdateCountyDashboard() {
     // commit all the CVR records and contest tracking data
+    flushCVRs();
     Persistence.commitTransaction();
 
     boolean success = false;
@@ -449,6 +539,7 @@ public class DominionCVRExportParser implements CVRExportParser {
         }
       } catch (final PersistenceException e) {
         // something went wrong, let's try again
+        Metrics.TRANSACTION_RETRIES.inc("cvr_import");
         if (Persistence.canTransactionRollback()) {
           try {
             Persistence.rollbackTransaction();
@@ -480,13 +571,20 @@ public class DominionCVRExportParser implements CVRExportParser {
   }
 
   /**
-   * Extract a CVR from a line of the file.
+   * Extract a CVR from a line of the file. This method runs on the parser
+   * threads, so it must not touch persistence or any other mutable state of
+   * this parser; the contests it reads are not modified once parsing of CVR
+   * lines begins.
    *
+   * @param the_sequence_number The sequence number of the CVR (its 0-based
+   * position among the CVR lines of the file).
    * @param the_line The line representing the CVR.
-   * @return the resulting CVR.
+   * @return a pair of the line and the resulting CVR; the CVR is null if
+   * the line could not be parsed.
    */
   @SuppressWarnings("PMD.CyclomaticComplexity")
-  private CastVoteRecord extractCVR(final CSVRecord the_line) {
+  private Pair<CSVRecord, CastVoteRecord> extractCVR(final int the_sequence_number,
+                                                     final CSVRecord the_line) {
     try {
       final int cvr_id =
               Integer.parseInt(
@@ -534,25 +632,38 @@ public class DominionCVRExportParser implements CVRExportParser {
       // appear twice here too.
       final CastVoteRecord new_cvr =
           new CastVoteRecord(RecordType.UPLOADED, null, my_county.id(),
-                             cvr_id, my_record_count, tabulator_id,
+                             cvr_id, the_sequence_number, tabulator_id,
                              batch_id, record_id, imprinted_id,
                              ballot_type, contest_info);
-      Persistence.saveOrUpdate(new_cvr);
-      my_parsed_cvrs.add(new_cvr);
-
-      // add the CVR to all of our results
-      for (final CountyContestResult r : my_results) {
-        r.addCVR(new_cvr);
-      }
-      LOGGER.debug("parsed CVR: " + new_cvr);
-      return new_cvr;
+      return Pair.make(the_line, new_cvr);
     } catch (final NumberFormatException e) {
-      return null;
+      return Pair.make(the_line, null);
     } catch (final ArrayIndexOutOfBoundsException e) {
-      return null;
+      return Pair.make(the_line, null);
     }
   }
 
+  /**
+   * Persists a parsed CVR and adds it to the county contest results. This
+   * method runs on the thread that called parse(), in file order.
+   *
+   * @param the_cvr The CVR.
+   */
+  private void recordCVR(final CastVoteRecord the_cvr) {
+    if (my_copy_loader == null) {
+      Persistence.saveOrUpdate(the_cvr);
+      my_parsed_cvrs.add(the_cvr);
+    } else {
+      my_copy_cvrs.add(the_cvr);
+    }
+
+    // add the CVR to all of our results
+    for (final CountyContestResult r : my_results) {
+      r.addCVR(the_cvr);
+    }
+    LOGGER.debug("parsed CVR: " + the_cvr);
+  }
+
   /**
    * Processes the headers from the specified CSV record. This includes checking
    * for the use of forbidden headers, and that all required headers are
@@ -662,10 +773,14 @@ public class DominionCVRExportParser implements CVRExportParser {
 
     LOGGER.info("parsing CVR export for county " + my_county.id() +
                      ", batch_size=" + my_batch_size +
-                     ", transaction_size=" + my_transaction_size);
+                     ", transaction_size=" + my_transaction_size +
+                     ", parallelism=" + my_parallelism +
+                     ", queue_size=" + my_queue_size +
+                     ", mode=" + (my_copy_loader == null ? HIBERNATE_MODE : COPY_MODE));
 
     boolean result = true; // presume the parse will succeed
     final Iterator<CSVRecord> records = my_parser.iterator();
+    final long start = System.nanoTime();
 
     my_record_count = 0;
 
@@ -703,25 +818,37 @@ public class DominionCVRExportParser implements CVRExportParser {
       if (processHeaders(expl_line)) {
         addContests(choice_line, expl_line, contest_names,
                     contest_votes_allowed, contest_choice_counts);
-
-        // subsequent lines contain cast vote records
-        while (records.hasNext()) {
-          final CSVRecord cvr_line = records.next();
-          final CastVoteRecord cvr = extractCVR(cvr_line);
-          if (cvr == null) {
-            // we don't record the CVR since it didn't parse
-            LOGGER.error("Could not parse malformed CVR record (" + cvr_line + ")");
-            my_error_message = "malformed CVR record (" + cvr_line + ")";
-            result = false;
-            break;
-          } else {
-            my_record_count = my_record_count + 1;
-            if (my_record_count % PROGRESS_INTERVAL == 0) {
-              LOGGER.info("parsed " + my_record_count +
-                               " CVRs for county " + my_county.id());
+        // flush the contests now, so that Hibernate doesn't replace their
+        // collections while the parser threads are reading them
+        Persistence.flush();
+
+        // subsequent lines contain cast vote records; they are read on one
+        // thread, parsed on several, and handed back here in file order so
+        // that this thread (which owns the persistence session) can write them
+        try (OrderedParallelProcessor<CSVRecord, Pair<CSVRecord, CastVoteRecord>> cvrs =
+                 new OrderedParallelProcessor<>(records, this::extractCVR,
+                                                my_parallelism, my_queue_size)) {
+          while (cvrs.hasNext()) {
+            final Pair<CSVRecord, CastVoteRecord> parsed = cvrs.next();
+            final CastVoteRecord cvr = parsed.second();
+            if (cvr == null) {
+              // we don't record the CVR since it didn't parse
+              final CSVRecord cvr_line = parsed.first();
+              LOGGER.error("Could not parse malformed CVR record (" + cvr_line + ")");
+              my_error_message = "malformed CVR record (" + cvr_line + ")";
+              result = false;
+              break;
+            } else {
+              recordCVR(cvr);
+              my_record_count = my_record_count + 1;
+              Metrics.CVR_IMPORT_ROWS.inc();
+              if (my_record_count % PROGRESS_INTERVAL == 0) {
+                LOGGER.info("parsed " + my_record_count +
+                                 " CVRs for county " + my_county.id());
+              }
             }
+            checkForFlush();
           }
-          checkForFlush();
         }
 
         for (final CountyContestResult r : my_results) {
@@ -747,6 +874,10 @@ public class DominionCVRExportParser implements CVRExportParser {
 
     my_parse_status = true;
     my_parse_success = result;
+    if (result) {
+      Metrics.CVR_IMPORT_RATE.set(my_record_count * 1e9 /
+                                  Math.max(1, System.nanoTime() - start));
+    }
 
     return result;
   }
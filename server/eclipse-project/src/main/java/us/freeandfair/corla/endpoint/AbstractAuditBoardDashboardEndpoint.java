@@ -15,6 +15,7 @@ import spark.Request;
 
 import us.freeandfair.corla.Main;
 import us.freeandfair.corla.asm.AuditBoardDashboardASM;
+import us.freeandfair.corla.model.County;
 
 /**
  * Functionality that spans endpoints on the Audit Board Dashboard.
@@ -51,4 +52,21 @@ public abstract class AbstractAuditBoardDashboardEndpoint extends AbstractEndpoi
   protected String asmIdentity(final Request the_request) {
     return String.valueOf(Main.authentication().authenticatedCounty(the_request).id());
   }
+  
+  /**
+   * Gets the lane for the specified request. An audit board shares its
+   * county's lane, since it changes the same county dashboard.
+   * 
+   * @param the_request The request.
+   * @return the lane of the authenticated county, or null if there is none.
+   */
+  @Override
+  protected String lane(final Request the_request) {
+    final County county = Main.authentication().authenticatedCounty(the_request);
+    String result = null;
+    if (county != null) {
+      result = RequestScheduler.countyLane(county.id());
+    }
+    return result;
+  }
 }
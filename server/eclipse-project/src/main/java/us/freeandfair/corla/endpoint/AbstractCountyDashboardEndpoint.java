@@ -15,6 +15,7 @@ import spark.Request;
 
 import us.freeandfair.corla.Main;
 import us.freeandfair.corla.asm.CountyDashboardASM;
+import us.freeandfair.corla.model.County;
 
 /**
  * Functionality that spans endpoints on the Department of State Dashboard.
@@ -51,4 +52,21 @@ public abstract class AbstractCountyDashboardEndpoint extends AbstractEndpoint {
   protected String asmIdentity(final Request the_request) {
     return String.valueOf(Main.authentication().authenticatedCounty(the_request).id());
   }
+  
+  /**
+   * Gets the lane for the specified request; requests for the same county
+   * (from its county dashboard or its audit board) run one at a time.
+   * 
+   * @param the_request The request.
+   * @return the lane of the authenticated county, or null if there is none.
+   */
+  @Override
+  protected String lane(final Request the_request) {
+    final County county = Main.authentication().authenticatedCounty(the_request);
+    String result = null;
+    if (county != null) {
+      result = RequestScheduler.countyLane(county.id());
+    }
+    return result;
+  }
 }
@@ -50,4 +50,15 @@ public abstract class AbstractDoSDashboardEndpoint extends AbstractEndpoint {
   protected String asmIdentity(final Request the_request) {
     return DoSDashboardASM.IDENTITY;
   }
+  
+  /**
+   * @param the_request The request.
+   * @return the state lane; these endpoints change the state's data, and
+   * any county data they change is protected by optimistic locking, so they
+   * do not hold up the counties.
+   */
+  @Override
+  protected String lane(final Request the_request) {
+    return RequestScheduler.STATE_LANE;
+  }
 }
@@ -16,6 +16,7 @@ import static us.freeandfair.corla.model.Administrator.AdministratorType.*;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import javax.persistence.PersistenceException;
 
@@ -35,10 +36,13 @@ import us.freeandfair.corla.asm.ASMUtilities;
 import us.freeandfair.corla.asm.AbstractStateMachine;
 import us.freeandfair.corla.auth.AuthenticationInterface;
 import us.freeandfair.corla.json.Result;
+import us.freeandfair.corla.metrics.Metrics;
 import us.freeandfair.corla.model.Administrator;
 import us.freeandfair.corla.model.LogEntry;
+import us.freeandfair.corla.model.PendingLogEntry;
+import us.freeandfair.corla.persistence.LogSequencer;
 import us.freeandfair.corla.persistence.Persistence;
-import us.freeandfair.corla.query.LogEntryQueries;
+import us.freeandfair.corla.persistence.StatementCounter;
 import us.freeandfair.corla.util.SuppressFBWarnings;
 
 /**
@@ -64,21 +68,33 @@ public abstract class AbstractEndpoint implements Endpoint {
   public static final boolean DISABLE_ASM = false;
   
   /**
-   * The number of times to retry committing logs for failed transactions.
+   * The "Retry-After" value for a transaction failure response, in seconds.
    */
-  public static final int LOG_COMMIT_RETRIES = 5;
+  public static final String RETRY_AFTER_DELAY = "10";
   
   /**
-   * The "Retry-After" value for a transaction failure response, in seconds.
+   * The number of nanoseconds in a second.
    */
-  public static final String RETRY_AFTER_DELAY = "10";
+  private static final double NANOS_PER_SECOND = 1e9;
 
   /**
-   * The ASM for this endpoint.
+   * The scheduler of requests that change data.
+   */
+  private static final RequestScheduler SCHEDULER =
+      RequestScheduler.fromProperties(Main.properties());
+  
+  /**
+   * The ASM for this endpoint, or null if it has not been loaded; use asm()
+   * to get it.
    */
   protected ThreadLocal<AbstractStateMachine> my_asm = 
       new ThreadLocal<AbstractStateMachine>();
   
+  /**
+   * The identity of the ASM for this endpoint.
+   */
+  protected ThreadLocal<String> my_asm_identity = new ThreadLocal<String>();
+  
   /**
    * The endpoint result for the ongoing transaction.
    */
@@ -95,6 +111,11 @@ public abstract class AbstractEndpoint implements Endpoint {
   protected ThreadLocal<List<LogEntry>> my_log_entries = 
       new ThreadLocal<List<LogEntry>>();
   
+  /**
+   * The time the request started, as given by System.nanoTime().
+   */
+  protected ThreadLocal<Long> my_start_time = new ThreadLocal<Long>();
+  
   /**
    * Halts the endpoint execution by ending the request and returning the
    * most recently set response code and endpoint result.
@@ -141,53 +162,135 @@ public abstract class AbstractEndpoint implements Endpoint {
    * The endpoint method. Delegates immediately to the child class
    */
   /**
-   * Load the appropriate ASM from the database and make sure that
-   * the transition we wish to take is legal.
+   * Gets the lane in which this endpoint runs for the specified request, if
+   * it changes data; requests in the same lane run one at a time. The 
+   * default is no lane.
+   * 
+   * @param the_request The request.
+   * @return the lane, or null if the request need not wait for others.
+   */
+  protected String lane(final Request the_request) {
+    return null;
+  }
+  
+  /**
+   * @return true if this endpoint only reads data, so that it runs in a
+   * read-only transaction and in no lane, false otherwise. The default is
+   * true for GET endpoints that take no ASM event.
+   */
+  protected boolean readOnly() {
+    return endpointType() == EndpointType.GET && endpointEvent() == null;
+  }
+  
+  /**
+   * @return true if this endpoint's activity is recorded in the hash-chained
+   * audit log, false if it only goes to the system logger. The default is
+   * true.
+   */
+  protected boolean auditLogged() {
+    return true;
+  }
+  
+  /**
+   * Enters the lane for the specified request, if it has one, halting with
+   * a transaction failure (which asks the client to retry) if the requests
+   * ahead of it take too long.
+   * 
+   * @param the_request The request.
+   * @param the_response The response.
+   */
+  private void enterLane(final Request the_request, final Response the_response) {
+    if (SCHEDULER.inLane()) {
+      // a previous request on this thread did not get to leave its lane
+      Main.LOGGER.error("request thread was still in a lane before " + endpointName());
+      SCHEDULER.leave();
+    }
+    if (readOnly()) {
+      return;
+    }
+    final String lane = lane(the_request);
+    if (lane != null && !SCHEDULER.enter(lane)) {
+      transactionFailure(the_response, "too many simultaneous requests for " + lane);
+      halt(the_response);
+    }
+  }
+  
+  /**
+   * Make sure that the transition we wish to take is legal in the current
+   * state of the appropriate ASM. The check uses the cached ASM state and
+   * the compiled transition table of the ASM class, so it does not load
+   * the ASM itself; that is done by asm(), if the endpoint needs it.
    * 
    * @param the_request The request.
    * @param the_response The response.
    */
   protected void loadAndCheckASM(final Request the_request,
                                  final Response the_response) {
+    my_asm.set(null);
     // get the state of the ASM
     if (DISABLE_ASM || asmClass() == null) {
       // there is no ASM for this endpoint
-      my_asm.set(null);
+      my_asm_identity.set(null);
       return;
     }
-    my_asm.set(ASMUtilities.asmFor(asmClass(), asmIdentity(the_request)));
+    my_asm_identity.set(asmIdentity(the_request));
     // check that we are in the right ASM state
     if (endpointEvent() != null && 
-        !my_asm.get().enabledASMEvents().contains(endpointEvent())) {
+        !ASMUtilities.isEnabled(asmClass(), my_asm_identity.get(), endpointEvent())) {
       illegalTransition(the_response,
                         endpointName() + 
                         " attempted to apply illegal event " + endpointEvent() + 
-                        " from state " + my_asm.get().currentState());
+                        " from state " + asm().currentState());
     }
   }
 
   /**
-   * Save the ASM back to the database.
+   * Gets the ASM for this endpoint, loading it if necessary.
+   * 
+   * @return the ASM, or null if there is no ASM for this endpoint.
+   */
+  protected AbstractStateMachine asm() {
+    if (my_asm.get() == null && !DISABLE_ASM && asmClass() != null) {
+      my_asm.set(ASMUtilities.asmFor(asmClass(), my_asm_identity.get()));
+    }
+    return my_asm.get();
+  }
+
+  /**
+   * Save the ASM back to the database. If the ASM cannot be loaded or
+   * saved (for example, because its state was changed by another request),
+   * the response is set to a transaction failure, so the client retries.
    * 
    * @param the_response The response.
    * @return true if the ASM transitioned successfully
    */
   protected boolean transitionAndSaveASM(final Response the_response)  {
-    if (DISABLE_ASM || my_asm.get() == null || endpointEvent() == null) {
+    if (DISABLE_ASM || asmClass() == null || endpointEvent() == null) {
       // there is no ASM event for this endpoint
       return true;
     }
     try {
-      // this asmFor() will be a no-op in nearly all cases, but in multi-transaction
+      // the ASM is loaded here, rather than reused, because in multi-transaction
       // endpoint hits like uploading large CVR imports, it is possible for the
       // state to change out from underneath us
-      my_asm.set(ASMUtilities.asmFor(asmClass(), my_asm.get().identity()));
+      my_asm.set(ASMUtilities.asmFor(asmClass(), my_asm_identity.get()));
+      if (my_asm.get() == null) {
+        // the ASM could not be constructed, so nothing was stepped or saved
+        transactionFailure(the_response, "could not load state of " + 
+                                         asmClass().getSimpleName());
+        return false;
+      }
       my_asm.get().stepEvent(endpointEvent());
     } catch (final IllegalStateException e) {
       illegalTransition(the_response, e.getMessage(), false);
       return false;
     }
-    return ASMUtilities.save(my_asm.get());
+    if (!ASMUtilities.save(my_asm.get())) {
+      transactionFailure(the_response, "could not save state of " + 
+                                       asmClass().getSimpleName());
+      return false;
+    }
+    return true;
   }
   
   /**
@@ -227,7 +330,37 @@ public abstract class AbstractEndpoint implements Endpoint {
     my_status.set(HttpStatus.OK_200);
     my_endpoint_result.set(the_json);
   }
+
+  /**
+   * Indicate and log that the operation completed successfully, and
+   * send the specified text with the specified content type.
+   * 
+   * @param the_response The HTTP response.
+   * @param the_content_type The content type of the text.
+   * @param the_text The text to send as the body of the response.
+   */
+  public void okText(final Response the_response, final String the_content_type,
+                     final String the_text) {
+    the_response.type(the_content_type);
+    my_log_entries.get().add(new LogEntry(HttpStatus.OK_200, endpointName(), Instant.now()));
+    my_status.set(HttpStatus.OK_200);
+    my_endpoint_result.set(the_text);
+  }
   
+  /**
+   * Indicate and log that the client already has the current version of the
+   * requested data, so none is sent. The caller is responsible for the
+   * validator (e.g., ETag) headers.
+   *
+   * @param the_response The HTTP response.
+   */
+  public void notModified(final Response the_response) {
+    my_log_entries.get().add(new LogEntry(HttpStatus.NOT_MODIFIED_304, endpointName(),
+                                          Instant.now()));
+    my_status.set(HttpStatus.NOT_MODIFIED_304);
+    my_endpoint_result.set("");
+  }
+
   /**
    * Indicate the client has violated an invariant or precondition relating data
    * to the endpoint in question. E.g., a digest is incorrect with regards to
@@ -388,6 +521,7 @@ public abstract class AbstractEndpoint implements Endpoint {
                                         the_body,
                                     Instant.now()));
     my_status.set(HttpStatus.SERVICE_UNAVAILABLE_503);
+    Metrics.TRANSACTION_FAILURES.inc(endpointName());
     the_response.header("Retry-After", RETRY_AFTER_DELAY);
     my_endpoint_result.set(Main.GSON.toJson(new Result(the_body)));
   }
@@ -403,6 +537,8 @@ public abstract class AbstractEndpoint implements Endpoint {
   @SuppressFBWarnings("RV_RETURN_VALUE_IGNORED_NO_SIDE_EFFECT")
   @Override
   public void before(final Request the_request, final Response the_response) {
+    my_start_time.set(System.nanoTime());
+    StatementCounter.reset();
     reset();
     my_log_entries.set(new ArrayList<LogEntry>());
     Main.LOGGER.log(logLevel(), 
@@ -411,9 +547,17 @@ public abstract class AbstractEndpoint implements Endpoint {
     // anything has a chance to read the request body before Spark
     the_request.queryParams();
     
+    // Enter this request's lane, if it changes data, so that it does not
+    // contend with other requests for the same data
+    enterLane(the_request, the_response);
+    
     // Start a transaction, if the database is functioning; otherwise abort
     if (Persistence.hasDB()) {
-      Persistence.beginTransaction(); 
+      if (readOnly()) {
+        Persistence.beginReadOnlyTransaction();
+      } else {
+        Persistence.beginTransaction(); 
+      }
     } else {
       serverError(the_response, "no database");
       halt(the_response);
@@ -494,52 +638,109 @@ public abstract class AbstractEndpoint implements Endpoint {
   }
   
   /**
-   * Persists, and logs to the system logger, all accumulated log entries for
-   * this endpoint.
+   * Logs a log entry to the system logger.
    * 
-   * @param the_request The request (used to get the hostname of the client 
-   * and the authentication data for the log).
+   * @param the_log_entry The log entry.
+   * @param the_authentication_data The authentication data for the log.
+   * @param the_client_host The hostname of the client.
    */
-  private void sendToLogger(final LogEntry the_log_entry) {
+  private void sendToLogger(final LogEntry the_log_entry,
+                            final String the_authentication_data,
+                            final String the_client_host) {
     if (the_log_entry.resultCode() == null) {
       Main.LOGGER.log(logLevel(), 
                       the_log_entry.information() + " by " + 
-                      the_log_entry.authenticationData() + " from " + 
-                      the_log_entry.clientHost());
-    } else if (HttpStatus.isSuccess(the_log_entry.resultCode())) {
+                      the_authentication_data + " from " + 
+                      the_client_host);
+    } else if (isSuccess(the_log_entry.resultCode())) {
       Main.LOGGER.log(logLevel(), 
                       "successful " + the_log_entry.information() + " by " + 
-                      the_log_entry.authenticationData() + " from " + 
-                      the_log_entry.clientHost());
+                      the_authentication_data + " from " + 
+                      the_client_host);
     } else {
       Main.LOGGER.error("error " + the_log_entry.resultCode() + " " + 
                         the_log_entry.information() + " by " + 
-                        the_log_entry.authenticationData() + " from " + 
-                        the_log_entry.clientHost());
+                        the_authentication_data + " from " + 
+                        the_client_host);
     }
   }
 
-  private void persistLogEntries(final Request the_request) {
-    LogEntry previous_entry = LogEntryQueries.last();
+  /**
+   * @param the_request The request.
+   * @return the authentication data for the log.
+   */
+  private static String authenticationData(final Request the_request) {
     final Object admin_attribute = 
         the_request.session().attribute(AuthenticationInterface.ADMIN);
-    final String admin_data;
+    final String result;
     if (admin_attribute instanceof Administrator) {
-      admin_data = ((Administrator) admin_attribute).username();
+      result = ((Administrator) admin_attribute).username();
     } else {
-      admin_data = "(unauthenticated)";
+      result = "(unauthenticated)";
+    }
+    return result;
+  }
+
+  /**
+   * Saves all accumulated log entries for this endpoint as pending log
+   * entries, in the current transaction, so that if it commits the change
+   * it made cannot be left without its log entries.
+   * 
+   * @param the_request The request (used for log data).
+   * @return the pending log entries, in order.
+   */
+  private List<PendingLogEntry> savePendingLogEntries(final Request the_request) {
+    final List<PendingLogEntry> result = new ArrayList<>();
+    if (auditLogged()) {
+      final String admin_data = authenticationData(the_request);
+      for (final LogEntry entry : my_log_entries.get()) {
+        final PendingLogEntry pending = 
+            new PendingLogEntry(entry.resultCode(), entry.information(), admin_data,
+                                the_request.host(), entry.timestamp());
+        Persistence.save(pending);
+        result.add(pending);
+      }
     }
+    return result;
+  }
+
+  /**
+   * Hands all accumulated log entries for this endpoint to the log
+   * sequencer, which chains and persists them, logs them to the system
+   * logger, and waits for them to be persisted. Entries of endpoints that
+   * are not audit logged only go to the system logger.
+   * 
+   * @param the_request The request (used to get the hostname of the client 
+   * and the authentication data for the log).
+   * @param the_pending_entries The committed pending log entries saved for
+   * the first of the accumulated log entries.
+   * @return true if the entries were persisted, false otherwise.
+   */
+  private boolean persistLogEntries(final Request the_request,
+                                    final List<PendingLogEntry> the_pending_entries) {
+    final String admin_data = authenticationData(the_request);
+    final String client_host = the_request.host();
     
-    for (final LogEntry entry : my_log_entries.get()) {
-      // create and persist a new hash-chained log entry for each log entry
-      final LogEntry real_entry =
-          new LogEntry(entry.resultCode(), entry.information(), 
-                       admin_data, the_request.host(),
-                       entry.timestamp(), previous_entry);
-      Persistence.save(real_entry);
-      sendToLogger(real_entry);
-      previous_entry = real_entry;
+    final List<CompletableFuture<Boolean>> tickets = new ArrayList<>();
+    for (int i = 0; i < my_log_entries.get().size(); i++) {
+      final LogEntry entry = my_log_entries.get().get(i);
+      if (i < the_pending_entries.size()) {
+        tickets.add(LogSequencer.append(the_pending_entries.get(i)));
+      } else if (auditLogged()) {
+        // the sequencer creates and persists a hash-chained log entry for 
+        // each log entry
+        tickets.add(LogSequencer.append(entry.resultCode(), entry.information(), 
+                                        admin_data, client_host, entry.timestamp()));
+      }
+      sendToLogger(entry, admin_data, client_host);
     }
+    // don't respond until the entries are in the log
+    final boolean result = LogSequencer.awaitWritten(tickets);
+    if (!result) {
+      Main.LOGGER.error("log entries for " + endpointName() + " by " + admin_data +
+                        " from " + client_host + " were not all written");
+    }
+    return result;
   }
   
   /**
@@ -548,31 +749,63 @@ public abstract class AbstractEndpoint implements Endpoint {
    */
   private boolean successful() {
     return !my_log_entries.get().isEmpty() &&
-           HttpStatus.isSuccess(my_log_entries.
-                                get().get(my_log_entries.get().size() - 1).resultCode());
+           isSuccess(my_log_entries.get().get(my_log_entries.get().size() - 1).resultCode());
+  }
+
+  /**
+   * @param the_code An HTTP status code.
+   * @return true if the code indicates a successful request; "not modified"
+   * counts as success.
+   */
+  private static boolean isSuccess(final int the_code) {
+    return HttpStatus.isSuccess(the_code) || the_code == HttpStatus.NOT_MODIFIED_304;
   }
   
   /**
-   * Attempts to commit, in a separate transaction, any straggling log entries that
-   * could not be committed due to error.
+   * Hands the log entries of this request, which is finished with its 
+   * transaction, to the log sequencer, and waits for them to be persisted.
+   * They are chained outside the request's transaction, whether or not
+   * it committed, so logging adds no contended row to it. If they cannot
+   * be persisted, the response is changed to a server error.
    * 
    * @param the_request The request (used for log data).
+   * @param the_pending_entries The committed pending log entries saved for
+   * the first of the log entries.
+   */
+  private void finalizeLogs(final Request the_request,
+                            final List<PendingLogEntry> the_pending_entries) {
+    if (!my_log_entries.get().isEmpty()) {
+      final boolean written = persistLogEntries(the_request, the_pending_entries);
+      my_log_entries.get().clear();
+      if (!written) {
+        // the response must not claim success without its log entries
+        final String message;
+        if (the_pending_entries.isEmpty()) {
+          message = "could not write the audit log";
+        } else {
+          message = "changes were saved, but their audit log entries are not yet " +
+                    "written; they will be written when the audit log is available";
+        }
+        Main.LOGGER.error("error " + HttpStatus.INTERNAL_SERVER_ERROR_500 + " " + 
+                          endpointName() + ": " + message);
+        my_status.set(HttpStatus.INTERNAL_SERVER_ERROR_500);
+        my_endpoint_result.set(Main.GSON.toJson(new Result(message)));
+      }
+    }
+  }
+  
+  /**
+   * Rolls back the current transaction, if it can be rolled back.
+   * 
+   * @param the_message The message to log if it cannot.
    */
-  private void finalizeLogs(final Request the_request) {
-    int log_commit_retries = 0;
-    if (!my_log_entries.get().isEmpty() && log_commit_retries < LOG_COMMIT_RETRIES) {
-      try {
-        log_commit_retries = log_commit_retries + 1;
-        Persistence.beginTransaction();
-        persistLogEntries(the_request);
-        Persistence.commitTransaction();
-        my_log_entries.get().clear();
-      } catch (final PersistenceException e) {
-        Main.LOGGER.error("could not persist log entries for error response after " + 
-                          log_commit_retries + " attempt(s)");
+  private static void rollback(final String the_message) {
+    try {
+      if (Persistence.canTransactionRollback()) {
+        Persistence.rollbackTransaction();
       }
-    } else if (!my_log_entries.get().isEmpty()) {
-      Main.LOGGER.error("maximum number of log entry commit attempts reached, aborting");
+    } catch (final PersistenceException ex) {
+      Main.LOGGER.error(the_message + ": " + ex.getMessage());
     }
   }
   
@@ -583,36 +816,38 @@ public abstract class AbstractEndpoint implements Endpoint {
    * themselves).
    */
   public void afterAfter(final Request the_request, final Response the_response) {
-    // try to take the transition for this endpoint in the ASM and save it to the DB
-    // note that we do not try to commit when we have an error code in the response
-    if (successful() && 
-        transitionAndSaveASM(the_response) && 
-        Persistence.isTransactionActive()) {
-      try {
-        // since the transition finished, let's log all the log entries and commit
-        persistLogEntries(the_request);
-        Persistence.commitTransaction();
-        my_log_entries.get().clear();
-      } catch (final PersistenceException e) {
-        // this is an internal server error because we don't know what didn't
-        // get committed
-        transactionFailure(the_response, 
-                           "could not commit changes to persistent storage");
-      }
-    } else {
-      if (Persistence.canTransactionRollback()) {
+    List<PendingLogEntry> pending_entries = new ArrayList<>();
+    try {
+      // try to take the transition for this endpoint in the ASM and save it to the DB
+      // note that we do not try to commit when we have an error code in the response
+      if (successful() && 
+          transitionAndSaveASM(the_response) && 
+          Persistence.isTransactionActive()) {
         try {
-          Persistence.rollbackTransaction();
-        } catch (final PersistenceException ex) {
-          Main.LOGGER.error("could not roll back transaction for error response: " +
-                            ex.getMessage());
+          // since the transition finished, let's commit, with the log entries
+          // saved as pending; they are chained by the log sequencer afterwards
+          pending_entries = savePendingLogEntries(the_request);
+          Persistence.commitTransaction();
+        } catch (final PersistenceException e) {
+          pending_entries = new ArrayList<>();
+          rollback("could not roll back transaction after failed commit");
+          // this is an internal server error because we don't know what didn't
+          // get committed
+          transactionFailure(the_response, 
+                             "could not commit changes to persistent storage");
         }
+      } else if (Persistence.canTransactionRollback()) {
+        rollback("could not roll back transaction for error response");
       } else {
         Main.LOGGER.error("could not roll back transaction for error response");
       }
+    } finally {
+      // the transaction is over (even if ending it failed unexpectedly), so
+      // let the next request in the lane run
+      SCHEDULER.leave();
     }
-    // if there are still log entries left, we need to persist them and print them
-    finalizeLogs(the_request);
+    // now persist and print the log entries
+    finalizeLogs(the_request, pending_entries);
     Integer status = my_status.get();
     String endpoint_result = my_endpoint_result.get();
     if (status == null) {
@@ -622,6 +857,21 @@ public abstract class AbstractEndpoint implements Endpoint {
     }
     the_response.body(endpoint_result);
     the_response.status(status);
+    recordMetrics();
+  }
+  
+  /**
+   * Records the latency of the request and the number of SQL statements
+   * it prepared.
+   */
+  private void recordMetrics() {
+    final Long start = my_start_time.get();
+    if (start != null) {
+      Metrics.REQUEST_DURATION.observe(endpointName(),
+                                       (System.nanoTime() - start) / NANOS_PER_SECOND);
+      my_start_time.remove();
+    }
+    Metrics.REQUEST_STATEMENTS.observe(endpointName(), StatementCounter.count());
   }
   
   /**
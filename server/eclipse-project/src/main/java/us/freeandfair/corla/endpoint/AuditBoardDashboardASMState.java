@@ -60,8 +60,8 @@ public class AuditBoardDashboardASMState extends AbstractAuditBoardDashboardEndp
     // conveniently have locally already
     
     okJSON(the_response, 
-           Main.GSON.toJson(new ServerASMResponse(my_asm.get().currentState(), 
-                                                  my_asm.get().enabledUIEvents())));
+           Main.GSON.toJson(new ServerASMResponse(asm().currentState(), 
+                                                  asm().enabledUIEvents())));
     return my_endpoint_result.get();
   }
 }
@@ -16,7 +16,7 @@ import static us.freeandfair.corla.asm.ASMEvent.CountyDashboardEvent.IMPORT_BALL
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.sql.SQLException;
+import java.nio.file.NoSuchFileException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -117,7 +117,7 @@ public class BallotManifestImport extends AbstractCountyDashboardEndpoint {
   // the CSV parser can throw arbitrary runtime exceptions, which we must catch
   @SuppressWarnings({"PMD.AvoidCatchingGenericException"})
   private void parseFile(final Response the_response, final UploadedFile the_file) {  
-    try (InputStream bmi_is = the_file.file().getBinaryStream()) {
+    try (InputStream bmi_is = Main.fileStore().open(the_file.computedHash())) {
       final InputStreamReader bmi_isr = new InputStreamReader(bmi_is, "UTF-8");
       final BallotManifestParser parser = 
           new ColoradoBallotManifestParser(bmi_isr, 
@@ -145,15 +145,15 @@ public class BallotManifestImport extends AbstractCountyDashboardEndpoint {
         badDataContents(the_response, "malformed ballot manifest file " + 
                                       the_file.filename() + PAREN_ID + the_file.id() + ")");
       }
+    } catch (final NoSuchFileException e) {
+      Main.LOGGER.info("could not read file " + the_file.filename() + 
+                       PAREN_ID + the_file.id() + ") from the file store");
     } catch (final RuntimeException | IOException e) {
       Main.LOGGER.info("could not parse malformed ballot manifest file " + 
                        the_file.filename() + PAREN_ID + the_file.id() + ") for county " + 
                        the_file.county().id() + ": " + e);
       badDataContents(the_response, "malformed ballot manifest file " + 
                                     the_file.filename() + PAREN_ID + the_file.id() + ")");
-    } catch (final SQLException e) {
-      Main.LOGGER.info("could not read file " + the_file.filename() + 
-                       PAREN_ID + the_file.id() + ") from persistent storage");
     }
   }
 
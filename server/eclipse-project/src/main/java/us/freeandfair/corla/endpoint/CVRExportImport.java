@@ -14,6 +14,7 @@ package us.freeandfair.corla.endpoint;
 import static us.freeandfair.corla.asm.ASMEvent.CountyDashboardEvent.IMPORT_CVRS_EVENT;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.time.Instant;
 import java.util.Arrays;
@@ -41,6 +42,7 @@ import us.freeandfair.corla.asm.ASMState.CountyDashboardState;
 import us.freeandfair.corla.asm.ASMUtilities;
 import us.freeandfair.corla.asm.CountyDashboardASM;
 import us.freeandfair.corla.csv.DominionCVRExportParser;
+import us.freeandfair.corla.metrics.Metrics;
 import us.freeandfair.corla.model.CastVoteRecord.RecordType;
 import us.freeandfair.corla.model.County;
 import us.freeandfair.corla.model.CountyDashboard;
@@ -54,7 +56,6 @@ import us.freeandfair.corla.persistence.Persistence;
 import us.freeandfair.corla.query.CastVoteRecordQueries;
 import us.freeandfair.corla.query.CountyContestResultQueries;
 import us.freeandfair.corla.util.ExponentialBackoffHelper;
-import us.freeandfair.corla.util.UploadedFileStreamer;
 
 /**
  * The "CVR export import" endpoint.
@@ -350,6 +351,7 @@ public class CVRExportImport extends AbstractCountyDashboardEndpoint {
           }
         } catch (final PersistenceException e) {
           // something went wrong, let's try again
+          Metrics.TRANSACTION_RETRIES.inc("cvr_import");
           if (Persistence.canTransactionRollback()) {
             try {
               Persistence.rollbackTransaction();
@@ -416,6 +418,7 @@ public class CVRExportImport extends AbstractCountyDashboardEndpoint {
           success = true;
         } catch (final PersistenceException e) {
           // something went wrong, let's try again
+          Metrics.TRANSACTION_RETRIES.inc("cvr_import");
           if (Persistence.canTransactionRollback()) {
             try {
               Persistence.rollbackTransaction();
@@ -453,11 +456,10 @@ public class CVRExportImport extends AbstractCountyDashboardEndpoint {
      */
     @SuppressWarnings({"PMD.AvoidCatchingGenericException", "PMD.AvoidRethrowingException"})
     private void parseFile(final UploadedFile the_file) {
-      final UploadedFileStreamer ufs = new UploadedFileStreamer(the_file);
-      (new Thread(ufs)).start();
-        
-      try {
-        final InputStreamReader bmi_isr = new InputStreamReader(ufs.inputStream(), "UTF-8");
+      // the file is read from the file store, so no database connection
+      // is held open just to read it
+      try (InputStream cvr_is = Main.fileStore().open(the_file.computedHash())) {
+        final InputStreamReader bmi_isr = new InputStreamReader(cvr_is, "UTF-8");
         final DominionCVRExportParser parser = 
             new DominionCVRExportParser(bmi_isr, 
                                         Persistence.getByID(the_file.county().id(), 
@@ -515,8 +517,6 @@ public class CVRExportImport extends AbstractCountyDashboardEndpoint {
         }
         error("malformed CVR export file " + 
               the_file.filename() + PAREN_ID + the_file.id() + ")");
-      } finally {
-        ufs.stop();
       }
     }
     
@@ -579,6 +579,7 @@ public class CVRExportImport extends AbstractCountyDashboardEndpoint {
           success = true;
         } catch (final PersistenceException e) {
           // something went wrong, let's try again
+          Metrics.TRANSACTION_RETRIES.inc("cvr_import");
           if (Persistence.canTransactionRollback()) {
             try {
               Persistence.rollbackTransaction();
@@ -14,25 +14,103 @@ package us.freeandfair.corla.endpoint;
 import javax.persistence.PersistenceException;
 
 import org.apache.log4j.Level;
+import org.hibernate.proxy.HibernateProxy;
 
 import spark.Request;
 import spark.Response;
 
 import us.freeandfair.corla.Main;
+import us.freeandfair.corla.asm.AuditBoardDashboardASM;
+import us.freeandfair.corla.asm.CountyDashboardASM;
+import us.freeandfair.corla.asm.PersistentASMState;
 import us.freeandfair.corla.json.CountyDashboardRefreshResponse;
+import us.freeandfair.corla.model.ComparisonAudit;
+import us.freeandfair.corla.model.Contest;
+import us.freeandfair.corla.model.ContestToAudit;
 import us.freeandfair.corla.model.County;
 import us.freeandfair.corla.model.CountyDashboard;
+import us.freeandfair.corla.model.DoSDashboard;
+import us.freeandfair.corla.model.UploadedFile;
+import us.freeandfair.corla.persistence.EntityChangeNotifier;
 import us.freeandfair.corla.persistence.Persistence;
+import us.freeandfair.corla.util.SnapshotCache;
+import us.freeandfair.corla.util.SnapshotCache.Snapshot;
 
 /**
  * The endpoint for refreshing the county dashboard status.
  * 
+ * Responses are cached per county, and each county's response is rebuilt
+ * only after a committed change to an entity it is built from: the county,
+ * its dashboard, contests, uploaded files and ASMs, or anything shared
+ * between counties (the DoS dashboard, its contests to audit, and the
+ * comparison audits, whose estimates span counties).
+ *
  * @author Daniel M. Zimmerman <dmz@freeandfair.us>
  * @version 1.0.0
  */
 // endpoints don't need constructors
 @SuppressWarnings("PMD.AtLeastOneConstructor")
 public class CountyDashboardRefresh extends AbstractCountyDashboardEndpoint {
+  /**
+   * The cached responses, by county ID.
+   */
+  private static final SnapshotCache<Long> SNAPSHOTS = new SnapshotCache<>();
+
+  static {
+    EntityChangeNotifier.addListener(new EntityChangeNotifier.Listener() {
+      @Override
+      public void entityChanged(final Object the_entity) {
+        invalidateFor(the_entity);
+      }
+
+      @Override
+      public void allChanged() {
+        SNAPSHOTS.invalidateAll();
+      }
+    });
+  }
+
+  /**
+   * @param the_county_id The county ID.
+   * @return the current version of the county's dashboard data; read it
+   * before starting the transaction in which snapshot() is called.
+   */
+  public static long version(final Long the_county_id) {
+    return SNAPSHOTS.version(the_county_id);
+  }
+
+  /**
+   * @return the latest version of any county's dashboard data; it increases
+   * whenever any county's dashboard data changes.
+   */
+  public static long latestVersion() {
+    return SNAPSHOTS.latestVersion();
+  }
+
+  /**
+   * Gets the serialized dashboard for the specified county and version,
+   * building it if it is not cached. This must be called within a
+   * transaction.
+   *
+   * @param the_county_id The county ID.
+   * @param the_version The version, as returned by version().
+   * @return the snapshot.
+   */
+  public static Snapshot snapshot(final Long the_county_id, final long the_version) {
+    Snapshot result = SNAPSHOTS.get(the_county_id, the_version);
+    if (result == null) {
+      result = SNAPSHOTS.put(the_county_id, the_version,
+                             Main.GSON.toJson(CountyDashboardRefreshResponse.createResponse
+                               (Persistence.getByID(the_county_id, CountyDashboard.class))));
+    }
+    return result;
+  }
+
+  /**
+   * The version of the response data, read before the transaction began.
+   */
+  private final ThreadLocal<Long> my_version = new ThreadLocal<Long>();
+
   /**
    * {@inheritDoc}
    */
@@ -56,7 +134,74 @@ public class CountyDashboardRefresh extends AbstractCountyDashboardEndpoint {
   public Level logLevel() {
     return Level.DEBUG;
   }
-  
+
+  /**
+   * Invalidates the cached responses that depend on the specified entity.
+   *
+   * @param the_entity The entity.
+   */
+  @SuppressWarnings("PMD.ConfusingTernary")
+  private static void invalidateFor(final Object the_entity) {
+    if (the_entity instanceof CountyDashboard) {
+      SNAPSHOTS.invalidate(((CountyDashboard) the_entity).id());
+    } else if (the_entity instanceof County) {
+      SNAPSHOTS.invalidate(((County) the_entity).id());
+    } else if (the_entity instanceof Contest) {
+      invalidate(((Contest) the_entity).county());
+    } else if (the_entity instanceof UploadedFile) {
+      invalidate(((UploadedFile) the_entity).county());
+    } else if (the_entity instanceof PersistentASMState) {
+      final PersistentASMState state = (PersistentASMState) the_entity;
+      // county and audit board ASMs are identified by county ID
+      if (CountyDashboardASM.class.getName().equals(state.asmClass()) ||
+          AuditBoardDashboardASM.class.getName().equals(state.asmClass())) {
+        SNAPSHOTS.invalidate(Long.valueOf(state.asmIdentity()));
+      }
+    } else if (the_entity instanceof DoSDashboard ||
+               the_entity instanceof ContestToAudit ||
+               the_entity instanceof ComparisonAudit) {
+      SNAPSHOTS.invalidateAll();
+    }
+  }
+
+  /**
+   * Invalidates the cached response for the specified county, without
+   * initializing it if it is a proxy.
+   *
+   * @param the_county The county; if null, all responses are invalidated.
+   */
+  private static void invalidate(final County the_county) {
+    if (the_county == null) {
+      SNAPSHOTS.invalidateAll();
+    } else if (the_county instanceof HibernateProxy) {
+      SNAPSHOTS.invalidate((Long) ((HibernateProxy) the_county).
+                           getHibernateLazyInitializer().getIdentifier());
+    } else {
+      SNAPSHOTS.invalidate(the_county.id());
+    }
+  }
+
+  /**
+   * Reads the version of the response data for the authenticated county
+   * before the transaction is started, so that any change committed after
+   * the transaction's snapshot of the database invalidates the response
+   * built from it.
+   *
+   * @param the_request The request.
+   * @param the_response The response.
+   */
+  @Override
+  public void before(final Request the_request, final Response the_response) {
+    final County county = Main.authentication().authenticatedCounty(the_request);
+    if (county == null) {
+      // the request will not be authorized
+      my_version.set(null);
+    } else {
+      my_version.set(version(county.id()));
+    }
+    super.before(the_request, the_response);
+  }
+
   /**
    * Provides information about the County and Audit Board dashboards.
    * 
@@ -68,9 +213,14 @@ public class CountyDashboardRefresh extends AbstractCountyDashboardEndpoint {
     try {
       final County county = Main.authentication().authenticatedCounty(the_request);
 
-      okJSON(the_response, 
-             Main.GSON.toJson(CountyDashboardRefreshResponse.createResponse
-                              (Persistence.getByID(county.id(), CountyDashboard.class))));
+      final Snapshot snapshot = snapshot(county.id(), my_version.get());
+      the_response.header("ETag", snapshot.etag());
+      the_response.header("Cache-Control", "no-cache");
+      if (snapshot.matches(the_request.headers("If-None-Match"))) {
+        notModified(the_response);
+      } else {
+        okJSON(the_response, snapshot.body());
+      }
     } catch (final PersistenceException e) {
       serverError(the_response, "could not obtain dashboard state");
     }
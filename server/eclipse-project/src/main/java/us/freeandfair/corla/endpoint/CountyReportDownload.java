@@ -12,11 +12,15 @@
 package us.freeandfair.corla.endpoint;
 
 import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeoutException;
 
 import javax.persistence.PersistenceException;
 
@@ -33,6 +37,8 @@ import us.freeandfair.corla.asm.DoSDashboardASM;
 import us.freeandfair.corla.model.County;
 import us.freeandfair.corla.persistence.Persistence;
 import us.freeandfair.corla.report.CountyReport;
+import us.freeandfair.corla.report.ReportRecordWriter;
+import us.freeandfair.corla.report.ReportRecords;
 import us.freeandfair.corla.util.SparkHelper;
 
 /**
@@ -135,21 +141,33 @@ public class CountyReportDownload extends AbstractEndpoint {
       assert county != null; // makes FindBugs happy
     }
 
-    final boolean pdf = "pdf".equalsIgnoreCase(the_request.queryParams("file_type"));
-    final CountyReport cr = new CountyReport(county);
+    final String file_type = the_request.queryParams("file_type");
+    if ("csv".equalsIgnoreCase(file_type) || "json".equalsIgnoreCase(file_type)) {
+      return writeRecords(the_response, new ReportRecords(county),
+                          "csv".equalsIgnoreCase(file_type));
+    }
+
+    final boolean pdf = "pdf".equalsIgnoreCase(file_type);
     byte[] file = new byte[0];
     String filename = "";
+    ReportArchive.ReportFile excel = null;
     
     if (pdf) {
       the_response.type("application/pdf");
+      final CountyReport cr = new CountyReport(county);
       filename = cr.filenamePDF();
       file = cr.generatePDF();
     } else {
       the_response.type("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
-      filename = cr.filenameExcel();
       try {
-        file = cr.generateExcel();
-      } catch (final IOException e) {
+        excel = ReportArchive.excel(county.id());
+        filename = excel.filename();
+      } catch (final TimeoutException e) {
+        // waiting longer would hold this request's database connection
+        the_response.header("Retry-After", RETRY_AFTER_DELAY);
+        serverUnavailable(the_response, "The Excel file is being generated; " +
+                                        "try again shortly");
+      } catch (final IOException | PersistenceException e) {
         serverError(the_response, "Unable to generate Excel file");
       }
     }
@@ -161,9 +179,17 @@ public class CountyReportDownload extends AbstractEndpoint {
       serverError(the_response, "UTF-8 is unsupported (this should never happen)");
     }
     
+    // the Excel file is sent straight from the report archive
+    if (excel != null) {
+      the_response.raw().setContentLengthLong(excel.size());
+    }
     try (OutputStream os = SparkHelper.getRaw(the_response).getOutputStream();
          BufferedOutputStream bos = new BufferedOutputStream(os)) {
-      bos.write(file);
+      if (excel == null) {
+        bos.write(file);
+      } else {
+        excel.transferTo(os);
+      }
       bos.flush();
       ok(the_response);
     } catch (final IOException | PersistenceException e) {
@@ -172,4 +198,45 @@ public class CountyReportDownload extends AbstractEndpoint {
     
     return my_endpoint_result.get();
   }
+
+  /**
+   * Streams the records of a report as CSV or as newline-delimited JSON,
+   * without building the report first.
+   *
+   * @param the_response The response.
+   * @param the_records The report records.
+   * @param the_csv true for CSV, false for newline-delimited JSON.
+   * @return the result for the endpoint.
+   */
+  private String writeRecords(final Response the_response, final ReportRecords the_records,
+                              final boolean the_csv) {
+    final String filename;
+    if (the_csv) {
+      the_response.type("text/csv");
+      filename = the_records.filename("csv");
+    } else {
+      the_response.type("application/x-ndjson");
+      filename = the_records.filename("ndjson");
+    }
+
+    try {
+      the_response.raw().setHeader("Content-Disposition", "attachment; filename=\"" +
+          Rfc5987Util.encode(filename, "UTF-8") + "\"");
+    } catch (final UnsupportedEncodingException e) {
+      serverError(the_response, "UTF-8 is unsupported (this should never happen)");
+    }
+
+    try (OutputStream os = SparkHelper.getRaw(the_response).getOutputStream();
+         BufferedWriter bw =
+             new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+         ReportRecordWriter rw =
+             the_csv ? ReportRecordWriter.csv(bw) : ReportRecordWriter.json(bw)) {
+      the_records.write(rw);
+      ok(the_response);
+    } catch (final IOException | PersistenceException e) {
+      serverError(the_response, "Unable to stream response");
+    }
+
+    return my_endpoint_result.get();
+  }
 }
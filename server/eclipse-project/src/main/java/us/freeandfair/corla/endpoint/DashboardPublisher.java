@@ -0,0 +1,575 @@
+/*
+ * Colorado RLA System
+ */
+
+package us.freeandfair.corla.endpoint;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.persistence.PersistenceException;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import us.freeandfair.corla.Main;
+import us.freeandfair.corla.persistence.EntityChangeNotifier;
+import us.freeandfair.corla.persistence.Persistence;
+import us.freeandfair.corla.util.JsonMergePatch;
+import us.freeandfair.corla.util.SnapshotCache.Snapshot;
+
+/**
+ * Pushes dashboard changes to the clients subscribed through the
+ * DashboardUpdates endpoint, as server-sent events.
+ *
+ * Committed entity changes schedule a publication shortly afterwards, so
+ * that the changes made by one request are published together. A
+ * publication compares each subscriber's dashboard version with the one it
+ * was last sent; only dashboards that may have changed are rebuilt (or
+ * taken from the refresh endpoints' caches), each in its own short
+ * transaction, and a subscriber is sent a merge patch only if its
+ * dashboard's contents actually changed. Publications and heartbeats run
+ * on a single thread.
+ *
+ * Events are written with non-blocking servlet output, so a slow client
+ * never holds up the publisher thread or the other clients: each
+ * subscriber queues the events its stream is not ready for, and writes
+ * them when the container reports that it can. A subscriber that falls
+ * behind, by having more than MAX_BUFFERED bytes of events queued or by
+ * its stream not being ready for longer than WRITE_TIMEOUT, is dropped;
+ * its client reconnects, and is sent the whole dashboard.
+ */
+final class DashboardPublisher {
+  /**
+   * The delay between a committed change and its publication, in
+   * milliseconds.
+   */
+  static final long PUBLISH_DELAY = 250;
+
+  /**
+   * The interval between heartbeats, in seconds; it keeps idle connections
+   * open through proxies and detects clients that have gone away.
+   */
+  static final long HEARTBEAT_INTERVAL = 25;
+
+  /**
+   * The maximum lifetime of a stream, in milliseconds; clients reconnect
+   * when a stream ends.
+   */
+  static final long STREAM_TIMEOUT = TimeUnit.MINUTES.toMillis(30);
+
+  /**
+   * The reconnection delay suggested to clients, in milliseconds.
+   */
+  static final long RETRY_DELAY = 5000;
+
+  /**
+   * The largest number of bytes of events queued for a subscriber, beyond
+   * the event being written; a subscriber that needs more is dropped.
+   */
+  static final int MAX_BUFFERED = 1 << 20;
+
+  /**
+   * The longest time a subscriber's stream may stay unready for writing,
+   * in milliseconds, before the subscriber is dropped.
+   */
+  static final long WRITE_TIMEOUT = TimeUnit.SECONDS.toMillis(2 * HEARTBEAT_INTERVAL);
+
+  /**
+   * The subscribers.
+   */
+  private static final Set<Subscriber> SUBSCRIBERS = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Whether a publication is scheduled.
+   */
+  private static final AtomicBoolean PENDING = new AtomicBoolean();
+
+  /**
+   * The thread on which publications and heartbeats run.
+   */
+  private static final ScheduledExecutorService EXECUTOR =
+      Executors.newSingleThreadScheduledExecutor(the_runnable -> {
+        final Thread thread = new Thread(the_runnable, "dashboard-publisher");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  static {
+    EntityChangeNotifier.addListener(new EntityChangeNotifier.Listener() {
+      @Override
+      public void entityChanged(final Object the_entity) {
+        schedulePublication();
+      }
+
+      @Override
+      public void allChanged() {
+        schedulePublication();
+      }
+    });
+    EXECUTOR.scheduleWithFixedDelay(DashboardPublisher::heartbeat, HEARTBEAT_INTERVAL,
+                                    HEARTBEAT_INTERVAL, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Private constructor to prevent instantiation.
+   */
+  private DashboardPublisher() {
+    // do nothing
+  }
+
+  /**
+   * Starts a stream on the specified asynchronous context: sends the
+   * specified snapshot (unless the client's last event was that snapshot),
+   * then subscribes the client to later changes.
+   *
+   * @param the_context The asynchronous context.
+   * @param the_county_id The county ID, or null for the DoS dashboard.
+   * @param the_snapshot The current snapshot.
+   * @param the_last_event_id The Last-Event-ID request header; may be null.
+   * @exception IOException if the stream cannot be written.
+   */
+  static void subscribe(final AsyncContext the_context, final Long the_county_id,
+                        final Snapshot the_snapshot, final String the_last_event_id)
+      throws IOException {
+    final Subscriber subscriber = new Subscriber(the_context, the_county_id);
+    the_context.setTimeout(STREAM_TIMEOUT);
+    the_context.addListener(subscriber);
+    subscriber.start(the_snapshot, the_last_event_id);
+    SUBSCRIBERS.add(subscriber);
+    if (subscriber.closed()) {
+      // the stream ended while the first event was written
+      SUBSCRIBERS.remove(subscriber);
+    }
+    // a change committed while the snapshot was built may have been
+    // published before the subscriber was added
+    schedulePublication();
+  }
+
+  /**
+   * Schedules a publication, unless there are no subscribers or one is
+   * already scheduled.
+   */
+  private static void schedulePublication() {
+    if (!SUBSCRIBERS.isEmpty() && PENDING.compareAndSet(false, true)) {
+      EXECUTOR.schedule(() -> {
+        PENDING.set(false);
+        publish();
+      }, PUBLISH_DELAY, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * @param the_county_id The county ID, or null for the DoS dashboard.
+   * @return the current version of the dashboard.
+   */
+  static long version(final Long the_county_id) {
+    if (the_county_id == null) {
+      return DoSDashboardRefresh.version();
+    }
+    return CountyDashboardRefresh.version(the_county_id);
+  }
+
+  /**
+   * Gets the snapshot of a dashboard. This must be called within a
+   * transaction started after the version was read.
+   *
+   * @param the_county_id The county ID, or null for the DoS dashboard.
+   * @param the_version The version.
+   * @return the snapshot.
+   */
+  static Snapshot snapshot(final Long the_county_id, final long the_version) {
+    if (the_county_id == null) {
+      return DoSDashboardRefresh.snapshot(the_version);
+    }
+    return CountyDashboardRefresh.snapshot(the_county_id, the_version);
+  }
+
+  /**
+   * Sends each subscriber whose dashboard may have changed its changes.
+   */
+  @SuppressWarnings("PMD.AvoidCatchingGenericException")
+  private static void publish() {
+    // snapshots built in this publication, by county ID (null for DoS)
+    final Map<Long, Snapshot> snapshots = new HashMap<>();
+    for (final Subscriber subscriber : SUBSCRIBERS) {
+      final long version = version(subscriber.countyID());
+      if (version <= subscriber.version()) {
+        continue;
+      }
+      Snapshot snapshot = snapshots.get(subscriber.countyID());
+      if (snapshot == null || snapshot.version() < version) {
+        try {
+          snapshot = build(subscriber.countyID(), version);
+        } catch (final RuntimeException e) {
+          Main.LOGGER.error("could not build dashboard for publication: " + e);
+          continue;
+        }
+        snapshots.put(subscriber.countyID(), snapshot);
+      }
+      subscriber.send(snapshot);
+    }
+  }
+
+  /**
+   * Builds a snapshot in its own transaction.
+   *
+   * @param the_county_id The county ID, or null for the DoS dashboard.
+   * @param the_version The version, read before this call.
+   * @return the snapshot.
+   * @exception PersistenceException if the snapshot cannot be built.
+   */
+  private static Snapshot build(final Long the_county_id, final long the_version) {
+    Persistence.beginTransaction();
+    try {
+      final Snapshot result = snapshot(the_county_id, the_version);
+      Persistence.commitTransaction();
+      return result;
+    } catch (final PersistenceException e) {
+      if (Persistence.canTransactionRollback()) {
+        Persistence.rollbackTransaction();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Sends a heartbeat to every subscriber.
+   */
+  private static void heartbeat() {
+    for (final Subscriber subscriber : SUBSCRIBERS) {
+      subscriber.heartbeat();
+    }
+  }
+
+  /**
+   * A subscribed client.
+   */
+  static final class Subscriber implements AsyncListener, WriteListener {
+    /**
+     * The asynchronous context of the stream.
+     */
+    private final AsyncContext my_context;
+
+    /**
+     * The county ID, or null for the DoS dashboard.
+     */
+    private final Long my_county_id;
+
+    /**
+     * The events not yet written, oldest first.
+     */
+    private final Deque<byte[]> my_queue = new ArrayDeque<>();
+
+    /**
+     * The number of bytes in the queue.
+     */
+    private long my_queued_bytes;
+
+    /**
+     * The stream, once started.
+     */
+    private ServletOutputStream my_out;
+
+    /**
+     * Whether everything written has been flushed.
+     */
+    private boolean my_flushed = true;
+
+    /**
+     * The time (from System.nanoTime()) since when the stream has not been
+     * ready for writing, or null if it is ready.
+     */
+    private Long my_unready_since;
+
+    /**
+     * Whether the subscriber has been dropped or its stream has ended.
+     */
+    private boolean my_closed;
+
+    /**
+     * The version of the dashboard last sent.
+     */
+    private long my_version;
+
+    /**
+     * The entity tag of the dashboard last sent.
+     */
+    private String my_etag;
+
+    /**
+     * The dashboard last sent.
+     */
+    private JsonObject my_dashboard;
+
+    /**
+     * Constructs a subscriber.
+     *
+     * @param the_context The asynchronous context of the stream.
+     * @param the_county_id The county ID, or null for the DoS dashboard.
+     */
+    Subscriber(final AsyncContext the_context, final Long the_county_id) {
+      my_context = the_context;
+      my_county_id = the_county_id;
+    }
+
+    /**
+     * @return the county ID, or null for the DoS dashboard.
+     */
+    Long countyID() {
+      return my_county_id;
+    }
+
+    /**
+     * @return the version of the dashboard last sent.
+     */
+    synchronized long version() {
+      return my_version;
+    }
+
+    /**
+     * @return true if the subscriber has been dropped or its stream has
+     * ended, false otherwise.
+     */
+    synchronized boolean closed() {
+      return my_closed;
+    }
+
+    /**
+     * Switches the stream to non-blocking output and sends the initial
+     * event; it is written before this method returns, unless the stream
+     * is not ready for it.
+     *
+     * @param the_snapshot The current snapshot.
+     * @param the_last_event_id The Last-Event-ID request header; may be null.
+     * @exception IOException if the stream cannot be obtained.
+     */
+    synchronized void start(final Snapshot the_snapshot, final String the_last_event_id)
+        throws IOException {
+      remember(the_snapshot);
+      final StringBuilder sb = new StringBuilder();
+      sb.append("retry: ").append(RETRY_DELAY).append('\n');
+      if (id(the_snapshot).equals(the_last_event_id)) {
+        // the client reconnected and already has this dashboard
+        sb.append('\n');
+      } else {
+        appendEvent(sb, "dashboard", the_snapshot, the_snapshot.body());
+      }
+      my_out = my_context.getResponse().getOutputStream();
+      my_out.setWriteListener(this);
+      enqueue(sb.toString());
+    }
+
+    /**
+     * Sends the changes in the specified snapshot since the last one sent.
+     *
+     * @param the_snapshot The snapshot.
+     */
+    synchronized void send(final Snapshot the_snapshot) {
+      if (the_snapshot.etag().equals(my_etag)) {
+        my_version = Math.max(my_version, the_snapshot.version());
+        return;
+      }
+      final JsonObject previous = my_dashboard;
+      remember(the_snapshot);
+      final StringBuilder sb = new StringBuilder();
+      appendEvent(sb, "patch", the_snapshot,
+                  JsonMergePatch.diff(previous, my_dashboard).toString());
+      enqueue(sb.toString());
+    }
+
+    /**
+     * Sends a heartbeat, or drops the subscriber if its stream has not been
+     * ready for longer than WRITE_TIMEOUT.
+     */
+    synchronized void heartbeat() {
+      if (my_unready_since != null &&
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - my_unready_since) >
+          WRITE_TIMEOUT) {
+        close("its stream has not been ready for " + WRITE_TIMEOUT + " ms");
+        return;
+      }
+      enqueue(":\n\n");
+    }
+
+    /**
+     * Records the specified snapshot as the last one sent.
+     *
+     * @param the_snapshot The snapshot.
+     */
+    private void remember(final Snapshot the_snapshot) {
+      my_version = the_snapshot.version();
+      my_etag = the_snapshot.etag();
+      my_dashboard = new JsonParser().parse(the_snapshot.body()).getAsJsonObject();
+    }
+
+    /**
+     * @param the_snapshot A snapshot.
+     * @return the event ID for the snapshot, its entity tag without quotes.
+     */
+    private static String id(final Snapshot the_snapshot) {
+      return the_snapshot.etag().replace("\"", "");
+    }
+
+    /**
+     * Appends an event to the specified builder.
+     *
+     * @param the_builder The builder.
+     * @param the_event The event name.
+     * @param the_snapshot The snapshot the event brings the client up to.
+     * @param the_data The event data.
+     */
+    private static void appendEvent(final StringBuilder the_builder, final String the_event,
+                                    final Snapshot the_snapshot, final String the_data) {
+      the_builder.append("event: ").append(the_event).append('\n');
+      the_builder.append("id: ").append(id(the_snapshot)).append('\n');
+      for (final String line : the_data.split("\n")) {
+        the_builder.append("data: ").append(line).append('\n');
+      }
+      the_builder.append('\n');
+    }
+
+    /**
+     * Queues text to be written, and writes as much of the queue as the
+     * stream is ready for. If the queue would grow beyond MAX_BUFFERED,
+     * the subscriber is dropped instead.
+     *
+     * @param the_text The text.
+     */
+    private void enqueue(final String the_text) {
+      if (my_closed) {
+        return;
+      }
+      final byte[] bytes = the_text.getBytes(StandardCharsets.UTF_8);
+      if (!my_queue.isEmpty() && my_queued_bytes + bytes.length > MAX_BUFFERED) {
+        close("it has more than " + MAX_BUFFERED + " bytes of events queued");
+        return;
+      }
+      my_queue.add(bytes);
+      my_queued_bytes = my_queued_bytes + bytes.length;
+      drain();
+    }
+
+    /**
+     * Writes queued events, and flushes them, for as long as the stream is
+     * ready; when it stops being ready, the container calls
+     * onWritePossible() once it is ready again.
+     */
+    @SuppressWarnings("PMD.AvoidCatchingGenericException")
+    private void drain() {
+      if (my_closed || my_out == null) {
+        return;
+      }
+      try {
+        while (my_out.isReady()) {
+          final byte[] bytes = my_queue.poll();
+          if (bytes == null) {
+            if (!my_flushed) {
+              my_flushed = true;
+              my_out.flush();
+              continue;
+            }
+            my_unready_since = null;
+            return;
+          }
+          my_queued_bytes = my_queued_bytes - bytes.length;
+          my_flushed = false;
+          my_out.write(bytes);
+        }
+        if (my_unready_since == null) {
+          my_unready_since = System.nanoTime();
+        }
+      } catch (final IOException | RuntimeException e) {
+        close("its stream could not be written: " + e);
+      }
+    }
+
+    /**
+     * Drops the subscriber and ends its stream.
+     *
+     * @param the_reason The reason, for the log.
+     */
+    private void close(final String the_reason) {
+      if (my_closed) {
+        return;
+      }
+      my_closed = true;
+      my_queue.clear();
+      my_queued_bytes = 0;
+      SUBSCRIBERS.remove(this);
+      Main.LOGGER.info("dropped dashboard subscriber because " + the_reason);
+      try {
+        my_context.complete();
+      } catch (final IllegalStateException e) {
+        // the stream was already ended
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void onWritePossible() {
+      drain();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void onError(final Throwable the_error) {
+      close("its stream failed: " + the_error);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void onComplete(final AsyncEvent the_event) {
+      my_closed = true;
+      SUBSCRIBERS.remove(this);
+    }
+
+    /**
+     * Ends the stream; the client will reconnect.
+     */
+    @Override
+    public synchronized void onTimeout(final AsyncEvent the_event) {
+      my_closed = true;
+      SUBSCRIBERS.remove(this);
+      the_event.getAsyncContext().complete();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void onError(final AsyncEvent the_event) {
+      my_closed = true;
+      SUBSCRIBERS.remove(this);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onStartAsync(final AsyncEvent the_event) {
+      // nothing to do
+    }
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Colorado RLA System
+ */
+
+package us.freeandfair.corla.endpoint;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import javax.persistence.PersistenceException;
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletResponse;
+
+import spark.Request;
+import spark.Response;
+
+import us.freeandfair.corla.Main;
+import us.freeandfair.corla.model.County;
+import us.freeandfair.corla.util.SnapshotCache.Snapshot;
+
+/**
+ * The endpoint for subscribing to dashboard updates, as a stream of
+ * server-sent events (content type "text/event-stream"). A county
+ * administrator is subscribed to the county dashboard, and a state
+ * administrator to the DoS dashboard.
+ *
+ * The stream starts with a "dashboard" event holding the same response as
+ * the corresponding refresh endpoint; after that, whenever the dashboard
+ * changes, a "patch" event holds a JSON merge patch (RFC 7386) from the
+ * previous dashboard to the new one. Each event's ID is the entity tag
+ * (without quotes) of the dashboard it brings the client up to, so a client
+ * that reconnects with an up-to-date Last-Event-ID is not sent the
+ * dashboard again. The stream is ended after a while, and clients are
+ * expected to reconnect; the refresh endpoints remain available to clients
+ * that cannot use server-sent events.
+ *
+ * No transaction is held open while the stream is: the request's
+ * transaction ends when the stream has started, and updates are built in
+ * short transactions of their own.
+ */
+// endpoints don't need constructors
+@SuppressWarnings("PMD.AtLeastOneConstructor")
+public class DashboardUpdates extends AbstractEndpoint {
+  /**
+   * The county ID to subscribe to, or null for the DoS dashboard.
+   */
+  private final ThreadLocal<Long> my_county_id = new ThreadLocal<Long>();
+
+  /**
+   * The version of the dashboard, read before the transaction began.
+   */
+  private final ThreadLocal<Long> my_version = new ThreadLocal<Long>();
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public EndpointType endpointType() {
+    return EndpointType.GET;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String endpointName() {
+    return "/dashboard-updates";
+  }
+
+  /**
+   * Reads the version of the subscribed dashboard before the transaction is
+   * started, so that any change committed after the transaction's snapshot
+   * of the database is published to the new subscriber.
+   *
+   * @param the_request The request.
+   * @param the_response The response.
+   */
+  @Override
+  public void before(final Request the_request, final Response the_response) {
+    final County county = Main.authentication().authenticatedCounty(the_request);
+    if (county == null) {
+      my_county_id.set(null);
+    } else {
+      my_county_id.set(county.id());
+    }
+    my_version.set(DashboardPublisher.version(my_county_id.get()));
+    super.before(the_request, the_response);
+  }
+
+  /**
+   * Starts the stream of dashboard updates.
+   *
+   * @param the_request The request.
+   * @param the_response The response.
+   */
+  @Override
+  public String endpointBody(final Request the_request, final Response the_response) {
+    if (!the_request.raw().isAsyncSupported()) {
+      serverError(the_response, "dashboard updates are unavailable");
+      return my_endpoint_result.get();
+    }
+    try {
+      final Snapshot snapshot =
+          DashboardPublisher.snapshot(my_county_id.get(), my_version.get());
+      final HttpServletResponse raw = the_response.raw();
+      raw.setStatus(HttpServletResponse.SC_OK);
+      raw.setContentType("text/event-stream");
+      raw.setCharacterEncoding(StandardCharsets.UTF_8.name());
+      raw.setHeader("Cache-Control", "no-cache");
+      // once the first event is flushed, the response is committed and
+      // Spark leaves the stream alone
+      final AsyncContext context = the_request.raw().startAsync();
+      DashboardPublisher.subscribe(context, my_county_id.get(), snapshot,
+                                   the_request.headers("Last-Event-ID"));
+      ok(the_response);
+    } catch (final PersistenceException e) {
+      serverError(the_response, "could not obtain dashboard state");
+    } catch (final IOException e) {
+      serverError(the_response, "could not start dashboard updates");
+    }
+    return my_endpoint_result.get();
+  }
+
+  /**
+   * This endpoint requires either kind of authorization.
+   */
+  @Override
+  public AuthorizationType requiredAuthorization() {
+    return AuthorizationType.EITHER;
+  }
+}
@@ -9,8 +9,9 @@ import org.apache.log4j.Logger;
 import spark.Request;
 import spark.Response;
 
-import us.freeandfair.corla.controller.DeleteFileController;
 import us.freeandfair.corla.Main;
+import us.freeandfair.corla.controller.DeleteFileController;
+import us.freeandfair.corla.model.County;
 
 /**
  * The endpoint for deleting a file or files for a county
@@ -77,4 +78,21 @@ public class DeleteFile extends AbstractEndpoint {
     okJSON(response, request.body());
     return my_endpoint_result.get();
   }
+  
+  /**
+   * Deleting a file resets the county's dashboard, so it runs in the
+   * county's lane.
+   * 
+   * @param the_request The request.
+   * @return the lane of the authenticated county, or null if there is none.
+   */
+  @Override
+  protected String lane(final Request the_request) {
+    final County county = Main.authentication().authenticatedCounty(the_request);
+    String result = null;
+    if (county != null) {
+      result = RequestScheduler.countyLane(county.id());
+    }
+    return result;
+  }
 }
@@ -11,6 +11,10 @@
 
 package us.freeandfair.corla.endpoint;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
 import javax.persistence.PersistenceException;
 
 import org.apache.log4j.Level;
@@ -19,19 +23,95 @@ import spark.Request;
 import spark.Response;
 
 import us.freeandfair.corla.Main;
+import us.freeandfair.corla.asm.PersistentASMState;
 import us.freeandfair.corla.json.DoSDashboardRefreshResponse;
+import us.freeandfair.corla.model.ComparisonAudit;
+import us.freeandfair.corla.model.Contest;
+import us.freeandfair.corla.model.ContestResult;
+import us.freeandfair.corla.model.ContestToAudit;
+import us.freeandfair.corla.model.County;
+import us.freeandfair.corla.model.CountyDashboard;
 import us.freeandfair.corla.model.DoSDashboard;
+import us.freeandfair.corla.model.UploadedFile;
+import us.freeandfair.corla.persistence.EntityChangeNotifier;
 import us.freeandfair.corla.persistence.Persistence;
+import us.freeandfair.corla.util.SnapshotCache;
+import us.freeandfair.corla.util.SnapshotCache.Snapshot;
 
 /**
  * The endpoint for refreshing the Department of State dashboard status.
  *
+ * The response is built from the database only when an entity it depends on
+ * has changed since it was last built; otherwise the last one is served
+ * from memory, or "not modified" is returned if the client already has it.
+ *
  * @author Daniel M. Zimmerman <dmz@freeandfair.us>
  * @version 1.0.0
  */
 // endpoints don't need constructors
 @SuppressWarnings("PMD.AtLeastOneConstructor")
 public class DoSDashboardRefresh extends AbstractDoSDashboardEndpoint {
+  /**
+   * The classes of the entities the response is built from.
+   */
+  private static final Set<Class<?>> SOURCES =
+      new HashSet<>(Arrays.asList(ComparisonAudit.class, Contest.class,
+                                  ContestResult.class, ContestToAudit.class, County.class,
+                                  CountyDashboard.class, DoSDashboard.class,
+                                  PersistentASMState.class, UploadedFile.class));
+
+  /**
+   * The cached responses; there is only one DoS dashboard, so only one key
+   * is used.
+   */
+  private static final SnapshotCache<Long> SNAPSHOTS = new SnapshotCache<>();
+
+  static {
+    EntityChangeNotifier.addListener(new EntityChangeNotifier.Listener() {
+      @Override
+      public void entityChanged(final Object the_entity) {
+        if (SOURCES.stream().anyMatch(c -> c.isInstance(the_entity))) {
+          SNAPSHOTS.invalidate(DoSDashboard.ID);
+        }
+      }
+
+      @Override
+      public void allChanged() {
+        SNAPSHOTS.invalidateAll();
+      }
+    });
+  }
+
+  /**
+   * @return the current version of the DoS dashboard data; read it before
+   * starting the transaction in which snapshot() is called.
+   */
+  public static long version() {
+    return SNAPSHOTS.version(DoSDashboard.ID);
+  }
+
+  /**
+   * Gets the serialized DoS dashboard for the specified version, building
+   * it if it is not cached. This must be called within a transaction.
+   *
+   * @param the_version The version, as returned by version().
+   * @return the snapshot.
+   */
+  public static Snapshot snapshot(final long the_version) {
+    Snapshot result = SNAPSHOTS.get(DoSDashboard.ID, the_version);
+    if (result == null) {
+      result = SNAPSHOTS.put(DoSDashboard.ID, the_version,
+                             Main.GSON.toJson(DoSDashboardRefreshResponse.createResponse
+                               (Persistence.getByID(DoSDashboard.ID, DoSDashboard.class))));
+    }
+    return result;
+  }
+
+  /**
+   * The version of the response data, read before the transaction began.
+   */
+  private final ThreadLocal<Long> my_version = new ThreadLocal<Long>();
+
   /**
    * {@inheritDoc}
    */
@@ -56,6 +136,20 @@ public class DoSDashboardRefresh extends AbstractDoSDashboardEndpoint {
     return Level.DEBUG;
   }
 
+  /**
+   * Reads the version of the response data before the transaction is
+   * started, so that any change committed after the transaction's snapshot
+   * of the database invalidates the response built from it.
+   *
+   * @param the_request The request.
+   * @param the_response The response.
+   */
+  @Override
+  public void before(final Request the_request, final Response the_response) {
+    my_version.set(version());
+    super.before(the_request, the_response);
+  }
+
   /**
    * Provides information about the DoS dashboard.
    *
@@ -65,9 +159,14 @@ public class DoSDashboardRefresh extends AbstractDoSDashboardEndpoint {
   @Override
   public String endpointBody(final Request the_request, final Response the_response) {
     try {
-      okJSON(the_response,
-             Main.GSON.toJson(DoSDashboardRefreshResponse.createResponse
-                              (Persistence.getByID(DoSDashboard.ID, DoSDashboard.class))));
+      final Snapshot snapshot = snapshot(my_version.get());
+      the_response.header("ETag", snapshot.etag());
+      the_response.header("Cache-Control", "no-cache");
+      if (snapshot.matches(the_request.headers("If-None-Match"))) {
+        notModified(the_response);
+      } else {
+        okJSON(the_response, snapshot.body());
+      }
     } catch (final PersistenceException e) {
       serverError(the_response, "could not obtain dashboard state");
     }
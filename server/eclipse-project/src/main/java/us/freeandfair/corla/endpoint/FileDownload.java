@@ -14,7 +14,7 @@ package us.freeandfair.corla.endpoint;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
-import java.sql.SQLException;
+import java.nio.channels.Channels;
 
 import org.apache.cxf.attachment.Rfc5987Util;
 
@@ -26,7 +26,6 @@ import spark.Response;
 import us.freeandfair.corla.Main;
 import us.freeandfair.corla.model.County;
 import us.freeandfair.corla.model.UploadedFile;
-import us.freeandfair.corla.util.FileHelper;
 import us.freeandfair.corla.util.SparkHelper;
 
 /**
@@ -41,16 +40,6 @@ public class FileDownload extends AbstractEndpoint {
    * The query parameter name.
    */
   public static final String QUERY_PARAMETER = "file_info";
-  
-  /**
-   * The download buffer size, in bytes.
-   */
-  private static final int BUFFER_SIZE = 1048576; // 1 MB
-
-  /**
-   * The maximum download size, in bytes.
-   */
-  private static final int MAX_DOWNLOAD_SIZE = 1073741824; // 1 GB
 
   /**
    * {@inheritDoc}
@@ -111,13 +100,15 @@ public class FileDownload extends AbstractEndpoint {
           serverError(the_response, "UTF-8 is unsupported (this should never happen)");
         }
         
+        the_response.raw().setContentLengthLong(file.size());
+        
+        // the file store sends the file with FileChannel.transferTo
         try (OutputStream os = SparkHelper.getRaw(the_response).getOutputStream()) {
-          final int total =
-              FileHelper.bufferedCopy(file.file().getBinaryStream(), os, 
-                                      BUFFER_SIZE, MAX_DOWNLOAD_SIZE);
+          final long total =
+              Main.fileStore().transferTo(file.computedHash(), Channels.newChannel(os));
           Main.LOGGER.debug("sent file " + file.filename() + " of size " + total);
           ok(the_response);
-        } catch (final SQLException | IOException e) {
+        } catch (final IOException e) {
           serverError(the_response, "Unable to stream response");
         }
       } else {
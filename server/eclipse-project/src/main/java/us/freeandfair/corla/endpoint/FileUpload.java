@@ -13,19 +13,14 @@ package us.freeandfair.corla.endpoint;
 
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.LineNumberReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.sql.Blob;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.text.SimpleDateFormat;
 import java.time.Instant;
 import java.util.Date;
@@ -42,6 +37,7 @@ import org.apache.commons.fileupload.FileItemStream;
 import org.apache.commons.fileupload.FileUploadException;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
 import org.apache.commons.fileupload.util.Streams;
+import org.apache.commons.io.output.TeeOutputStream;
 import org.apache.commons.lang3.StringUtils;
 
 import spark.Request;
@@ -55,6 +51,7 @@ import us.freeandfair.corla.model.UploadedFile.FileStatus;
 import us.freeandfair.corla.model.UploadedFile.HashStatus;
 import us.freeandfair.corla.persistence.Persistence;
 import us.freeandfair.corla.util.FileHelper;
+import us.freeandfair.corla.util.LineCountingOutputStream;
 import us.freeandfair.corla.util.SparkHelper;
 import us.freeandfair.corla.util.SuppressFBWarnings;
 
@@ -113,34 +110,33 @@ public class FileUpload extends AbstractEndpoint {
   }
 
   /**
-   * Attempts to save the specified file in the database.
+   * Attempts to save the specified file in the file store, and its
+   * metadata in the database.
    *
    * @param the_response The response object (for error reporting).
    * @param the_info The upload info about the file and hash.
    * @param the_county The county that uploaded the file.
    * @return the resulting entity if successful, null otherwise
    */
-  // we are deliberately ignoring the return value of lnr.skip()
-  @SuppressFBWarnings("SR_NOT_CHECKED")
   private UploadedFile attemptFilePersistence(final Response the_response,
                                               final UploadInformation the_info,
                                               final County the_county) {
     UploadedFile result = null;
+    final long size = the_info.my_file.length();
 
-    try (FileInputStream is = new FileInputStream(the_info.my_file);
-         LineNumberReader lnr =
-             new LineNumberReader(new InputStreamReader(new FileInputStream(the_info.my_file),
-                                                        "UTF-8"))) {
-      final Blob blob = Persistence.blobFor(is, the_info.my_file.length());
-      final HashStatus hash_status;
+    if (the_info.my_computed_hash == null) {
+      // the file store is keyed by the computed hash
+      serverError(the_response, "could not compute hash of uploaded file");
+    }
 
-      // first, compute the approximate number of records in the file
-      lnr.skip(Integer.MAX_VALUE);
-      final int approx_records = lnr.getLineNumber();
+    // the hash and the approximate number of records were computed while
+    // the file was spooled, so the file is not read again here; the store
+    // takes it over (by moving it, if it can)
+    try {
+      Main.fileStore().store(the_info.my_computed_hash, the_info.my_file);
+      final HashStatus hash_status;
 
-      if (the_info.my_computed_hash == null) {
-        hash_status = HashStatus.NOT_CHECKED;
-      } else if (the_info.my_computed_hash.equals(the_info.my_uploaded_hash)) {
+      if (the_info.my_computed_hash.equals(the_info.my_uploaded_hash)) {
         hash_status = HashStatus.VERIFIED;
       } else {
         hash_status = HashStatus.MISMATCH;
@@ -150,14 +146,13 @@ public class FileUpload extends AbstractEndpoint {
                                 the_info.my_filename,
                                 FileStatus.NOT_IMPORTED,
                                 the_info.my_uploaded_hash,
-                                hash_status, blob,
-                                the_info.my_file.length(),
-                                approx_records);
+                                hash_status, the_info.my_computed_hash,
+                                size,
+                                the_info.my_approx_records);
       Persistence.save(result);
       Persistence.flush();
     } catch (final PersistenceException | IOException e) {
-      badDataType(the_response, "could not persist file of size " +
-                                the_info.my_file.length());
+      badDataType(the_response, "could not persist file of size " + size);
       the_info.my_ok = false;
     }
     return result;
@@ -191,12 +186,29 @@ public class FileUpload extends AbstractEndpoint {
           if (item.isFormField()) {
             the_info.my_form_fields.put(item.getFieldName(), Streams.asString(stream));
           } else if (FILE.equals(name)) {
-            // save the file
+            // save the file, hashing it, counting its lines and archiving
+            // it as it is spooled
             the_info.my_filename = item.getName();
             the_info.my_file = File.createTempFile("upload", ".csv");
-            final OutputStream os = new FileOutputStream(the_info.my_file);
-            final int total =
-                FileHelper.bufferedCopy(stream, os, BUFFER_SIZE, MAX_UPLOAD_SIZE);
+            final MessageDigest digest = HashChecker.newDigest();
+            final InputStream is;
+            if (digest == null) {
+              is = stream;
+            } else {
+              is = new DigestInputStream(stream, digest);
+            }
+            final LineCountingOutputStream os =
+                new LineCountingOutputStream(spoolStream(the_info));
+            final int total;
+            try {
+              total = FileHelper.bufferedCopy(is, os, BUFFER_SIZE, MAX_UPLOAD_SIZE);
+            } finally {
+              os.close();
+            }
+            the_info.my_approx_records = os.lineCount();
+            if (digest != null) {
+              the_info.my_computed_hash = HashChecker.hashString(digest);
+            }
 
             if (total >= MAX_UPLOAD_SIZE) {
               Main.LOGGER.info("attempt to upload file greater than max size from " +
@@ -207,7 +219,6 @@ public class FileUpload extends AbstractEndpoint {
               Main.LOGGER.info("successfully saved file of size " + total + " from " +
                                raw.getRemoteHost());
             }
-            os.close();
           }
         }
       }
@@ -228,24 +239,28 @@ public class FileUpload extends AbstractEndpoint {
   }
 
   /**
-   * Copies uploaded file which is in a temporary location and its hash into
-   * an archival location
+   * Opens the stream to which an uploaded file is spooled: the temporary
+   * file and, alongside it, a copy in an archival location, so that the
+   * uploaded data is written to both as it is received rather than copied
+   * afterwards. If the archive copy cannot be created, the upload proceeds
+   * without it.
    *
    * Steps:
    *  1. Based on operating system, fetches archival file path from property file
    *  2. Creates the file path if not existing
-   *  3. Appends timestamp to file and archives it by making a copy of the
-   *     temporary file.
-   *  4. Appends the same timestamp to create a new file that would contain the
-   *     hash value and archives it.
+   *  3. Prepends a timestamp to the file name to name the archive copy.
+   *  4. Uses the same timestamp to name a new file that will contain the
+   *     hash value (see archive()).
    *
-   * @param the_upload_information contains all the specifices of the uploaded
-   *                               file that is in temporary location along with
-   *                               its hash value.
+   * @param the_upload_information contains all the specifics of the uploaded
+   *                               file; its archive hash file name is set.
+   * @return the output stream.
+   * @exception IOException if the temporary file cannot be opened.
    */
   // we are deliberately ignoring the return value of archive_file_dir.mkdirs()
   @SuppressFBWarnings("RV_RETURN_VALUE_IGNORED_BAD_PRACTICE")
-  private void archive(final UploadInformation the_upload_information) {
+  private OutputStream spoolStream(final UploadInformation the_upload_information)
+      throws IOException {
     // name of file that was uploaded
     final String uploaded_file_name = the_upload_information.my_filename;
 
@@ -287,40 +302,37 @@ public class FileUpload extends AbstractEndpoint {
     // create directory if not existing
     final File archive_file_dir = new File(archive_file_path);
     archive_file_dir.mkdirs();
+    the_upload_information.my_archive_hash_file_name =
+        archive_file_path + archive_hash_file_name;
 
-    // archive file by copying it to destination
-    archiveFile(archive_file_path + archive_file_name,
-                the_upload_information.my_file.toPath());
-    // create corresponding hash text file with hash value in it
-    archiveHashFile(archive_file_path + archive_hash_file_name,
-                    the_upload_information.my_uploaded_hash);
-  }
-
-  /**
-   * Copies passed in temporary file into archive destination, also renames it
-   * to its original name.
-   *
-   * @param the_file_path_and_name path and file name of the file to be archived
-   * @param the_source_path path and file name of the temporary file created by
-   *                        the server
-   */
-  private void archiveFile(final String the_file_path_and_name,
-                           final Path the_source_path) {
+    final OutputStream temp_os = new FileOutputStream(the_upload_information.my_file);
     try {
-      // copy the temp file into archive destination
-      final Path path = Files.copy(the_source_path,
-                                   Paths.get(the_file_path_and_name));
-
-      if (path == null) {
-        Main.LOGGER.info("Error archiving file (" + the_file_path_and_name + ").");
-      } else {
-        Main.LOGGER.info("Successfully archived file (" + the_file_path_and_name + ").");
-      }
+      final OutputStream archive_os =
+          new FileOutputStream(archive_file_path + archive_file_name);
+      Main.LOGGER.info("Archiving file (" + archive_file_path + archive_file_name + ").");
+      return new TeeOutputStream(temp_os, archive_os);
     } catch (final IOException e) {
       Main.LOGGER.info("Encountered exception while archiving file (" +
-                       the_file_path_and_name +
+                       archive_file_path + archive_file_name +
                        ")",
                        e);
+      return temp_os;
+    }
+  }
+
+  /**
+   * Archives the hash of an uploaded file, next to the archive copy written
+   * while the file was spooled.
+   *
+   * @param the_upload_information contains all the specifics of the uploaded
+   *                               file along with its hash value.
+   */
+  private void archive(final UploadInformation the_upload_information) {
+    if (the_upload_information.my_archive_hash_file_name != null &&
+        the_upload_information.my_uploaded_hash != null) {
+      // create corresponding hash text file with hash value in it
+      archiveHashFile(the_upload_information.my_archive_hash_file_name,
+                      the_upload_information.my_uploaded_hash);
     }
   }
 
@@ -398,7 +410,6 @@ public class FileUpload extends AbstractEndpoint {
       UploadedFile uploaded_file = null;
 
       if (info.my_ok) {
-        info.my_computed_hash = HashChecker.hashFile(info.my_file);
         info.my_uploaded_hash =
             info.my_form_fields.get(HASH).toUpperCase(Locale.US).trim();
         uploaded_file = attemptFilePersistence(the_response, info, county);
@@ -413,7 +424,8 @@ public class FileUpload extends AbstractEndpoint {
         try {
           // archive file before deleting
           archive(info);
-          if (!info.my_file.delete()) {
+          // the file store may have taken the file over already
+          if (info.my_file.exists() && !info.my_file.delete()) {
             Main.LOGGER.error("Unable to delete temp file " + info.my_file);
           }
         } catch (final SecurityException e) {
@@ -462,5 +474,15 @@ public class FileUpload extends AbstractEndpoint {
      * The computed hash.
      */
     protected String my_computed_hash;
+
+    /**
+     * The approximate number of records (lines) in the uploaded file.
+     */
+    protected int my_approx_records;
+
+    /**
+     * The path and name of the archived hash file.
+     */
+    protected String my_archive_hash_file_name;
   }
 }
@@ -0,0 +1,77 @@
+/*
+ * Colorado RLA System
+ */
+
+package us.freeandfair.corla.endpoint;
+
+import javax.persistence.PersistenceException;
+
+import spark.Request;
+import spark.Response;
+
+import us.freeandfair.corla.Main;
+import us.freeandfair.corla.persistence.LogVerifier;
+
+/**
+ * The endpoint for verifying the log hash chain. By default, only the
+ * entries added since the last valid checkpoint are verified; the query
+ * parameter "full=true" verifies every entry.
+ */
+// endpoints don't need constructors
+@SuppressWarnings("PMD.AtLeastOneConstructor")
+public class LogVerification extends AbstractEndpoint {
+  /**
+   * The "full" query parameter.
+   */
+  public static final String FULL = "full";
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public EndpointType endpointType() {
+    return EndpointType.GET;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String endpointName() {
+    return "/verify-log";
+  }
+
+  /**
+   * This endpoint requires STATE authorization.
+   */
+  @Override
+  public AuthorizationType requiredAuthorization() {
+    return AuthorizationType.STATE;
+  }
+
+  /**
+   * @return false; verifying the log records a checkpoint.
+   */
+  @Override
+  protected boolean readOnly() {
+    return false;
+  }
+
+  /**
+   * Verifies the log, recording a checkpoint if it is valid, and responds
+   * with the result of the verification.
+   *
+   * @param the_request The request.
+   * @param the_response The response.
+   */
+  @Override
+  public String endpointBody(final Request the_request, final Response the_response) {
+    final boolean full = Boolean.parseBoolean(the_request.queryParams(FULL));
+    try {
+      okJSON(the_response, Main.GSON.toJson(LogVerifier.verify(full)));
+    } catch (final PersistenceException | IllegalStateException e) {
+      serverError(the_response, "could not verify log: " + e.getMessage());
+    }
+    return my_endpoint_result.get();
+  }
+}
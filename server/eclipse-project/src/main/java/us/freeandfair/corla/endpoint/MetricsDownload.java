@@ -0,0 +1,78 @@
+/*
+ * Colorado RLA System
+ */
+
+package us.freeandfair.corla.endpoint;
+
+import org.apache.log4j.Level;
+
+import spark.Request;
+import spark.Response;
+
+import us.freeandfair.corla.metrics.Metrics;
+
+/**
+ * The endpoint for scraping the server's operational metrics, in the
+ * Prometheus text exposition format. It requires state administrator
+ * authorization, and scrapes are not recorded in the audit log.
+ */
+// endpoints don't need constructors
+@SuppressWarnings("PMD.AtLeastOneConstructor")
+public class MetricsDownload extends AbstractEndpoint {
+  /**
+   * The content type of the Prometheus text exposition format.
+   */
+  public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public EndpointType endpointType() {
+    return EndpointType.GET;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String endpointName() {
+    return "/metrics";
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Level logLevel() {
+    return Level.DEBUG;
+  }
+
+  /**
+   * This endpoint requires STATE authorization.
+   */
+  @Override
+  public AuthorizationType requiredAuthorization() {
+    return AuthorizationType.STATE;
+  }
+
+  /**
+   * Scrapes are frequent and change nothing, so they are not audit logged.
+   */
+  @Override
+  protected boolean auditLogged() {
+    return false;
+  }
+
+  /**
+   * Responds with the current values of all metrics.
+   *
+   * @param the_request The request.
+   * @param the_response The response.
+   */
+  @Override
+  public String endpointBody(final Request the_request, final Response the_response) {
+    okText(the_response, CONTENT_TYPE, Metrics.scrape());
+    return my_endpoint_result.get();
+  }
+}
@@ -0,0 +1,523 @@
+/*
+ * Colorado RLA System
+ */
+
+package us.freeandfair.corla.endpoint;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.persistence.PersistenceException;
+
+import us.freeandfair.corla.Main;
+import us.freeandfair.corla.model.County;
+import us.freeandfair.corla.model.DoSDashboard;
+import us.freeandfair.corla.persistence.EntityChangeNotifier;
+import us.freeandfair.corla.persistence.Persistence;
+import us.freeandfair.corla.report.CountyReport;
+import us.freeandfair.corla.report.StateReport;
+
+/**
+ * The Excel county and state reports, generated ahead of time and kept on
+ * disk, so that downloading a report that has not changed costs no more
+ * than sending a file.
+ *
+ * Each report is stored under the SHA-256 hash of its contents along with
+ * the versions of the data it was generated from (those used by the
+ * dashboard refresh endpoints, and for county reports a version of the
+ * state's audit information), and the last few versions of each report are
+ * kept. A report that has been downloaded since the server started is
+ * regenerated in the background shortly after its data changes, so the
+ * next download finds it ready; a download that finds its report out of
+ * date waits for it to be regenerated, for at most WAIT_TIMEOUT; since the
+ * download holds a database connection while it waits, and generating the
+ * report needs another, a download that waits longer is told to try again
+ * later, and the report is ready when it does. All reports are generated
+ * one at a time, on a single thread, each in its own transaction, so any
+ * number of simultaneous downloads cause at most one generation of each
+ * report.
+ */
+final class ReportArchive {
+  /**
+   * The property naming the directory in which reports are kept.
+   */
+  static final String DIRECTORY_PROPERTY = "report_directory";
+
+  /**
+   * The property giving the number of versions of each report to keep.
+   */
+  static final String VERSIONS_PROPERTY = "report_versions";
+
+  /**
+   * The default number of versions of each report to keep.
+   */
+  static final int DEFAULT_VERSIONS = 3;
+
+  /**
+   * The delay between a committed change and the regeneration of the
+   * reports it affects, in milliseconds; it lets a burst of changes (such
+   * as a round sign-off) cause a single regeneration.
+   */
+  static final long REGENERATION_DELAY = 5000;
+
+  /**
+   * The longest time a download waits for its report to be regenerated, in
+   * milliseconds.
+   */
+  static final long WAIT_TIMEOUT = 10000;
+
+  /**
+   * The name of the state report.
+   */
+  private static final String STATE = "state";
+
+  /**
+   * The directory in which reports are kept.
+   */
+  private static final Path DIRECTORY;
+
+  /**
+   * The number of versions of each report to keep.
+   */
+  private static final int VERSIONS;
+
+  /**
+   * The reports, by name.
+   */
+  private static final ConcurrentMap<String, Report> REPORTS = new ConcurrentHashMap<>();
+
+  /**
+   * The logical clock of changes to the state's audit information, which
+   * appears in every county report.
+   */
+  private static final AtomicLong AUDIT_INFO_CHANGES = new AtomicLong();
+
+  /**
+   * Whether a regeneration is scheduled.
+   */
+  private static final AtomicBoolean PENDING = new AtomicBoolean();
+
+  /**
+   * The thread on which reports are generated.
+   */
+  private static final ScheduledExecutorService EXECUTOR =
+      Executors.newSingleThreadScheduledExecutor(the_runnable -> {
+        final Thread thread = new Thread(the_runnable, "report-archive");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  static {
+    final Properties properties = Main.properties();
+    DIRECTORY = Paths.get(properties.getProperty(DIRECTORY_PROPERTY,
+        Paths.get(System.getProperty("java.io.tmpdir"), "corla-reports").toString()));
+    int versions = DEFAULT_VERSIONS;
+    try {
+      versions = Math.max(1, Integer.parseInt(
+          properties.getProperty(VERSIONS_PROPERTY, String.valueOf(DEFAULT_VERSIONS))));
+    } catch (final NumberFormatException e) {
+      Main.LOGGER.info("could not read property " + VERSIONS_PROPERTY +
+                       ", using default " + DEFAULT_VERSIONS);
+    }
+    VERSIONS = versions;
+    removeStaleFiles();
+
+    EntityChangeNotifier.addListener(new EntityChangeNotifier.Listener() {
+      @Override
+      public void entityChanged(final Object the_entity) {
+        if (the_entity instanceof DoSDashboard) {
+          AUDIT_INFO_CHANGES.incrementAndGet();
+        }
+        scheduleRegeneration();
+      }
+
+      @Override
+      public void allChanged() {
+        AUDIT_INFO_CHANGES.incrementAndGet();
+        scheduleRegeneration();
+      }
+    });
+  }
+
+  /**
+   * Private constructor to prevent instantiation.
+   */
+  private ReportArchive() {
+    // do nothing
+  }
+
+  /**
+   * Gets the current Excel report for the specified county, or for the
+   * state, waiting (for at most WAIT_TIMEOUT) for it to be generated if
+   * necessary.
+   *
+   * @param the_county_id The county ID, or null for the state report.
+   * @return the report file.
+   * @exception IOException if the report cannot be generated.
+   * @exception TimeoutException if the report is still being generated
+   * after WAIT_TIMEOUT; its generation continues.
+   */
+  static ReportFile excel(final Long the_county_id) throws IOException, TimeoutException {
+    final String name;
+    if (the_county_id == null) {
+      name = STATE;
+    } else {
+      name = "county-" + the_county_id;
+    }
+    final Report report = REPORTS.computeIfAbsent(name, n -> new Report(n, the_county_id));
+    final ReportFile latest = report.latest();
+    if (latest != null && latest.isCurrent(versions(the_county_id))) {
+      return latest;
+    }
+    try {
+      return EXECUTOR.submit(() -> regenerate(report)).get(WAIT_TIMEOUT,
+                                                              TimeUnit.MILLISECONDS);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("interrupted while generating report", e);
+    } catch (final ExecutionException e) {
+      throw new IOException("could not generate report", e.getCause());
+    }
+  }
+
+  /**
+   * @param the_county_id The county ID, or null for the state report.
+   * @return the current versions of the data the report is generated from.
+   */
+  private static long[] versions(final Long the_county_id) {
+    if (the_county_id == null) {
+      return new long[] {DoSDashboardRefresh.version(),
+                         CountyDashboardRefresh.latestVersion()};
+    }
+    return new long[] {AUDIT_INFO_CHANGES.get(),
+                       CountyDashboardRefresh.version(the_county_id)};
+  }
+
+  /**
+   * Schedules the regeneration of out-of-date reports, unless there are no
+   * reports or a regeneration is already scheduled.
+   */
+  private static void scheduleRegeneration() {
+    if (!REPORTS.isEmpty() && PENDING.compareAndSet(false, true)) {
+      EXECUTOR.schedule(() -> {
+        PENDING.set(false);
+        regenerateAll();
+      }, REGENERATION_DELAY, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Regenerates every report that is out of date.
+   */
+  @SuppressWarnings("PMD.AvoidCatchingGenericException")
+  private static void regenerateAll() {
+    for (final Report report : REPORTS.values()) {
+      try {
+        regenerate(report);
+      } catch (final IOException | RuntimeException e) {
+        Main.LOGGER.error("could not regenerate " + report.name() + " report: " + e);
+      }
+    }
+  }
+
+  /**
+   * Regenerates a report, if it is out of date. This is only called on the
+   * report thread.
+   *
+   * @param the_report The report.
+   * @return the current report file.
+   * @exception IOException if the report cannot be generated.
+   */
+  private static ReportFile regenerate(final Report the_report) throws IOException {
+    // the versions are read before the transaction begins, so a change
+    // committed while the report is generated leaves it out of date
+    final long[] versions = versions(the_report.countyID());
+    final ReportFile latest = the_report.latest();
+    if (latest != null && latest.isCurrent(versions)) {
+      return latest;
+    }
+    final ReportFile result;
+    Persistence.beginTransaction();
+    try {
+      result = generate(the_report, versions);
+      Persistence.commitTransaction();
+    } catch (final IOException | PersistenceException e) {
+      if (Persistence.canTransactionRollback()) {
+        Persistence.rollbackTransaction();
+      }
+      throw e;
+    }
+    for (final ReportFile old : the_report.add(result)) {
+      try {
+        Files.deleteIfExists(old.path());
+      } catch (final IOException e) {
+        // it may still be being sent; it is removed at the next startup
+        Main.LOGGER.info("could not delete old report " + old.path() + ": " + e);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Generates a report file. This must be called within a transaction.
+   *
+   * @param the_report The report.
+   * @param the_versions The versions of the data, read before the
+   * transaction began.
+   * @return the report file.
+   * @exception IOException if the report cannot be generated.
+   */
+  private static ReportFile generate(final Report the_report, final long[] the_versions)
+      throws IOException {
+    Files.createDirectories(DIRECTORY);
+    final Path temp = Files.createTempFile(DIRECTORY, the_report.name() + "-", ".tmp");
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (final NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is unavailable", e);
+    }
+    final String filename;
+    try (OutputStream os =
+             new DigestOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)),
+                                    digest)) {
+      if (the_report.countyID() == null) {
+        final StateReport sr = new StateReport();
+        filename = sr.filenameExcel();
+        sr.writeExcel(os);
+      } else {
+        final CountyReport cr =
+            new CountyReport(Persistence.getByID(the_report.countyID(), County.class));
+        filename = cr.filenameExcel();
+        cr.writeExcel(os);
+      }
+    } catch (final IOException | PersistenceException e) {
+      Files.deleteIfExists(temp);
+      throw e;
+    }
+    final StringBuilder hash = new StringBuilder();
+    for (final byte b : digest.digest()) {
+      hash.append(String.format("%02x", b));
+    }
+    final Path path = DIRECTORY.resolve(the_report.name() + "-" + hash + ".xlsx");
+    Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING,
+               StandardCopyOption.ATOMIC_MOVE);
+    return new ReportFile(path, filename, hash.toString(), the_versions);
+  }
+
+  /**
+   * Removes the report files left by a previous run of the server, whose
+   * versions are unknown.
+   */
+  private static void removeStaleFiles() {
+    if (!Files.isDirectory(DIRECTORY)) {
+      return;
+    }
+    try (DirectoryStream<Path> files =
+             Files.newDirectoryStream(DIRECTORY, "{state,county}-*.{xlsx,tmp}")) {
+      for (final Path file : files) {
+        Files.deleteIfExists(file);
+      }
+    } catch (final IOException e) {
+      Main.LOGGER.info("could not remove old reports from " + DIRECTORY + ": " + e);
+    }
+  }
+
+  /**
+   * The versions of one report.
+   */
+  private static final class Report {
+    /**
+     * The name of the report.
+     */
+    private final String my_name;
+
+    /**
+     * The county ID, or null for the state report.
+     */
+    private final Long my_county_id;
+
+    /**
+     * The report files, latest first.
+     */
+    private final Deque<ReportFile> my_files = new ArrayDeque<>();
+
+    /**
+     * Constructs a report with no files.
+     *
+     * @param the_name The name of the report.
+     * @param the_county_id The county ID, or null for the state report.
+     */
+    Report(final String the_name, final Long the_county_id) {
+      my_name = the_name;
+      my_county_id = the_county_id;
+    }
+
+    /**
+     * @return the name of the report.
+     */
+    String name() {
+      return my_name;
+    }
+
+    /**
+     * @return the county ID, or null for the state report.
+     */
+    Long countyID() {
+      return my_county_id;
+    }
+
+    /**
+     * @return the latest report file, or null if there is none.
+     */
+    synchronized ReportFile latest() {
+      return my_files.peekFirst();
+    }
+
+    /**
+     * Adds a report file as the latest.
+     *
+     * @param the_file The report file.
+     * @return the files no longer kept.
+     */
+    synchronized Deque<ReportFile> add(final ReportFile the_file) {
+      final Deque<ReportFile> result = new ArrayDeque<>();
+      // identical contents are stored in the same file
+      my_files.removeIf(f -> f.hash().equals(the_file.hash()));
+      my_files.addFirst(the_file);
+      while (my_files.size() > VERSIONS) {
+        result.add(my_files.removeLast());
+      }
+      return result;
+    }
+  }
+
+  /**
+   * A generated report file.
+   */
+  static final class ReportFile {
+    /**
+     * The path of the file.
+     */
+    private final Path my_path;
+
+    /**
+     * The file name to download the report as.
+     */
+    private final String my_filename;
+
+    /**
+     * The SHA-256 hash of the file, in hexadecimal.
+     */
+    private final String my_hash;
+
+    /**
+     * The versions of the data the report was generated from.
+     */
+    private final long[] my_versions;
+
+    /**
+     * Constructs a report file.
+     *
+     * @param the_path The path of the file.
+     * @param the_filename The file name to download the report as.
+     * @param the_hash The SHA-256 hash of the file, in hexadecimal.
+     * @param the_versions The versions of the data the report was
+     * generated from.
+     */
+    ReportFile(final Path the_path, final String the_filename, final String the_hash,
+               final long[] the_versions) {
+      my_path = the_path;
+      my_filename = the_filename;
+      my_hash = the_hash;
+      my_versions = the_versions.clone();
+    }
+
+    /**
+     * @return the path of the file.
+     */
+    Path path() {
+      return my_path;
+    }
+
+    /**
+     * @return the file name to download the report as.
+     */
+    String filename() {
+      return my_filename;
+    }
+
+    /**
+     * @return the SHA-256 hash of the file, in hexadecimal.
+     */
+    String hash() {
+      return my_hash;
+    }
+
+    /**
+     * @return the size of the file, in bytes.
+     */
+    long size() {
+      return my_path.toFile().length();
+    }
+
+    /**
+     * @param the_versions The current versions of the report's data.
+     * @return true if the report was generated from data at least as
+     * recent as the_versions, false otherwise.
+     */
+    boolean isCurrent(final long[] the_versions) {
+      for (int i = 0; i < the_versions.length; i++) {
+        if (my_versions[i] < the_versions[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Sends the file to the specified stream with FileChannel.transferTo,
+     * so that it is never read into the heap as a whole.
+     *
+     * @param the_stream The stream.
+     * @return the number of bytes sent.
+     * @exception IOException if the file cannot be sent.
+     */
+    long transferTo(final OutputStream the_stream) throws IOException {
+      try (FileChannel file = FileChannel.open(my_path, StandardOpenOption.READ)) {
+        final WritableByteChannel target = Channels.newChannel(the_stream);
+        final long size = file.size();
+        long position = 0;
+        while (position < size) {
+          position = position + file.transferTo(position, size - position, target);
+        }
+        return size;
+      }
+    }
+  }
+}
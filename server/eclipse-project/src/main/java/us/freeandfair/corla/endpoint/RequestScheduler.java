@@ -0,0 +1,178 @@
+/*
+ * Colorado RLA System
+ */
+
+package us.freeandfair.corla.endpoint;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import us.freeandfair.corla.Main;
+
+/**
+ * Schedules requests that change data so that they do not contend with
+ * each other in the database. Each such request runs in a lane: requests
+ * in the same lane (for example, requests for the same county) run one at
+ * a time, in the order they arrive, while requests in different lanes run
+ * in parallel. The state lane, for changes to the state's data, is a lane
+ * like any other, so it does not hold up the counties. The exclusive lane,
+ * for operations (such as resetting the database) that must not overlap
+ * with any other change, waits for all other lanes to be empty, and they
+ * wait for it.
+ *
+ * Requests are served on the threads that receive them, so a lane is a
+ * fair lock that a request holds from before its transaction begins until
+ * after it ends. A request that cannot enter its lane in time is answered
+ * with a retry rather than left waiting.
+ */
+public final class RequestScheduler {
+  /**
+   * The property giving the longest time a request waits for its lane, in
+   * seconds.
+   */
+  public static final String TIMEOUT_PROPERTY = "request_lane_timeout";
+
+  /**
+   * The state lane.
+   */
+  public static final String STATE_LANE = "state";
+
+  /**
+   * The exclusive lane.
+   */
+  public static final String EXCLUSIVE_LANE = "exclusive";
+
+  /**
+   * The default longest time a request waits for its lane, in seconds.
+   */
+  private static final long DEFAULT_TIMEOUT = 30;
+
+  /**
+   * The lock shared by all lanes other than the exclusive lane, and held
+   * exclusively by the exclusive lane.
+   */
+  private final ReentrantReadWriteLock my_all_lanes = new ReentrantReadWriteLock(true);
+
+  /**
+   * The locks of the lanes other than the exclusive lane, by key.
+   */
+  private final Map<String, Lock> my_lanes = new ConcurrentHashMap<>();
+
+  /**
+   * The locks held by each thread's request, in the order they were taken.
+   */
+  private final ThreadLocal<Deque<Lock>> my_held =
+      ThreadLocal.withInitial(ArrayDeque::new);
+
+  /**
+   * The longest time a request waits for its lane, in milliseconds.
+   */
+  private final long my_timeout;
+
+  /**
+   * Constructs a request scheduler.
+   *
+   * @param the_timeout The longest time a request waits for its lane, in
+   * milliseconds.
+   */
+  public RequestScheduler(final long the_timeout) {
+    my_timeout = the_timeout;
+  }
+
+  /**
+   * Constructs a request scheduler from the specified properties.
+   *
+   * @param the_properties The properties.
+   * @return the request scheduler.
+   */
+  public static RequestScheduler fromProperties(final Properties the_properties) {
+    long timeout = DEFAULT_TIMEOUT;
+    try {
+      timeout = Long.parseLong(the_properties.getProperty(TIMEOUT_PROPERTY,
+                                                          String.valueOf(DEFAULT_TIMEOUT)));
+    } catch (final NumberFormatException e) {
+      Main.LOGGER.info("could not read property " + TIMEOUT_PROPERTY +
+                       ", using default " + DEFAULT_TIMEOUT);
+    }
+    return new RequestScheduler(TimeUnit.SECONDS.toMillis(timeout));
+  }
+
+  /**
+   * @param the_county_id A county ID.
+   * @return the lane of requests for the county.
+   */
+  public static String countyLane(final Long the_county_id) {
+    return "county-" + the_county_id;
+  }
+
+  /**
+   * Enters the specified lane, waiting for the requests ahead in it. The
+   * calling thread must leave the lane, with leave(), when its request
+   * ends.
+   *
+   * @param the_lane The lane.
+   * @return true if the lane was entered, false if the wait timed out or
+   * was interrupted.
+   */
+  public boolean enter(final String the_lane) {
+    final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(my_timeout);
+    boolean result;
+    if (EXCLUSIVE_LANE.equals(the_lane)) {
+      result = acquire(my_all_lanes.writeLock(), deadline);
+    } else {
+      result = acquire(my_all_lanes.readLock(), deadline) &&
+               acquire(my_lanes.computeIfAbsent(the_lane, l -> new ReentrantLock(true)),
+                       deadline);
+      if (!result) {
+        leave();
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Leaves the lane entered by the calling thread, if any.
+   */
+  public void leave() {
+    final Deque<Lock> held = my_held.get();
+    while (!held.isEmpty()) {
+      held.pop().unlock();
+    }
+  }
+
+  /**
+   * @return true if the calling thread is in a lane, false otherwise.
+   */
+  public boolean inLane() {
+    return !my_held.get().isEmpty();
+  }
+
+  /**
+   * Acquires a lock, recording it as held by the calling thread.
+   *
+   * @param the_lock The lock.
+   * @param the_deadline The time by which it must be acquired, as given by
+   * System.nanoTime().
+   * @return true if the lock was acquired, false otherwise.
+   */
+  private boolean acquire(final Lock the_lock, final long the_deadline) {
+    boolean result = false;
+    try {
+      result = the_lock.tryLock(Math.max(0, the_deadline - System.nanoTime()),
+                                TimeUnit.NANOSECONDS);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (result) {
+      my_held.get().push(the_lock);
+    }
+    return result;
+  }
+}
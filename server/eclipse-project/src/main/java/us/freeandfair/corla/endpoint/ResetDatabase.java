@@ -123,4 +123,13 @@ public class ResetDatabase extends AbstractEndpoint {
     ok(the_response, "database reset");
     return my_endpoint_result.get();
   }
+  
+  /**
+   * @param the_request The request.
+   * @return the exclusive lane, since resetting the database changes all data.
+   */
+  @Override
+  protected String lane(final Request the_request) {
+    return RequestScheduler.EXCLUSIVE_LANE;
+  }
 }
@@ -325,7 +325,7 @@ public class SignOffAuditRound extends AbstractAuditBoardDashboardEndpoint {
    */
   private void notifyAuditComplete() {
     ASMUtilities.step(COUNTY_AUDIT_COMPLETE_EVENT,
-                      CountyDashboardASM.class, my_asm.get().identity());
+                      CountyDashboardASM.class, asm().identity());
     // check to see if all counties are complete
     boolean all_complete = true;
     for (final County c : Persistence.getAll(County.class)) {
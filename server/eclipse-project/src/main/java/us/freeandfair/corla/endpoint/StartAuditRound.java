@@ -18,10 +18,14 @@ import static us.freeandfair.corla.asm.ASMState.DoSDashboardState.COMPLETE_AUDIT
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import javax.persistence.PersistenceException;
@@ -50,6 +54,7 @@ import us.freeandfair.corla.model.ContestToAudit;
 import us.freeandfair.corla.model.CountyDashboard;
 import us.freeandfair.corla.model.DoSDashboard;
 import us.freeandfair.corla.persistence.Persistence;
+import us.freeandfair.corla.util.BallotManifestIndex;
 import us.freeandfair.corla.util.PhantomBallots;
 
 /**
@@ -214,7 +219,7 @@ public class StartAuditRound extends AbstractDoSDashboardEndpoint {
                              final Response the_response) {
 
     final DoSDashboard dosdb = Persistence.getByID(DoSDashboard.ID, DoSDashboard.class);
-    if (my_asm.get().currentState() == COMPLETE_AUDIT_INFO_SET) {
+    if (asm().currentState() == COMPLETE_AUDIT_INFO_SET) {
       // this is the first round
       // this needs to happen after uploading is done but before the audit is started
       initializeAuditData(dosdb);
@@ -263,42 +268,90 @@ public class StartAuditRound extends AbstractDoSDashboardEndpoint {
   /**
    * sets selection on each contestResult, the results of
    * BallotSelection.randomSelection
+   *
+   * The database work happens on this thread, in three steps: gathering the
+   * inputs for each targeted contest, then (after the random numbers have
+   * been drawn and divided into counties in parallel) resolving the
+   * selections of every contest to CVRs in one batch, then recording them.
    */
   public List<Selection> makeSelections(final List<ComparisonAudit> comparisonAudits,
                                         final String seed,
                                         final BigDecimal riskLimit) {
-
-    final List<Selection> selections = new ArrayList<>();
-    // maybe...
-    // comparisonAudits.stream()
-    //   .filter(ca -> ca.isTargeted())
-    //   .map(BallotSelection::randomSelection)
+    // contests with the same counties draw from the same manifests, so
+    // they share one index and one ballot count
+    final Map<Set<Long>, BallotManifestIndex> indexes = new HashMap<>();
+    final Map<Set<Long>, Integer> domainSizes = new HashMap<>();
+    final List<Supplier<Selection>> draws = new ArrayList<>();
 
     for(final ComparisonAudit comparisonAudit: comparisonAudits) {
       final ContestResult contestResult = comparisonAudit.contestResult();
       // only make selection for targeted contests
       if (contestResult.getAuditReason().isTargeted()) {
-        final Integer startIndex = BallotSelection.auditedPrefixLength(contestResult.getContestCVRIds());
+        final Integer startIndex = BallotSelection.auditedPrefixLength(contestResult);
         final Integer endIndex = comparisonAudit.optimisticSamplesToAudit();
+        final Set<Long> countyIds = contestResult.countyIDs();
+        final int domainSize;
+        final BallotManifestIndex index;
+        if (startIndex > endIndex) {
+          domainSize = 0;
+          index = null;
+        } else {
+          domainSize = domainSizes.computeIfAbsent(
+              countyIds, ids -> BallotSelection.ballotsCast(ids).intValue());
+          index = indexes.computeIfAbsent(countyIds, BallotSelection::manifestIndex);
+        }
+        draws.add(() -> BallotSelection.theoreticalSelection(contestResult, countyIds, seed,
+                                                              startIndex, endIndex,
+                                                              domainSize, index));
+      }
+    }
 
-        final Selection selection =
-          BallotSelection.randomSelection(contestResult, seed,
-                                          startIndex, endIndex);
+    final List<Selection> selections =
+      BallotSelection.resolveSelections(drawInParallel(draws));
 
-        LOGGER.debug(String.format("[makeSelections for ContestResult: contestName=%s, "
-                                   + "contestResult.contestCVRIds=%s, selection=%s, "
-                                   + "selection.contestCVRIds=%s, startIndex=%d, endIndex=%d]",
-                                   contestResult.getContestName(),
-                                   contestResult.getContestCVRIds(),
-                                   selection, selection.contestCVRIds(),
-                                   startIndex, endIndex));
+    for (final Selection selection : selections) {
+      final ContestResult contestResult = selection.contestResult;
+      LOGGER.debug(String.format("[makeSelections for ContestResult: contestName=%s, "
+                                 + "contestResult.contestCVRIds=%s, selection=%s, "
+                                 + "selection.contestCVRIds=%s]",
+                                 contestResult.getContestName(),
+                                 contestResult.getContestCVRIds(),
+                                 selection, selection.contestCVRIds()));
 
-        contestResult.addContestCVRIds(selection.contestCVRIds());
+      contestResult.addContestCVRIds(selection.contestCVRIds());
+    }
+    return selections;
+  }
 
-        selections.add(selection);
+  /**
+   * Makes theoretical selections on a bounded fork-join pool, preserving
+   * their order. The suppliers must not touch the database.
+   *
+   * @param draws the selections to make
+   * @return the selections, in the same order as the suppliers
+   */
+  @SuppressWarnings("PMD.DoNotUseThreads")
+  private List<Selection> drawInParallel(final List<Supplier<Selection>> draws) {
+    if (draws.size() < 2) {
+      return draws.stream().map(Supplier::get).collect(Collectors.toList());
+    }
+    final ForkJoinPool pool =
+      new ForkJoinPool(Math.min(draws.size(), Runtime.getRuntime().availableProcessors()));
+    try {
+      return pool.submit(() -> draws.parallelStream()
+                         .map(Supplier::get)
+                         .collect(Collectors.toList())).get();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted while making selections", e);
+    } catch (final ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
       }
+      throw new IllegalStateException("could not make selections", e.getCause());
+    } finally {
+      pool.shutdown();
     }
-    return selections;
   }
 
   /**
@@ -12,11 +12,15 @@
 package us.freeandfair.corla.endpoint;
 
 import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeoutException;
 
 import javax.persistence.PersistenceException;
 
@@ -29,6 +33,8 @@ import us.freeandfair.corla.asm.ASMState;
 import us.freeandfair.corla.asm.ASMState.DoSDashboardState;
 import us.freeandfair.corla.asm.ASMUtilities;
 import us.freeandfair.corla.asm.DoSDashboardASM;
+import us.freeandfair.corla.report.ReportRecordWriter;
+import us.freeandfair.corla.report.ReportRecords;
 import us.freeandfair.corla.report.StateReport;
 import us.freeandfair.corla.util.SparkHelper;
 
@@ -88,23 +94,35 @@ public class StateReportDownload extends AbstractEndpoint {
       dataNotFound(the_response, "No state report available in this state.");
     }
     
-    final boolean pdf = "pdf".equalsIgnoreCase(the_request.queryParams("file_type"));
-    final StateReport sr = new StateReport();
+    final String file_type = the_request.queryParams("file_type");
+    if ("csv".equalsIgnoreCase(file_type) || "json".equalsIgnoreCase(file_type)) {
+      return writeRecords(the_response, new ReportRecords(null),
+                          "csv".equalsIgnoreCase(file_type));
+    }
+
+    final boolean pdf = "pdf".equalsIgnoreCase(file_type);
     byte[] file = new byte[0];
     String filename = "";
+    ReportArchive.ReportFile excel = null;
     
     if (pdf) {
       the_response.type("application/pdf");
+      final StateReport sr = new StateReport();
       filename = sr.filenamePDF();
       file = sr.generatePDF();
     } else {
       the_response.type("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
       // the file name should be constructed from the election type and date, and
       // the county name and round
-      filename = sr.filenameExcel();
       try {
-        file = sr.generateExcel();
-      } catch (final IOException e) {
+        excel = ReportArchive.excel(null);
+        filename = excel.filename();
+      } catch (final TimeoutException e) {
+        // waiting longer would hold this request's database connection
+        the_response.header("Retry-After", RETRY_AFTER_DELAY);
+        serverUnavailable(the_response, "The Excel file is being generated; " +
+                                        "try again shortly");
+      } catch (final IOException | PersistenceException e) {
         serverError(the_response, "Unable to generate Excel file");
       }
     }
@@ -116,9 +134,17 @@ public class StateReportDownload extends AbstractEndpoint {
       serverError(the_response, "UTF-8 is unsupported (this should never happen)");
     }
     
+    // the Excel file is sent straight from the report archive
+    if (excel != null) {
+      the_response.raw().setContentLengthLong(excel.size());
+    }
     try (OutputStream os = SparkHelper.getRaw(the_response).getOutputStream();
          BufferedOutputStream bos = new BufferedOutputStream(os)) {
-      bos.write(file);
+      if (excel == null) {
+        bos.write(file);
+      } else {
+        excel.transferTo(os);
+      }
       bos.flush();
       ok(the_response);
     } catch (final IOException | PersistenceException e) {
@@ -127,4 +153,45 @@ public class StateReportDownload extends AbstractEndpoint {
     
     return my_endpoint_result.get();
   }
+
+  /**
+   * Streams the records of a report as CSV or as newline-delimited JSON,
+   * without building the report first.
+   *
+   * @param the_response The response.
+   * @param the_records The report records.
+   * @param the_csv true for CSV, false for newline-delimited JSON.
+   * @return the result for the endpoint.
+   */
+  private String writeRecords(final Response the_response, final ReportRecords the_records,
+                              final boolean the_csv) {
+    final String filename;
+    if (the_csv) {
+      the_response.type("text/csv");
+      filename = the_records.filename("csv");
+    } else {
+      the_response.type("application/x-ndjson");
+      filename = the_records.filename("ndjson");
+    }
+
+    try {
+      the_response.raw().setHeader("Content-Disposition", "attachment; filename=\"" +
+          Rfc5987Util.encode(filename, "UTF-8") + "\"");
+    } catch (final UnsupportedEncodingException e) {
+      serverError(the_response, "UTF-8 is unsupported (this should never happen)");
+    }
+
+    try (OutputStream os = SparkHelper.getRaw(the_response).getOutputStream();
+         BufferedWriter bw =
+             new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+         ReportRecordWriter rw =
+             the_csv ? ReportRecordWriter.csv(bw) : ReportRecordWriter.json(bw)) {
+      the_records.write(rw);
+      ok(the_response);
+    } catch (final IOException | PersistenceException e) {
+      serverError(the_response, "Unable to stream response");
+    }
+
+    return my_endpoint_result.get();
+  }
 }
@@ -0,0 +1,65 @@
+/*
+ * Colorado RLA System
+ */
+
+package us.freeandfair.corla.filestore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
+import java.util.Properties;
+
+/**
+ * The interface to stores of uploaded file contents. A file store is
+ * content-addressed: each file is stored under the (hexadecimal) SHA-256
+ * hash of its contents, so storing the same contents twice stores them
+ * once, and the database need only record the hash.
+ */
+public interface FileStore {
+  /**
+   * Initializes this file store from the system properties. This is called
+   * once, at startup, before any other method.
+   *
+   * @param the_properties The properties.
+   * @exception IOException if the file store cannot be initialized.
+   */
+  void initialize(Properties the_properties) throws IOException;
+
+  /**
+   * Stores a file under the specified hash. The file is moved into the
+   * store if possible, so it may no longer exist when this method returns;
+   * if the store already holds the hash, the file is left untouched.
+   *
+   * @param the_hash The SHA-256 hash of the file's contents.
+   * @param the_file The file.
+   * @exception IOException if the file cannot be stored.
+   */
+  void store(String the_hash, File the_file) throws IOException;
+
+  /**
+   * @param the_hash The hash.
+   * @return true if this store holds contents with the specified hash,
+   * false otherwise.
+   */
+  boolean contains(String the_hash);
+
+  /**
+   * Opens the contents stored under the specified hash for reading.
+   *
+   * @param the_hash The hash.
+   * @return the input stream; the caller must close it.
+   * @exception IOException if the contents cannot be opened.
+   */
+  InputStream open(String the_hash) throws IOException;
+
+  /**
+   * Transfers the contents stored under the specified hash to a channel.
+   *
+   * @param the_hash The hash.
+   * @param the_channel The channel; it is not closed.
+   * @return the number of bytes transferred.
+   * @exception IOException if the contents cannot be transferred.
+   */
+  long transferTo(String the_hash, WritableByteChannel the_channel) throws IOException;
+}
@@ -0,0 +1,137 @@
+/*
+ * Colorado RLA System
+ */
+
+package us.freeandfair.corla.filestore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+/**
+ * A file store in a directory of the local file system. Each file is kept
+ * as a plain file named by its hash, in a subdirectory named by the first
+ * two characters of the hash (so that no directory grows too large), and
+ * is read through a FileChannel.
+ */
+public class LocalFileStore implements FileStore {
+  /**
+   * The property naming the directory in which files are kept.
+   */
+  public static final String DIRECTORY_PROPERTY = "file_store_directory";
+
+  /**
+   * The form of a hash.
+   */
+  private static final Pattern HASH_PATTERN = Pattern.compile("[0-9A-F]{64}");
+
+  /**
+   * The number of hash characters naming a subdirectory.
+   */
+  private static final int PREFIX_LENGTH = 2;
+
+  /**
+   * The directory in which files are kept.
+   */
+  private Path my_directory;
+
+  /**
+   * {@inheritDoc}
+   *
+   * The directory must be set by the file_store_directory property; there
+   * is no default, because a temporary directory may be cleaned out while
+   * the database still refers to the files in it.
+   */
+  @Override
+  public void initialize(final Properties the_properties) throws IOException {
+    final String directory = the_properties.getProperty(DIRECTORY_PROPERTY);
+    if (directory == null || directory.trim().isEmpty()) {
+      throw new IOException("property " + DIRECTORY_PROPERTY + " is not set");
+    }
+    my_directory = Paths.get(directory.trim());
+    Files.createDirectories(my_directory);
+  }
+
+  /**
+   * @param the_hash The hash.
+   * @return the path of the file with the specified hash.
+   * @exception IllegalArgumentException if the hash is malformed.
+   */
+  private Path pathFor(final String the_hash) {
+    final String hash = the_hash.toUpperCase(Locale.US);
+    if (!HASH_PATTERN.matcher(hash).matches()) {
+      throw new IllegalArgumentException("malformed hash " + the_hash);
+    }
+    return my_directory.resolve(hash.substring(0, PREFIX_LENGTH)).resolve(hash);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void store(final String the_hash, final File the_file) throws IOException {
+    final Path path = pathFor(the_hash);
+    if (Files.exists(path)) {
+      return;
+    }
+    Files.createDirectories(path.getParent());
+    try {
+      Files.move(the_file.toPath(), path, StandardCopyOption.ATOMIC_MOVE);
+    } catch (final AtomicMoveNotSupportedException e) {
+      // the file is on another file system; copy it next to its final
+      // location first, so that it never appears there partly written
+      final Path temp = Files.createTempFile(path.getParent(), path.getFileName() + "-", ".tmp");
+      try {
+        Files.copy(the_file.toPath(), temp, StandardCopyOption.REPLACE_EXISTING);
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(temp);
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean contains(final String the_hash) {
+    return Files.isRegularFile(pathFor(the_hash));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public InputStream open(final String the_hash) throws IOException {
+    return Channels.newInputStream(FileChannel.open(pathFor(the_hash),
+                                                    StandardOpenOption.READ));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long transferTo(final String the_hash, final WritableByteChannel the_channel)
+      throws IOException {
+    try (FileChannel file = FileChannel.open(pathFor(the_hash), StandardOpenOption.READ)) {
+      final long size = file.size();
+      long position = 0;
+      while (position < size) {
+        position = position + file.transferTo(position, size - position, the_channel);
+      }
+      return size;
+    }
+  }
+}
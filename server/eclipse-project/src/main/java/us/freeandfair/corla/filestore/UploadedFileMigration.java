@@ -0,0 +1,206 @@
+/*
+ * Colorado RLA System
+ */
+
+package us.freeandfair.corla.filestore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.sql.Blob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import javax.persistence.PersistenceException;
+
+import org.hibernate.Session;
+
+import us.freeandfair.corla.Main;
+import us.freeandfair.corla.crypto.HashChecker;
+import us.freeandfair.corla.persistence.Persistence;
+
+/**
+ * Moves the contents of uploaded files from the database to the file store.
+ * Before uploaded files were kept in a file store, their contents were kept
+ * in the database, in the large object referred to by the file column of the
+ * uploaded_file table. At startup, each uploaded file without a computed
+ * hash has its large object copied into the file store under its SHA-256
+ * hash, and the hash is recorded; once every uploaded file has one, the
+ * computed_hash column is made NOT NULL and the old file column is made
+ * nullable, so that new uploads (which do not fill it) can be saved.
+ *
+ * The old column, and the large objects it refers to, are left in place;
+ * script/drop-uploaded-file-blobs.sql removes them, and refuses to run
+ * while any uploaded file has not been migrated.
+ */
+public final class UploadedFileMigration {
+  /**
+   * The query for whether the old file column exists.
+   */
+  private static final String OLD_COLUMN_QUERY =
+      "select count(*) from information_schema.columns " +
+      "where table_schema = current_schema() and table_name = 'uploaded_file' " +
+      "and column_name = 'file'";
+
+  /**
+   * The query for the uploaded files that have not been migrated.
+   */
+  private static final String UNMIGRATED_QUERY =
+      "select id from uploaded_file where computed_hash is null order by id";
+
+  /**
+   * The query for the contents of an uploaded file.
+   */
+  private static final String CONTENTS_QUERY =
+      "select file from uploaded_file where id = ?";
+
+  /**
+   * Private constructor to prevent instantiation.
+   */
+  private UploadedFileMigration() {
+    // do nothing
+  }
+
+  /**
+   * Migrates the contents of every uploaded file kept in the database to
+   * the specified file store. Each file is migrated in its own transaction,
+   * so a migration that is interrupted resumes where it stopped.
+   *
+   * @param the_store The file store.
+   * @return the number of uploaded files migrated.
+   * @exception IllegalStateException if any uploaded file cannot be migrated;
+   * the server must not run until they all are, since their contents could
+   * not otherwise be read.
+   */
+  public static int migrate(final FileStore the_store) {
+    final boolean old_column;
+    final List<?> ids;
+    try {
+      Persistence.beginTransaction();
+      final Session session = Persistence.currentSession();
+      old_column = ((Number) session.createNativeQuery(OLD_COLUMN_QUERY).
+                    getSingleResult()).intValue() > 0;
+      ids = session.createNativeQuery(UNMIGRATED_QUERY).getResultList();
+      Persistence.commitTransaction();
+    } catch (final PersistenceException e) {
+      Persistence.rollbackTransaction();
+      throw new IllegalStateException("could not find uploaded files to migrate", e);
+    }
+    if (!ids.isEmpty() && !old_column) {
+      throw new IllegalStateException(ids.size() + " uploaded files have no " +
+                                      "computed hash, and no contents to migrate");
+    }
+
+    for (final Object id : ids) {
+      migrate(the_store, ((Number) id).longValue());
+    }
+
+    try {
+      Persistence.beginTransaction();
+      final Session session = Persistence.currentSession();
+      session.createNativeQuery("alter table uploaded_file " +
+                                "alter column computed_hash set not null").
+          executeUpdate();
+      if (old_column) {
+        session.createNativeQuery("alter table uploaded_file " +
+                                  "alter column file drop not null").
+            executeUpdate();
+      }
+      Persistence.commitTransaction();
+    } catch (final PersistenceException e) {
+      Persistence.rollbackTransaction();
+      throw new IllegalStateException("could not update uploaded_file columns", e);
+    }
+
+    if (!ids.isEmpty()) {
+      Main.LOGGER.info("migrated " + ids.size() + " uploaded files to the file store");
+    }
+    if (old_column) {
+      Main.LOGGER.info("all uploaded files are in the file store; the file column " +
+                       "of uploaded_file can be dropped with " +
+                       "script/drop-uploaded-file-blobs.sql");
+    }
+    return ids.size();
+  }
+
+  /**
+   * Migrates the contents of one uploaded file to the specified file store,
+   * and records its computed hash.
+   *
+   * @param the_store The file store.
+   * @param the_id The ID of the uploaded file.
+   * @exception IllegalStateException if the uploaded file cannot be migrated.
+   */
+  private static void migrate(final FileStore the_store, final long the_id) {
+    File file = null;
+    try {
+      file = File.createTempFile("corla-migrate-" + the_id + "-", ".tmp");
+      final File contents = file;
+      Persistence.beginTransaction();
+      final Session session = Persistence.currentSession();
+      final String hash =
+          session.doReturningWork(connection -> copyContents(connection, the_id, contents));
+      the_store.store(hash, file);
+      session.createNativeQuery("update uploaded_file set computed_hash = :hash " +
+                                "where id = :id").
+          setParameter("hash", hash).setParameter("id", the_id).executeUpdate();
+      Persistence.commitTransaction();
+      Main.LOGGER.info("migrated uploaded file " + the_id + " to the file store " +
+                       "with hash " + hash);
+    } catch (final IOException | PersistenceException e) {
+      Persistence.rollbackTransaction();
+      throw new IllegalStateException("could not migrate uploaded file " + the_id, e);
+    } finally {
+      if (file != null && file.exists() && !file.delete()) {
+        Main.LOGGER.warn("could not delete temporary file " + file);
+      }
+    }
+  }
+
+  /**
+   * Copies the contents of an uploaded file from the database to a file,
+   * hashing them as they are copied.
+   *
+   * @param the_connection The connection.
+   * @param the_id The ID of the uploaded file.
+   * @param the_file The file.
+   * @return the SHA-256 hash of the contents, encoded as HashChecker does.
+   * @exception SQLException if the contents cannot be read or written.
+   */
+  private static String copyContents(final Connection the_connection,
+                                     final long the_id, final File the_file)
+      throws SQLException {
+    try (PreparedStatement ps = the_connection.prepareStatement(CONTENTS_QUERY)) {
+      ps.setLong(1, the_id);
+      try (ResultSet rs = ps.executeQuery()) {
+        if (!rs.next()) {
+          throw new SQLException("uploaded file " + the_id + " does not exist");
+        }
+        final Blob blob = rs.getBlob(1);
+        if (blob == null) {
+          throw new SQLException("uploaded file " + the_id + " has no contents");
+        }
+        final MessageDigest digest = HashChecker.newDigest();
+        if (digest == null) {
+          throw new SQLException("could not compute SHA-256 hashes");
+        }
+        try (InputStream is = new DigestInputStream(blob.getBinaryStream(), digest)) {
+          Files.copy(is, the_file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (final IOException e) {
+          throw new SQLException("could not copy uploaded file " + the_id + ": " +
+                                 e.getMessage(), e);
+        } finally {
+          blob.free();
+        }
+        return HashChecker.hashString(digest);
+      }
+    }
+  }
+}
@@ -4,6 +4,10 @@ package us.freeandfair.corla.math;
 import java.math.BigDecimal;
 import java.math.MathContext;
 import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import ch.obermuhlner.math.big.BigDecimalMath;
 
@@ -19,9 +23,57 @@ public final class Audit {
    */
   public static final BigDecimal GAMMA = BigDecimal.valueOf(1.03905);
 
+  /**
+   * The name of the property that sets the fast path epsilon (see
+   * setFastPathEpsilon).
+   */
+  public static final String EPSILON_PROPERTY = "sample_size_epsilon";
+
+  /**
+   * The default fast path epsilon. The rounding error of a double-precision
+   * sample size is within about 1e-14 of the magnitude of the terms it is
+   * computed from, so this leaves a wide margin.
+   */
+  public static final double DEFAULT_EPSILON = 1e-9;
+
+  /**
+   * The maximum number of memoized sample sizes; the memo is cleared when
+   * it fills up.
+   */
+  private static final int MEMO_LIMIT = 10000;
+
+  /**
+   * Memoized sample sizes, by their arguments.
+   */
+  private static final Map<List<Object>, BigDecimal> SAMPLE_SIZES =
+      new ConcurrentHashMap<>();
+
+  /**
+   * The fast path epsilon.
+   */
+  private static volatile double fastPathEpsilon = DEFAULT_EPSILON;
+
   private Audit() {
   }
 
+  /**
+   * Sets how close a double-precision sample size may be to an integer,
+   * relative to the magnitude of the terms it is computed from (see
+   * optimisticMagnitude), before optimistic() recomputes it with BigDecimal
+   * arithmetic, where rounding error in the double result could change
+   * which integer it rounds up to. The error is bounded by the magnitude of
+   * the terms rather than of the result, because the logarithm of the risk
+   * limit and the discrepancy terms can nearly cancel.
+   *
+   * @param epsilon the relative distance; 0 or more.
+   */
+  public static void setFastPathEpsilon(final double epsilon) {
+    if (!(epsilon >= 0)) {
+      throw new IllegalArgumentException("invalid epsilon " + epsilon);
+    }
+    fastPathEpsilon = epsilon;
+  }
+
   /**
    * μ = V / N
    * @param margin the smallest margin of winning, V votes.
@@ -70,6 +122,11 @@ public final class Audit {
    * Computes the expected number of ballots to audit overall given the
    * specified numbers of over- and understatements.
    *
+   * The result is computed in double precision and memoized; it is
+   * recomputed with BigDecimal arithmetic (optimisticExact) only when the
+   * double result is too close to an integer for its ceiling to be
+   * trusted, so results are always the same as optimisticExact's.
+   *
    * @param the_two_under The two-vote understatements.
    * @param the_one_under The one-vote understatements.
    * @param the_one_over The one-vote overstatements.
@@ -87,6 +144,111 @@ public final class Audit {
                                       final int oneOver,
                                       final int twoOver) {
 
+    if (dilutedMargin.compareTo(BigDecimal.ZERO) == 0) {
+      // the contest is uncontested
+      return BigDecimal.ZERO;
+    }
+
+    final List<Object> key = Arrays.asList(riskLimit, dilutedMargin, gamma,
+                                           twoUnder, oneUnder, oneOver, twoOver);
+    BigDecimal result = SAMPLE_SIZES.get(key);
+    if (result == null) {
+      final double estimate = optimisticDouble(riskLimit.doubleValue(),
+                                               dilutedMargin.doubleValue(),
+                                               gamma.doubleValue(),
+                                               twoUnder, oneUnder, oneOver, twoOver);
+      final double magnitude = optimisticMagnitude(riskLimit.doubleValue(),
+                                                   dilutedMargin.doubleValue(),
+                                                   gamma.doubleValue(),
+                                                   twoUnder, oneUnder, oneOver, twoOver);
+      final double distance = Math.abs(estimate - Math.rint(estimate));
+      if (Double.isFinite(estimate) && Double.isFinite(magnitude) &&
+          distance > fastPathEpsilon * Math.max(1.0, magnitude)) {
+        final long over_under_sum = (long) twoUnder + oneUnder + oneOver + twoOver;
+        result = BigDecimal.valueOf((long) Math.ceil(estimate)).
+                 max(BigDecimal.valueOf(over_under_sum));
+      } else {
+        result = optimisticExact(riskLimit, dilutedMargin, gamma,
+                                 twoUnder, oneUnder, oneOver, twoOver);
+      }
+      if (SAMPLE_SIZES.size() >= MEMO_LIMIT) {
+        SAMPLE_SIZES.clear();
+      }
+      SAMPLE_SIZES.put(key, result);
+    }
+    return result;
+  }
+
+  /**
+   * The stopping sample size before rounding, in double precision; the
+   * arguments are as for optimistic().
+   *
+   * @return the sample size, which may be infinite or NaN if the arguments
+   * are out of range.
+   */
+  static double optimisticDouble(final double riskLimit,
+                                 final double dilutedMargin,
+                                 final double gamma,
+                                 final int twoUnder,
+                                 final int oneUnder,
+                                 final int oneOver,
+                                 final int twoOver) {
+    final double invgamma = 1.0 / gamma;
+    final double invtwogamma = 1.0 / (2.0 * gamma);
+    final double discrepancies =
+        twoUnder * Math.log1p(invgamma) + oneUnder * Math.log1p(invtwogamma) +
+        oneOver * Math.log1p(-invtwogamma) + twoOver * Math.log1p(-invgamma);
+    return -2.0 * gamma * (Math.log(riskLimit) + discrepancies) / dilutedMargin;
+  }
+
+  /**
+   * The magnitude of the terms of the stopping sample size, which bounds
+   * the rounding error of optimisticDouble() (relative to machine
+   * precision): (|ln α| + Σ |count · log1p(..)|) · 2γ / μ. The arguments
+   * are as for optimistic().
+   *
+   * @return the magnitude.
+   */
+  static double optimisticMagnitude(final double riskLimit,
+                                    final double dilutedMargin,
+                                    final double gamma,
+                                    final int twoUnder,
+                                    final int oneUnder,
+                                    final int oneOver,
+                                    final int twoOver) {
+    final double invgamma = 1.0 / gamma;
+    final double invtwogamma = 1.0 / (2.0 * gamma);
+    final double terms =
+        Math.abs(Math.log(riskLimit)) +
+        Math.abs(twoUnder * Math.log1p(invgamma)) +
+        Math.abs(oneUnder * Math.log1p(invtwogamma)) +
+        Math.abs(oneOver * Math.log1p(-invtwogamma)) +
+        Math.abs(twoOver * Math.log1p(-invgamma));
+    return 2.0 * gamma * terms / Math.abs(dilutedMargin);
+  }
+
+  /**
+   * Computes the expected number of ballots to audit overall given the
+   * specified numbers of over- and understatements, in BigDecimal
+   * arithmetic.
+   *
+   * @param the_two_under The two-vote understatements.
+   * @param the_one_under The one-vote understatements.
+   * @param the_one_over The one-vote overstatements.
+   * @param the_two_over The two-vote overstatements.
+   *
+   * @return the expected number of ballots remaining to audit.
+   * This is the stopping sample size as defined in the literature:
+   * https://www.stat.berkeley.edu/~stark/Preprints/gentle12.pdf
+   */
+  static BigDecimal optimisticExact(final BigDecimal riskLimit,
+                                    final BigDecimal dilutedMargin,
+                                    final BigDecimal gamma,
+                                    final int twoUnder,
+                                    final int oneUnder,
+                                    final int oneOver,
+                                    final int twoOver) {
+
     if (dilutedMargin.compareTo(BigDecimal.ZERO) == 0) { //hilarious
       // nothing to do here, no samples will need to be audited because the
       // contest is uncontested
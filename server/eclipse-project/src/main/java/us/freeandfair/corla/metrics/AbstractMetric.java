@@ -0,0 +1,143 @@
+/*
+ * Colorado RLA System
+ */
+
+package us.freeandfair.corla.metrics;
+
+/**
+ * A named metric, written in the Prometheus text exposition format. A
+ * metric may have one label, whose values distinguish its series (for
+ * example, the endpoint a request latency was measured for).
+ */
+public abstract class AbstractMetric {
+  /**
+   * The value used for the series of an unlabeled metric.
+   */
+  protected static final String NO_LABEL = "";
+
+  /**
+   * The name.
+   */
+  private final String my_name;
+
+  /**
+   * The help text.
+   */
+  private final String my_help;
+
+  /**
+   * The name of the label, or null if the metric has no label.
+   */
+  private final String my_label_name;
+
+  /**
+   * Constructs a metric.
+   *
+   * @param the_name The name.
+   * @param the_help The help text.
+   * @param the_label_name The name of the label, or null if the metric
+   * has no label.
+   */
+  protected AbstractMetric(final String the_name, final String the_help,
+                           final String the_label_name) {
+    my_name = the_name;
+    my_help = the_help;
+    my_label_name = the_label_name;
+  }
+
+  /**
+   * @return the name.
+   */
+  public String name() {
+    return my_name;
+  }
+
+  /**
+   * @return the name of the label, or null if the metric has no label.
+   */
+  public String labelName() {
+    return my_label_name;
+  }
+
+  /**
+   * @return the Prometheus type of this metric.
+   */
+  protected abstract String type();
+
+  /**
+   * Writes the samples of this metric.
+   *
+   * @param the_output The output.
+   */
+  protected abstract void writeSamples(StringBuilder the_output);
+
+  /**
+   * Writes this metric, with its help text and type.
+   *
+   * @param the_output The output.
+   */
+  public void write(final StringBuilder the_output) {
+    the_output.append("# HELP ").append(my_name).append(' ').
+        append(my_help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+    the_output.append("# TYPE ").append(my_name).append(' ').append(type()).append('\n');
+    writeSamples(the_output);
+  }
+
+  /**
+   * Writes one sample.
+   *
+   * @param the_output The output.
+   * @param the_suffix The suffix of the sample name (such as "_sum"), or
+   * the empty string.
+   * @param the_label The label value, or NO_LABEL.
+   * @param the_extra_label An additional label and value, already
+   * formatted (such as "le=\"0.5\""), or null.
+   * @param the_value The value.
+   */
+  protected void writeSample(final StringBuilder the_output, final String the_suffix,
+                             final String the_label, final String the_extra_label,
+                             final double the_value) {
+    the_output.append(my_name).append(the_suffix);
+    final boolean labeled = my_label_name != null && !NO_LABEL.equals(the_label);
+    if (labeled || the_extra_label != null) {
+      the_output.append('{');
+      if (labeled) {
+        the_output.append(my_label_name).append("=\"").append(escape(the_label)).append('"');
+        if (the_extra_label != null) {
+          the_output.append(',');
+        }
+      }
+      if (the_extra_label != null) {
+        the_output.append(the_extra_label);
+      }
+      the_output.append('}');
+    }
+    the_output.append(' ').append(format(the_value)).append('\n');
+  }
+
+  /**
+   * @param the_label A label value.
+   * @return the value, escaped for the exposition format.
+   */
+  private static String escape(final String the_label) {
+    return the_label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+
+  /**
+   * @param the_value A sample value.
+   * @return the value, formatted for the exposition format.
+   */
+  protected static String format(final double the_value) {
+    final String result;
+    if (Double.isNaN(the_value)) {
+      result = "NaN";
+    } else if (Double.isInfinite(the_value)) {
+      result = the_value > 0 ? "+Inf" : "-Inf";
+    } else if (the_value == Math.rint(the_value) && Math.abs(the_value) < 1e15) {
+      result = String.valueOf((long) the_value);
+    } else {
+      result = Double.toString(the_value);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Colorado RLA System
+ */
+
+package us.freeandfair.corla.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A count that only goes up, such as the number of transaction failures.
+ */
+public class Counter extends AbstractMetric {
+  /**
+   * The counts, by label value.
+   */
+  private final Map<String, LongAdder> my_counts = new ConcurrentHashMap<>();
+
+  /**
+   * Constructs an unlabeled counter.
+   *
+   * @param the_name The name.
+   * @param the_help The help text.
+   */
+  public Counter(final String the_name, final String the_help) {
+    this(the_name, the_help, null);
+  }
+
+  /**
+   * Constructs a counter.
+   *
+   * @param the_name The name.
+   * @param the_help The help text.
+   * @param the_label_name The name of the label, or null if the counter
+   * has no label.
+   */
+  public Counter(final String the_name, final String the_help,
+                 final String the_label_name) {
+    super(the_name, the_help, the_label_name);
+  }
+
+  /**
+   * @param the_label The label value.
+   * @return the count for the label value, creating it if necessary.
+   */
+  private LongAdder countFor(final String the_label) {
+    LongAdder result = my_counts.get(the_label);
+    if (result == null) {
+      result = my_counts.computeIfAbsent(the_label, l -> new LongAdder());
+    }
+    return result;
+  }
+
+  /**
+   * Adds one to the count of an unlabeled counter.
+   */
+  public void inc() {
+    add(NO_LABEL, 1);
+  }
+
+  /**
+   * Adds one to the count for the specified label value.
+   *
+   * @param the_label The label value.
+   */
+  public void inc(final String the_label) {
+    add(the_label, 1);
+  }
+
+  /**
+   * Adds to the count of an unlabeled counter.
+   *
+   * @param the_amount The amount, which must not be negative.
+   */
+  public void add(final long the_amount) {
+    add(NO_LABEL, the_amount);
+  }
+
+  /**
+   * Adds to the count for the specified label value.
+   *
+   * @param the_label The label value.
+   * @param the_amount The amount, which must not be negative.
+   */
+  public void add(final String the_label, final long the_amount) {
+    countFor(the_label).add(the_amount);
+  }
+
+  /**
+   * @param the_label The label value.
+   * @return the count for the label value.
+   */
+  public long count(final String the_label) {
+    final LongAdder count = my_counts.get(the_label);
+    long result = 0;
+    if (count != null) {
+      result = count.sum();
+    }
+    return result;
+  }
+
+  /**
+   * @return the count of an unlabeled counter.
+   */
+  public long count() {
+    return count(NO_LABEL);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected String type() {
+    return "counter";
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void writeSamples(final StringBuilder the_output) {
+    if (labelName() == null && my_counts.isEmpty()) {
+      writeSample(the_output, "", NO_LABEL, null, 0);
+    }
+    for (final Map.Entry<String, LongAdder> e : my_counts.entrySet()) {
+      writeSample(the_output, "", e.getKey(), null, e.getValue().sum());
+    }
+  }
+}
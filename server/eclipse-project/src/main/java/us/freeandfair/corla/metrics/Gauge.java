@@ -0,0 +1,120 @@
+/*
+ * Colorado RLA System
+ */
+
+package us.freeandfair.corla.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * A value that may go up and down, such as the number of busy database
+ * connections. A gauge either holds a value that is set, or samples its
+ * values (one per label value) when it is written. A sampled gauge may
+ * also expose counts kept elsewhere, such as Hibernate's cache statistics,
+ * as a counter.
+ */
+public class Gauge extends AbstractMetric {
+  /**
+   * The Prometheus type of this gauge.
+   */
+  private final String my_type;
+
+  /**
+   * The sampler, or null if the value is set.
+   */
+  private final Supplier<Map<String, ? extends Number>> my_sampler;
+
+  /**
+   * The value, if it is set.
+   */
+  @SuppressWarnings("PMD.AvoidUsingVolatile")
+  private volatile double my_value;
+
+  /**
+   * Constructs an unlabeled gauge whose value is set.
+   *
+   * @param the_name The name.
+   * @param the_help The help text.
+   */
+  public Gauge(final String the_name, final String the_help) {
+    super(the_name, the_help, null);
+    my_type = "gauge";
+    my_sampler = null;
+  }
+
+  /**
+   * Constructs a sampled gauge.
+   *
+   * @param the_name The name.
+   * @param the_help The help text.
+   * @param the_label_name The name of the label, or null if the gauge has
+   * no label (in which case the sampler should give one value, for the
+   * empty label value).
+   * @param the_counter true if the sampled values are counts that only go
+   * up, false otherwise.
+   * @param the_sampler The sampler, which gives the values by label value.
+   */
+  public Gauge(final String the_name, final String the_help, final String the_label_name,
+               final boolean the_counter,
+               final Supplier<Map<String, ? extends Number>> the_sampler) {
+    super(the_name, the_help, the_label_name);
+    if (the_counter) {
+      my_type = "counter";
+    } else {
+      my_type = "gauge";
+    }
+    my_sampler = the_sampler;
+  }
+
+  /**
+   * Constructs an unlabeled sampled gauge.
+   *
+   * @param the_name The name.
+   * @param the_help The help text.
+   * @param the_sampler The sampler.
+   * @return the gauge.
+   */
+  public static Gauge sampled(final String the_name, final String the_help,
+                              final Supplier<? extends Number> the_sampler) {
+    return new Gauge(the_name, the_help, null, false,
+        () -> Collections.singletonMap(NO_LABEL, the_sampler.get()));
+  }
+
+  /**
+   * Sets the value of a gauge whose value is set.
+   *
+   * @param the_value The value.
+   */
+  public void set(final double the_value) {
+    my_value = the_value;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected String type() {
+    return my_type;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void writeSamples(final StringBuilder the_output) {
+    if (my_sampler == null) {
+      writeSample(the_output, "", NO_LABEL, null, my_value);
+    } else {
+      final Map<String, ? extends Number> values = my_sampler.get();
+      if (values != null) {
+        for (final Map.Entry<String, ? extends Number> e : values.entrySet()) {
+          if (e.getValue() != null) {
+            writeSample(the_output, "", e.getKey(), null, e.getValue().doubleValue());
+          }
+        }
+      }
+    }
+  }
+}
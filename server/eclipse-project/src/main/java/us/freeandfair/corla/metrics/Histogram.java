@@ -0,0 +1,152 @@
+/*
+ * Colorado RLA System
+ */
+
+package us.freeandfair.corla.metrics;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A distribution of observed values, such as request latencies, counted in
+ * buckets with fixed upper bounds.
+ */
+public class Histogram extends AbstractMetric {
+  /**
+   * Bucket bounds suitable for latencies, in seconds.
+   */
+  public static final double[] LATENCY_BUCKETS =
+      {0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60};
+
+  /**
+   * The upper bounds of the buckets, in increasing order (not including the
+   * implicit +Inf bucket).
+   */
+  private final double[] my_bounds;
+
+  /**
+   * The series, by label value.
+   */
+  private final Map<String, Series> my_series = new ConcurrentHashMap<>();
+
+  /**
+   * Constructs a histogram.
+   *
+   * @param the_name The name.
+   * @param the_help The help text.
+   * @param the_label_name The name of the label, or null if the histogram
+   * has no label.
+   * @param the_bounds The upper bounds of the buckets.
+   */
+  public Histogram(final String the_name, final String the_help,
+                   final String the_label_name, final double... the_bounds) {
+    super(the_name, the_help, the_label_name);
+    my_bounds = the_bounds.clone();
+    Arrays.sort(my_bounds);
+  }
+
+  /**
+   * Records an observation for an unlabeled histogram.
+   *
+   * @param the_value The value.
+   */
+  public void observe(final double the_value) {
+    observe(NO_LABEL, the_value);
+  }
+
+  /**
+   * Records an observation for the specified label value.
+   *
+   * @param the_label The label value.
+   * @param the_value The value.
+   */
+  public void observe(final String the_label, final double the_value) {
+    Series series = my_series.get(the_label);
+    if (series == null) {
+      series = my_series.computeIfAbsent(the_label, l -> new Series(my_bounds.length));
+    }
+    int bucket = 0;
+    while (bucket < my_bounds.length && the_value > my_bounds[bucket]) {
+      bucket = bucket + 1;
+    }
+    series.my_buckets[bucket].increment();
+    series.my_sum.add(the_value);
+  }
+
+  /**
+   * @param the_label The label value.
+   * @return the number of observations for the label value.
+   */
+  public long count(final String the_label) {
+    final Series series = my_series.get(the_label);
+    long result = 0;
+    if (series != null) {
+      for (final LongAdder b : series.my_buckets) {
+        result = result + b.sum();
+      }
+    }
+    return result;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected String type() {
+    return "histogram";
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void writeSamples(final StringBuilder the_output) {
+    for (final Map.Entry<String, Series> e : my_series.entrySet()) {
+      final Series series = e.getValue();
+      long cumulative = 0;
+      for (int i = 0; i <= my_bounds.length; i++) {
+        cumulative = cumulative + series.my_buckets[i].sum();
+        final String bound;
+        if (i < my_bounds.length) {
+          bound = format(my_bounds[i]);
+        } else {
+          bound = "+Inf";
+        }
+        writeSample(the_output, "_bucket", e.getKey(), "le=\"" + bound + "\"", cumulative);
+      }
+      writeSample(the_output, "_sum", e.getKey(), null, series.my_sum.sum());
+      writeSample(the_output, "_count", e.getKey(), null, cumulative);
+    }
+  }
+
+  /**
+   * The observations for one label value.
+   */
+  private static final class Series {
+    /**
+     * The (non-cumulative) count of observations in each bucket, the last
+     * being the +Inf bucket.
+     */
+    private final LongAdder[] my_buckets;
+
+    /**
+     * The sum of the observations.
+     */
+    private final DoubleAdder my_sum = new DoubleAdder();
+
+    /**
+     * Constructs a series.
+     *
+     * @param the_bounds The number of bucket bounds.
+     */
+    Series(final int the_bounds) {
+      my_buckets = new LongAdder[the_bounds + 1];
+      for (int i = 0; i < my_buckets.length; i++) {
+        my_buckets[i] = new LongAdder();
+      }
+    }
+  }
+}
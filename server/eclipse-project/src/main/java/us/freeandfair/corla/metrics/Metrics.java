@@ -0,0 +1,131 @@
+/*
+ * Colorado RLA System
+ */
+
+package us.freeandfair.corla.metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import us.freeandfair.corla.Main;
+
+/**
+ * The registry of the server's metrics, and the metrics recorded on its hot
+ * paths. Metrics registered here are exposed, in the Prometheus text format,
+ * by the metrics endpoint.
+ */
+public final class Metrics {
+  /**
+   * The registered metrics, by name, in the order they were registered.
+   */
+  private static final Map<String, AbstractMetric> REGISTRY = new LinkedHashMap<>();
+
+  /**
+   * The latency of requests, by endpoint.
+   */
+  public static final Histogram REQUEST_DURATION =
+      register(new Histogram("corla_request_duration_seconds",
+                             "Time taken to serve a request, by endpoint.",
+                             "endpoint", Histogram.LATENCY_BUCKETS));
+
+  /**
+   * The number of SQL statements prepared by requests, by endpoint.
+   */
+  public static final Histogram REQUEST_STATEMENTS =
+      register(new Histogram("corla_request_sql_statements",
+                             "SQL statements prepared while serving a request, by endpoint.",
+                             "endpoint", 0, 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 5000));
+
+  /**
+   * The number of transaction failures, by endpoint.
+   */
+  public static final Counter TRANSACTION_FAILURES =
+      register(new Counter("corla_transaction_failures_total",
+                           "Requests answered with a transaction failure (and a " +
+                           "request to retry), by endpoint.",
+                           "endpoint"));
+
+  /**
+   * The number of retried transactions, by operation.
+   */
+  public static final Counter TRANSACTION_RETRIES =
+      register(new Counter("corla_transaction_retries_total",
+                           "Failed transaction attempts in operations that retry, by operation.",
+                           "operation"));
+
+  /**
+   * The number of audit log entries given up on.
+   */
+  public static final Counter LOG_ENTRIES_DROPPED =
+      register(new Counter("corla_log_entries_dropped_total",
+                           "Audit log entries that could not be written."));
+
+  /**
+   * The number of CVRs imported.
+   */
+  public static final Counter CVR_IMPORT_ROWS =
+      register(new Counter("corla_cvr_import_rows_total",
+                           "CVR export rows imported."));
+
+  /**
+   * The rate of the most recent CVR import.
+   */
+  public static final Gauge CVR_IMPORT_RATE =
+      register(new Gauge("corla_cvr_import_rows_per_second",
+                         "Rows per second imported by the most recent CVR import."));
+
+  /**
+   * The number of SQL statements prepared.
+   */
+  public static final Counter SQL_STATEMENTS =
+      register(new Counter("corla_sql_statements_total",
+                           "SQL statements prepared by Hibernate."));
+
+  /**
+   * Private constructor to prevent instantiation.
+   */
+  private Metrics() {
+    // do nothing
+  }
+
+  /**
+   * Registers a metric, replacing any metric with the same name.
+   *
+   * @param the_metric The metric.
+   * @return the metric.
+   */
+  public static <T extends AbstractMetric> T register(final T the_metric) {
+    synchronized (REGISTRY) {
+      REGISTRY.put(the_metric.name(), the_metric);
+    }
+    return the_metric;
+  }
+
+  /**
+   * Writes all the registered metrics in the Prometheus text format. A
+   * metric that cannot be sampled is left out.
+   *
+   * @return the metrics.
+   */
+  // a sampler may fail in any way, but that must not stop the others
+  @SuppressWarnings("PMD.AvoidCatchingGenericException")
+  public static String scrape() {
+    final List<AbstractMetric> metrics;
+    synchronized (REGISTRY) {
+      metrics = new ArrayList<>(REGISTRY.values());
+    }
+    final StringBuilder result = new StringBuilder();
+    for (final AbstractMetric metric : metrics) {
+      final StringBuilder output = new StringBuilder();
+      try {
+        metric.write(output);
+        result.append(output);
+      } catch (final RuntimeException e) {
+        Main.LOGGER.error("could not sample metric " + metric.name() + ": " + e);
+      }
+    }
+    return result.toString();
+  }
+}
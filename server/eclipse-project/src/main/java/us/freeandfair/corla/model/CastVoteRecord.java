@@ -17,7 +17,9 @@ import java.io.Serializable;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -189,6 +191,19 @@ final public class CastVoteRecord implements Comparable<CastVoteRecord>,
                                              referencedColumnName = "my_id"))
   private List<CVRContestInfo> my_contest_info = new ArrayList<>();
 
+  /**
+   * The contest information in this cast vote record by contest name (the
+   * first for each name), built when first needed; it is not serialized in
+   * the database.
+   */
+  private transient Map<String, CVRContestInfo> my_contest_info_by_name;
+
+  /**
+   * The contest information list that my_contest_info_by_name indexes;
+   * Hibernate may replace the list when it loads the record.
+   */
+  private transient List<CVRContestInfo> my_indexed_contest_info;
+
   /**
    * ACVR level comments, used for explaining why reaudit is happening
    **/
@@ -451,6 +466,23 @@ final public class CastVoteRecord implements Comparable<CastVoteRecord>,
   public void setContestInfo (final List<CVRContestInfo> contestInfos) {
     this.my_contest_info.clear();
     this.my_contest_info.addAll(CastVoteRecord.claim(contestInfos, this.my_county_id));
+    this.my_contest_info_by_name = null;
+  }
+
+  /**
+   * @return the contest information in this cast vote record by contest
+   * name.
+   */
+  private Map<String, CVRContestInfo> contestInfoByName() {
+    if (my_contest_info_by_name == null || my_indexed_contest_info != my_contest_info) {
+      final Map<String, CVRContestInfo> index = new HashMap<>();
+      for (final CVRContestInfo info : my_contest_info) {
+        index.putIfAbsent(info.contest().name(), info);
+      }
+      my_contest_info_by_name = index;
+      my_indexed_contest_info = my_contest_info;
+    }
+    return my_contest_info_by_name;
   }
 
   /**
@@ -461,6 +493,15 @@ final public class CastVoteRecord implements Comparable<CastVoteRecord>,
    * or null if none were made for the specified contest.
    */
   public CVRContestInfo contestInfoForContest(final Contest the_contest) {
+    if (the_contest == null) {
+      return null;
+    }
+    // equal contests have equal names, so only a contest with the same name
+    // can match; if the first one doesn't, look at the others
+    final CVRContestInfo candidate = contestInfoByName().get(the_contest.name());
+    if (candidate == null || candidate.contest().equals(the_contest)) {
+      return candidate;
+    }
     for (final CVRContestInfo info : my_contest_info) {
       if (info.contest().equals(the_contest)) {
         return info;
@@ -476,9 +517,7 @@ final public class CastVoteRecord implements Comparable<CastVoteRecord>,
    * @return maybe the first CVRContestInfo found, maybe nothing.
    */
   public Optional<CVRContestInfo> contestInfoForContestResult(final ContestResult cr) {
-    return my_contest_info.stream()
-      .filter(x -> x.contest().name().equals(cr.getContestName()))
-      .findFirst();
+    return Optional.ofNullable(contestInfoByName().get(cr.getContestName()));
   }
 
   /**
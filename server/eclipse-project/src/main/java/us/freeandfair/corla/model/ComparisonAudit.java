@@ -14,9 +14,11 @@ package us.freeandfair.corla.model;
 import java.math.BigDecimal;
 import java.math.MathContext;
 import java.math.RoundingMode;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.OptionalInt;
@@ -103,6 +105,12 @@ public class ComparisonAudit implements PersistentEntity {
   @JoinColumn
   private ContestResult my_contest_result;
 
+  /**
+   * The bits assigned to the contest's winners and losers in the choice
+   * masks used to compare ballots, built when first needed.
+   */
+  private transient ChoiceIndex my_choice_index;
+
   /**
    * The reason for this audit.
    */
@@ -680,7 +688,7 @@ public class ComparisonAudit implements PersistentEntity {
 
   /** was the given cvrid selected for this contest? **/
   public boolean isCovering(final Long cvrId) {
-    return contestResult().getContestCVRIds().contains(cvrId);
+    return contestResult().contestCVRIdMultiplicity(cvrId) > 0;
   }
 
   /**
@@ -706,7 +714,7 @@ public class ComparisonAudit implements PersistentEntity {
    * (across all rounds)
    **/
   public int multiplicity(final Long cvrId) {
-    return Collections.frequency(contestResult().getContestCVRIds(), cvrId);
+    return contestResult().contestCVRIdMultiplicity(cvrId);
   }
 
   /**
@@ -976,17 +984,25 @@ public class ComparisonAudit implements PersistentEntity {
     // not. The converse is also true: if the CVR shows an overvote but the
     // audit board records a valid selection, we will calculate an expected
     // discrepancy.
-    final Set<String> acvr_choices = new HashSet<>();
+    final List<String> acvr_choices;
     if (the_acvr_info.choices().size() <= my_contest_result.winnersAllowed()) {
-      acvr_choices.addAll(the_acvr_info.choices());
+      acvr_choices = the_acvr_info.choices();
+    } else {
+      acvr_choices = Collections.emptyList();
     }
+    final List<String> cvr_choices = the_cvr_info.choices();
 
-    // avoid linear searches on CVR choices
-    final Set<String> cvr_choices = new HashSet<>(the_cvr_info.choices());
+    // the winners and losers chosen on each ballot, as bit masks, to avoid
+    // building sets of choices for every comparison
+    final ChoiceIndex index = choiceIndex();
+    final long[] cvr_mask = index.mask(cvr_choices);
+    final long[] acvr_mask = index.mask(acvr_choices);
 
     // if the choices in the CVR and ACVR are identical now, we can simply return the
     // fact that there's no discrepancy
-    if (cvr_choices.equals(acvr_choices)) {
+    if (Arrays.equals(cvr_mask, acvr_mask) &&
+        index.otherChoicesContained(cvr_choices, acvr_choices) &&
+        index.otherChoicesContained(acvr_choices, cvr_choices)) {
       return OptionalInt.empty();
     }
 
@@ -999,37 +1015,17 @@ public class ComparisonAudit implements PersistentEntity {
     int raw_result = Integer.MIN_VALUE;
 
     boolean possible_understatement = true;
-    // FIXME my_contest_result is global to this object. I'd rather it
-    // be an argument to this function.
-    for (final String winner : my_contest_result.getWinners()) {
-      final int winner_change;
-      if (!cvr_choices.contains(winner) && acvr_choices.contains(winner)) {
-        // this winner gained a vote
-        winner_change = 1;
-      } else if (cvr_choices.contains(winner) && !acvr_choices.contains(winner)) {
-        // this winner lost a vote
-        winner_change = -1;
-      } else {
-        // this winner's votes didn't change
-        winner_change = 0;
-      }
-      if (my_contest_result.getLosers().isEmpty()) {
+    for (final int winner : index.my_winner_bits) {
+      // 1 if this winner gained a vote, -1 if it lost one, 0 if its votes
+      // didn't change
+      final int winner_change = ChoiceIndex.change(winner, cvr_mask, acvr_mask);
+      if (index.my_loser_bits.length == 0) {
         // if there are no losers, we'll just negate this number - even though in
         // real life, we wouldn't be auditing the contest at all
         raw_result = Math.max(raw_result, -winner_change);
       } else {
-        for (final String loser : my_contest_result.getLosers()) {
-          final int loser_change;
-          if (!cvr_choices.contains(loser) && acvr_choices.contains(loser)) {
-            // this loser gained a vote
-            loser_change = 1;
-          } else if (cvr_choices.contains(loser) && !acvr_choices.contains(loser)) {
-            // this loser lost a vote
-            loser_change = -1;
-          } else {
-            // this loser's votes didn't change
-            loser_change = 0;
-          }
+        for (final int loser : index.my_loser_bits) {
+          final int loser_change = ChoiceIndex.change(loser, cvr_mask, acvr_mask);
           // the discrepancy is the loser change minus the winner change (i.e., if this
           // loser lost a vote (-1) and this winner gained a vote (1), that's a 2-vote
           // understatement (-1 - 1 = -2). Overstatements are worse than understatements,
@@ -1073,6 +1069,20 @@ public class ComparisonAudit implements PersistentEntity {
     return result;
   }
 
+  /**
+   * @return the bits of the contest's winners and losers in the choice
+   * masks used to compare ballots, assigned when first needed.
+   */
+  private ChoiceIndex choiceIndex() {
+    ChoiceIndex result = my_choice_index;
+    if (result == null) {
+      result = new ChoiceIndex(my_contest_result.getWinners(),
+                               my_contest_result.getLosers());
+      my_choice_index = result;
+    }
+    return result;
+  }
+
   /**
    * Computes the discrepancy between a phantom ballot and the specified
    * CVRContestInfo.
@@ -1083,9 +1093,7 @@ public class ComparisonAudit implements PersistentEntity {
     int result = 2;
     // the second predicate means "no contest winners had votes on the
     // original CVR"
-    final Set<String> winner_votes = new HashSet<>(cvrInfo.choices());
-    winner_votes.removeAll(contestResult.getLosers());
-    if (winner_votes.isEmpty()) {
+    if (contestResult.getLosers().containsAll(cvrInfo.choices())) {
       result = 1;
     }
     return result;
@@ -1106,4 +1114,99 @@ public class ComparisonAudit implements PersistentEntity {
                           my_audit_status,
                           this.auditReason());
   }
+
+  /**
+   * The bits assigned to a contest's winners and losers in the masks used
+   * to compare ballots. An index is immutable, so it can be shared by
+   * comparisons on any thread; the masks themselves belong to each
+   * comparison.
+   */
+  private static final class ChoiceIndex {
+    /**
+     * The bits, by choice.
+     */
+    private final Map<String, Integer> my_bits;
+
+    /**
+     * The bits of the winners.
+     */
+    private final int[] my_winner_bits;
+
+    /**
+     * The bits of the losers.
+     */
+    private final int[] my_loser_bits;
+
+    /**
+     * The number of words in a mask.
+     */
+    private final int my_words;
+
+    /**
+     * Constructs a choice index.
+     *
+     * @param the_winners The winners.
+     * @param the_losers The losers.
+     */
+    ChoiceIndex(final Set<String> the_winners, final Set<String> the_losers) {
+      final Map<String, Integer> bits = new HashMap<>();
+      for (final String winner : the_winners) {
+        bits.putIfAbsent(winner, bits.size());
+      }
+      for (final String loser : the_losers) {
+        bits.putIfAbsent(loser, bits.size());
+      }
+      my_winner_bits = the_winners.stream().mapToInt(bits::get).toArray();
+      my_loser_bits = the_losers.stream().mapToInt(bits::get).toArray();
+      my_words = Math.max(1, (bits.size() + Long.SIZE - 1) / Long.SIZE);
+      my_bits = bits;
+    }
+
+    /**
+     * @param the_choices The choices.
+     * @return a mask with the bits of the winners and losers among the
+     * choices set.
+     */
+    long[] mask(final List<String> the_choices) {
+      final long[] result = new long[my_words];
+      for (final String choice : the_choices) {
+        final Integer bit = my_bits.get(choice);
+        if (bit != null) {
+          result[bit / Long.SIZE] |= 1L << (bit % Long.SIZE);
+        }
+      }
+      return result;
+    }
+
+    /**
+     * @param the_bit A choice bit.
+     * @param the_cvr_mask The CVR mask.
+     * @param the_acvr_mask The ACVR mask.
+     * @return 1 if the choice is in the ACVR mask but not the CVR mask, -1
+     * if it is in the CVR mask but not the ACVR mask, 0 otherwise.
+     */
+    static int change(final int the_bit, final long[] the_cvr_mask,
+                      final long[] the_acvr_mask) {
+      final long bit = 1L << (the_bit % Long.SIZE);
+      final int cvr = (the_cvr_mask[the_bit / Long.SIZE] & bit) == 0 ? 0 : 1;
+      final int acvr = (the_acvr_mask[the_bit / Long.SIZE] & bit) == 0 ? 0 : 1;
+      return acvr - cvr;
+    }
+
+    /**
+     * @param the_choices Some choices.
+     * @param the_other Other choices.
+     * @return true if every choice in the_choices that is neither a winner
+     * nor a loser is also in the_other.
+     */
+    boolean otherChoicesContained(final List<String> the_choices,
+                                  final List<String> the_other) {
+      for (final String choice : the_choices) {
+        if (!my_bits.containsKey(choice) && !the_other.contains(choice)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
 }
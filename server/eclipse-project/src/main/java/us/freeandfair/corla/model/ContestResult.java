@@ -39,6 +39,7 @@ import org.apache.log4j.Logger;
 import us.freeandfair.corla.persistence.LongListConverter;
 import us.freeandfair.corla.persistence.PersistentEntity;
 import us.freeandfair.corla.persistence.StringSetConverter;
+import us.freeandfair.corla.util.LongCountMap;
 
 /**
  * A class representing the results for a contest across counties.
@@ -190,6 +191,23 @@ public class ContestResult implements PersistentEntity, Serializable {
   @Convert(converter = LongListConverter.class)
   private List<Long> contestCVRIds = new ArrayList<Long>();
 
+  /**
+   * The number of times each CVR id occurs in contestCVRIds, built when
+   * first needed and kept up to date by addContestCVRIds.
+   */
+  private transient LongCountMap contestCVRIdCounts;
+
+  /**
+   * The list that contestCVRIdCounts counts; if the list has been replaced,
+   * or changed other than through addContestCVRIds, the counts are rebuilt.
+   */
+  private transient List<Long> countedCVRIds;
+
+  /**
+   * How many elements of countedCVRIds have been counted.
+   */
+  private transient int countedCVRIdsSize;
+
   /**
    * Constructs a new empty ContestResult (solely for persistence).
    */
@@ -294,7 +312,43 @@ public class ContestResult implements PersistentEntity, Serializable {
    * @param contestCVRIds a list
    */
   public void addContestCVRIds (final List<Long> contestCVRIds) {
+    final boolean counted = isCounted();
     this.contestCVRIds.addAll(contestCVRIds);
+    if (counted) {
+      for (final Long cvrId : contestCVRIds) {
+        this.contestCVRIdCounts.increment(cvrId);
+      }
+      this.countedCVRIdsSize = this.contestCVRIds.size();
+    }
+  }
+
+  /**
+   * The number of times the given CVR id occurs in the contest CVR ids, that
+   * is, how many times it was selected for this contest (across all
+   * rounds). This takes constant time once the counts have been built.
+   *
+   * @param cvrId a CVR id
+   * @return the number of occurrences, 0 if it was never selected
+   */
+  public int contestCVRIdMultiplicity(final Long cvrId) {
+    if (!isCounted()) {
+      this.contestCVRIdCounts = new LongCountMap();
+      for (final Long id : this.contestCVRIds) {
+        this.contestCVRIdCounts.increment(id);
+      }
+      this.countedCVRIds = this.contestCVRIds;
+      this.countedCVRIdsSize = this.contestCVRIds.size();
+    }
+    return this.contestCVRIdCounts.get(cvrId);
+  }
+
+  /**
+   * @return whether contestCVRIdCounts is up to date
+   */
+  private boolean isCounted() {
+    return this.contestCVRIdCounts != null
+      && this.countedCVRIds == this.contestCVRIds
+      && this.countedCVRIdsSize == this.contestCVRIds.size();
   }
 
   /**
@@ -0,0 +1,239 @@
+/*
+ * Colorado RLA System
+ */
+
+package us.freeandfair.corla.model;
+
+import static us.freeandfair.corla.util.EqualsHashcodeHelper.*;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+import javax.persistence.Cacheable;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.Version;
+
+import org.hibernate.annotations.Immutable;
+
+import us.freeandfair.corla.persistence.PersistentEntity;
+
+/**
+ * A signed checkpoint of the log hash chain: a record that the chain was
+ * verified, up to and including a particular log entry, whose hash is
+ * recorded. Later verifications start from the last checkpoint whose
+ * signature and recorded hash still match.
+ */
+@Entity
+@Immutable // this is a Hibernate-specific annotation, but there is no JPA alternative
+@Cacheable(true)
+@Table(name = "log_checkpoint")
+//this class has many fields that would normally be declared final, but
+//cannot be for compatibility with Hibernate and JPA.
+@SuppressWarnings("PMD.ImmutableField")
+public class LogCheckpoint implements PersistentEntity, Serializable {
+  /**
+   * The serialVersionUID.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The ID number.
+   */
+  @Id
+  @Column(updatable = false, nullable = false)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE)
+  private Long my_id;
+
+  /**
+   * The version (for optimistic locking).
+   */
+  @Version
+  private Long my_version;
+
+  /**
+   * The ID of the last log entry verified.
+   */
+  @Column(updatable = false, nullable = false)
+  private Long my_log_entry_id;
+
+  /**
+   * The hash of the last log entry verified.
+   */
+  @Column(updatable = false, nullable = false)
+  private String my_log_entry_hash;
+
+  /**
+   * The number of log entries verified, up to and including the last.
+   */
+  @Column(updatable = false, nullable = false)
+  private Long my_entry_count;
+
+  /**
+   * The timestamp of this checkpoint.
+   */
+  @Column(updatable = false, nullable = false)
+  private Instant my_timestamp;
+
+  /**
+   * The signature of this checkpoint.
+   */
+  @Column(updatable = false, nullable = false)
+  private String my_signature;
+
+  /**
+   * Constructs a new empty checkpoint, solely for persistence.
+   */
+  public LogCheckpoint() {
+    super();
+  }
+
+  /**
+   * Constructs a new checkpoint with the specified information.
+   *
+   * @param the_log_entry_id The ID of the last log entry verified.
+   * @param the_log_entry_hash The hash of the last log entry verified.
+   * @param the_entry_count The number of log entries verified.
+   * @param the_timestamp The timestamp.
+   * @param the_signature The signature.
+   */
+  public LogCheckpoint(final Long the_log_entry_id, final String the_log_entry_hash,
+                       final Long the_entry_count, final Instant the_timestamp,
+                       final String the_signature) {
+    super();
+    my_log_entry_id = the_log_entry_id;
+    my_log_entry_hash = the_log_entry_hash;
+    my_entry_count = the_entry_count;
+    my_timestamp = LogEntry.truncate(the_timestamp);
+    my_signature = the_signature;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Long id() {
+    return my_id;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void setID(final Long the_id) {
+    my_id = the_id;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Long version() {
+    return my_version;
+  }
+
+  /**
+   * @return the ID of the last log entry verified.
+   */
+  public Long logEntryID() {
+    return my_log_entry_id;
+  }
+
+  /**
+   * @return the hash of the last log entry verified.
+   */
+  public String logEntryHash() {
+    return my_log_entry_hash;
+  }
+
+  /**
+   * @return the number of log entries verified.
+   */
+  public Long entryCount() {
+    return my_entry_count;
+  }
+
+  /**
+   * @return the timestamp of this checkpoint.
+   */
+  public Instant timestamp() {
+    return my_timestamp;
+  }
+
+  /**
+   * @return the signature of this checkpoint.
+   */
+  public String signature() {
+    return my_signature;
+  }
+
+  /**
+   * Gives the data covered by the signature of a checkpoint with the
+   * specified information.
+   *
+   * @param the_log_entry_id The ID of the last log entry verified.
+   * @param the_log_entry_hash The hash of the last log entry verified.
+   * @param the_entry_count The number of log entries verified.
+   * @param the_timestamp The timestamp, which is truncated to the precision
+   * of log timestamps (as it is stored).
+   * @return the signed data.
+   */
+  public static String signedData(final Long the_log_entry_id,
+                                  final String the_log_entry_hash,
+                                  final Long the_entry_count,
+                                  final Instant the_timestamp) {
+    return the_log_entry_id + ":" + the_log_entry_hash + ":" + the_entry_count + ":" +
+           LogEntry.truncate(the_timestamp);
+  }
+
+  /**
+   * @return the data covered by the signature of this checkpoint.
+   */
+  public String signedData() {
+    return signedData(my_log_entry_id, my_log_entry_hash, my_entry_count, my_timestamp);
+  }
+
+  /**
+   * @return a String representation of this checkpoint.
+   */
+  @Override
+  public String toString() {
+    return "LogCheckpoint [log_entry_id=" + my_log_entry_id + ", log_entry_hash=" +
+           my_log_entry_hash + ", entry_count=" + my_entry_count + ", timestamp=" +
+           my_timestamp + "]";
+  }
+
+  /**
+   * Compare this object with another for equivalence.
+   *
+   * @param the_other The other object.
+   * @return true if the objects are equivalent, false otherwise.
+   */
+  @Override
+  public boolean equals(final Object the_other) {
+    boolean result = true;
+    if (the_other instanceof LogCheckpoint) {
+      final LogCheckpoint other_checkpoint = (LogCheckpoint) the_other;
+      result &= nullableEquals(other_checkpoint.logEntryID(), logEntryID());
+      result &= nullableEquals(other_checkpoint.logEntryHash(), logEntryHash());
+      result &= nullableEquals(other_checkpoint.entryCount(), entryCount());
+      result &= nullableEquals(other_checkpoint.timestamp(), timestamp());
+      result &= nullableEquals(other_checkpoint.signature(), signature());
+    } else {
+      result = false;
+    }
+    return result;
+  }
+
+  /**
+   * @return a hash code for this object.
+   */
+  @Override
+  public int hashCode() {
+    return nullableHashCode(signature());
+  }
+}
@@ -19,6 +19,7 @@ import java.nio.charset.Charset;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 
 import javax.persistence.Cacheable;
 import javax.persistence.Column;
@@ -57,6 +58,11 @@ public class LogEntry implements PersistentEntity, Serializable {
   public static final String ROOT_HASH = 
       "0000000000000000000000000000000000000000000000000000000000000000";
       
+  /**
+   * The precision of log timestamps, which is that of PostgreSQL timestamps.
+   */
+  public static final ChronoUnit TIMESTAMP_PRECISION = ChronoUnit.MICROS;
+
   /**
    * The serialVersionUID.
    */
@@ -143,14 +149,44 @@ public class LogEntry implements PersistentEntity, Serializable {
   public LogEntry(final Integer the_result_code, final String the_information,
                   final String the_authentication_data, final String the_client_host,
                   final Instant the_timestamp, final LogEntry the_previous_entry) {
+    this(the_result_code, the_information, the_authentication_data, the_client_host,
+         the_timestamp, the_previous_entry, 
+         the_previous_entry == null ? null : the_previous_entry.hash());
+  }
+  
+  /**
+   * Constructs a new log entry with the specified information, chained to
+   * a previous entry whose hash is already known; the previous entry may
+   * then be an uninitialized reference (proxy), as it is not read. If the
+   * previous entry is null, it is assumed that this is the beginning of a
+   * new log hash chain.
+   * 
+   * @param the_result_code The result code, if any.
+   * @param the_information The information.
+   * @param the_authentication_data The authentication data, if any.
+   * @param the_client_host The client host, if any.
+   * @param the_timestamp The timestamp.
+   * @param the_previous_entry The previous log entry.
+   * @param the_previous_hash The hash of the previous log entry.
+   */
+  @SuppressWarnings("checkstyle:parameternumber")
+  public LogEntry(final Integer the_result_code, final String the_information,
+                  final String the_authentication_data, final String the_client_host,
+                  final Instant the_timestamp, final LogEntry the_previous_entry,
+                  final String the_previous_hash) {
     super();
     my_result_code = the_result_code;
     my_information = the_information;
     my_authentication_data = the_authentication_data;
     my_client_host = the_client_host;
-    my_timestamp = the_timestamp;
+    my_timestamp = truncate(the_timestamp);
     my_previous_entry = the_previous_entry;
-    my_hash = calculateHash(the_previous_entry);
+    if (the_previous_entry == null) {
+      my_hash = chainHash(my_result_code, my_information, my_timestamp, null);
+    } else {
+      my_hash = chainHash(my_result_code, my_information, my_timestamp,
+                          the_previous_hash);
+    }
   }
   
   /**
@@ -168,7 +204,23 @@ public class LogEntry implements PersistentEntity, Serializable {
     super();
     my_result_code = the_result_code;
     my_information = the_information;
-    my_timestamp = the_timestamp;
+    my_timestamp = truncate(the_timestamp);
+  }
+  
+  /**
+   * Truncates a timestamp to TIMESTAMP_PRECISION. Timestamps are truncated
+   * before they are hashed or signed, since the database stores them with
+   * that precision; a timestamp with more (as Instant.now() has on recent
+   * JVMs) would otherwise hash differently once read back.
+   * 
+   * @param the_timestamp The timestamp, or null.
+   * @return the truncated timestamp, or null if the_timestamp is null.
+   */
+  public static Instant truncate(final Instant the_timestamp) {
+    if (the_timestamp == null) {
+      return null;
+    }
+    return the_timestamp.truncatedTo(TIMESTAMP_PRECISION);
   }
   
   /**
@@ -196,21 +248,29 @@ public class LogEntry implements PersistentEntity, Serializable {
   }
   
   /**
-   * Generates a hash from the previous log entry and the contents of this
-   * log entry. If the previous entry is null, the hash is based on the
-   * root hash.
+   * Generates the hash of a log entry with the specified contents, given
+   * the hash of the previous log entry; this is the hash stored in the
+   * entry, so it can be used to verify entries that are not loaded.
    * 
-   * @param the_previous_entry The previous log entry.
+   * @param the_result_code The result code.
+   * @param the_information The information.
+   * @param the_timestamp The timestamp.
+   * @param the_previous_hash The hash of the previous log entry, or null
+   * if there is none.
    * @return the hash. If the hash cannot be calculated, this method
    * returns the root hash.
    */
-  private String calculateHash(final LogEntry the_previous_entry) {
+  public static String chainHash(final Integer the_result_code, 
+                                 final String the_information,
+                                 final Instant the_timestamp,
+                                 final String the_previous_hash) {
     String result = ROOT_HASH;
-    final StringBuilder hash_input = new StringBuilder(hashString());
-    if (the_previous_entry == null) {
+    final StringBuilder hash_input =
+        new StringBuilder(hashString(the_result_code, the_information, the_timestamp));
+    if (the_previous_hash == null) {
       hash_input.append(ROOT_HASH);
     } else {
-      hash_input.append(the_previous_entry.hash());
+      hash_input.append(the_previous_hash);
     }
     try {      
       final MessageDigest md = MessageDigest.getInstance("SHA-256");
@@ -280,10 +340,25 @@ public class LogEntry implements PersistentEntity, Serializable {
    * @return the String.
    */
   public final String hashString() {
+    return hashString(my_result_code, my_information, my_timestamp);
+  }
+
+  /**
+   * Returns a String based on the specified log entry contents and used as
+   * part of the hash computation.
+   * 
+   * @param the_result_code The result code.
+   * @param the_information The information.
+   * @param the_timestamp The timestamp.
+   * @return the String.
+   */
+  private static String hashString(final Integer the_result_code,
+                                   final String the_information,
+                                   final Instant the_timestamp) {
     final StringBuilder hash_input = new StringBuilder();
-    hash_input.append(my_result_code.toString());
-    hash_input.append(my_information);
-    hash_input.append(my_timestamp.toString());
+    hash_input.append(the_result_code.toString());
+    hash_input.append(the_information);
+    hash_input.append(truncate(the_timestamp).toString());
     return hash_input.toString();
   }
   
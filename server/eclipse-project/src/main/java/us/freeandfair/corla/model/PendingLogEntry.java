@@ -0,0 +1,216 @@
+/*
+ * Colorado RLA System
+ */
+
+package us.freeandfair.corla.model;
+
+import static us.freeandfair.corla.util.EqualsHashcodeHelper.*;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+import javax.persistence.Cacheable;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.Version;
+
+import org.hibernate.annotations.Immutable;
+
+import us.freeandfair.corla.persistence.PersistentEntity;
+
+/**
+ * A log entry that has been saved, in the transaction making the change it
+ * describes, but not yet chained into the log. The log sequencer chains it
+ * and deletes it in one transaction, so every committed change has either
+ * a pending entry or a chained one.
+ */
+@Entity
+@Immutable // this is a Hibernate-specific annotation, but there is no JPA alternative
+@Cacheable(false)
+@Table(name = "pending_log")
+//this class has many fields that would normally be declared final, but
+//cannot be for compatibility with Hibernate and JPA.
+@SuppressWarnings("PMD.ImmutableField")
+public class PendingLogEntry implements PersistentEntity, Serializable {
+  /**
+   * The serialVersionUID.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The ID number.
+   */
+  @Id
+  @Column(updatable = false, nullable = false)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE)
+  private Long my_id;
+
+  /**
+   * The version (for optimistic locking).
+   */
+  @Version
+  private Long my_version;
+
+  /**
+   * The result code of this log entry, if any.
+   */
+  @Column(updatable = false)
+  private Integer my_result_code;
+
+  /**
+   * The informational string of this log entry.
+   */
+  @Column(updatable = false, nullable = false)
+  private String my_information;
+
+  /**
+   * Information about the authentication status at the time of this log
+   * entry, if any.
+   */
+  @Column(updatable = false)
+  private String my_authentication_data;
+
+  /**
+   * Information about the client host that generated this log entry, if any.
+   */
+  @Column(updatable = false)
+  private String my_client_host;
+
+  /**
+   * The timestamp of this log entry.
+   */
+  @Column(updatable = false, nullable = false)
+  private Instant my_timestamp;
+
+  /**
+   * Constructs a new empty pending log entry, solely for persistence.
+   */
+  public PendingLogEntry() {
+    super();
+  }
+
+  /**
+   * Constructs a new pending log entry with the specified information.
+   *
+   * @param the_result_code The result code, if any.
+   * @param the_information The information.
+   * @param the_authentication_data The authentication data, if any.
+   * @param the_client_host The client host, if any.
+   * @param the_timestamp The timestamp, which is truncated to the precision
+   * of log timestamps.
+   */
+  public PendingLogEntry(final Integer the_result_code, final String the_information,
+                         final String the_authentication_data,
+                         final String the_client_host, final Instant the_timestamp) {
+    super();
+    my_result_code = the_result_code;
+    my_information = the_information;
+    my_authentication_data = the_authentication_data;
+    my_client_host = the_client_host;
+    my_timestamp = LogEntry.truncate(the_timestamp);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Long id() {
+    return my_id;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void setID(final Long the_id) {
+    my_id = the_id;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Long version() {
+    return my_version;
+  }
+
+  /**
+   * @return the result code.
+   */
+  public Integer resultCode() {
+    return my_result_code;
+  }
+
+  /**
+   * @return the information.
+   */
+  public String information() {
+    return my_information;
+  }
+
+  /**
+   * @return the authentication data.
+   */
+  public String authenticationData() {
+    return my_authentication_data;
+  }
+
+  /**
+   * @return the client host.
+   */
+  public String clientHost() {
+    return my_client_host;
+  }
+
+  /**
+   * @return the timestamp.
+   */
+  public Instant timestamp() {
+    return my_timestamp;
+  }
+
+  /**
+   * @return a String representation of this pending log entry.
+   */
+  @Override
+  public String toString() {
+    return "PendingLogEntry [id=" + my_id + ", result_code=" + my_result_code +
+           ", information=" + my_information + ", authentication_data=" +
+           my_authentication_data + ", client_host=" + my_client_host +
+           ", timestamp=" + my_timestamp + "]";
+  }
+
+  /**
+   * Compare this object with another for equivalence.
+   *
+   * @param the_other The other object.
+   * @return true if the objects are equivalent, false otherwise.
+   */
+  @Override
+  public boolean equals(final Object the_other) {
+    boolean result = true;
+    if (the_other instanceof PendingLogEntry) {
+      final PendingLogEntry other_entry = (PendingLogEntry) the_other;
+      result &= nullableEquals(other_entry.resultCode(), resultCode());
+      result &= nullableEquals(other_entry.information(), information());
+      result &= nullableEquals(other_entry.authenticationData(), authenticationData());
+      result &= nullableEquals(other_entry.clientHost(), clientHost());
+      result &= nullableEquals(other_entry.timestamp(), timestamp());
+    } else {
+      result = false;
+    }
+    return result;
+  }
+
+  /**
+   * @return a hash code for this object.
+   */
+  @Override
+  public int hashCode() {
+    return nullableHashCode(timestamp());
+  }
+}
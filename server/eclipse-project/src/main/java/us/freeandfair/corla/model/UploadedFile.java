@@ -13,7 +13,6 @@ package us.freeandfair.corla.model;
 
 import static us.freeandfair.corla.util.EqualsHashcodeHelper.*;
 
-import java.sql.Blob;
 import java.time.Instant;
 
 import javax.persistence.Cacheable;
@@ -27,7 +26,6 @@ import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.Index;
 import javax.persistence.JoinColumn;
-import javax.persistence.Lob;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
 import javax.persistence.Version;
@@ -38,7 +36,9 @@ import us.freeandfair.corla.json.UploadedFileJsonAdapter;
 import us.freeandfair.corla.persistence.PersistentEntity;
 
 /**
- * An uploaded file, kept in persistent storage for archival.
+ * An uploaded file, kept in persistent storage for archival. The contents
+ * of the file are kept in the file store (see Main.fileStore()), under
+ * their computed hash; only the hash and metadata are kept in the database.
  * 
  * @author Daniel M. Zimmerman <dmz@freeandfair.us>
  * @version 1.0.0
@@ -107,11 +107,13 @@ public class UploadedFile implements PersistentEntity {
   private HashStatus my_hash_status;
   
   /**
-   * The uploaded file. 
+   * The computed hash of the file, under which its contents are kept in
+   * the file store. It is mapped as nullable so that the column can be
+   * added to a populated table; UploadedFileMigration fills it in for
+   * files uploaded before there was a file store, then makes it NOT NULL.
    */
-  @Lob
-  @Column(updatable = false, nullable = false)
-  private Blob my_file;
+  @Column(updatable = false)
+  private String my_computed_hash;
   
   /**
    * The file size.
@@ -142,7 +144,8 @@ public class UploadedFile implements PersistentEntity {
    * @param the_hash The hash entered at upload time.
    * @param the_hash_status A flag indicating whether the file matches
    * the hash.
-   * @param the_file The file (as a Blob).
+   * @param the_computed_hash The computed hash of the file, under which
+   * it is kept in the file store.
    * @param the_size The file size (in bytes).
    * @param the_approximate_record_count The approximate record count.
    */
@@ -152,7 +155,7 @@ public class UploadedFile implements PersistentEntity {
                       final FileStatus the_status,
                       final String the_hash,
                       final HashStatus the_hash_status,
-                      final Blob the_file,
+                      final String the_computed_hash,
                       final Long the_size,
                       final Integer the_approximate_record_count) {
     super();
@@ -162,7 +165,7 @@ public class UploadedFile implements PersistentEntity {
     my_status = the_status;
     my_hash = the_hash;
     my_hash_status = the_hash_status;
-    my_file = the_file;
+    my_computed_hash = the_computed_hash;
     my_size = the_size;
     my_approximate_record_count = the_approximate_record_count;
   }
@@ -243,10 +246,11 @@ public class UploadedFile implements PersistentEntity {
   }
   
   /**
-   * @return the file, as a binary blob.
+   * @return the computed hash of this file, under which it is kept in the
+   * file store.
    */
-  public Blob file() {
-    return my_file;
+  public String computedHash() {
+    return my_computed_hash;
   }
   
   /**
@@ -0,0 +1,327 @@
+/*
+ * Colorado RLA System
+ */
+
+package us.freeandfair.corla.persistence;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+import javax.persistence.PersistenceException;
+
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.enhanced.DatabaseStructure;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.postgresql.PGConnection;
+
+import us.freeandfair.corla.model.CVRContestInfo;
+import us.freeandfair.corla.model.CastVoteRecord;
+
+/**
+ * Writes batches of newly-parsed cast vote records, and their contest
+ * information, directly to PostgreSQL with the COPY ... FROM STDIN protocol,
+ * bypassing Hibernate's per-row INSERT path. The records never enter the
+ * persistence session; they are written on the session's connection, so
+ * they belong to the current transaction.
+ *
+ * IDs are taken from the same sequence Hibernate uses for cast vote records,
+ * a block at a time, so records written this way are indistinguishable from
+ * records saved through Hibernate.
+ */
+public class CastVoteRecordCopyLoader {
+  /**
+   * The cast vote record columns written, in the order appendRecord writes
+   * them. The columns not written (timestamp, revision and comment) are only
+   * used for ACVRs.
+   */
+  static final List<String> CVR_COLUMNS =
+      Collections.unmodifiableList(Arrays.asList("id", "version", "record_type",
+                                                 "county_id", "cvr_number",
+                                                 "sequence_number", "scanner_id",
+                                                 "batch_id", "record_id",
+                                                 "imprinted_id", "uri", "ballot_type"));
+
+  /**
+   * The CVR contest information columns written, in the order
+   * appendContestInfo writes them. The columns not written (comment and
+   * consensus) are only used for ACVRs.
+   */
+  static final List<String> CONTEST_INFO_COLUMNS =
+      Collections.unmodifiableList(Arrays.asList("cvr_id", "index", "contest_id",
+                                                 "county_id", "choices"));
+
+  /**
+   * The COPY statement for cast vote records.
+   */
+  private static final String CVR_COPY =
+      "copy cast_vote_record (" + String.join(", ", CVR_COLUMNS) + ") from stdin";
+
+  /**
+   * The COPY statement for CVR contest information.
+   */
+  private static final String CONTEST_INFO_COPY =
+      "copy cvr_contest_info (" + String.join(", ", CONTEST_INFO_COLUMNS) + ") from stdin";
+
+  /**
+   * The COPY text format representation of null.
+   */
+  private static final String NULL = "\\N";
+
+  /**
+   * The initial capacity of the per-record text buffer.
+   */
+  private static final int CHARS_PER_RECORD = 256;
+
+  /**
+   * The converter used for the choices column, so the stored text is the same
+   * as Hibernate would store.
+   */
+  private final StringListConverter my_choices_converter = new StringListConverter();
+
+  /**
+   * The preallocated IDs that have not yet been used.
+   */
+  private final Deque<Long> my_ids = new ArrayDeque<>();
+
+  /**
+   * The total number of cast vote records written by this loader.
+   */
+  private long my_record_count;
+
+  /**
+   * The total number of contest information rows written by this loader.
+   */
+  private long my_contest_info_count;
+
+  /**
+   * Writes the specified cast vote records, assigning them IDs. This must be
+   * called within a transaction, after any entities they refer to (such as
+   * their contests) have been flushed.
+   *
+   * @param the_cvrs The cast vote records; they must not already have IDs.
+   * @exception PersistenceException if the records cannot be written.
+   */
+  public void write(final List<CastVoteRecord> the_cvrs) {
+    if (the_cvrs.isEmpty()) {
+      return;
+    }
+    final Session session = Persistence.currentSession();
+    assignIDs(session, the_cvrs);
+
+    final StringBuilder cvr_rows = new StringBuilder(the_cvrs.size() * CHARS_PER_RECORD);
+    final StringBuilder info_rows = new StringBuilder(the_cvrs.size() * CHARS_PER_RECORD);
+    int info_count = 0;
+    for (final CastVoteRecord cvr : the_cvrs) {
+      appendRecord(cvr_rows, cvr);
+      info_count = info_count + appendContestInfo(info_rows, cvr);
+    }
+
+    session.doWork(connection -> {
+      copy(connection, CVR_COPY, cvr_rows);
+      copy(connection, CONTEST_INFO_COPY, info_rows);
+    });
+    my_record_count = my_record_count + the_cvrs.size();
+    my_contest_info_count = my_contest_info_count + info_count;
+  }
+
+  /**
+   * @return the total number of cast vote records written by this loader.
+   */
+  public long recordCount() {
+    return my_record_count;
+  }
+
+  /**
+   * @return the total number of contest information rows written by this loader.
+   */
+  public long contestInfoCount() {
+    return my_contest_info_count;
+  }
+
+  /**
+   * Assigns IDs to the specified records. If Hibernate uses a plain sequence
+   * (increment 1) for cast vote records, the IDs for the whole batch are
+   * preallocated with a single query; otherwise, Hibernate's own generator
+   * (whose optimizer already allocates blocks) is used.
+   *
+   * @param the_session The session.
+   * @param the_cvrs The records.
+   */
+  private void assignIDs(final Session the_session, final List<CastVoteRecord> the_cvrs) {
+    final SharedSessionContractImplementor implementor =
+        (SharedSessionContractImplementor) the_session;
+    final IdentifierGenerator generator =
+        ((SessionFactoryImplementor) the_session.getSessionFactory()).
+        getIdentifierGenerator(CastVoteRecord.class.getName());
+    final String sequence = plainSequenceName(generator);
+
+    if (sequence == null) {
+      for (final CastVoteRecord cvr : the_cvrs) {
+        final Serializable id = generator.generate(implementor, cvr);
+        cvr.setID(((Number) id).longValue());
+      }
+    } else {
+      if (my_ids.size() < the_cvrs.size()) {
+        preallocate(the_session, sequence, the_cvrs.size() - my_ids.size());
+      }
+      for (final CastVoteRecord cvr : the_cvrs) {
+        cvr.setID(my_ids.removeFirst());
+      }
+    }
+  }
+
+  /**
+   * Preallocates a block of IDs from the specified sequence.
+   *
+   * @param the_session The session.
+   * @param the_sequence The sequence name.
+   * @param the_count The number of IDs to preallocate.
+   */
+  private void preallocate(final Session the_session, final String the_sequence,
+                           final int the_count) {
+    @SuppressWarnings("unchecked")
+    final List<Number> ids =
+        the_session.createNativeQuery("select nextval('" + the_sequence + "') " +
+                                      "from generate_series(1, :count)")
+        .setParameter("count", the_count)
+        .getResultList();
+    for (final Number id : ids) {
+      my_ids.addLast(id.longValue());
+    }
+  }
+
+  /**
+   * Determines whether the specified generator draws IDs directly from a
+   * database sequence, one value per ID.
+   *
+   * @param the_generator The generator.
+   * @return the name of the sequence if so, null otherwise.
+   */
+  private static String plainSequenceName(final IdentifierGenerator the_generator) {
+    String result = null;
+    if (the_generator instanceof SequenceStyleGenerator) {
+      final DatabaseStructure structure =
+          ((SequenceStyleGenerator) the_generator).getDatabaseStructure();
+      if (structure.isPhysicalSequence() && structure.getIncrementSize() == 1) {
+        result = structure.getName();
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Runs a COPY ... FROM STDIN statement on the specified connection.
+   *
+   * @param the_connection The connection.
+   * @param the_sql The COPY statement.
+   * @param the_rows The rows, in COPY text format.
+   * @exception SQLException if the copy fails.
+   */
+  private static void copy(final Connection the_connection, final String the_sql,
+                           final CharSequence the_rows)
+      throws SQLException {
+    if (the_rows.length() == 0) {
+      return;
+    }
+    try {
+      the_connection.unwrap(PGConnection.class).getCopyAPI().
+          copyIn(the_sql, new StringReader(the_rows.toString()));
+    } catch (final IOException e) {
+      throw new SQLException("could not copy rows: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Appends the row for a cast vote record, with the columns in CVR_COLUMNS,
+   * to the specified buffer.
+   *
+   * @param the_buffer The buffer.
+   * @param the_cvr The cast vote record.
+   */
+  static void appendRecord(final StringBuilder the_buffer, final CastVoteRecord the_cvr) {
+    appendRow(the_buffer, the_cvr.id(), 0L, the_cvr.recordType(), the_cvr.countyID(),
+              the_cvr.cvrNumber(), the_cvr.sequenceNumber(), the_cvr.scannerID(),
+              the_cvr.batchID(), the_cvr.recordID(), the_cvr.imprintedID(),
+              the_cvr.getUri(), the_cvr.ballotType());
+  }
+
+  /**
+   * Appends the rows for a cast vote record's contest information, with the
+   * columns in CONTEST_INFO_COLUMNS, to the specified buffer.
+   *
+   * @param the_buffer The buffer.
+   * @param the_cvr The cast vote record.
+   * @return the number of rows appended.
+   */
+  int appendContestInfo(final StringBuilder the_buffer, final CastVoteRecord the_cvr) {
+    int index = 0;
+    for (final CVRContestInfo info : the_cvr.contestInfo()) {
+      appendRow(the_buffer, the_cvr.id(), index, info.contest().id(), the_cvr.countyID(),
+                my_choices_converter.convertToDatabaseColumn(info.choices()));
+      index = index + 1;
+    }
+    return index;
+  }
+
+  /**
+   * Appends a row in COPY text format to the specified buffer.
+   *
+   * @param the_buffer The buffer.
+   * @param the_values The column values; nulls are written as SQL nulls,
+   * and everything else as its string representation.
+   */
+  static void appendRow(final StringBuilder the_buffer,
+                        final Object... the_values) {
+    for (int i = 0; i < the_values.length; i++) {
+      if (i > 0) {
+        the_buffer.append('\t');
+      }
+      if (the_values[i] == null) {
+        the_buffer.append(NULL);
+      } else {
+        appendEscaped(the_buffer, the_values[i].toString());
+      }
+    }
+    the_buffer.append('\n');
+  }
+
+  /**
+   * Appends a value in COPY text format to the specified buffer, escaping
+   * the characters that have special meaning in that format.
+   *
+   * @param the_buffer The buffer.
+   * @param the_value The value.
+   */
+  static void appendEscaped(final StringBuilder the_buffer, final String the_value) {
+    for (int i = 0; i < the_value.length(); i++) {
+      final char c = the_value.charAt(i);
+      switch (c) {
+        case '\\':
+          the_buffer.append("\\\\");
+          break;
+        case '\t':
+          the_buffer.append("\\t");
+          break;
+        case '\n':
+          the_buffer.append("\\n");
+          break;
+        case '\r':
+          the_buffer.append("\\r");
+          break;
+        default:
+          the_buffer.append(c);
+      }
+    }
+  }
+}
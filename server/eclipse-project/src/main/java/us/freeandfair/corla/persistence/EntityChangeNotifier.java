@@ -0,0 +1,169 @@
+/*
+ * Colorado RLA System
+ */
+
+package us.freeandfair.corla.persistence;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+
+/**
+ * Tells interested parties (typically caches of data derived from the
+ * database) about entity changes once they have been committed. It is
+ * registered with Hibernate as a post-commit listener for inserts, updates
+ * and deletes, so changes made through the persistence session are reported
+ * automatically; changes made with native or bulk queries are not, and code
+ * making them must call allChangedOnCommit().
+ *
+ * A change to a versioned entity's collections increments its version, so
+ * it is reported as an update of the entity.
+ */
+public final class EntityChangeNotifier
+    implements PostCommitInsertEventListener, PostCommitUpdateEventListener,
+               PostCommitDeleteEventListener {
+  /**
+   * The serialVersionUID.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The registered listeners.
+   */
+  private static final List<Listener> LISTENERS = new CopyOnWriteArrayList<>();
+
+  /**
+   * Adds a listener for committed changes.
+   *
+   * @param the_listener The listener.
+   */
+  public static void addListener(final Listener the_listener) {
+    LISTENERS.add(the_listener);
+  }
+
+  /**
+   * Tells all listeners that any entity may have changed.
+   */
+  public static void allChanged() {
+    for (final Listener listener : LISTENERS) {
+      listener.allChanged();
+    }
+  }
+
+  /**
+   * Arranges for all listeners to be told that any entity may have changed
+   * when the current transaction commits. This must be called within a
+   * transaction.
+   */
+  public static void allChangedOnCommit() {
+    Persistence.currentSession().getTransaction().registerSynchronization(
+        new Synchronization() {
+          @Override
+          public void beforeCompletion() {
+            // nothing to do until the outcome is known
+          }
+
+          @Override
+          public void afterCompletion(final int the_status) {
+            if (the_status == Status.STATUS_COMMITTED) {
+              allChanged();
+            }
+          }
+        });
+  }
+
+  /**
+   * Tells all listeners that an entity has changed.
+   *
+   * @param the_entity The entity.
+   */
+  private static void changed(final Object the_entity) {
+    for (final Listener listener : LISTENERS) {
+      listener.entityChanged(the_entity);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void onPostInsert(final PostInsertEvent the_event) {
+    changed(the_event.getEntity());
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void onPostUpdate(final PostUpdateEvent the_event) {
+    changed(the_event.getEntity());
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void onPostDelete(final PostDeleteEvent the_event) {
+    changed(the_event.getEntity());
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void onPostInsertCommitFailed(final PostInsertEvent the_event) {
+    // the change never happened
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void onPostUpdateCommitFailed(final PostUpdateEvent the_event) {
+    // the change never happened
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void onPostDeleteCommitFailed(final PostDeleteEvent the_event) {
+    // the change never happened
+  }
+
+  /**
+   * @return true; this listener only acts after commit.
+   */
+  @Override
+  public boolean requiresPostCommitHanding(final EntityPersister the_persister) {
+    return true;
+  }
+
+  /**
+   * A listener for committed entity changes. Listeners are called on the
+   * committing thread, so they should do little more than note the change.
+   */
+  public interface Listener {
+    /**
+     * Called after a change to an entity has been committed.
+     *
+     * @param the_entity The entity.
+     */
+    void entityChanged(Object the_entity);
+
+    /**
+     * Called when any entity may have changed.
+     */
+    void allChanged();
+  }
+}
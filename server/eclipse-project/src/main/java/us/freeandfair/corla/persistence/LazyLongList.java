@@ -0,0 +1,374 @@
+/*
+ * Colorado RLA System
+ */
+
+package us.freeandfair.corla.persistence;
+
+import java.io.Serializable;
+import java.lang.reflect.Type;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * A list of Longs backed by a primitive array, that is decoded from its JSON
+ * representation only when it is first used. Entities holding long ID
+ * sequences are loaded far more often than those sequences are read, and an
+ * undecoded list is written back as the text it was read from, so loading
+ * (and Hibernate's snapshot copying) costs little more than the string
+ * itself. The list does not permit null elements.
+ */
+@SuppressWarnings("PMD.TooManyMethods")
+public final class LazyLongList extends AbstractList<Long>
+    implements RandomAccess, Serializable {
+  /**
+   * The serialVersionUID.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The initial capacity of an empty list.
+   */
+  private static final int INITIAL_CAPACITY = 10;
+
+  /**
+   * The type information for a list of Long.
+   */
+  private static final Type LONG_LIST = new TypeToken<List<Long>>() { }.getType();
+
+  /**
+   * The JSON the list has not yet been decoded from, or null if it has been.
+   */
+  private String my_json;
+
+  /**
+   * The elements.
+   */
+  private long[] my_values;
+
+  /**
+   * The number of elements.
+   */
+  private int my_size;
+
+  /**
+   * Constructs an empty list.
+   */
+  public LazyLongList() {
+    super();
+    my_values = new long[INITIAL_CAPACITY];
+  }
+
+  /**
+   * Constructs a list that will be decoded from the specified JSON array
+   * when it is first used.
+   *
+   * @param the_json The JSON array.
+   */
+  public LazyLongList(final String the_json) {
+    super();
+    my_json = the_json;
+  }
+
+  /**
+   * Encodes a list of Longs as a JSON array, in the same form as Gson.
+   *
+   * @param the_list The list.
+   * @return the JSON array.
+   */
+  public static String toJSON(final List<Long> the_list) {
+    if (the_list instanceof LazyLongList) {
+      return ((LazyLongList) the_list).toJSON();
+    }
+    final StringBuilder sb = new StringBuilder(the_list.size() * 8 + 2).append('[');
+    for (int i = 0; i < the_list.size(); i++) {
+      if (i > 0) {
+        sb.append(',');
+      }
+      sb.append(the_list.get(i));
+    }
+    return sb.append(']').toString();
+  }
+
+  /**
+   * @return the JSON array for this list; if the list has not been decoded,
+   * this is the JSON it was constructed from.
+   */
+  public String toJSON() {
+    if (my_json != null) {
+      return my_json;
+    }
+    final StringBuilder sb = new StringBuilder(my_size * 8 + 2).append('[');
+    for (int i = 0; i < my_size; i++) {
+      if (i > 0) {
+        sb.append(',');
+      }
+      sb.append(my_values[i]);
+    }
+    return sb.append(']').toString();
+  }
+
+  /**
+   * Decodes the list, if it has not been decoded.
+   */
+  private void decode() {
+    if (my_json == null) {
+      return;
+    }
+    if (!parse(my_json)) {
+      // not in the form we write; let Gson make sense of it
+      final List<Long> list = new Gson().fromJson(my_json, LONG_LIST);
+      my_values = new long[Math.max(list.size(), INITIAL_CAPACITY)];
+      my_size = 0;
+      for (final Long l : list) {
+        my_values[my_size] = l;
+        my_size = my_size + 1;
+      }
+    }
+    my_json = null;
+  }
+
+  /**
+   * Parses a JSON array of integers, as written by toJSON() (whitespace is
+   * also allowed), into the elements of this list.
+   *
+   * @param the_json The JSON array.
+   * @return true if the array was parsed, false if it is in any other form.
+   */
+  @SuppressWarnings({"PMD.CyclomaticComplexity", "PMD.NPathComplexity"})
+  private boolean parse(final String the_json) {
+    final int length = the_json.length();
+    long[] values = new long[Math.max(length / 8, INITIAL_CAPACITY)];
+    int size = 0;
+    int i = skipWhitespace(the_json, 0);
+    if (i == length || the_json.charAt(i) != '[') {
+      return false;
+    }
+    i = skipWhitespace(the_json, i + 1);
+    if (i < length && the_json.charAt(i) == ']') {
+      i = i + 1;
+    } else {
+      boolean done = false;
+      while (!done) {
+        final boolean negative = i < length && the_json.charAt(i) == '-';
+        if (negative) {
+          i = i + 1;
+        }
+        final int start = i;
+        long value = 0;
+        while (i < length && Character.isDigit(the_json.charAt(i)) && i - start < 18) {
+          value = value * 10 + (the_json.charAt(i) - '0');
+          i = i + 1;
+        }
+        if (i == start || i < length && Character.isDigit(the_json.charAt(i))) {
+          // no digits, or too many to accumulate safely
+          return false;
+        }
+        if (size == values.length) {
+          values = Arrays.copyOf(values, size * 2);
+        }
+        values[size] = negative ? -value : value;
+        size = size + 1;
+        i = skipWhitespace(the_json, i);
+        if (i == length) {
+          return false;
+        } else if (the_json.charAt(i) == ']') {
+          done = true;
+        } else if (the_json.charAt(i) != ',') {
+          return false;
+        }
+        i = skipWhitespace(the_json, i + 1);
+      }
+    }
+    if (skipWhitespace(the_json, i) != length) {
+      return false;
+    }
+    my_values = values;
+    my_size = size;
+    return true;
+  }
+
+  /**
+   * @param the_string A string.
+   * @param the_index A position in the string.
+   * @return the first position at or after the_index that is not whitespace.
+   */
+  private static int skipWhitespace(final String the_string, final int the_index) {
+    int result = the_index;
+    while (result < the_string.length() &&
+           Character.isWhitespace(the_string.charAt(result))) {
+      result = result + 1;
+    }
+    return result;
+  }
+
+  /**
+   * Checks that an index refers to an element.
+   *
+   * @param the_index The index.
+   */
+  private void checkIndex(final int the_index) {
+    if (the_index < 0 || the_index >= my_size) {
+      throw new IndexOutOfBoundsException("index " + the_index + ", size " + my_size);
+    }
+  }
+
+  /**
+   * Gets an element without boxing it.
+   *
+   * @param the_index The index.
+   * @return the element.
+   */
+  public long getLong(final int the_index) {
+    decode();
+    checkIndex(the_index);
+    return my_values[the_index];
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Long get(final int the_index) {
+    return getLong(the_index);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int size() {
+    decode();
+    return my_size;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Long set(final int the_index, final Long the_value) {
+    final long value = the_value;
+    decode();
+    checkIndex(the_index);
+    final long result = my_values[the_index];
+    my_values[the_index] = value;
+    return result;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void add(final int the_index, final Long the_value) {
+    final long value = the_value;
+    decode();
+    if (the_index < 0 || the_index > my_size) {
+      throw new IndexOutOfBoundsException("index " + the_index + ", size " + my_size);
+    }
+    if (my_size == my_values.length) {
+      my_values = Arrays.copyOf(my_values, Math.max(my_size * 2, INITIAL_CAPACITY));
+    }
+    System.arraycopy(my_values, the_index, my_values, the_index + 1, my_size - the_index);
+    my_values[the_index] = value;
+    my_size = my_size + 1;
+    modCount = modCount + 1;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Long remove(final int the_index) {
+    decode();
+    checkIndex(the_index);
+    final long result = my_values[the_index];
+    System.arraycopy(my_values, the_index + 1, my_values, the_index,
+                     my_size - the_index - 1);
+    my_size = my_size - 1;
+    modCount = modCount + 1;
+    return result;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void clear() {
+    my_json = null;
+    if (my_values == null) {
+      my_values = new long[INITIAL_CAPACITY];
+    }
+    my_size = 0;
+    modCount = modCount + 1;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int indexOf(final Object the_object) {
+    if (the_object instanceof Long) {
+      final long value = (Long) the_object;
+      decode();
+      for (int i = 0; i < my_size; i++) {
+        if (my_values[i] == value) {
+          return i;
+        }
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean contains(final Object the_object) {
+    return indexOf(the_object) >= 0;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean equals(final Object the_other) {
+    if (this == the_other) {
+      return true;
+    }
+    if (!(the_other instanceof LazyLongList)) {
+      return super.equals(the_other);
+    }
+    final LazyLongList other = (LazyLongList) the_other;
+    if (my_json != null && my_json.equals(other.my_json)) {
+      return true;
+    }
+    decode();
+    other.decode();
+    if (my_size != other.my_size) {
+      return false;
+    }
+    for (int i = 0; i < my_size; i++) {
+      if (my_values[i] != other.my_values[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int hashCode() {
+    decode();
+    int result = 1;
+    for (int i = 0; i < my_size; i++) {
+      result = 31 * result + Long.hashCode(my_values[i]);
+    }
+    return result;
+  }
+}
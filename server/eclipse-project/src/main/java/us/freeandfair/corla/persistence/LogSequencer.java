@@ -0,0 +1,784 @@
+/*
+ * Colorado RLA System
+ */
+
+package us.freeandfair.corla.persistence;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.persistence.PersistenceException;
+
+import us.freeandfair.corla.Main;
+import us.freeandfair.corla.metrics.Metrics;
+import us.freeandfair.corla.model.LogEntry;
+import us.freeandfair.corla.model.PendingLogEntry;
+import us.freeandfair.corla.query.LogEntryQueries;
+import us.freeandfair.corla.util.ExponentialBackoffHelper;
+
+/**
+ * The single writer of the hash-chained log. Endpoints hand their log
+ * entries to the sequencer, which queues them in a bounded ring buffer; one
+ * thread takes them off in order, chains them (keeping the hash and ID of
+ * the tail of the chain in memory, so that the database is not asked for
+ * it on every request), and saves them in batches, one transaction per
+ * batch. Since it is the only writer, entries are chained and numbered in
+ * the order they were handed over, and the chain cannot fork.
+ *
+ * Each appended entry has a ticket that is completed when the entry is
+ * written (or given up on); endpoints wait for their tickets before they
+ * respond, so a response is not sent before its log entries are durable.
+ * A batch that cannot be saved is retried with backoff; if it keeps
+ * failing it is split, and a single entry that keeps failing is given up
+ * on and reported in the system log, so that one bad entry cannot stop the
+ * log. Appending waits a limited time for room in the queue.
+ *
+ * Entries describing a committed change are first saved as pending entries
+ * in the transaction making the change. The sequencer deletes a pending
+ * entry in the transaction that chains it, and periodically chains any
+ * pending entries that are left (because they were given up on, or the
+ * server stopped before writing them), so no committed change is left
+ * without its log entry.
+ */
+@SuppressWarnings("PMD.DoNotUseThreads")
+public final class LogSequencer {
+  /**
+   * The property giving the capacity of the queue.
+   */
+  public static final String QUEUE_SIZE_PROPERTY = "log_queue_size";
+
+  /**
+   * The property giving the longest time to wait for room in the queue,
+   * and for an entry to be written, in seconds.
+   */
+  public static final String TIMEOUT_PROPERTY = "log_write_timeout";
+
+  /**
+   * The default capacity of the queue.
+   */
+  private static final int DEFAULT_QUEUE_SIZE = 10000;
+
+  /**
+   * The default longest time to wait for room in the queue, and for an
+   * entry to be written, in seconds.
+   */
+  private static final long DEFAULT_TIMEOUT = 10;
+
+  /**
+   * The maximum number of entries saved in one transaction.
+   */
+  private static final int BATCH_SIZE = 500;
+
+  /**
+   * The number of failed attempts after which a batch of more than one
+   * entry is split in two.
+   */
+  private static final int SPLIT_ATTEMPTS = 2;
+
+  /**
+   * The number of failed attempts after which a single entry is given up.
+   */
+  private static final int MAX_ATTEMPTS = 8;
+
+  /**
+   * The default time between looks for pending entries that are left, in
+   * milliseconds.
+   */
+  private static final long RECOVERY_INTERVAL = 60000;
+
+  /**
+   * The time the writer waits for an entry before checking whether it has
+   * been stopped, in milliseconds.
+   */
+  private static final long POLL_TIMEOUT = 100;
+
+  /**
+   * The unit delay for retrying a batch, in milliseconds.
+   */
+  private static final long TRANSACTION_SLEEP_MSEC = 10;
+
+  /**
+   * The maximum delay for retrying a batch, in milliseconds.
+   */
+  private static final long MAX_RETRY_DELAY = 5000;
+
+  /**
+   * The time to wait at shutdown for queued entries to be written, in
+   * milliseconds.
+   */
+  private static final long SHUTDOWN_TIMEOUT = 10000;
+
+  /**
+   * The queued entries.
+   */
+  private final BlockingQueue<Pending> my_queue;
+
+  /**
+   * The longest time to wait for room in the queue, and for an entry to be
+   * written, in milliseconds.
+   */
+  private final long my_timeout;
+
+  /**
+   * The time between looks for pending entries that are left, in
+   * milliseconds.
+   */
+  private final long my_recovery_interval;
+
+  /**
+   * The store to which entries are written.
+   */
+  private final Store my_store;
+
+  /**
+   * The writer thread.
+   */
+  private final Thread my_writer;
+
+  /**
+   * Whether the writer should keep running.
+   */
+  @SuppressWarnings("PMD.AvoidUsingVolatile")
+  private volatile boolean my_running = true;
+
+  /**
+   * The ID of the last entry in the chain, or null if the chain is empty;
+   * used only by the writer.
+   */
+  private Long my_last_id;
+
+  /**
+   * The hash of the last entry in the chain, or null if the chain is empty;
+   * used only by the writer.
+   */
+  private String my_last_hash;
+
+  /**
+   * Whether the tail of the chain has been read from the store; used only
+   * by the writer.
+   */
+  private boolean my_tail_known;
+
+  /**
+   * Constructs a log sequencer and starts its writer.
+   *
+   * @param the_queue_size The capacity of the queue.
+   * @param the_timeout The longest time to wait for room in the queue, and
+   * for an entry to be written, in milliseconds.
+   * @param the_recovery_interval The time between looks for pending entries
+   * that are left, in milliseconds.
+   * @param the_store The store to which entries are written.
+   */
+  LogSequencer(final int the_queue_size, final long the_timeout,
+               final long the_recovery_interval, final Store the_store) {
+    my_queue = new ArrayBlockingQueue<>(the_queue_size);
+    my_timeout = the_timeout;
+    my_recovery_interval = the_recovery_interval;
+    my_store = the_store;
+    my_writer = new Thread(this::write, "log-sequencer");
+    my_writer.setDaemon(true);
+    my_writer.start();
+  }
+
+  /**
+   * Constructs a log sequencer, writing to the database, from the specified
+   * properties.
+   *
+   * @param the_properties The properties.
+   * @return the log sequencer.
+   */
+  static LogSequencer fromProperties(final Properties the_properties) {
+    int queue_size = DEFAULT_QUEUE_SIZE;
+    try {
+      queue_size = Integer.parseInt(the_properties.getProperty
+          (QUEUE_SIZE_PROPERTY, String.valueOf(DEFAULT_QUEUE_SIZE)));
+    } catch (final NumberFormatException e) {
+      Main.LOGGER.info("could not read property " + QUEUE_SIZE_PROPERTY +
+                       ", using default " + DEFAULT_QUEUE_SIZE);
+    }
+    long timeout = DEFAULT_TIMEOUT;
+    try {
+      timeout = Long.parseLong(the_properties.getProperty
+          (TIMEOUT_PROPERTY, String.valueOf(DEFAULT_TIMEOUT)));
+    } catch (final NumberFormatException e) {
+      Main.LOGGER.info("could not read property " + TIMEOUT_PROPERTY +
+                       ", using default " + DEFAULT_TIMEOUT);
+    }
+    return new LogSequencer(Math.max(BATCH_SIZE, queue_size),
+                            TimeUnit.SECONDS.toMillis(timeout), RECOVERY_INTERVAL,
+                            new DatabaseStore());
+  }
+
+  /**
+   * Appends a committed pending entry to the log, through the sequencer
+   * that writes to the database.
+   *
+   * @param the_pending_entry The pending entry.
+   * @return the ticket of the entry.
+   * @see #enqueue(PendingLogEntry)
+   */
+  public static CompletableFuture<Boolean> append(final PendingLogEntry the_pending_entry) {
+    return DefaultSequencer.INSTANCE.enqueue(the_pending_entry);
+  }
+
+  /**
+   * Appends an entry to the log, through the sequencer that writes to the
+   * database.
+   *
+   * @param the_result_code The result code, if any.
+   * @param the_information The information.
+   * @param the_authentication_data The authentication data, if any.
+   * @param the_client_host The client host, if any.
+   * @param the_timestamp The timestamp.
+   * @return the ticket of the entry.
+   * @see #enqueue(Integer, String, String, String, Instant)
+   */
+  public static CompletableFuture<Boolean> append(final Integer the_result_code,
+                                                  final String the_information,
+                                                  final String the_authentication_data,
+                                                  final String the_client_host,
+                                                  final Instant the_timestamp) {
+    return DefaultSequencer.INSTANCE.enqueue(the_result_code, the_information,
+                                             the_authentication_data, the_client_host,
+                                             the_timestamp);
+  }
+
+  /**
+   * Waits for the specified tickets, from the sequencer that writes to the
+   * database.
+   *
+   * @param the_tickets The tickets.
+   * @return true if all the entries were written, false otherwise.
+   * @see #await(List)
+   */
+  public static boolean awaitWritten(final List<CompletableFuture<Boolean>> the_tickets) {
+    return DefaultSequencer.INSTANCE.await(the_tickets);
+  }
+
+  /**
+   * Queues an entry to be written by the writer thread, waiting a limited
+   * time for room in the queue. If there is no room in time, the entry is
+   * given up on.
+   *
+   * @param the_result_code The result code, if any.
+   * @param the_information The information.
+   * @param the_authentication_data The authentication data, if any.
+   * @param the_client_host The client host, if any.
+   * @param the_timestamp The timestamp.
+   * @return the ticket of the entry, which is completed with true when the
+   * entry is written and false if it is given up on.
+   */
+  CompletableFuture<Boolean> enqueue(final Integer the_result_code,
+                                     final String the_information,
+                                     final String the_authentication_data,
+                                     final String the_client_host,
+                                     final Instant the_timestamp) {
+    return enqueue(new Pending(null, the_result_code, the_information,
+                               the_authentication_data, the_client_host, the_timestamp));
+  }
+
+  /**
+   * Queues a committed pending entry to be written by the writer thread,
+   * waiting a limited time for room in the queue. If there is no room in
+   * time, the entry is given up on, and is written when the pending entries
+   * that are left are next looked for.
+   *
+   * @param the_pending_entry The pending entry.
+   * @return the ticket of the entry, which is completed with true when the
+   * entry is written and false if it is given up on.
+   */
+  CompletableFuture<Boolean> enqueue(final PendingLogEntry the_pending_entry) {
+    return enqueue(new Pending(the_pending_entry));
+  }
+
+  /**
+   * Queues an entry to be written by the writer thread, waiting a limited
+   * time for room in the queue.
+   *
+   * @param the_entry The entry.
+   * @return the ticket of the entry.
+   */
+  private CompletableFuture<Boolean> enqueue(final Pending the_entry) {
+    boolean queued = false;
+    try {
+      queued = my_queue.offer(the_entry, my_timeout, TimeUnit.MILLISECONDS);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (!queued) {
+      giveUp(the_entry, "the log queue is full");
+    }
+    return the_entry.my_ticket;
+  }
+
+  /**
+   * Waits a limited time for the specified tickets to be completed.
+   *
+   * @param the_tickets The tickets.
+   * @return true if all the entries were written, false if any was given
+   * up on or not written in time.
+   */
+  boolean await(final List<CompletableFuture<Boolean>> the_tickets) {
+    final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(my_timeout);
+    boolean result = true;
+    for (final CompletableFuture<Boolean> ticket : the_tickets) {
+      try {
+        result &= ticket.get(Math.max(0, deadline - System.nanoTime()),
+                             TimeUnit.NANOSECONDS);
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        result = false;
+      } catch (final ExecutionException | TimeoutException e) {
+        result = false;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * The body of the writer thread. Takes entries off the queue in batches
+   * and saves each batch, retrying it with backoff; a batch that keeps
+   * failing is split in two, and a single entry that keeps failing is given
+   * up on. Entries are saved in the order they were queued. Pending
+   * entries that are left are looked for when the writer starts, and then
+   * periodically.
+   */
+  private void write() {
+    final Deque<List<Pending>> batches = new ArrayDeque<>();
+    int attempts = 0;
+    long next_recovery = System.nanoTime();
+    // whether the last batch was of entries found left, so that the queue
+    // is served before more are looked for
+    boolean recovered_last = false;
+    while (my_running || !my_queue.isEmpty() || !batches.isEmpty()) {
+      if (batches.isEmpty() && my_running && next_recovery - System.nanoTime() <= 0 &&
+          (!recovered_last || my_queue.isEmpty())) {
+        final List<Pending> left = recover();
+        if (left == null || left.size() < BATCH_SIZE) {
+          next_recovery =
+              System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(my_recovery_interval);
+        }
+        if (left != null && !left.isEmpty()) {
+          batches.add(left);
+          recovered_last = true;
+        }
+      }
+      if (batches.isEmpty()) {
+        recovered_last = false;
+        final List<Pending> batch = new ArrayList<>(BATCH_SIZE);
+        try {
+          final Pending first = my_queue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+          if (first == null) {
+            continue;
+          }
+          batch.add(first);
+          my_queue.drainTo(batch, BATCH_SIZE - 1);
+        } catch (final InterruptedException e) {
+          // it's OK to be interrupted
+          continue;
+        }
+        batches.add(batch);
+      }
+      final List<Pending> batch = batches.peekFirst();
+      if (save(batch)) {
+        batches.removeFirst();
+        attempts = 0;
+        for (final Pending entry : batch) {
+          entry.my_ticket.complete(true);
+        }
+      } else {
+        attempts = attempts + 1;
+        Metrics.TRANSACTION_RETRIES.inc("log");
+        if (batch.size() > 1 && attempts >= SPLIT_ATTEMPTS) {
+          // save the halves separately, to find any entry that cannot be saved
+          batches.removeFirst();
+          batches.addFirst(new ArrayList<>(batch.subList(batch.size() / 2, batch.size())));
+          batches.addFirst(new ArrayList<>(batch.subList(0, batch.size() / 2)));
+          attempts = 0;
+        } else if (attempts >= MAX_ATTEMPTS) {
+          batches.removeFirst();
+          giveUp(batch.get(0), "it could not be saved after " + attempts + " attempts");
+          attempts = 0;
+        } else {
+          backOff(attempts);
+        }
+      }
+    }
+  }
+
+  /**
+   * Sleeps before retrying a batch.
+   *
+   * @param the_attempts The number of failed attempts so far.
+   */
+  private static void backOff(final int the_attempts) {
+    try {
+      Thread.sleep(Math.min(MAX_RETRY_DELAY, ExponentialBackoffHelper.
+                            exponentialBackoff(the_attempts, TRANSACTION_SLEEP_MSEC)));
+    } catch (final InterruptedException e) {
+      // it's OK to be interrupted
+    }
+  }
+
+  /**
+   * Gives up on an entry, reporting it in full in the system log. A
+   * pending entry is written when the pending entries that are left are
+   * next looked for; any other entry can only be recovered by hand.
+   *
+   * @param the_entry The entry.
+   * @param the_reason The reason.
+   */
+  private static void giveUp(final Pending the_entry, final String the_reason) {
+    final String outcome;
+    if (the_entry.my_pending_id == null) {
+      outcome = "log entry not written because ";
+      Metrics.LOG_ENTRIES_DROPPED.inc();
+    } else {
+      outcome = "pending log entry " + the_entry.my_pending_id + " not written yet because ";
+    }
+    Main.LOGGER.error(outcome + the_reason + ": result code " +
+                      the_entry.my_result_code + ", information " +
+                      the_entry.my_information + ", authentication data " +
+                      the_entry.my_authentication_data + ", client host " +
+                      the_entry.my_client_host + ", timestamp " + the_entry.my_timestamp);
+    the_entry.my_ticket.complete(false);
+  }
+
+  /**
+   * Reads the oldest pending entries that are left, to be chained.
+   *
+   * @return up to BATCH_SIZE pending entries, in the order they were saved,
+   * or null if they could not be read.
+   */
+  // any failure to read must leave the writer running
+  @SuppressWarnings("PMD.AvoidCatchingGenericException")
+  private List<Pending> recover() {
+    try {
+      my_store.begin();
+      final List<Pending> result = new ArrayList<>();
+      for (final PendingLogEntry entry : my_store.pending(BATCH_SIZE)) {
+        result.add(new Pending(entry));
+      }
+      my_store.commit();
+      if (!result.isEmpty()) {
+        Main.LOGGER.info("chaining " + result.size() + " pending log entries");
+      }
+      return result;
+    } catch (final RuntimeException e) {
+      Main.LOGGER.error("could not read pending log entries: " + e);
+      try {
+        my_store.rollback();
+      } catch (final RuntimeException ex) {
+        // not much we can do about it
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Chains and saves a batch of entries in one transaction. The tail of
+   * the chain is advanced only if the transaction commits, so a failed
+   * batch is chained again when it is retried, from the tail as read
+   * again from the store (in case the failure hid a successful commit).
+   * A pending entry is deleted in the same transaction, and skipped if it
+   * has already been chained.
+   *
+   * @param the_batch The entries, in order.
+   * @return true if the batch was saved, false otherwise.
+   */
+  // any failure to save must leave the writer running
+  @SuppressWarnings("PMD.AvoidCatchingGenericException")
+  private boolean save(final List<Pending> the_batch) {
+    try {
+      my_store.begin();
+      if (!my_tail_known) {
+        final Object[] tail = my_store.tail();
+        if (tail == null) {
+          my_last_id = null;
+          my_last_hash = null;
+        } else {
+          my_last_id = (Long) tail[0];
+          my_last_hash = (String) tail[1];
+        }
+        my_tail_known = true;
+      }
+      LogEntry previous = null;
+      if (my_last_id != null) {
+        previous = my_store.reference(my_last_id);
+      }
+      String previous_hash = my_last_hash;
+      for (final Pending entry : the_batch) {
+        if (entry.my_pending_id != null && !my_store.claim(entry.my_pending_id)) {
+          // already chained, when it was found left pending
+          continue;
+        }
+        final LogEntry chained =
+            new LogEntry(entry.my_result_code, entry.my_information,
+                         entry.my_authentication_data, entry.my_client_host,
+                         entry.my_timestamp, previous, previous_hash);
+        my_store.save(chained);
+        previous = chained;
+        previous_hash = chained.hash();
+      }
+      my_store.commit();
+      if (previous != null) {
+        my_last_id = previous.id();
+        my_last_hash = previous_hash;
+      }
+      return true;
+    } catch (final RuntimeException e) {
+      Main.LOGGER.error("could not save " + the_batch.size() + " log entries: " + e);
+      my_tail_known = false;
+      try {
+        my_store.rollback();
+      } catch (final RuntimeException ex) {
+        // not much we can do about it
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Stops the writer, waiting a limited time for the entries already
+   * queued to be written.
+   */
+  void stop() {
+    my_running = false;
+    try {
+      my_writer.join(SHUTDOWN_TIMEOUT);
+    } catch (final InterruptedException e) {
+      // shutting down anyway
+    }
+    if (!my_queue.isEmpty()) {
+      Main.LOGGER.error(my_queue.size() + " log entries were not written at shutdown");
+    }
+  }
+
+  /**
+   * The store to which log entries are written, in transactions.
+   */
+  interface Store {
+    /**
+     * Begins a transaction.
+     */
+    void begin();
+
+    /**
+     * @return an array holding the ID and hash of the last entry, or null
+     * if there are no entries.
+     */
+    Object[] tail();
+
+    /**
+     * @param the_id The ID of a saved entry.
+     * @return a reference to the entry, which need not be loaded.
+     */
+    LogEntry reference(Long the_id);
+
+    /**
+     * Saves an entry, assigning its ID.
+     *
+     * @param the_entry The entry.
+     */
+    void save(LogEntry the_entry);
+
+    /**
+     * @param the_max_results The maximum number of entries.
+     * @return the oldest pending entries, in the order they were saved.
+     */
+    List<PendingLogEntry> pending(int the_max_results);
+
+    /**
+     * Deletes a pending entry, so that it is chained only once.
+     *
+     * @param the_id The ID of the pending entry.
+     * @return true if the pending entry was deleted, false if it did not
+     * exist.
+     */
+    boolean claim(Long the_id);
+
+    /**
+     * Commits the transaction.
+     */
+    void commit();
+
+    /**
+     * Rolls back the transaction, if it can be rolled back.
+     */
+    void rollback();
+  }
+
+  /**
+   * The store that writes log entries to the database.
+   */
+  private static final class DatabaseStore implements Store {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void begin() {
+      Persistence.beginTransaction();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object[] tail() {
+      return LogEntryQueries.lastIDAndHash();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LogEntry reference(final Long the_id) {
+      // a reference to the entry, which is not loaded
+      return Persistence.currentSession().load(LogEntry.class, the_id);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void save(final LogEntry the_entry) {
+      Persistence.save(the_entry);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<PendingLogEntry> pending(final int the_max_results) {
+      return LogEntryQueries.pending(the_max_results);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean claim(final Long the_id) {
+      return LogEntryQueries.deletePending(the_id);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void commit() {
+      Persistence.commitTransaction();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void rollback() {
+      if (Persistence.canTransactionRollback()) {
+        try {
+          Persistence.rollbackTransaction();
+        } catch (final PersistenceException e) {
+          // not much we can do about it
+        }
+      }
+    }
+  }
+
+  /**
+   * The holder of the sequencer that writes to the database, which is
+   * started when it is first used.
+   */
+  private static final class DefaultSequencer {
+    /**
+     * The sequencer.
+     */
+    static final LogSequencer INSTANCE = fromProperties(Main.properties());
+
+    static {
+      Runtime.getRuntime().addShutdownHook(new Thread(INSTANCE::stop));
+    }
+  }
+
+  /**
+   * A log entry waiting to be chained.
+   */
+  private static final class Pending {
+    /**
+     * The ID of the pending entry saved for this entry, or null if there is
+     * none.
+     */
+    private final Long my_pending_id;
+
+    /**
+     * The result code, if any.
+     */
+    private final Integer my_result_code;
+
+    /**
+     * The information.
+     */
+    private final String my_information;
+
+    /**
+     * The authentication data, if any.
+     */
+    private final String my_authentication_data;
+
+    /**
+     * The client host, if any.
+     */
+    private final String my_client_host;
+
+    /**
+     * The timestamp.
+     */
+    private final Instant my_timestamp;
+
+    /**
+     * The ticket, completed when the entry is written or given up on.
+     */
+    private final CompletableFuture<Boolean> my_ticket = new CompletableFuture<>();
+
+    /**
+     * Constructs a pending entry.
+     *
+     * @param the_pending_id The ID of the pending entry saved for this
+     * entry, or null if there is none.
+     * @param the_result_code The result code, if any.
+     * @param the_information The information.
+     * @param the_authentication_data The authentication data, if any.
+     * @param the_client_host The client host, if any.
+     * @param the_timestamp The timestamp.
+     */
+    Pending(final Long the_pending_id, final Integer the_result_code,
+            final String the_information, final String the_authentication_data,
+            final String the_client_host, final Instant the_timestamp) {
+      my_pending_id = the_pending_id;
+      my_result_code = the_result_code;
+      my_information = the_information;
+      my_authentication_data = the_authentication_data;
+      my_client_host = the_client_host;
+      my_timestamp = LogEntry.truncate(the_timestamp);
+    }
+
+    /**
+     * Constructs a pending entry for a saved pending entry.
+     *
+     * @param the_entry The saved pending entry.
+     */
+    Pending(final PendingLogEntry the_entry) {
+      this(the_entry.id(), the_entry.resultCode(), the_entry.information(),
+           the_entry.authenticationData(), the_entry.clientHost(), the_entry.timestamp());
+    }
+  }
+}
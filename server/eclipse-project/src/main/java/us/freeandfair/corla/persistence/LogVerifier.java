@@ -0,0 +1,532 @@
+/*
+ * Colorado RLA System
+ */
+
+package us.freeandfair.corla.persistence;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.persistence.PersistenceException;
+
+import us.freeandfair.corla.Main;
+import us.freeandfair.corla.model.LogCheckpoint;
+import us.freeandfair.corla.model.LogEntry;
+import us.freeandfair.corla.query.LogCheckpointQueries;
+import us.freeandfair.corla.query.LogEntryQueries;
+
+/**
+ * Verifies the log hash chain. The log is read in ID order, in chunks of
+ * entries each carrying the stored hash of its previous entry; since each
+ * entry can then be checked on its own, the chunks are hashed in parallel
+ * while the next ones are read.
+ *
+ * A successful verification is recorded as a checkpoint signed with a key
+ * from the system properties (HMAC-SHA256). A later verification starts
+ * after the last checkpoint whose signature is valid and whose log entry
+ * still has the recorded hash, since that hash covers every entry before
+ * it; a full verification ignores checkpoints, and re-hashes every entry.
+ */
+@SuppressWarnings({"PMD.DoNotUseThreads", "PMD.AvoidCatchingGenericException"})
+public final class LogVerifier {
+  /**
+   * The property giving the key used to sign checkpoints.
+   */
+  public static final String KEY_PROPERTY = "log_checkpoint_key";
+
+  /**
+   * The property giving the interval between scheduled verifications, in
+   * minutes; 0 disables them.
+   */
+  public static final String INTERVAL_PROPERTY = "log_checkpoint_interval";
+
+  /**
+   * The default interval between scheduled verifications, in minutes.
+   */
+  private static final long DEFAULT_INTERVAL = 60;
+
+  /**
+   * The number of log entries in a chunk.
+   */
+  private static final int CHUNK_SIZE = 5000;
+
+  /**
+   * The number of worker threads.
+   */
+  private static final int PARALLELISM =
+      Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+  /**
+   * The signature algorithm.
+   */
+  private static final String SIGNATURE_ALGORITHM = "HmacSHA256";
+
+  /**
+   * The worker threads that hash chunks.
+   */
+  private static final ExecutorService WORKERS =
+      Executors.newFixedThreadPool(PARALLELISM, daemonFactory("log-verifier"));
+
+  /**
+   * The thread on which scheduled verifications run.
+   */
+  private static final ScheduledExecutorService SCHEDULER =
+      Executors.newSingleThreadScheduledExecutor(daemonFactory("log-checkpointer"));
+
+  /**
+   * Private constructor to prevent instantiation.
+   */
+  private LogVerifier() {
+    // do nothing
+  }
+
+  /**
+   * Creates a thread factory that makes named daemon threads.
+   *
+   * @param the_prefix The thread name prefix.
+   * @return the thread factory.
+   */
+  private static ThreadFactory daemonFactory(final String the_prefix) {
+    final AtomicInteger count = new AtomicInteger();
+    return runnable -> {
+      final Thread thread = new Thread(runnable, the_prefix + "-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  /**
+   * Schedules periodic verifications, each in its own transaction, as set
+   * by the system properties.
+   *
+   * @param the_properties The properties.
+   */
+  public static void schedule(final Properties the_properties) {
+    long interval = DEFAULT_INTERVAL;
+    try {
+      interval = Long.parseLong(the_properties.getProperty
+          (INTERVAL_PROPERTY, String.valueOf(DEFAULT_INTERVAL)));
+    } catch (final NumberFormatException e) {
+      Main.LOGGER.info("could not read property " + INTERVAL_PROPERTY +
+                       ", using default " + DEFAULT_INTERVAL);
+    }
+    if (interval > 0) {
+      SCHEDULER.scheduleWithFixedDelay(LogVerifier::scheduledVerification,
+                                       interval, interval, TimeUnit.MINUTES);
+    }
+  }
+
+  /**
+   * Runs a scheduled verification.
+   */
+  private static void scheduledVerification() {
+    try {
+      Persistence.beginTransaction();
+      final Result result = verify(false);
+      Persistence.commitTransaction();
+      if (result.valid()) {
+        Main.LOGGER.info("verified " + result.my_entries_verified + " log entries");
+      } else {
+        Main.LOGGER.error("log verification failed: " + result);
+      }
+    } catch (final RuntimeException e) {
+      Main.LOGGER.error("could not verify log: " + e);
+      try {
+        if (Persistence.canTransactionRollback()) {
+          Persistence.rollbackTransaction();
+        }
+      } catch (final PersistenceException ex) {
+        // not much we can do about it
+      }
+    }
+  }
+
+  /**
+   * Verifies the log and, if it is valid and has grown, records a new
+   * checkpoint. This must be called within a transaction.
+   *
+   * @param the_full true to verify every entry, false to start from the
+   * last valid checkpoint.
+   * @return the result.
+   * @exception PersistenceException if the log cannot be read.
+   */
+  public static synchronized Result verify(final boolean the_full) {
+    final Result result = new Result();
+    final Mac mac = mac();
+    LogCheckpoint start = null;
+    if (!the_full) {
+      start = LogCheckpointQueries.latest();
+      if (start != null && !checkpointValid(mac, start)) {
+        Main.LOGGER.error("rejected log checkpoint " + start);
+        result.my_checkpoint_rejected = true;
+        start = null;
+      }
+    }
+
+    Long after = null;
+    long total = 0;
+    if (start != null) {
+      after = start.logEntryID();
+      total = start.entryCount();
+      result.my_start_entry = after;
+    }
+    // the expected previous entry of the next entry, for detecting forks
+    Long expected_previous = after;
+    String last_hash = null;
+
+    final Deque<Future<Chunk>> pending = new ArrayDeque<>();
+    boolean more = true;
+    while (more || !pending.isEmpty()) {
+      if (more && pending.size() < 2 * PARALLELISM) {
+        final List<Object[]> rows = LogEntryQueries.chain(after, CHUNK_SIZE);
+        more = rows.size() == CHUNK_SIZE;
+        if (!rows.isEmpty()) {
+          after = (Long) rows.get(rows.size() - 1)[0];
+          pending.add(WORKERS.submit(() -> Chunk.verify(rows)));
+        }
+      } else {
+        final Chunk chunk = next(pending);
+        result.add(chunk, expected_previous);
+        expected_previous = chunk.my_last_id;
+        last_hash = chunk.my_last_hash;
+      }
+    }
+
+    total = total + result.my_entries_verified;
+    result.my_total_entries = total;
+    // a fork or gap in the chain is as much a sign of tampering as a wrong
+    // hash, so the log is not checkpointed past one
+    result.my_valid = result.my_invalid_entries == 0 && result.my_forks == 0 &&
+                      !result.my_checkpoint_rejected;
+    if (result.valid() && result.my_entries_verified > 0 && mac != null) {
+      // truncated as it is stored, so the signature verifies once read back
+      final Instant now = LogEntry.truncate(Instant.now());
+      final String signed = LogCheckpoint.signedData(expected_previous, last_hash,
+                                                     total, now);
+      final LogCheckpoint checkpoint =
+          new LogCheckpoint(expected_previous, last_hash, total, now, sign(mac, signed));
+      Persistence.save(checkpoint);
+      result.my_checkpoint_entry = expected_previous;
+    }
+    return result;
+  }
+
+  /**
+   * Waits for the oldest pending chunk.
+   *
+   * @param the_pending The pending chunks.
+   * @return the chunk.
+   */
+  private static Chunk next(final Deque<Future<Chunk>> the_pending) {
+    final Future<Chunk> future = the_pending.poll();
+    try {
+      return future.get();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted while verifying log", e);
+    } catch (final ExecutionException e) {
+      throw new IllegalStateException("could not verify log", e.getCause());
+    }
+  }
+
+  /**
+   * Checks a checkpoint: its signature must be valid, and its log entry
+   * must still have the recorded hash.
+   *
+   * @param the_mac The signer, or null if there is no signing key.
+   * @param the_checkpoint The checkpoint.
+   * @return true if the checkpoint is valid, false otherwise.
+   */
+  private static boolean checkpointValid(final Mac the_mac,
+                                         final LogCheckpoint the_checkpoint) {
+    if (the_mac == null) {
+      return false;
+    }
+    final byte[] expected =
+        sign(the_mac, the_checkpoint.signedData()).getBytes(StandardCharsets.UTF_8);
+    final byte[] actual = the_checkpoint.signature().getBytes(StandardCharsets.UTF_8);
+    return MessageDigest.isEqual(expected, actual) &&
+           the_checkpoint.logEntryHash().equals(LogEntryQueries.hash
+                                                  (the_checkpoint.logEntryID()));
+  }
+
+  /**
+   * @return a signer keyed with the checkpoint key from the system
+   * properties, or null if there is no key.
+   */
+  private static Mac mac() {
+    final String key = Main.properties().getProperty(KEY_PROPERTY);
+    if (key == null || key.isEmpty()) {
+      Main.LOGGER.info("no " + KEY_PROPERTY + " property, log checkpoints are not used");
+      return null;
+    }
+    try {
+      final Mac result = Mac.getInstance(SIGNATURE_ALGORITHM);
+      result.init(new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8),
+                                    SIGNATURE_ALGORITHM));
+      return result;
+    } catch (final GeneralSecurityException e) {
+      Main.LOGGER.error("could not use " + SIGNATURE_ALGORITHM + ": " + e);
+      return null;
+    }
+  }
+
+  /**
+   * Signs data.
+   *
+   * @param the_mac The signer.
+   * @param the_data The data.
+   * @return the signature, as a hexadecimal string.
+   */
+  private static String sign(final Mac the_mac, final String the_data) {
+    final StringBuilder sb = new StringBuilder();
+    for (final byte b : the_mac.doFinal(the_data.getBytes(StandardCharsets.UTF_8))) {
+      sb.append(String.format("%02X", b));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * The result of verifying a chunk of log entries.
+   */
+  private static final class Chunk {
+    /**
+     * The number of entries.
+     */
+    private int my_entries;
+
+    /**
+     * The number of entries whose hashes are wrong.
+     */
+    private int my_invalid_entries;
+
+    /**
+     * The ID of the first entry whose hash is wrong, if any.
+     */
+    private Long my_first_invalid_id;
+
+    /**
+     * The number of entries, after the first, whose previous entry is not
+     * the entry before them.
+     */
+    private int my_forks;
+
+    /**
+     * The ID of the previous entry of the first entry.
+     */
+    private Long my_first_previous_id;
+
+    /**
+     * The ID of the last entry.
+     */
+    private Long my_last_id;
+
+    /**
+     * The hash of the last entry.
+     */
+    private String my_last_hash;
+
+    /**
+     * Verifies a chunk of entries, as returned by LogEntryQueries.chain().
+     *
+     * @param the_rows The entries.
+     * @return the result.
+     */
+    static Chunk verify(final List<Object[]> the_rows) {
+      final Chunk result = new Chunk();
+      result.my_first_previous_id = (Long) the_rows.get(0)[5];
+      Long previous_id = result.my_first_previous_id;
+      for (final Object[] row : the_rows) {
+        final Long id = (Long) row[0];
+        final String hash = (String) row[4];
+        final String computed =
+            LogEntry.chainHash((Integer) row[1], (String) row[2], (Instant) row[3],
+                               (String) row[6]);
+        if (!computed.equals(hash)) {
+          result.my_invalid_entries = result.my_invalid_entries + 1;
+          if (result.my_first_invalid_id == null) {
+            result.my_first_invalid_id = id;
+          }
+        }
+        if (result.my_entries > 0 && !previous_id.equals(row[5])) {
+          result.my_forks = result.my_forks + 1;
+        }
+        previous_id = id;
+        result.my_entries = result.my_entries + 1;
+        result.my_last_id = id;
+        result.my_last_hash = hash;
+      }
+      return result;
+    }
+  }
+
+  /**
+   * The result of a verification.
+   */
+  public static final class Result {
+    /**
+     * Whether every entry verified has the right hash and follows the
+     * entry before it, and no checkpoint was rejected.
+     */
+    private boolean my_valid;
+
+    /**
+     * The number of entries verified.
+     */
+    private long my_entries_verified;
+
+    /**
+     * The number of entries covered, including those covered by the
+     * checkpoint the verification started from.
+     */
+    private long my_total_entries;
+
+    /**
+     * The number of entries whose hashes are wrong.
+     */
+    private long my_invalid_entries;
+
+    /**
+     * The ID of the first entry whose hash is wrong, if any.
+     */
+    private Long my_first_invalid_entry;
+
+    /**
+     * The number of entries whose previous entry is not the entry before
+     * them; the chain forked there, as could happen when entries were
+     * written by concurrent requests.
+     */
+    private long my_forks;
+
+    /**
+     * The ID of the entry the verification started after, if it started
+     * from a checkpoint.
+     */
+    private Long my_start_entry;
+
+    /**
+     * Whether the latest checkpoint was rejected.
+     */
+    private boolean my_checkpoint_rejected;
+
+    /**
+     * The ID of the entry of the new checkpoint, if one was recorded.
+     */
+    private Long my_checkpoint_entry;
+
+    /**
+     * Adds the result of a chunk, which follows those already added.
+     *
+     * @param the_chunk The chunk.
+     * @param the_expected_previous The ID of the entry before the chunk.
+     */
+    void add(final Chunk the_chunk, final Long the_expected_previous) {
+      my_entries_verified = my_entries_verified + the_chunk.my_entries;
+      my_invalid_entries = my_invalid_entries + the_chunk.my_invalid_entries;
+      if (my_first_invalid_entry == null) {
+        my_first_invalid_entry = the_chunk.my_first_invalid_id;
+      }
+      my_forks = my_forks + the_chunk.my_forks;
+      if (the_expected_previous == null ? the_chunk.my_first_previous_id != null :
+          !the_expected_previous.equals(the_chunk.my_first_previous_id)) {
+        my_forks = my_forks + 1;
+      }
+    }
+
+    /**
+     * @return true if every entry verified has the right hash and follows
+     * the entry before it, and no checkpoint was rejected, false otherwise.
+     */
+    public boolean valid() {
+      return my_valid;
+    }
+
+    /**
+     * @return the number of entries verified.
+     */
+    public long entriesVerified() {
+      return my_entries_verified;
+    }
+
+    /**
+     * @return the number of entries covered, including those covered by
+     * the checkpoint the verification started from.
+     */
+    public long totalEntries() {
+      return my_total_entries;
+    }
+
+    /**
+     * @return the number of entries whose hashes are wrong.
+     */
+    public long invalidEntries() {
+      return my_invalid_entries;
+    }
+
+    /**
+     * @return the ID of the first entry whose hash is wrong, or null if
+     * there is none.
+     */
+    public Long firstInvalidEntry() {
+      return my_first_invalid_entry;
+    }
+
+    /**
+     * @return the number of entries whose previous entry is not the entry
+     * before them.
+     */
+    public long forks() {
+      return my_forks;
+    }
+
+    /**
+     * @return the ID of the entry the verification started after, or null
+     * if it did not start from a checkpoint.
+     */
+    public Long startEntry() {
+      return my_start_entry;
+    }
+
+    /**
+     * @return true if the latest checkpoint was rejected, false otherwise.
+     */
+    public boolean checkpointRejected() {
+      return my_checkpoint_rejected;
+    }
+
+    /**
+     * @return the ID of the entry of the new checkpoint, or null if none
+     * was recorded.
+     */
+    public Long checkpointEntry() {
+      return my_checkpoint_entry;
+    }
+
+    /**
+     * @return a String representation of this result.
+     */
+    @Override
+    public String toString() {
+      return "Result [valid=" + my_valid + ", entries_verified=" + my_entries_verified +
+             ", invalid_entries=" + my_invalid_entries + ", first_invalid_entry=" +
+             my_first_invalid_entry + ", forks=" + my_forks + ", checkpoint_rejected=" +
+             my_checkpoint_rejected + "]";
+    }
+  }
+}
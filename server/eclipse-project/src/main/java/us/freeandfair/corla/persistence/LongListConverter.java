@@ -11,19 +11,15 @@
 
 package us.freeandfair.corla.persistence;
 
-import java.lang.reflect.Type;
 import java.util.List;
 
 import javax.persistence.AttributeConverter;
 import javax.persistence.Converter;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
-
 /**
- * A converter between lists of Integers and JSON representations of such lists,
- * for database efficiency.
+ * A converter between lists of Longs and JSON representations of such lists,
+ * for database efficiency. Lists read from the database are decoded only
+ * when they are first used (see LazyLongList).
  * 
  * @author Daniel M. Zimmerman <dmz@freeandfair.us>
  * @version 1.0.0
@@ -32,34 +28,33 @@ import com.google.gson.reflect.TypeToken;
 @SuppressWarnings("PMD.AtLeastOneConstructor")
 public class LongListConverter implements AttributeConverter<List<Long>, String> {
   /**
-   * The type information for a list of Long.
-   */
-  private static final Type LONG_LIST = new TypeToken<List<Long>>() { }.getType();
-  
-  /**
-   * Our Gson instance, which does not do pretty-printing (unlike the global
-   * one defined in Main).
+   * The JSON representation of a null list.
    */
-  private static final Gson GSON = 
-      new GsonBuilder().serializeNulls().disableHtmlEscaping().create();
-  
+  private static final String NULL = "null";
+
   /**
-   * Converts the specified list of Strings to a database column entry.
+   * Converts the specified list of Longs to a database column entry.
    * 
-   * @param the_list The list of Strings.
+   * @param the_list The list of Longs.
    */
   @Override
   public String convertToDatabaseColumn(final List<Long> the_list) {
-    return GSON.toJson(the_list); 
+    if (the_list == null) {
+      return NULL;
+    }
+    return LazyLongList.toJSON(the_list); 
   }
 
   /**
-   * Converts the specified database column entry to a list of strings.
+   * Converts the specified database column entry to a list of Longs.
    * 
    * @param the_column The column entry.
    */
   @Override
   public List<Long> convertToEntityAttribute(final String the_column) {
-    return GSON.fromJson(the_column, LONG_LIST);
+    if (the_column == null || NULL.equals(the_column.trim())) {
+      return null;
+    }
+    return new LazyLongList(the_column);
   }
 }
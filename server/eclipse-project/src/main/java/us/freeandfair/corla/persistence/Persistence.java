@@ -15,6 +15,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
 import java.sql.Blob;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -30,6 +31,10 @@ import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
 
+import com.mchange.v2.c3p0.C3P0Registry;
+import com.mchange.v2.c3p0.PooledDataSource;
+
+import org.hibernate.FlushMode;
 import org.hibernate.Hibernate;
 import org.hibernate.HibernateException;
 import org.hibernate.ObjectNotFoundException;
@@ -41,10 +46,17 @@ import org.hibernate.boot.MetadataSources;
 import org.hibernate.boot.registry.StandardServiceRegistry;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
 import org.hibernate.cfg.Environment;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
 import org.hibernate.query.Query;
 import org.hibernate.resource.transaction.spi.TransactionStatus;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
 
 import us.freeandfair.corla.Main;
+import us.freeandfair.corla.metrics.Gauge;
+import us.freeandfair.corla.metrics.Metrics;
 
 /**
  * Manages persistence through Hibernate, and provides several utility methods.
@@ -266,8 +278,11 @@ public final class Persistence {
       // empty composite objects
       settings.put(Environment.CREATE_EMPTY_COMPOSITES_ENABLED, TRUE);
 
-      // statistics
-      settings.put(Environment.GENERATE_STATISTICS, FALSE);
+      // statistics (which include the hit counts of the second-level cache),
+      // and a count of the SQL statements prepared
+      settings.put(Environment.GENERATE_STATISTICS,
+                   system_properties.getProperty("hibernate.generate_statistics", FALSE));
+      settings.put(Environment.STATEMENT_INSPECTOR, StatementCounter.class.getName());
 
       // apply settings
       rb.applySettings(settings);
@@ -301,6 +316,17 @@ public final class Persistence {
 
       // create session factory
       session_factory = metadata.getSessionFactoryBuilder().build();
+
+      // report committed entity changes to interested caches
+      final EventListenerRegistry listeners =
+          ((SessionFactoryImplementor) session_factory).getServiceRegistry().
+          getService(EventListenerRegistry.class);
+      final EntityChangeNotifier notifier = new EntityChangeNotifier();
+      listeners.appendListeners(EventType.POST_COMMIT_INSERT, notifier);
+      listeners.appendListeners(EventType.POST_COMMIT_UPDATE, notifier);
+      listeners.appendListeners(EventType.POST_COMMIT_DELETE, notifier);
+
+      registerMetrics();
       Main.LOGGER.debug("started Hibernate");
     } catch (final RuntimeException e) {
       Main.LOGGER.error("could not start Hibernate, persistence is disabled: " + e);
@@ -310,6 +336,84 @@ public final class Persistence {
     }
   }
 
+  /**
+   * Registers the metrics of the connection pool and, if statistics are
+   * enabled, of the second-level cache.
+   */
+  private static void registerMetrics() {
+    Metrics.register(new Gauge("corla_db_pool_connections",
+                               "Database connections in the pool, by state.",
+                               "state", false, Persistence::poolConnections));
+    Metrics.register(Gauge.sampled("corla_db_pool_max_connections",
+                                   "The largest number of connections the pool will open.",
+                                   () -> Integer.valueOf(system_properties.getProperty
+                                       ("hibernate.c3p0.max_size", "20"))));
+    Metrics.register(Gauge.sampled("corla_db_pool_waiting_threads",
+                                   "Threads waiting for a database connection.",
+                                   () -> poolConnections().get("waiting")));
+    final Statistics statistics = session_factory.getStatistics();
+    if (statistics.isStatisticsEnabled()) {
+      Metrics.register(new Gauge("corla_cache_hits_total",
+                                 "Second-level cache hits, by region.", "region", true,
+                                 () -> cacheCounts(statistics, true)));
+      Metrics.register(new Gauge("corla_cache_misses_total",
+                                 "Second-level cache misses, by region.", "region", true,
+                                 () -> cacheCounts(statistics, false)));
+    }
+  }
+
+  /**
+   * Samples the connection pools.
+   *
+   * @return the number of busy and idle connections, and of threads 
+   * waiting for a connection, in all the pools.
+   * @exception PersistenceException if the pools cannot be sampled.
+   */
+  private static Map<String, Integer> poolConnections() {
+    int busy = 0;
+    int idle = 0;
+    int waiting = 0;
+    try {
+      for (final Object o : C3P0Registry.getPooledDataSources()) {
+        final PooledDataSource pool = (PooledDataSource) o;
+        busy = busy + pool.getNumBusyConnectionsDefaultUser();
+        idle = idle + pool.getNumIdleConnectionsDefaultUser();
+        waiting = waiting + pool.getNumThreadsAwaitingCheckoutDefaultUser();
+      }
+    } catch (final SQLException e) {
+      throw new PersistenceException("could not sample connection pool", e);
+    }
+    final Map<String, Integer> result = new HashMap<>();
+    result.put("busy", busy);
+    result.put("idle", idle);
+    result.put("waiting", waiting);
+    return result;
+  }
+
+  /**
+   * Samples the second-level cache statistics.
+   *
+   * @param the_statistics The statistics.
+   * @param the_hits true for the hit counts, false for the miss counts.
+   * @return the counts, by region.
+   */
+  private static Map<String, Long> cacheCounts(final Statistics the_statistics,
+                                               final boolean the_hits) {
+    final Map<String, Long> result = new HashMap<>();
+    for (final String region : the_statistics.getSecondLevelCacheRegionNames()) {
+      final SecondLevelCacheStatistics cache =
+          the_statistics.getSecondLevelCacheStatistics(region);
+      if (cache != null) {
+        if (the_hits) {
+          result.put(region, cache.getHitCount());
+        } else {
+          result.put(region, cache.getMissCount());
+        }
+      }
+    }
+    return result;
+  }
+
   /**
    * @return true if a session is open on this thread, false otherwise.
    * @exception IllegalStateException if the database isn't running.
@@ -400,6 +504,30 @@ public final class Persistence {
     return result;
   }
 
+  /**
+   * Begins a long-lived read-only transaction in this thread, as with
+   * beginTransaction(). Entities loaded in a read-only transaction are not
+   * checked for changes, and the session is never flushed, so the 
+   * transaction holds no locks and cannot conflict with others at commit.
+   * If a transaction is already active, it is left as it is.
+   *
+   * @return true if a new transaction is started, false if a transaction was
+   * already active.
+   * @exception IllegalStateException if the database isn't running.
+   * @exception PersistenceException if a transaction cannot be started or
+   * continued.
+   */
+  public static boolean beginReadOnlyTransaction()
+      throws PersistenceException {
+    final boolean result = beginTransaction();
+    if (result) {
+      final Session session = currentSession();
+      session.setDefaultReadOnly(true);
+      session.setHibernateFlushMode(FlushMode.MANUAL);
+    }
+    return result;
+  }
+
   /**
    * Commits the active long-lived transaction. This also closes the current
    * session, regardless of the transaction's success (it is rolled back if
@@ -0,0 +1,57 @@
+/*
+ * Colorado RLA System
+ */
+
+package us.freeandfair.corla.persistence;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import us.freeandfair.corla.metrics.Metrics;
+
+/**
+ * Counts the SQL statements Hibernate prepares, in total and on each
+ * thread, so that the statements a request causes can be measured. It is
+ * registered with Hibernate as a statement inspector, and leaves the
+ * statements unchanged.
+ */
+public class StatementCounter implements StatementInspector {
+  /**
+   * The serialVersionUID.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The number of statements prepared on each thread since its count was
+   * last reset.
+   */
+  private static final ThreadLocal<long[]> COUNT =
+      ThreadLocal.withInitial(() -> new long[1]);
+
+  /**
+   * Resets the calling thread's count.
+   */
+  public static void reset() {
+    COUNT.get()[0] = 0;
+  }
+
+  /**
+   * @return the number of statements prepared on the calling thread since
+   * its count was last reset.
+   */
+  public static long count() {
+    return COUNT.get()[0];
+  }
+
+  /**
+   * Counts a statement.
+   *
+   * @param the_sql The SQL of the statement.
+   * @return the SQL, unchanged.
+   */
+  @Override
+  public String inspect(final String the_sql) {
+    COUNT.get()[0]++;
+    Metrics.SQL_STATEMENTS.inc();
+    return the_sql;
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Colorado RLA System
+ */
+
+package us.freeandfair.corla.query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.hibernate.Session;
+
+import us.freeandfair.corla.model.CVRAuditInfo;
+import us.freeandfair.corla.model.CastVoteRecord;
+import us.freeandfair.corla.persistence.Persistence;
+
+/**
+ * Queries having to do with CVRAuditInfo entities.
+ */
+public final class CVRAuditInfoQueries {
+  /**
+   * The maximum number of IDs bound to a single query; PostgreSQL allows
+   * at most 32767 bind parameters per statement.
+   */
+  public static final int ID_CHUNK_SIZE = 10000;
+
+  /**
+   * The number of rows fetched at a time when scrolling summaries.
+   */
+  private static final int SUMMARY_FETCH_SIZE = 500;
+
+  /**
+   * Private constructor to prevent instantiation.
+   */
+  private CVRAuditInfoQueries() {
+    // do nothing
+  }
+
+  /**
+   * Finds which of the specified CVRs have been audited, that is, have
+   * CVRAuditInfo records with ACVRs. Lists of up to ID_CHUNK_SIZE distinct
+   * IDs take a single query.
+   *
+   * @param the_cvr_ids The CVR IDs.
+   * @return the subset of the IDs whose CVRs have been audited.
+   */
+  public static Set<Long> audited(final Collection<Long> the_cvr_ids) {
+    final Set<Long> result = new HashSet<>();
+    final List<Long> distinct = new ArrayList<>(new LinkedHashSet<>(the_cvr_ids));
+    final Session s = Persistence.currentSession();
+    for (int i = 0; i < distinct.size(); i = i + ID_CHUNK_SIZE) {
+      final List<Long> chunk =
+          distinct.subList(i, Math.min(i + ID_CHUNK_SIZE, distinct.size()));
+      result.addAll(s.createQuery("select cai.my_id from CVRAuditInfo cai " +
+                                  "where cai.my_id in (:ids) " +
+                                  "and cai.my_acvr is not null", Long.class)
+                    .setParameterList("ids", chunk)
+                    .getResultList());
+    }
+    return result;
+  }
+
+  /**
+   * Loads the CVRAuditInfo records for the specified CVRs, together with
+   * the CVRs, their ACVRs and the contest information of both, so that
+   * they can be compared without further queries. CVRs that have no
+   * CVRAuditInfo records are also loaded into the session, so getting them
+   * by ID afterwards does not hit the database. Lists of up to
+   * ID_CHUNK_SIZE distinct IDs take two queries.
+   *
+   * @param the_cvr_ids The CVR IDs.
+   * @return the CVRAuditInfo records that exist, by CVR ID.
+   */
+  public static Map<Long, CVRAuditInfo> withRecords(final Collection<Long> the_cvr_ids) {
+    final Map<Long, CVRAuditInfo> result = new HashMap<>();
+    final List<Long> distinct = new ArrayList<>(new LinkedHashSet<>(the_cvr_ids));
+    final Session s = Persistence.currentSession();
+    for (int i = 0; i < distinct.size(); i = i + ID_CHUNK_SIZE) {
+      final List<Long> chunk =
+          distinct.subList(i, Math.min(i + ID_CHUNK_SIZE, distinct.size()));
+      // the CVRs first, so that the audit infos' references to them resolve
+      // to the loaded entities; the rows repeat once per contest info, but
+      // each entity is loaded once
+      s.createQuery("select cvr from CastVoteRecord cvr " +
+                    "left join fetch cvr.my_contest_info " +
+                    "where cvr.my_id in (:ids)", CastVoteRecord.class)
+       .setParameterList("ids", chunk)
+       .getResultList();
+      for (final CVRAuditInfo cai :
+           s.createQuery("select cai from CVRAuditInfo cai " +
+                         "left join fetch cai.my_acvr acvr " +
+                         "left join fetch acvr.my_contest_info " +
+                         "where cai.my_id in (:ids)", CVRAuditInfo.class)
+            .setParameterList("ids", chunk)
+            .getResultList()) {
+        result.put(cai.id(), cai);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Streams a summary of the CVRAuditInfo records for the specified CVRs,
+   * for reporting. Each summary is an array of the imprinted ID and ballot
+   * type of the CVR, the record type of the ACVR (null if the CVR has not
+   * been audited), and the discrepancy and disagreement reasons (Sets of
+   * AuditReason). The results are scrolled rather than loaded, and no
+   * entities are loaded into the session; within each chunk of up to
+   * ID_CHUNK_SIZE distinct IDs they are ordered by scanner, batch and
+   * record. The stream must be consumed within the current transaction.
+   *
+   * @param the_cvr_ids The CVR IDs.
+   * @return the stream of summaries.
+   */
+  public static Stream<Object[]> summaries(final Collection<Long> the_cvr_ids) {
+    final List<Long> distinct = new ArrayList<>(new LinkedHashSet<>(the_cvr_ids));
+    final List<List<Long>> chunks = new ArrayList<>();
+    for (int i = 0; i < distinct.size(); i = i + ID_CHUNK_SIZE) {
+      chunks.add(distinct.subList(i, Math.min(i + ID_CHUNK_SIZE, distinct.size())));
+    }
+    final Session s = Persistence.currentSession();
+    return chunks.stream().flatMap(chunk ->
+        s.createQuery("select cvr.my_imprinted_id, cvr.my_ballot_type, " +
+                      "acvr.my_record_type, cai.my_discrepancy, cai.my_disagreement " +
+                      "from CVRAuditInfo cai join cai.my_cvr cvr " +
+                      "left join cai.my_acvr acvr " +
+                      "where cai.my_id in (:ids) " +
+                      "order by cvr.my_scanner_id, cvr.my_batch_id, cvr.my_record_id",
+                      Object[].class)
+         .setParameterList("ids", chunk)
+         .setReadOnly(true)
+         .setFetchSize(SUMMARY_FETCH_SIZE)
+         .stream());
+  }
+}
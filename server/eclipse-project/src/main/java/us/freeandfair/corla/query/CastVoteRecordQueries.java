@@ -12,9 +12,9 @@
 package us.freeandfair.corla.query;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.OptionalLong;
@@ -22,9 +22,9 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Stream;
-import java.util.stream.Collectors;
 
 import javax.persistence.PersistenceException;
 import javax.persistence.TypedQuery;
@@ -70,6 +70,11 @@ public final class CastVoteRecordQueries {
   private static final String COULD_NOT_QUERY_DATABASE =
       "could not query database for CVRs";
 
+  /**
+   * The maximum number of URIs in a single "uri in (:uris)" query.
+   */
+  private static final int URI_CHUNK_SIZE = 1000;
+
   /**
    * Private constructor to prevent instantiation.
    */
@@ -446,65 +451,86 @@ public final class CastVoteRecordQueries {
                       tribute.ballotPosition);
   }
 
-  /** select cast_vote_record where uri in :uris **/
+  /**
+   * Find the CVRs at the ballot manifest positions of the specified tributes,
+   * creating phantom records for positions that have no CVR.
+   *
+   * @param tributes The tributes.
+   * @return the CVRs, one per tribute, in the same order as the tributes
+   * (a position that appears more than once yields the same CVR each time).
+   */
   public static List<CastVoteRecord> atPosition(final List<Tribute> tributes) {
+    return atPosition(tributes, CastVoteRecordQueries::withUris, Persistence::save);
+  }
 
+  /**
+   * Find the CVRs at the ballot manifest positions of the specified tributes,
+   * using the specified query and persistence functions. Each distinct URI is
+   * queried once, in chunks of at most URI_CHUNK_SIZE; the results are lined
+   * up with the tributes through a map, so the whole operation is linear in
+   * the number of tributes. Positions that have no CVR get a new phantom
+   * record, and all of those are handed to the_save together so that they are
+   * inserted as a single batch when the session is flushed.
+   *
+   * @param tributes The tributes.
+   * @param the_query A function that returns the CVRs with the given URIs.
+   * @param the_save A function that persists a new phantom record.
+   * @return the CVRs, one per tribute, in the same order as the tributes.
+   */
+  public static List<CastVoteRecord> atPosition(final List<Tribute> tributes,
+                                                final Function<List<String>,
+                                                               List<CastVoteRecord>> the_query,
+                                                final Consumer<CastVoteRecord> the_save) {
     if (tributes.isEmpty()) {
-      return new ArrayList();
+      return new ArrayList<>();
     }
 
-    final List<String> uris = tributes.stream()
-      .map(t -> t.uri())
-      .collect(Collectors.toList());
+    final List<String> uris = new ArrayList<>(tributes.size());
+    for (final Tribute t : tributes) {
+      uris.add(t.uri());
+    }
+    final List<String> distinct_uris = new ArrayList<>(new LinkedHashSet<>(uris));
+
+    final Map<String, CastVoteRecord> by_uri = new HashMap<>(distinct_uris.size() * 2);
+    for (int i = 0; i < distinct_uris.size(); i = i + URI_CHUNK_SIZE) {
+      final List<String> chunk =
+          distinct_uris.subList(i, Math.min(i + URI_CHUNK_SIZE, distinct_uris.size()));
+      for (final CastVoteRecord cvr : the_query.apply(chunk)) {
+        by_uri.putIfAbsent(cvr.getUri(), cvr);
+      }
+    }
 
-    final Session s = Persistence.currentSession();
-    final Query q =
-      s.createQuery("select cvr from CastVoteRecord cvr " +
-                    " where uri in (:uris) ");
-
-    q.setParameter("uris", uris);
-
-    final List<CastVoteRecord> results = q.getResultList();
-
-    final Set<String> foundUris = results.stream()
-      .map(cvr -> (String)cvr.getUri())
-      .collect(Collectors.toSet());
-
-    final Set<CastVoteRecord> phantomRecords = tributes.stream()
-      .filter(distinctByKey((Tribute t) -> {return t.uri();}))
-      // is it faster to let the db do this with an except query?
-      .filter(t -> !foundUris.contains(t.uri()))
-      .map(t -> phantomRecord(t))
-      .map(Persistence::persist)
-      .collect(Collectors.toSet());
-
-    results.addAll(phantomRecords);
-
-    // this is a dummy list so we can add a cvr at a particular position(that of
-    // the tributes uris)
-    final List<CastVoteRecord> randomOrder =
-      new ArrayList<CastVoteRecord>(Collections.nCopies(uris.size(), null));
-
-    // line the cvrs back up into the random order
-    for (final CastVoteRecord cvr: results) {
-      int index = 0;
-      for (final String uri: uris) {
-        if (uri.equals(cvr.getUri())) {
-          randomOrder.add(index, cvr);
-        }
-        index++;
+    final List<CastVoteRecord> phantom_records = new ArrayList<>();
+    for (int i = 0; i < tributes.size(); i++) {
+      final String uri = uris.get(i);
+      if (!by_uri.containsKey(uri)) {
+        final CastVoteRecord phantom = newPhantomRecord(tributes.get(i));
+        by_uri.put(uri, phantom);
+        phantom_records.add(phantom);
       }
     }
+    phantom_records.forEach(the_save);
 
-    final List<CastVoteRecord> returnList = randomOrder.stream()
-      .filter(cvr -> null != cvr)
-      .collect(Collectors.toList());
-    if (returnList.size() != uris.size()) {
-      // we got a problem here
-      Main.LOGGER.error("something went wrong with atPosition - returnList.size() != uris.size()");
+    final List<CastVoteRecord> result = new ArrayList<>(uris.size());
+    for (final String uri : uris) {
+      result.add(by_uri.get(uri));
     }
+    return result;
+  }
 
-    return returnList;
+  /**
+   * Obtain the CastVoteRecord objects with the specified URIs.
+   *
+   * @param the_uris The URIs.
+   * @return the matching CastVoteRecord objects, in no particular order.
+   */
+  public static List<CastVoteRecord> withUris(final List<String> the_uris) {
+    final Session s = Persistence.currentSession();
+    final Query<CastVoteRecord> q =
+        s.createQuery("select cvr from CastVoteRecord cvr where uri in (:uris)",
+                      CastVoteRecord.class);
+    q.setParameter("uris", the_uris);
+    return q.getResultList();
   }
 
   /**
@@ -553,6 +579,24 @@ public final class CastVoteRecordQueries {
                                              final Integer scanner_id,
                                              final String batch_id,
                                              final Integer position) {
+    final CastVoteRecord cvr = newPhantomRecord(county_id, scanner_id, batch_id, position);
+    Persistence.save(cvr);
+    return cvr;
+  }
+
+  /** an unsaved PHANTOM_RECORD for a tribute **/
+  private static CastVoteRecord newPhantomRecord(final Tribute tribute) {
+    return newPhantomRecord(tribute.countyId,
+                            tribute.scannerId,
+                            tribute.batchId,
+                            tribute.ballotPosition);
+  }
+
+  /** an unsaved PHANTOM_RECORD **/
+  private static CastVoteRecord newPhantomRecord(final Long county_id,
+                                                 final Integer scanner_id,
+                                                 final String batch_id,
+                                                 final Integer position) {
     final String imprintedID = String.format("%d-%s-%d", scanner_id, batch_id, position);
     final CastVoteRecord cvr = new CastVoteRecord(CastVoteRecord.RecordType.PHANTOM_RECORD,
                                                   null,
@@ -565,7 +609,6 @@ public final class CastVoteRecordQueries {
                                                   imprintedID,
                                                   "PHANTOM RECORD",
                                                   null);
-    Persistence.save(cvr);
     return cvr;
   }
 
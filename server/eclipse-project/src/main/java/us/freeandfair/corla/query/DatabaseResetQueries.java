@@ -15,6 +15,7 @@ import javax.persistence.Cache;
 
 import org.hibernate.Session;
 
+import us.freeandfair.corla.persistence.EntityChangeNotifier;
 import us.freeandfair.corla.persistence.Persistence;
 
 /**
@@ -47,6 +48,7 @@ public final class DatabaseResetQueries {
 
     final String[] tables = {
         "log",
+        "pending_log",
         "audit_board",
         "audit_intermediate_report",
         "audit_investigation_report",
@@ -92,5 +94,8 @@ public final class DatabaseResetQueries {
     if (cache != null) {
       cache.evictAll();
     }
+
+    // and, once this is committed, everything derived from the database
+    EntityChangeNotifier.allChangedOnCommit();
   }
 }
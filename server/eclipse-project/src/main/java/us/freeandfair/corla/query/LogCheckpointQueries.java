@@ -0,0 +1,45 @@
+/*
+ * Colorado RLA System
+ */
+
+package us.freeandfair.corla.query;
+
+import java.util.List;
+
+import javax.persistence.PersistenceException;
+
+import org.hibernate.Session;
+
+import us.freeandfair.corla.model.LogCheckpoint;
+import us.freeandfair.corla.persistence.Persistence;
+
+/**
+ * Queries having to do with LogCheckpoint entities.
+ */
+public final class LogCheckpointQueries {
+  /**
+   * Private constructor to prevent instantiation.
+   */
+  private LogCheckpointQueries() {
+    // do nothing
+  }
+
+  /**
+   * Obtains the latest checkpoint, the one covering the most log entries.
+   *
+   * @return the checkpoint, or null if there are no checkpoints.
+   * @exception PersistenceException if the query fails.
+   */
+  public static LogCheckpoint latest() {
+    final Session s = Persistence.currentSession();
+    final List<LogCheckpoint> results =
+        s.createQuery("select lc from LogCheckpoint lc " +
+                      "order by lc.my_log_entry_id desc, lc.my_id desc",
+                      LogCheckpoint.class).
+        setMaxResults(1).getResultList();
+    if (results.isEmpty()) {
+      return null;
+    }
+    return results.get(0);
+  }
+}
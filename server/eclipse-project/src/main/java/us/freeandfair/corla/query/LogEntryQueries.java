@@ -21,9 +21,11 @@ import javax.persistence.criteria.Root;
 import javax.persistence.criteria.Subquery;
 
 import org.hibernate.Session;
+import org.hibernate.query.Query;
 
 import us.freeandfair.corla.Main;
 import us.freeandfair.corla.model.LogEntry;
+import us.freeandfair.corla.model.PendingLogEntry;
 import us.freeandfair.corla.persistence.Persistence;
 
 /**
@@ -84,4 +86,104 @@ public final class LogEntryQueries {
     
     return result;
   }
+
+  /**
+   * Obtains the ID and hash of the last LogEntry object in the database,
+   * without loading it. Unlike last(), this method does not mask failures:
+   * a caller extending the hash chain must not mistake a failed query for
+   * an empty log.
+   * 
+   * @return an array holding the ID and the hash, or null if there are no
+   * log entries.
+   * @exception PersistenceException if the query fails.
+   */
+  public static Object[] lastIDAndHash() {
+    final Session s = Persistence.currentSession();
+    final List<?> results =
+        s.createQuery("select le.my_id, le.my_hash from LogEntry le " + 
+                      "where le.my_id = (select max(m.my_id) from LogEntry m)").
+        getResultList();
+    if (results.isEmpty()) {
+      return null;
+    }
+    return (Object[]) results.get(0);
+  }
+
+  /**
+   * Obtains, in ID order, the contents of up to the specified number of log
+   * entries after the specified one, each with the hash of its previous
+   * entry, without loading them.
+   * 
+   * @param the_after_id The ID after which to start, or null to start at 
+   * the beginning.
+   * @param the_max_results The maximum number of entries.
+   * @return a list of arrays, each holding the ID, result code, information,
+   * timestamp and hash of an entry, and the ID and hash of its previous
+   * entry (null if it has none).
+   * @exception PersistenceException if the query fails.
+   */
+  @SuppressWarnings("unchecked")
+  public static List<Object[]> chain(final Long the_after_id, final int the_max_results) {
+    final Session s = Persistence.currentSession();
+    final String columns = 
+        "select le.my_id, le.my_result_code, le.my_information, le.my_timestamp, " +
+        "le.my_hash, pe.my_id, pe.my_hash " + 
+        "from LogEntry le left join le.my_previous_entry pe ";
+    final Query<Object[]> query;
+    if (the_after_id == null) {
+      query = s.createQuery(columns + "order by le.my_id");
+    } else {
+      query = s.createQuery(columns + "where le.my_id > :after order by le.my_id");
+      query.setParameter("after", the_after_id);
+    }
+    query.setMaxResults(the_max_results);
+    query.setReadOnly(true);
+    return query.getResultList();
+  }
+  
+  /**
+   * Obtains the hash of the log entry with the specified ID, without 
+   * loading it.
+   * 
+   * @param the_id The ID.
+   * @return the hash, or null if there is no such log entry.
+   * @exception PersistenceException if the query fails.
+   */
+  public static String hash(final Long the_id) {
+    final Session s = Persistence.currentSession();
+    final List<?> results = 
+        s.createQuery("select le.my_hash from LogEntry le where le.my_id = :id").
+        setParameter("id", the_id).getResultList();
+    if (results.isEmpty()) {
+      return null;
+    }
+    return (String) results.get(0);
+  }
+
+  /**
+   * Obtains the oldest pending log entries, in the order they were saved.
+   * 
+   * @param the_max_results The maximum number of entries.
+   * @return the pending log entries.
+   * @exception PersistenceException if the query fails.
+   */
+  public static List<PendingLogEntry> pending(final int the_max_results) {
+    final Session s = Persistence.currentSession();
+    return s.createQuery("select ple from PendingLogEntry ple order by ple.my_id",
+                         PendingLogEntry.class).
+        setMaxResults(the_max_results).getResultList();
+  }
+
+  /**
+   * Deletes the pending log entry with the specified ID.
+   * 
+   * @param the_id The ID.
+   * @return true if the entry was deleted, false if there was no such entry.
+   * @exception PersistenceException if the query fails.
+   */
+  public static boolean deletePending(final Long the_id) {
+    final Session s = Persistence.currentSession();
+    return s.createQuery("delete from PendingLogEntry ple where ple.my_id = :id").
+        setParameter("id", the_id).executeUpdate() > 0;
+  }
 }
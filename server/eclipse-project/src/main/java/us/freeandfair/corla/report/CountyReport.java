@@ -15,6 +15,7 @@ import static us.freeandfair.corla.util.PrettyPrinter.booleanYesNo;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.time.Instant;
 import java.time.LocalDateTime;
@@ -45,6 +46,7 @@ import org.apache.poi.ss.util.CellRangeAddress;
 import org.apache.poi.ss.util.CellUtil;
 import org.apache.poi.ss.util.RegionUtil;
 
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
 import us.freeandfair.corla.controller.ComparisonAuditController;
@@ -228,14 +230,37 @@ public class CountyReport {
     return baos.toByteArray();
   }
 
+  /**
+   * Writes the Excel representation of this report to the specified stream,
+   * holding only a bounded window of rows of each sheet in memory. The stream
+   * is not closed.
+   *
+   * @param the_stream The stream.
+   * @exception IOException if the report cannot be written.
+   */
+  public void writeExcel(final OutputStream the_stream) throws IOException {
+    final SXSSFWorkbook workbook = WorkbookUtilities.streamingWorkbook();
+    populateWorkbook(workbook);
+    WorkbookUtilities.write(workbook, the_stream);
+  }
+
   /**
    * @return the Excel workbook for this report.
    */
+  public Workbook generateExcelWorkbook() {
+    return populateWorkbook(new XSSFWorkbook());
+  }
+
+  /**
+   * Fills the specified empty workbook with this report.
+   *
+   * @param workbook The workbook.
+   * @return the workbook.
+   */
   @SuppressWarnings({"checkstyle:magicnumber", "checkstyle:executablestatementcount",
       "checkstyle:methodlength", "PMD.ExcessiveMethodLength", "PMD.NcssMethodCount",
       "PMD.NPathComplexity", "PMD.AvoidLiteralsInIfCondition"})
-  public Workbook generateExcelWorkbook() {
-    final Workbook workbook = new XSSFWorkbook();
+  private Workbook populateWorkbook(final Workbook workbook) {
 
     // data format
     final DataFormat format = workbook.createDataFormat();
@@ -277,7 +302,7 @@ public class CountyReport {
     box_style.setBorderRight(BorderStyle.THICK);
 
     // the summary sheet
-    final Sheet summary_sheet = workbook.createSheet("Summary");
+    final Sheet summary_sheet = WorkbookUtilities.createSheet(workbook, "Summary");
     int row_number = 0;
     Row row = summary_sheet.createRow(row_number++);
     int cell_number = 0;
@@ -625,7 +650,8 @@ public class CountyReport {
     // round sheets
 
     for (final Round round : my_rounds) {
-      final Sheet round_sheet = workbook.createSheet("Round " + round.number());
+      final Sheet round_sheet =
+          WorkbookUtilities.createSheet(workbook, "Round " + round.number());
       row_number = 0;
       row = round_sheet.createRow(row_number++);
       cell_number = 0;
@@ -784,7 +810,7 @@ public class CountyReport {
     }
 
     // affirmation sheet
-    final Sheet affirmation_sheet = workbook.createSheet("Affirmation");
+    final Sheet affirmation_sheet = WorkbookUtilities.createSheet(workbook, "Affirmation");
     final float affirmationRowHeight = affirmation_sheet.getDefaultRowHeightInPoints();
     row_number = 0;
     row = affirmation_sheet.createRow(row_number++);
@@ -0,0 +1,105 @@
+/*
+ * Colorado RLA System
+ */
+
+package us.freeandfair.corla.report;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * The kinds of record in the flat (CSV and JSON) form of an audit report,
+ * and the fields of each.
+ */
+public enum ReportRecord {
+  /**
+   * The audit as a whole.
+   */
+  AUDIT("election_type", "election_date", "random_seed", "risk_limit", "generated"),
+
+  /**
+   * A county's totals.
+   */
+  COUNTY("county", "ballot_cards_in_manifest", "cvrs_imported", "ballot_cards_audited",
+         "rounds"),
+
+  /**
+   * A county's audit round.
+   */
+  ROUND("county", "round", "ballot_cards_audited", "discrepancies_audited",
+        "discrepancies_unaudited", "disagreements_audited", "disagreements_unaudited"),
+
+  /**
+   * A choice in a contest driving a county's audit.
+   */
+  CONTEST("county", "contest", "votes_allowed", "choice", "winner", "votes", "margin",
+          "diluted_margin"),
+
+  /**
+   * A ballot card selected for audit in a county's round.
+   */
+  BALLOT_CARD("county", "round", "imprinted_id", "audited", "discrepancy", "disagreement",
+              "ballot_type");
+
+  /**
+   * The name of the field holding the kind of record.
+   */
+  public static final String RECORD_FIELD = "record";
+
+  /**
+   * The fields of all kinds of record, in order, starting with the kind of
+   * record; these are the columns of the CSV form.
+   */
+  private static final List<String> ALL_FIELDS;
+
+  static {
+    final Set<String> fields = new LinkedHashSet<>();
+    fields.add(RECORD_FIELD);
+    for (final ReportRecord record : values()) {
+      fields.addAll(record.fields());
+    }
+    ALL_FIELDS = Collections.unmodifiableList(new ArrayList<>(fields));
+  }
+
+  /**
+   * The fields of this kind of record.
+   */
+  private final List<String> my_fields;
+
+  /**
+   * Constructs a kind of record.
+   *
+   * @param the_fields The fields.
+   */
+  ReportRecord(final String... the_fields) {
+    my_fields = Collections.unmodifiableList(Arrays.asList(the_fields));
+  }
+
+  /**
+   * @return the fields of this kind of record.
+   */
+  public List<String> fields() {
+    return my_fields;
+  }
+
+  /**
+   * @return the name of this kind of record, as it appears in the record
+   * field.
+   */
+  public String recordName() {
+    return name().toLowerCase(Locale.US);
+  }
+
+  /**
+   * @return the fields of all kinds of record, starting with the kind of
+   * record.
+   */
+  public static List<String> allFields() {
+    return ALL_FIELDS;
+  }
+}
@@ -0,0 +1,207 @@
+/*
+ * Colorado RLA System
+ */
+
+package us.freeandfair.corla.report;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.QuoteMode;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Writes report records, one at a time, to a character stream. Closing a
+ * record writer flushes it but does not close the underlying stream.
+ */
+public abstract class ReportRecordWriter implements Closeable {
+  /**
+   * Writes a record. The values must be Strings, Numbers, Booleans or null
+   * (for a field with no value), one for each field of the record.
+   *
+   * @param the_record The kind of record.
+   * @param the_values The values of the fields.
+   * @exception IOException if the record cannot be written.
+   * @exception IllegalArgumentException if the wrong number of values is
+   * specified.
+   */
+  public abstract void write(ReportRecord the_record, Object... the_values)
+      throws IOException;
+
+  /**
+   * Checks that the number of values matches the fields of a record.
+   *
+   * @param the_record The kind of record.
+   * @param the_values The values.
+   */
+  protected static void checkValues(final ReportRecord the_record,
+                                    final Object... the_values) {
+    if (the_values.length != the_record.fields().size()) {
+      throw new IllegalArgumentException(the_values.length + " values for " +
+                                         the_record.fields().size() + " fields of " +
+                                         the_record.recordName());
+    }
+  }
+
+  /**
+   * Creates a writer of CSV: a header naming every field of every kind of
+   * record, then a row per record, in which only the fields of its kind
+   * have values.
+   *
+   * @param the_writer The character stream.
+   * @return the record writer.
+   * @exception IOException if the header cannot be written.
+   */
+  public static ReportRecordWriter csv(final Writer the_writer) throws IOException {
+    return new CSVRecordWriter(the_writer);
+  }
+
+  /**
+   * Creates a writer of newline-delimited JSON: a JSON object per line for
+   * each record, holding the kind of record and the fields that have
+   * values.
+   *
+   * @param the_writer The character stream.
+   * @return the record writer.
+   */
+  public static ReportRecordWriter json(final Writer the_writer) {
+    return new JSONRecordWriter(the_writer);
+  }
+
+  /**
+   * A writer of records as CSV rows.
+   */
+  private static final class CSVRecordWriter extends ReportRecordWriter {
+    /**
+     * The CSV printer.
+     */
+    private final CSVPrinter my_printer;
+
+    /**
+     * The columns of the fields of each kind of record.
+     */
+    private final Map<ReportRecord, int[]> my_columns = new EnumMap<>(ReportRecord.class);
+
+    /**
+     * The row being written.
+     */
+    private final Object[] my_row = new Object[ReportRecord.allFields().size()];
+
+    /**
+     * Constructs a CSV record writer, and writes the header.
+     *
+     * @param the_writer The character stream.
+     * @exception IOException if the header cannot be written.
+     */
+    CSVRecordWriter(final Writer the_writer) throws IOException {
+      super();
+      final List<String> fields = ReportRecord.allFields();
+      for (final ReportRecord record : ReportRecord.values()) {
+        final int[] columns = new int[record.fields().size()];
+        for (int i = 0; i < columns.length; i++) {
+          columns[i] = fields.indexOf(record.fields().get(i));
+        }
+        my_columns.put(record, columns);
+      }
+      my_printer = new CSVPrinter(the_writer, CSVFormat.DEFAULT.
+                                  withHeader(fields.toArray(new String[fields.size()])).
+                                  withQuoteMode(QuoteMode.NON_NUMERIC));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(final ReportRecord the_record, final Object... the_values)
+        throws IOException {
+      checkValues(the_record, the_values);
+      final int[] columns = my_columns.get(the_record);
+      Arrays.fill(my_row, null);
+      my_row[0] = the_record.recordName();
+      for (int i = 0; i < the_values.length; i++) {
+        my_row[columns[i]] = the_values[i];
+      }
+      my_printer.printRecord(my_row);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+      my_printer.flush();
+    }
+  }
+
+  /**
+   * A writer of records as lines of JSON.
+   */
+  private static final class JSONRecordWriter extends ReportRecordWriter {
+    /**
+     * The character stream.
+     */
+    private final Writer my_writer;
+
+    /**
+     * The JSON writer.
+     */
+    private final JsonWriter my_json_writer;
+
+    /**
+     * Constructs a JSON record writer.
+     *
+     * @param the_writer The character stream.
+     */
+    JSONRecordWriter(final Writer the_writer) {
+      super();
+      my_writer = the_writer;
+      my_json_writer = new JsonWriter(the_writer);
+      // a lenient writer accepts a sequence of top-level values
+      my_json_writer.setLenient(true);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(final ReportRecord the_record, final Object... the_values)
+        throws IOException {
+      checkValues(the_record, the_values);
+      my_json_writer.beginObject();
+      my_json_writer.name(ReportRecord.RECORD_FIELD).value(the_record.recordName());
+      for (int i = 0; i < the_values.length; i++) {
+        final Object value = the_values[i];
+        if (value == null) {
+          continue;
+        }
+        my_json_writer.name(the_record.fields().get(i));
+        if (value instanceof Number) {
+          my_json_writer.value((Number) value);
+        } else if (value instanceof Boolean) {
+          my_json_writer.value((Boolean) value);
+        } else {
+          my_json_writer.value(value.toString());
+        }
+      }
+      my_json_writer.endObject();
+      // the JSON writer does not buffer, so the object is already written
+      my_writer.write('\n');
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+      my_writer.flush();
+    }
+  }
+}
@@ -0,0 +1,239 @@
+/*
+ * Colorado RLA System
+ */
+
+package us.freeandfair.corla.report;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.stream.Stream;
+
+import us.freeandfair.corla.model.AuditInfo;
+import us.freeandfair.corla.model.AuditSelection;
+import us.freeandfair.corla.model.CastVoteRecord.RecordType;
+import us.freeandfair.corla.model.County;
+import us.freeandfair.corla.model.County.NameComparator;
+import us.freeandfair.corla.model.CountyContestResult;
+import us.freeandfair.corla.model.CountyDashboard;
+import us.freeandfair.corla.model.DoSDashboard;
+import us.freeandfair.corla.model.Round;
+import us.freeandfair.corla.persistence.Persistence;
+import us.freeandfair.corla.query.CVRAuditInfoQueries;
+import us.freeandfair.corla.query.CountyContestResultQueries;
+
+/**
+ * The content of a county or state audit report as a sequence of flat
+ * records, for export as CSV or newline-delimited JSON. The records are
+ * written as they are read: the ballot cards of each round are scrolled
+ * from the database rather than loaded, and a state report releases each
+ * county's data once it has been written.
+ */
+public class ReportRecords {
+  /**
+   * The date formatter for file names.
+   */
+  private static final DateTimeFormatter DATE_FORMATTER =
+      DateTimeFormatter.ofPattern("MM/dd/yyyy");
+
+  /**
+   * The date/time formatter for file names.
+   */
+  private static final DateTimeFormatter DATE_TIME_FORMATTER =
+      DateTimeFormatter.ofPattern("MM/dd/yyyy hh:mm a");
+
+  /**
+   * The county, or null for the state report.
+   */
+  private final County my_county;
+
+  /**
+   * The date and time the report was generated.
+   */
+  private final Instant my_timestamp;
+
+  /**
+   * The DoS dashboard.
+   */
+  private final DoSDashboard my_dosdb;
+
+  /**
+   * Initialize the records of a county or state report, timestamped at the
+   * current time.
+   *
+   * @param the_county The county, or null for the state report.
+   */
+  public ReportRecords(final County the_county) {
+    this(the_county, Instant.now());
+  }
+
+  /**
+   * Initialize the records of a county or state report with the specified
+   * timestamp.
+   *
+   * @param the_county The county, or null for the state report.
+   * @param the_timestamp The timestamp.
+   */
+  public ReportRecords(final County the_county, final Instant the_timestamp) {
+    my_county = the_county;
+    my_timestamp = the_timestamp;
+    my_dosdb = Persistence.getByID(DoSDashboard.ID, DoSDashboard.class);
+  }
+
+  /**
+   * Writes the records of this report. This must be called within a
+   * transaction.
+   *
+   * @param the_writer The record writer.
+   * @exception IOException if the records cannot be written.
+   */
+  public void write(final ReportRecordWriter the_writer) throws IOException {
+    final AuditInfo info = my_dosdb.auditInfo();
+    String election_date = null;
+    if (info.electionDate() != null) {
+      election_date = info.electionDate().atOffset(ZoneOffset.UTC).toLocalDate().toString();
+    }
+    String risk_limit = null;
+    if (info.riskLimit() != null) {
+      risk_limit = info.riskLimit().toPlainString();
+    }
+    the_writer.write(ReportRecord.AUDIT, info.electionType(), election_date, info.seed(),
+                     risk_limit, my_timestamp.toString());
+
+    if (my_county == null) {
+      final List<County> counties = new ArrayList<>(Persistence.getAll(County.class));
+      counties.sort(new NameComparator());
+      for (final County county : counties) {
+        writeCounty(the_writer, county);
+        // nothing written is needed again, and nothing is changed
+        Persistence.flushAndClear();
+      }
+    } else {
+      writeCounty(the_writer, my_county);
+    }
+  }
+
+  /**
+   * Writes the records of a county.
+   *
+   * @param the_writer The record writer.
+   * @param the_county The county.
+   * @exception IOException if the records cannot be written.
+   */
+  private void writeCounty(final ReportRecordWriter the_writer, final County the_county)
+      throws IOException {
+    final String name = the_county.name();
+    final CountyDashboard cdb = Persistence.getByID(the_county.id(), CountyDashboard.class);
+    final List<Round> rounds = new ArrayList<>(cdb.rounds());
+    the_writer.write(ReportRecord.COUNTY, name, cdb.ballotsInManifest(), cdb.cvrsImported(),
+                     cdb.ballotsAudited(), rounds.size());
+
+    for (final Round round : rounds) {
+      the_writer.write(ReportRecord.ROUND, name, round.number(), round.actualCount(),
+                       count(round, AuditSelection.AUDITED_CONTEST, true),
+                       count(round, AuditSelection.UNAUDITED_CONTEST, true),
+                       count(round, AuditSelection.AUDITED_CONTEST, false),
+                       count(round, AuditSelection.UNAUDITED_CONTEST, false));
+    }
+
+    final Set<String> driving = cdb.drivingContestNames();
+    for (final CountyContestResult ccr : CountyContestResultQueries.forCounty(the_county)) {
+      if (!driving.contains(ccr.contest().name())) {
+        continue;
+      }
+      for (final String choice : ccr.rankedChoices()) {
+        final boolean winner = ccr.winners().contains(choice);
+        Integer margin = null;
+        String diluted_margin = null;
+        if (winner) {
+          final OptionalInt m = ccr.marginToNearestLoser(choice);
+          if (m.isPresent()) {
+            margin = m.getAsInt();
+          }
+          if (ccr.countyDilutedMarginToNearestLoser(choice) != null) {
+            diluted_margin =
+                ccr.countyDilutedMarginToNearestLoser(choice).toPlainString();
+          }
+        }
+        the_writer.write(ReportRecord.CONTEST, name, ccr.contest().name(),
+                         ccr.contest().votesAllowed(), choice, winner,
+                         ccr.voteTotals().get(choice), margin, diluted_margin);
+      }
+    }
+
+    for (final Round round : rounds) {
+      try (Stream<Object[]> summaries =
+               CVRAuditInfoQueries.summaries(round.auditSubsequence())) {
+        final Iterator<Object[]> iterator = summaries.iterator();
+        while (iterator.hasNext()) {
+          final Object[] summary = iterator.next();
+          the_writer.write(ReportRecord.BALLOT_CARD, name, round.number(), summary[0],
+                           summary[2] == RecordType.AUDITOR_ENTERED,
+                           !((Set<?>) summary[3]).isEmpty(),
+                           !((Set<?>) summary[4]).isEmpty(), summary[1]);
+        }
+      }
+    }
+  }
+
+  /**
+   * @param the_round The round.
+   * @param the_selection The audit selection.
+   * @param the_discrepancies true for discrepancies, false for
+   * disagreements.
+   * @return the number of discrepancies or disagreements in the round.
+   */
+  private static int count(final Round the_round, final AuditSelection the_selection,
+                           final boolean the_discrepancies) {
+    final Integer result;
+    if (the_discrepancies) {
+      result = the_round.discrepancies().get(the_selection);
+    } else {
+      result = the_round.disagreements().get(the_selection);
+    }
+    if (result == null) {
+      return 0;
+    }
+    return result;
+  }
+
+  /**
+   * @param the_extension The file extension, without a dot.
+   * @return the file name for this report with the specified extension,
+   * constructed the same way as the Excel report's file name.
+   */
+  public String filename(final String the_extension) {
+    final LocalDateTime election_datetime =
+        LocalDateTime.ofInstant(my_dosdb.auditInfo().electionDate(), ZoneOffset.UTC);
+    final LocalDateTime report_datetime =
+        LocalDateTime.ofInstant(my_timestamp, TimeZone.getDefault().toZoneId()).
+        truncatedTo(ChronoUnit.SECONDS);
+    final StringBuilder sb = new StringBuilder(32);
+
+    if (my_county == null) {
+      sb.append("state");
+    } else {
+      sb.append(my_county.name().toLowerCase(Locale.getDefault()).replace(" ", "_"));
+    }
+    sb.append('-');
+    sb.append(my_dosdb.auditInfo().electionType().
+              toLowerCase(Locale.getDefault()).replace(" ", "_"));
+    sb.append('-');
+    sb.append(DATE_FORMATTER.format(election_datetime).replace("/", "-"));
+    sb.append("-report-");
+    sb.append(DATE_TIME_FORMATTER.format(report_datetime).replace("/", "-").replace(":", "_"));
+    sb.append('.').append(the_extension);
+
+    return sb.toString();
+  }
+}
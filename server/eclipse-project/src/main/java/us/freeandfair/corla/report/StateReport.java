@@ -15,6 +15,7 @@ import static us.freeandfair.corla.util.PrettyPrinter.booleanYesNo;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.time.Instant;
 import java.time.LocalDateTime;
@@ -26,7 +27,6 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.OptionalInt;
 import java.util.SortedMap;
 import java.util.TimeZone;
@@ -42,6 +42,7 @@ import org.apache.poi.ss.usermodel.HorizontalAlignment;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
 import us.freeandfair.corla.model.AuditSelection;
@@ -50,6 +51,7 @@ import us.freeandfair.corla.model.CastVoteRecord.RecordType;
 import us.freeandfair.corla.model.County;
 import us.freeandfair.corla.model.County.NameComparator;
 import us.freeandfair.corla.model.CountyContestResult;
+import us.freeandfair.corla.model.CountyDashboard;
 import us.freeandfair.corla.model.DoSDashboard;
 import us.freeandfair.corla.model.Round;
 import us.freeandfair.corla.persistence.Persistence;
@@ -88,9 +90,14 @@ public class StateReport {
   private final Instant my_timestamp;
   
   /**
-   * The county audit reports.
+   * The counties, in name order.
    */
-  private final SortedMap<County, CountyReport> my_county_reports;
+  private final List<County> my_counties;
+
+  /**
+   * The county audit reports, built when first needed.
+   */
+  private SortedMap<County, CountyReport> my_county_reports;
   
   /**
    * The DoS dashboard.
@@ -111,11 +118,9 @@ public class StateReport {
    * @param the_timestamp The timestamp.
    */
   public StateReport(final Instant the_timestamp) {
-    my_county_reports = new TreeMap<>(new NameComparator());
     my_timestamp = the_timestamp;
-    for (final County c : Persistence.getAll(County.class)) {
-      my_county_reports.put(c, new CountyReport(c, my_timestamp));
-    }
+    my_counties = new ArrayList<>(Persistence.getAll(County.class));
+    my_counties.sort(new NameComparator());
     my_dosdb = Persistence.getByID(DoSDashboard.ID, DoSDashboard.class);
   }
   
@@ -130,8 +135,32 @@ public class StateReport {
    * @return the county reports comprising this report.
    */
   public Map<County, CountyReport> countyReports() {
+    if (my_county_reports == null) {
+      my_county_reports = new TreeMap<>(new NameComparator());
+      for (final County c : my_counties) {
+        my_county_reports.put(c, new CountyReport(c, my_timestamp));
+      }
+    }
     return Collections.unmodifiableMap(my_county_reports);
   }
+
+  /**
+   * Gets the report for the specified county.
+   *
+   * @param the_county The county.
+   * @param the_streaming true to build a report that is not kept, false to
+   * use (and keep) the report in the county reports.
+   * @return the report.
+   */
+  private CountyReport countyReport(final County the_county, final boolean the_streaming) {
+    final CountyReport result;
+    if (the_streaming) {
+      result = new CountyReport(the_county, my_timestamp);
+    } else {
+      result = countyReports().get(the_county);
+    }
+    return result;
+  }
   
   
   /**
@@ -148,14 +177,42 @@ public class StateReport {
     return baos.toByteArray();
   }
   
+  /**
+   * Writes the Excel representation of this report to the specified stream.
+   * Only a bounded window of rows of each sheet is held in memory, and the
+   * counties are reported one at a time, each county's data being released
+   * once its rows are written, so the memory used does not grow with the
+   * number of counties. The stream is not closed.
+   *
+   * @param the_stream The stream.
+   * @exception IOException if the report cannot be written.
+   */
+  public void writeExcel(final OutputStream the_stream) throws IOException {
+    final SXSSFWorkbook workbook = WorkbookUtilities.streamingWorkbook();
+    populateWorkbook(workbook, true);
+    WorkbookUtilities.write(workbook, the_stream);
+  }
+
   /**
    * @return the Excel workbook for this report.
    */
+  public Workbook generateExcelWorkbook() {
+    return populateWorkbook(new XSSFWorkbook(), false);
+  }
+
+  /**
+   * Fills the specified empty workbook with this report.
+   *
+   * @param workbook The workbook.
+   * @param the_streaming true if the county reports are to be built one at a
+   * time and released (along with everything else in the current session)
+   * as soon as they are written, false if they are to be kept.
+   * @return the workbook.
+   */
   @SuppressWarnings({"checkstyle:magicnumber", "checkstyle:executablestatementcount",
       "checkstyle:methodlength", "PMD.ExcessiveMethodLength", "PMD.NcssMethodCount",
       "PMD.NPathComplexity", "PMD.AvoidLiteralsInIfCondition"})
-  public Workbook generateExcelWorkbook() {
-    final Workbook workbook = new XSSFWorkbook();
+  private Workbook populateWorkbook(final Workbook workbook, final boolean the_streaming) {
 
     // data format
     final DataFormat format = workbook.createDataFormat();
@@ -193,7 +250,7 @@ public class StateReport {
     box_style.setBorderRight(BorderStyle.THICK);
     
     // the summary sheet
-    final Sheet summary_sheet = workbook.createSheet("Summary");
+    final Sheet summary_sheet = WorkbookUtilities.createSheet(workbook, "Summary");
     int row_number = 0;
     Row row = summary_sheet.createRow(row_number++);
     int cell_number = 0;
@@ -260,11 +317,18 @@ public class StateReport {
     row = summary_sheet.createRow(row_number++);
     cell_number = 0;
     
+    // the totals come from the county dashboards, so that they can be written
+    // before any county report is built
+    final List<CountyDashboard> dashboards = new ArrayList<>();
+    for (final County c : my_counties) {
+      dashboards.add(Persistence.getByID(c.id(), CountyDashboard.class));
+    }
+
     int ballots_in_manifests = 0;
     int cvrs_in_export_files = 0;
-    for (final CountyReport cr : my_county_reports.values()) {
-      ballots_in_manifests += cr.dashboard().ballotsInManifest();
-      cvrs_in_export_files += cr.dashboard().cvrsImported();
+    for (final CountyDashboard cdb : dashboards) {
+      ballots_in_manifests += cdb.ballotsInManifest();
+      cvrs_in_export_files += cdb.cvrsImported();
     }
     
     cell = row.createCell(cell_number++);
@@ -296,9 +360,9 @@ public class StateReport {
     
     int ballots_audited = 0;
     int audit_rounds = 0;
-    for (final CountyReport cr : my_county_reports.values()) {
-      ballots_audited = ballots_audited + cr.dashboard().ballotsAudited();
-      audit_rounds = Math.max(audit_rounds, cr.dashboard().rounds().size());
+    for (final CountyDashboard cdb : dashboards) {
+      ballots_audited = ballots_audited + cdb.ballotsAudited();
+      audit_rounds = Math.max(audit_rounds, cdb.rounds().size());
     }
     
     cell = row.createCell(cell_number++);
@@ -326,21 +390,24 @@ public class StateReport {
     
     max_cell_number = Math.max(max_cell_number, cell_number);
 
-    for (final Entry<County, CountyReport> e : my_county_reports.entrySet()) {
+    // the county sections of the summary sheet, and the county sheets, are
+    // written one county at a time
+    for (final County county : my_counties) {
+      final CountyReport report = countyReport(county, the_streaming);
       row_number++;
       row = summary_sheet.createRow(row_number++);
       cell_number = 0;
       cell = row.createCell(cell_number++);
       cell.setCellStyle(bold_style);
       cell.setCellType(CellType.STRING);
-      cell.setCellValue(e.getKey().name() + " County");
+      cell.setCellValue(county.name() + " County");
       
-      if (e.getValue().drivingContestResults().isEmpty()) {
+      if (report.drivingContestResults().isEmpty()) {
         cell.setCellValue(cell.getStringCellValue() + " - No Contests Audited");
       } else {  
-        if (!e.getValue().rounds().isEmpty()) {
+        if (!report.rounds().isEmpty()) {
           cell.setCellValue(cell.getStringCellValue() + " - Round Summary");
-          for (final Round round : e.getValue().rounds()) {
+          for (final Round round : report.rounds()) {
             cell = row.createCell(cell_number++);
             cell.setCellType(CellType.STRING);
             cell.setCellStyle(bold_style);
@@ -358,7 +425,7 @@ public class StateReport {
           cell.setCellStyle(bold_style);
           cell.setCellValue("Ballot Cards Audited");
           int accumulator = 0;
-          for (final Round round : e.getValue().rounds()) {
+          for (final Round round : report.rounds()) {
             cell = row.createCell(cell_number++);
             cell.setCellStyle(integer_style);
             cell.setCellType(CellType.NUMERIC);
@@ -377,7 +444,7 @@ public class StateReport {
           cell.setCellStyle(bold_style);
           cell.setCellValue("Discrepancies (Audited Contests)");
           accumulator = 0;
-          for (final Round round : e.getValue().rounds()) {
+          for (final Round round : report.rounds()) {
             cell = row.createCell(cell_number++);
             cell.setCellStyle(integer_style);
             cell.setCellType(CellType.NUMERIC);
@@ -402,7 +469,7 @@ public class StateReport {
           cell.setCellStyle(bold_style);
           cell.setCellValue("Discrepancies (Non-Audited Contests)");
           accumulator = 0;
-          for (final Round round : e.getValue().rounds()) {
+          for (final Round round : report.rounds()) {
             cell = row.createCell(cell_number++);
             cell.setCellStyle(integer_style);
             cell.setCellType(CellType.NUMERIC);
@@ -427,7 +494,7 @@ public class StateReport {
           cell.setCellStyle(bold_style);
           cell.setCellValue("Disagreements (Audited Contests)");
           accumulator = 0;
-          for (final Round round : e.getValue().rounds()) {
+          for (final Round round : report.rounds()) {
             cell = row.createCell(cell_number++);
             cell.setCellStyle(integer_style);
             cell.setCellType(CellType.NUMERIC);
@@ -452,7 +519,7 @@ public class StateReport {
           cell.setCellStyle(bold_style);
           cell.setCellValue("Disagreements (Non-Audited Contests)");
           accumulator = 0;
-          for (final Round round : e.getValue().rounds()) {
+          for (final Round round : report.rounds()) {
             cell = row.createCell(cell_number++);
             cell.setCellStyle(integer_style);
             cell.setCellType(CellType.NUMERIC);
@@ -476,11 +543,11 @@ public class StateReport {
         cell_number = 0;
         cell = row.createCell(cell_number++);
         cell.setCellStyle(bold_style);
-        cell.setCellValue(e.getKey().name() + " County - Audited Contests");
+        cell.setCellValue(county.name() + " County - Audited Contests");
         
         row_number = row_number - 1; // don't skip a line before first contest
         
-        for (final CountyContestResult ccr : e.getValue().drivingContestResults()) {
+        for (final CountyContestResult ccr : report.drivingContestResults()) {
           row_number++;
           row = summary_sheet.createRow(row_number++);
           cell_number = 0;
@@ -551,192 +618,194 @@ public class StateReport {
           }
         }
       }
-    }
-    
-    for (int i = 0; i < max_cell_number; i++) {
-      summary_sheet.autoSizeColumn(i);
-    }
-    
-    // county sheets
-    
-    for (final Entry<County, CountyReport> e : my_county_reports.entrySet()) {
-      if (e.getValue().drivingContestResults().isEmpty()) {
-        // don't generate empty sheets
-        continue;
-      }
-      final Sheet county_sheet = workbook.createSheet(e.getKey().name() + " County");
-      row_number = 0;
-      row = county_sheet.createRow(row_number++);
-      cell_number = 0;
-      max_cell_number = 0;
 
-      cell = row.createCell(cell_number++);
-      cell.setCellType(CellType.STRING);
-      cell.setCellStyle(bold_style);
-      cell.setCellValue(e.getKey().name() + " County Summary Report");
-      for (final Round round : e.getValue().rounds()) {
-        row_number++;
-        row = county_sheet.createRow(row_number++);
-        cell_number = 0;
-        max_cell_number = 0;
+      if (!report.drivingContestResults().isEmpty()) {
+        // don't generate empty sheets
+        final Sheet county_sheet =
+            WorkbookUtilities.createSheet(workbook, county.name() + " County");
+        int sheet_row_number = 0;
+        row = county_sheet.createRow(sheet_row_number++);
+        int sheet_cell_number = 0;
+        int sheet_max_cell_number = 0;
 
-        cell = row.createCell(cell_number++);
+        cell = row.createCell(sheet_cell_number++);
         cell.setCellType(CellType.STRING);
         cell.setCellStyle(bold_style);
-        cell.setCellValue("Round " + round.number());
+        cell.setCellValue(county.name() + " County Summary Report");
+        for (final Round round : report.rounds()) {
+          sheet_row_number++;
+          row = county_sheet.createRow(sheet_row_number++);
+          sheet_cell_number = 0;
+          sheet_max_cell_number = 0;
 
-        row_number++;
-        row = county_sheet.createRow(row_number++);
-        max_cell_number = Math.max(max_cell_number, cell_number);
-        cell_number = 0;
-        cell = row.createCell(cell_number++);
-        cell.setCellType(CellType.STRING);
-        cell.setCellStyle(bold_style);
-        cell.setCellValue("Number of Ballot Cards Audited");
+          cell = row.createCell(sheet_cell_number++);
+          cell.setCellType(CellType.STRING);
+          cell.setCellStyle(bold_style);
+          cell.setCellValue("Round " + round.number());
 
-        cell = row.createCell(cell_number++);
-        cell.setCellType(CellType.NUMERIC);
-        cell.setCellStyle(integer_style);
-        cell.setCellValue(round.actualCount());
-
-        row = county_sheet.createRow(row_number++);
-        cell_number = 1; // these are headers for audit selections
-        final List<AuditSelection> listed_selections = new ArrayList<>();
-        final Map<AuditSelection, Integer> discrepancies = round.discrepancies();
-        final Map<AuditSelection, Integer> disagreements = round.disagreements();
+          sheet_row_number++;
+          row = county_sheet.createRow(sheet_row_number++);
+          sheet_max_cell_number = Math.max(sheet_max_cell_number, sheet_cell_number);
+          sheet_cell_number = 0;
+          cell = row.createCell(sheet_cell_number++);
+          cell.setCellType(CellType.STRING);
+          cell.setCellStyle(bold_style);
+          cell.setCellValue("Number of Ballot Cards Audited");
+
+          cell = row.createCell(sheet_cell_number++);
+          cell.setCellType(CellType.NUMERIC);
+          cell.setCellStyle(integer_style);
+          cell.setCellValue(round.actualCount());
+
+          row = county_sheet.createRow(sheet_row_number++);
+          sheet_cell_number = 1; // these are headers for audit selections
+          final List<AuditSelection> listed_selections = new ArrayList<>();
+          final Map<AuditSelection, Integer> discrepancies = round.discrepancies();
+          final Map<AuditSelection, Integer> disagreements = round.disagreements();
         
-        for (final AuditSelection r : AuditSelection.values()) {
-          if (discrepancies.containsKey(r) && discrepancies.get(r) >= 0 || 
-              disagreements.containsKey(r) && disagreements.get(r) >= 0) {
-            listed_selections.add(r);
+          for (final AuditSelection r : AuditSelection.values()) {
+            if (discrepancies.containsKey(r) && discrepancies.get(r) >= 0 || 
+                disagreements.containsKey(r) && disagreements.get(r) >= 0) {
+              listed_selections.add(r);
+            }
           }
-        }
         
-        Collections.sort(listed_selections);
+          Collections.sort(listed_selections);
         
-        for (final AuditSelection s : listed_selections) {
-          cell = row.createCell(cell_number++);
-          cell.setCellStyle(bold_right_style);
-          cell.setCellValue(s.prettyString());
-        }
-        
-        row = county_sheet.createRow(row_number++);
-        max_cell_number = Math.max(max_cell_number, cell_number);
-        cell_number = 0;
-        cell = row.createCell(cell_number++);
-        cell.setCellType(CellType.STRING);
-        cell.setCellStyle(bold_style);
-        if (discrepancies.isEmpty()) {
-          cell.setCellValue("No Discrepancies Recorded");
-        } else {
-          cell.setCellValue("Discrepancies Recorded");
           for (final AuditSelection s : listed_selections) {
-            cell = row.createCell(cell_number++);
-            cell.setCellType(CellType.NUMERIC);
-            cell.setCellStyle(integer_style);
-            final int cell_value;
-            if (discrepancies.containsKey(s)) {
-              cell_value = discrepancies.get(s);
-            } else {
-              cell_value = 0;
+            cell = row.createCell(sheet_cell_number++);
+            cell.setCellStyle(bold_right_style);
+            cell.setCellValue(s.prettyString());
+          }
+        
+          row = county_sheet.createRow(sheet_row_number++);
+          sheet_max_cell_number = Math.max(sheet_max_cell_number, sheet_cell_number);
+          sheet_cell_number = 0;
+          cell = row.createCell(sheet_cell_number++);
+          cell.setCellType(CellType.STRING);
+          cell.setCellStyle(bold_style);
+          if (discrepancies.isEmpty()) {
+            cell.setCellValue("No Discrepancies Recorded");
+          } else {
+            cell.setCellValue("Discrepancies Recorded");
+            for (final AuditSelection s : listed_selections) {
+              cell = row.createCell(sheet_cell_number++);
+              cell.setCellType(CellType.NUMERIC);
+              cell.setCellStyle(integer_style);
+              final int cell_value;
+              if (discrepancies.containsKey(s)) {
+                cell_value = discrepancies.get(s);
+              } else {
+                cell_value = 0;
+              }
+              cell.setCellValue(cell_value);
             }
-            cell.setCellValue(cell_value);
           }
-        }
         
-        row = county_sheet.createRow(row_number++);
-        max_cell_number = Math.max(max_cell_number, cell_number);
-        cell_number = 0;
-        cell = row.createCell(cell_number++);
-        cell.setCellType(CellType.STRING);
-        cell.setCellStyle(bold_style);
-        if (disagreements.isEmpty()) {
-          cell.setCellValue("No Disagreements Recorded");
-        } else {
-          cell.setCellValue("Disagreements Recorded");
-          for (final AuditSelection s : listed_selections) {
-            cell = row.createCell(cell_number++);
-            cell.setCellType(CellType.NUMERIC);
-            cell.setCellStyle(integer_style);
-            final int cell_value;
-            if (disagreements.containsKey(s)) {
-              cell_value = disagreements.get(s);
-            } else {
-              cell_value = 0;
+          row = county_sheet.createRow(sheet_row_number++);
+          sheet_max_cell_number = Math.max(sheet_max_cell_number, sheet_cell_number);
+          sheet_cell_number = 0;
+          cell = row.createCell(sheet_cell_number++);
+          cell.setCellType(CellType.STRING);
+          cell.setCellStyle(bold_style);
+          if (disagreements.isEmpty()) {
+            cell.setCellValue("No Disagreements Recorded");
+          } else {
+            cell.setCellValue("Disagreements Recorded");
+            for (final AuditSelection s : listed_selections) {
+              cell = row.createCell(sheet_cell_number++);
+              cell.setCellType(CellType.NUMERIC);
+              cell.setCellStyle(integer_style);
+              final int cell_value;
+              if (disagreements.containsKey(s)) {
+                cell_value = disagreements.get(s);
+              } else {
+                cell_value = 0;
+              }
+              cell.setCellValue(cell_value);
             }
-            cell.setCellValue(cell_value);
           }
-        }
-        row_number++;
-        row = county_sheet.createRow(row_number++);
-        max_cell_number = Math.max(max_cell_number, cell_number);
-        cell_number = 0;
-        cell = row.createCell(cell_number++);
-        cell.setCellType(CellType.STRING);
-        cell.setCellStyle(bold_style);
-        cell.setCellValue("Ballot Cards Selected");
-
-        row = county_sheet.createRow(row_number++);
-        cell_number = 0;
-        cell = row.createCell(cell_number++);
-        cell.setCellType(CellType.STRING);
-        cell.setCellStyle(bold_style);
-        cell.setCellValue("Imprinted ID");
-        cell = row.createCell(cell_number++);
-        cell.setCellType(CellType.STRING);
-        cell.setCellStyle(bold_right_style);
-        cell.setCellValue("Audited");
-        cell = row.createCell(cell_number++);
-        cell.setCellType(CellType.STRING);
-        cell.setCellStyle(bold_right_style);
-        cell.setCellValue("Discrepancy");
-        cell = row.createCell(cell_number++);
-        cell.setCellType(CellType.STRING);
-        cell.setCellStyle(bold_right_style);
-        cell.setCellValue("Disagreement");
-        cell = row.createCell(cell_number++);
-        cell.setCellType(CellType.STRING);
-        cell.setCellStyle(bold_right_style);
-        cell.setCellValue("Ballot Type");
+          sheet_row_number++;
+          row = county_sheet.createRow(sheet_row_number++);
+          sheet_max_cell_number = Math.max(sheet_max_cell_number, sheet_cell_number);
+          sheet_cell_number = 0;
+          cell = row.createCell(sheet_cell_number++);
+          cell.setCellType(CellType.STRING);
+          cell.setCellStyle(bold_style);
+          cell.setCellValue("Ballot Cards Selected");
 
-        max_cell_number = Math.max(max_cell_number, cell_number);
-        for (final CVRAuditInfo audit_info : 
-             e.getValue().cvrsToAuditByRound().get(round.number())) {
-          row = county_sheet.createRow(row_number++);
-          cell_number = 0;
-          cell = row.createCell(cell_number++);
+          row = county_sheet.createRow(sheet_row_number++);
+          sheet_cell_number = 0;
+          cell = row.createCell(sheet_cell_number++);
           cell.setCellType(CellType.STRING);
-          cell.setCellStyle(standard_style);
-          cell.setCellValue(audit_info.cvr().imprintedID());
-          cell = row.createCell(cell_number++);
+          cell.setCellStyle(bold_style);
+          cell.setCellValue("Imprinted ID");
+          cell = row.createCell(sheet_cell_number++);
           cell.setCellType(CellType.STRING);
-          cell.setCellStyle(standard_right_style);
-          if (audit_info.acvr() == null) {
-            cell.setCellValue(booleanYesNo(false));
-          } else {
-            cell.setCellValue(booleanYesNo(audit_info.acvr().recordType() == 
-                                           RecordType.AUDITOR_ENTERED));
-          }
-          cell = row.createCell(cell_number++);
+          cell.setCellStyle(bold_right_style);
+          cell.setCellValue("Audited");
+          cell = row.createCell(sheet_cell_number++);
           cell.setCellType(CellType.STRING);
-          cell.setCellStyle(standard_right_style);
-          cell.setCellValue(booleanYesNo(!audit_info.discrepancy().isEmpty()));
-          cell = row.createCell(cell_number++);
+          cell.setCellStyle(bold_right_style);
+          cell.setCellValue("Discrepancy");
+          cell = row.createCell(sheet_cell_number++);
           cell.setCellType(CellType.STRING);
-          cell.setCellStyle(standard_right_style);
-          cell.setCellValue(booleanYesNo(!audit_info.disagreement().isEmpty()));
-          cell = row.createCell(cell_number++);
+          cell.setCellStyle(bold_right_style);
+          cell.setCellValue("Disagreement");
+          cell = row.createCell(sheet_cell_number++);
           cell.setCellType(CellType.STRING);
-          cell.setCellStyle(standard_right_style);
-          cell.setCellValue(audit_info.cvr().ballotType());
+          cell.setCellStyle(bold_right_style);
+          cell.setCellValue("Ballot Type");
 
+          sheet_max_cell_number = Math.max(sheet_max_cell_number, sheet_cell_number);
+          for (final CVRAuditInfo audit_info : 
+               report.cvrsToAuditByRound().get(round.number())) {
+            row = county_sheet.createRow(sheet_row_number++);
+            sheet_cell_number = 0;
+            cell = row.createCell(sheet_cell_number++);
+            cell.setCellType(CellType.STRING);
+            cell.setCellStyle(standard_style);
+            cell.setCellValue(audit_info.cvr().imprintedID());
+            cell = row.createCell(sheet_cell_number++);
+            cell.setCellType(CellType.STRING);
+            cell.setCellStyle(standard_right_style);
+            if (audit_info.acvr() == null) {
+              cell.setCellValue(booleanYesNo(false));
+            } else {
+              cell.setCellValue(booleanYesNo(audit_info.acvr().recordType() == 
+                                             RecordType.AUDITOR_ENTERED));
+            }
+            cell = row.createCell(sheet_cell_number++);
+            cell.setCellType(CellType.STRING);
+            cell.setCellStyle(standard_right_style);
+            cell.setCellValue(booleanYesNo(!audit_info.discrepancy().isEmpty()));
+            cell = row.createCell(sheet_cell_number++);
+            cell.setCellType(CellType.STRING);
+            cell.setCellStyle(standard_right_style);
+            cell.setCellValue(booleanYesNo(!audit_info.disagreement().isEmpty()));
+            cell = row.createCell(sheet_cell_number++);
+            cell.setCellType(CellType.STRING);
+            cell.setCellStyle(standard_right_style);
+            cell.setCellValue(audit_info.cvr().ballotType());
+
+          }
+        }
+        for (int i = 0; i < sheet_max_cell_number; i++) {
+          county_sheet.autoSizeColumn(i);
         }
       }
-      for (int i = 0; i < max_cell_number; i++) {
-        county_sheet.autoSizeColumn(i);
+
+      if (the_streaming) {
+        // the written rows are no longer needed in the session, and this
+        // report changes nothing
+        Persistence.flushAndClear();
       }
     }
-    
+
+    for (int i = 0; i < max_cell_number; i++) {
+      summary_sheet.autoSizeColumn(i);
+    }
+
     return workbook;
   }
   
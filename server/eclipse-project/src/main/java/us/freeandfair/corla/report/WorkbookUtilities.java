@@ -0,0 +1,79 @@
+/*
+ * Colorado RLA System
+ */
+
+package us.freeandfair.corla.report;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+/**
+ * Utilities for building report workbooks, either entirely in memory or
+ * streamed: a streaming workbook keeps only a bounded window of rows of each
+ * sheet in memory, and writes the rest to compressed temporary files until
+ * the workbook is written out.
+ */
+final class WorkbookUtilities {
+  /**
+   * The number of rows of each sheet a streaming workbook keeps in memory.
+   */
+  static final int ROW_WINDOW = 100;
+
+  /**
+   * Private constructor to prevent instantiation.
+   */
+  private WorkbookUtilities() {
+    // do nothing
+  }
+
+  /**
+   * @return a new streaming workbook.
+   */
+  static SXSSFWorkbook streamingWorkbook() {
+    final SXSSFWorkbook result = new SXSSFWorkbook(ROW_WINDOW);
+    result.setCompressTempFiles(true);
+    return result;
+  }
+
+  /**
+   * Creates a sheet in the specified workbook. The columns of a sheet in a
+   * streaming workbook are tracked for auto-sizing, because most of its rows
+   * are no longer in memory when the columns are sized.
+   *
+   * @param the_workbook The workbook.
+   * @param the_name The name of the sheet.
+   * @return the sheet.
+   */
+  static Sheet createSheet(final Workbook the_workbook, final String the_name) {
+    final Sheet result = the_workbook.createSheet(the_name);
+    if (result instanceof SXSSFSheet) {
+      ((SXSSFSheet) result).trackAllColumnsForAutoSizing();
+    }
+    return result;
+  }
+
+  /**
+   * Writes a streaming workbook to the specified stream, then closes it and
+   * deletes its temporary files whether or not the write succeeds. The
+   * stream is not closed.
+   *
+   * @param the_workbook The workbook.
+   * @param the_stream The stream.
+   * @exception IOException if the workbook cannot be written.
+   */
+  static void write(final SXSSFWorkbook the_workbook, final OutputStream the_stream)
+      throws IOException {
+    try {
+      the_workbook.write(the_stream);
+      the_stream.flush();
+    } finally {
+      the_workbook.dispose();
+      the_workbook.close();
+    }
+  }
+}
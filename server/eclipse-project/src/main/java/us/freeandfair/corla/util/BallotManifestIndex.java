@@ -0,0 +1,155 @@
+/*
+ * Colorado RLA System
+ */
+
+package us.freeandfair.corla.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import us.freeandfair.corla.model.BallotManifestInfo;
+
+/**
+ * An immutable index over the ballot manifests of a set of counties, laid
+ * end to end in a single contest-wide sequence (the "ultimate" sequence)
+ * that starts at 1. Finding the manifest entry holding a position in that
+ * sequence is a binary search over the projected ends, rather than a scan
+ * over every entry.
+ *
+ * The entries are ordered by BallotManifestInfo.Sort (county, then sequence
+ * end), regardless of the iteration order of the collection the index is
+ * built from, so the same manifests always yield the same projection. The
+ * projection is held in the index itself; the ultimate sequence fields of
+ * the entries are not touched, so entries may be shared between indexes
+ * for different sets of counties.
+ */
+public final class BallotManifestIndex {
+  /**
+   * The manifest entries, in projection order.
+   */
+  private final BallotManifestInfo[] my_entries;
+
+  /**
+   * The inclusive end of each entry in the ultimate sequence; ascending.
+   */
+  private final long[] my_ultimate_ends;
+
+  /**
+   * The counties covered by this index.
+   */
+  private final Set<Long> my_county_ids;
+
+  /**
+   * Constructs an index over the specified manifest entries.
+   *
+   * @param the_bmis The manifest entries.
+   */
+  public BallotManifestIndex(final Collection<BallotManifestInfo> the_bmis) {
+    final List<BallotManifestInfo> sorted = new ArrayList<>(the_bmis);
+    Collections.sort(sorted, new BallotManifestInfo.Sort());
+    my_entries = sorted.toArray(new BallotManifestInfo[sorted.size()]);
+    my_ultimate_ends = new long[my_entries.length];
+    final Set<Long> county_ids = new HashSet<>();
+    long last = 0L;
+    for (int i = 0; i < my_entries.length; i++) {
+      // the same arithmetic as BallotManifestInfo.setUltimate(last + 1)
+      last = last + 1L + my_entries[i].rangeSize();
+      my_ultimate_ends[i] = last;
+      county_ids.add(my_entries[i].countyID());
+    }
+    my_county_ids = Collections.unmodifiableSet(county_ids);
+  }
+
+  /**
+   * @return the counties covered by this index.
+   */
+  public Set<Long> countyIDs() {
+    return my_county_ids;
+  }
+
+  /**
+   * @return the number of manifest entries in this index.
+   */
+  public int size() {
+    return my_entries.length;
+  }
+
+  /**
+   * @return the length of the ultimate sequence, that is, the last position
+   * held by any entry (0 if there are none).
+   */
+  public long ultimateLength() {
+    long result = 0L;
+    if (my_entries.length > 0) {
+      result = my_ultimate_ends[my_entries.length - 1];
+    }
+    return result;
+  }
+
+  /**
+   * Finds the slot of the entry holding the specified position.
+   *
+   * @param the_rand The position in the ultimate sequence.
+   * @return the slot, or -1 if no entry holds the position.
+   */
+  private int slotHolding(final long the_rand) {
+    int slot = Arrays.binarySearch(my_ultimate_ends, the_rand);
+    if (slot < 0) {
+      // the first entry whose end is past the position
+      slot = -slot - 1;
+    }
+    if (the_rand < 1L || my_entries.length <= slot || the_rand < ultimateStart(slot)) {
+      slot = -1;
+    }
+    return slot;
+  }
+
+  /**
+   * @param the_slot A slot.
+   * @return the inclusive start of the entry in the slot.
+   */
+  private long ultimateStart(final int the_slot) {
+    long result = 1L;
+    if (the_slot > 0) {
+      result = my_ultimate_ends[the_slot - 1] + 1L;
+    }
+    return result;
+  }
+
+  /**
+   * Finds the manifest entry holding the specified position.
+   *
+   * @param the_rand The position in the ultimate sequence.
+   * @return the entry, or null if no entry holds the position.
+   */
+  public BallotManifestInfo holding(final long the_rand) {
+    final int slot = slotHolding(the_rand);
+    BallotManifestInfo result = null;
+    if (slot >= 0) {
+      result = my_entries[slot];
+    }
+    return result;
+  }
+
+  /**
+   * Translates a position in the ultimate sequence to the 1-based position
+   * within the manifest entry holding it; this is the index-based equivalent
+   * of BallotManifestInfo.translateRand.
+   *
+   * @param the_rand The position in the ultimate sequence.
+   * @return the position within the entry.
+   * @exception IllegalArgumentException if no entry holds the position.
+   */
+  public Integer translateRand(final long the_rand) {
+    final int slot = slotHolding(the_rand);
+    if (slot < 0) {
+      throw new IllegalArgumentException("no manifest entry holds " + the_rand);
+    }
+    return (int) (the_rand - ultimateStart(slot) + 1L);
+  }
+}
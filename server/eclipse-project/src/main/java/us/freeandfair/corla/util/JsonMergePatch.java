@@ -0,0 +1,60 @@
+/*
+ * Colorado RLA System
+ */
+
+package us.freeandfair.corla.util;
+
+import java.util.Map;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+
+/**
+ * Computes JSON merge patches (RFC 7386): a patch is an object holding the
+ * members that changed, where a null member is one that was removed and
+ * nested objects are patched recursively. Anything other than an object
+ * (including an array) is replaced as a whole.
+ *
+ * Merge patches cannot set a member to null; that is no restriction for
+ * documents produced by Main.GSON, which omits null members.
+ */
+public final class JsonMergePatch {
+  /**
+   * Private constructor to prevent instantiation.
+   */
+  private JsonMergePatch() {
+    // do nothing
+  }
+
+  /**
+   * Computes the merge patch that turns one object into another.
+   *
+   * @param the_from The original object.
+   * @param the_to The new object.
+   * @return the patch; it is empty if the objects are equal.
+   */
+  public static JsonObject diff(final JsonObject the_from, final JsonObject the_to) {
+    final JsonObject result = new JsonObject();
+    for (final Map.Entry<String, JsonElement> e : the_from.entrySet()) {
+      if (!the_to.has(e.getKey())) {
+        result.add(e.getKey(), JsonNull.INSTANCE);
+      }
+    }
+    for (final Map.Entry<String, JsonElement> e : the_to.entrySet()) {
+      final JsonElement old = the_from.get(e.getKey());
+      final JsonElement latest = e.getValue();
+      if (old == null || old.isJsonNull()) {
+        result.add(e.getKey(), latest);
+      } else if (old.isJsonObject() && latest.isJsonObject()) {
+        final JsonObject nested = diff(old.getAsJsonObject(), latest.getAsJsonObject());
+        if (nested.size() > 0) {
+          result.add(e.getKey(), nested);
+        }
+      } else if (!old.equals(latest)) {
+        result.add(e.getKey(), latest);
+      }
+    }
+    return result;
+  }
+}
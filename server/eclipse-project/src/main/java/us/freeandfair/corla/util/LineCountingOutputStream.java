@@ -0,0 +1,92 @@
+/*
+ * Colorado RLA System
+ */
+
+package us.freeandfair.corla.util;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An output stream that counts the lines written through it, as
+ * java.io.LineNumberReader does: each line feed, carriage return, or
+ * carriage return followed by a line feed ends a line.
+ */
+public class LineCountingOutputStream extends FilterOutputStream {
+  /**
+   * The carriage return byte.
+   */
+  private static final int CR = '\r';
+
+  /**
+   * The line feed byte.
+   */
+  private static final int LF = '\n';
+
+  /**
+   * The number of lines ended so far.
+   */
+  private int my_line_count;
+
+  /**
+   * Whether the last byte written was a carriage return.
+   */
+  private boolean my_after_cr;
+
+  /**
+   * Constructs a line counting output stream.
+   *
+   * @param the_output_stream The underlying output stream.
+   */
+  public LineCountingOutputStream(final OutputStream the_output_stream) {
+    super(the_output_stream);
+  }
+
+  /**
+   * @return the number of lines ended so far.
+   */
+  public int lineCount() {
+    return my_line_count;
+  }
+
+  /**
+   * Counts a byte.
+   *
+   * @param the_byte The byte.
+   */
+  private void count(final int the_byte) {
+    if (the_byte == LF) {
+      if (!my_after_cr) {
+        my_line_count = my_line_count + 1;
+      }
+      my_after_cr = false;
+    } else if (the_byte == CR) {
+      my_line_count = my_line_count + 1;
+      my_after_cr = true;
+    } else {
+      my_after_cr = false;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void write(final int the_byte) throws IOException {
+    out.write(the_byte);
+    count(the_byte & 0xFF);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void write(final byte[] the_bytes, final int the_offset, final int the_length)
+      throws IOException {
+    out.write(the_bytes, the_offset, the_length);
+    for (int i = the_offset; i < the_offset + the_length; i++) {
+      count(the_bytes[i] & 0xFF);
+    }
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Colorado RLA System
+ */
+
+package us.freeandfair.corla.util;
+
+/**
+ * A count of occurrences of long values, stored in primitive arrays (open
+ * addressing with linear probing) so that counting a large sample neither
+ * boxes its elements nor allocates an entry per element. Counts can only
+ * grow.
+ */
+public class LongCountMap {
+  /**
+   * The initial capacity; must be a power of two.
+   */
+  private static final int INITIAL_CAPACITY = 16;
+
+  /**
+   * The multiplier used to spread keys across the table (the golden ratio
+   * as a 64-bit fraction).
+   */
+  private static final long SPREAD = 0x9E3779B97F4A7C15L;
+
+  /**
+   * The keys; a slot is in use if its count is non-zero.
+   */
+  private long[] my_keys;
+
+  /**
+   * The counts.
+   */
+  private int[] my_counts;
+
+  /**
+   * The number of distinct keys.
+   */
+  private int my_size;
+
+  /**
+   * Constructs an empty count map.
+   */
+  public LongCountMap() {
+    my_keys = new long[INITIAL_CAPACITY];
+    my_counts = new int[INITIAL_CAPACITY];
+  }
+
+  /**
+   * Counts one occurrence of the specified value.
+   *
+   * @param the_value The value.
+   */
+  public void increment(final long the_value) {
+    final int slot = slot(my_keys, my_counts, the_value);
+    if (my_counts[slot] == 0) {
+      my_keys[slot] = the_value;
+      my_size = my_size + 1;
+      my_counts[slot] = 1;
+      if (2 * my_size > my_keys.length) {
+        grow();
+      }
+    } else {
+      my_counts[slot] = my_counts[slot] + 1;
+    }
+  }
+
+  /**
+   * @param the_value The value.
+   * @return the number of occurrences of the value.
+   */
+  public int get(final long the_value) {
+    return my_counts[slot(my_keys, my_counts, the_value)];
+  }
+
+  /**
+   * @return the number of distinct values counted.
+   */
+  public int size() {
+    return my_size;
+  }
+
+  /**
+   * Finds the slot that holds, or would hold, the specified value.
+   *
+   * @param the_keys The keys.
+   * @param the_counts The counts.
+   * @param the_value The value.
+   * @return the slot.
+   */
+  private static int slot(final long[] the_keys, final int[] the_counts,
+                          final long the_value) {
+    final int mask = the_keys.length - 1;
+    int slot = (int) ((the_value * SPREAD) >>> 32) & mask;
+    while (the_counts[slot] != 0 && the_keys[slot] != the_value) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  /**
+   * Doubles the capacity of the table.
+   */
+  private void grow() {
+    final long[] keys = new long[my_keys.length * 2];
+    final int[] counts = new int[my_counts.length * 2];
+    for (int i = 0; i < my_keys.length; i++) {
+      if (my_counts[i] != 0) {
+        final int slot = slot(keys, counts, my_keys[i]);
+        keys[slot] = my_keys[i];
+        counts[slot] = my_counts[i];
+      }
+    }
+    my_keys = keys;
+    my_counts = counts;
+  }
+}
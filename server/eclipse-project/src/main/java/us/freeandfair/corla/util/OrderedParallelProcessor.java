@@ -0,0 +1,233 @@
+/*
+ * Colorado RLA System
+ */
+
+package us.freeandfair.corla.util;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A three-stage pipeline that reads elements from a source iterator on a
+ * dedicated reader thread, transforms them on a pool of worker threads, and
+ * hands the results back to the consuming thread in source order.
+ *
+ * The number of elements in flight (read but not yet consumed) is bounded,
+ * so a slow consumer applies backpressure to the reader rather than letting
+ * the whole source accumulate in memory. The consumer is always the thread
+ * that calls next(), which makes this suitable for feeding a Hibernate
+ * session that is bound to that thread.
+ *
+ * The transformation function must not touch persistence or any other
+ * thread-confined state.
+ *
+ * @param <I> The type of the source elements.
+ * @param <O> The type of the transformed elements.
+ */
+@SuppressWarnings({"PMD.DoNotUseThreads", "PMD.AvoidCatchingGenericException"})
+public class OrderedParallelProcessor<I, O> implements Iterator<O>, AutoCloseable {
+  /**
+   * The counter used to name the threads of all processors.
+   */
+  private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+  /**
+   * The source iterator.
+   */
+  private final Iterator<I> my_source;
+
+  /**
+   * The transformation applied to each element, given its 0-based position
+   * in the source and the element itself.
+   */
+  private final Transformation<I, O> my_transformation;
+
+  /**
+   * The worker pool.
+   */
+  private final ExecutorService my_workers;
+
+  /**
+   * The bounded queue of pending results, in source order.
+   */
+  private final BlockingQueue<Future<O>> my_pending;
+
+  /**
+   * The reader thread.
+   */
+  private final Thread my_reader;
+
+  /**
+   * The marker future placed on the queue when the source is exhausted.
+   */
+  private final Future<O> my_end_marker = new CompletableFuture<>();
+
+  /**
+   * The next pending result, if it has already been taken from the queue.
+   */
+  private Future<O> my_next;
+
+  /**
+   * A flag indicating whether this processor has been closed.
+   */
+  @SuppressWarnings("PMD.AvoidUsingVolatile")
+  private volatile boolean my_closed;
+
+  /**
+   * Constructs a new processor and starts reading from the source.
+   *
+   * @param the_source The source iterator; it is only ever accessed from
+   * the reader thread after construction.
+   * @param the_transformation The transformation to apply to each element.
+   * @param the_parallelism The number of worker threads; values less than 1
+   * are treated as 1.
+   * @param the_capacity The maximum number of elements in flight; values
+   * less than the parallelism are treated as the parallelism.
+   */
+  public OrderedParallelProcessor(final Iterator<I> the_source,
+                                  final Transformation<I, O> the_transformation,
+                                  final int the_parallelism,
+                                  final int the_capacity) {
+    final int parallelism = Math.max(1, the_parallelism);
+    final int id = THREAD_COUNTER.incrementAndGet();
+    my_source = the_source;
+    my_transformation = the_transformation;
+    my_pending = new ArrayBlockingQueue<>(Math.max(parallelism, the_capacity));
+    my_workers = Executors.newFixedThreadPool(parallelism,
+                                              daemonFactory("pipeline-" + id + "-worker"));
+    my_reader = daemonFactory("pipeline-" + id + "-reader").newThread(this::read);
+    my_reader.start();
+  }
+
+  /**
+   * Creates a thread factory that makes named daemon threads.
+   *
+   * @param the_prefix The thread name prefix.
+   * @return the thread factory.
+   */
+  private static ThreadFactory daemonFactory(final String the_prefix) {
+    final AtomicInteger count = new AtomicInteger();
+    return runnable -> {
+      final Thread thread = new Thread(runnable, the_prefix + "-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  /**
+   * The body of the reader thread. Reads source elements, submits them to
+   * the worker pool, and enqueues the resulting futures in order; blocks when
+   * the queue is full. Any exception thrown by the source is delivered to
+   * the consumer in place of the element that could not be read.
+   */
+  private void read() {
+    int index = 0;
+    try {
+      while (!my_closed && my_source.hasNext()) {
+        final I element = my_source.next();
+        final int position = index;
+        my_pending.put(my_workers.submit(() -> my_transformation.apply(position, element)));
+        index = index + 1;
+      }
+      my_pending.put(my_end_marker);
+    } catch (final InterruptedException e) {
+      // we were closed while waiting for space in the queue
+      Thread.currentThread().interrupt();
+    } catch (final RuntimeException | Error e) {
+      final CompletableFuture<O> failure = new CompletableFuture<>();
+      failure.completeExceptionally(e);
+      try {
+        my_pending.put(failure);
+      } catch (final InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean hasNext() {
+    if (my_next == null) {
+      try {
+        my_next = my_pending.take();
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("interrupted while waiting for input", e);
+      }
+    }
+    return my_next != my_end_marker;
+  }
+
+  /**
+   * Returns the next transformed element, in source order, waiting for it to
+   * be transformed if necessary.
+   *
+   * @return the next transformed element.
+   * @exception NoSuchElementException if the source is exhausted.
+   * @exception RuntimeException if reading or transforming the element
+   * threw it.
+   */
+  @Override
+  public O next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    final Future<O> current = my_next;
+    my_next = null;
+    try {
+      return current.get();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted while waiting for input", e);
+    } catch (final ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+
+  /**
+   * Stops the reader and the workers and discards any pending results. This
+   * is safe to call at any time, including before the source is exhausted.
+   */
+  @Override
+  public void close() {
+    my_closed = true;
+    my_reader.interrupt();
+    my_pending.clear();
+    my_workers.shutdownNow();
+  }
+
+  /**
+   * A transformation applied to each element of the source.
+   *
+   * @param <I> The type of the source elements.
+   * @param <O> The type of the transformed elements.
+   */
+  @FunctionalInterface
+  public interface Transformation<I, O> {
+    /**
+     * Transforms an element.
+     *
+     * @param the_index The 0-based position of the element in the source.
+     * @param the_element The element.
+     * @return the transformed element.
+     */
+    O apply(int the_index, I the_element);
+  }
+}
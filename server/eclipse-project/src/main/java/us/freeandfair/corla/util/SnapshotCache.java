@@ -0,0 +1,217 @@
+/*
+ * Colorado RLA System
+ */
+
+package us.freeandfair.corla.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of serialized responses (snapshots), keyed by whatever they
+ * describe, that are rebuilt only when the data they are derived from
+ * changes.
+ *
+ * Every change is stamped with a number from a logical clock. A caller
+ * reads the version of a key <em>before</em> starting the transaction from
+ * which it builds the snapshot, and stores the snapshot under that version;
+ * the snapshot is then served until a later change to the key (or to
+ * everything) is reported. A change committed while a snapshot is being
+ * built has a later stamp than the one the snapshot was stored under, so
+ * it is never masked.
+ *
+ * Each snapshot carries a strong entity tag derived from its contents, for
+ * HTTP conditional requests.
+ *
+ * @param <K> The type of the keys.
+ */
+public class SnapshotCache<K> {
+  /**
+   * The number of hash bytes used in an entity tag.
+   */
+  private static final int ETAG_BYTES = 16;
+
+  /**
+   * The logical clock used to stamp changes.
+   */
+  private final AtomicLong my_clock = new AtomicLong();
+
+  /**
+   * The stamp of the latest change to each key.
+   */
+  private final ConcurrentMap<K, Long> my_changes = new ConcurrentHashMap<>();
+
+  /**
+   * The stamp of the latest change to everything.
+   */
+  private final AtomicLong my_all_changed = new AtomicLong();
+
+  /**
+   * The snapshots.
+   */
+  private final ConcurrentMap<K, Snapshot> my_snapshots = new ConcurrentHashMap<>();
+
+  /**
+   * @param the_key The key.
+   * @return the current version of the data for the key; a snapshot built
+   * from data read after this call may be stored under this version.
+   */
+  public long version(final K the_key) {
+    return Math.max(my_changes.getOrDefault(the_key, 0L), my_all_changed.get());
+  }
+
+  /**
+   * @return the stamp of the latest change to any key; data for all keys
+   * read after this call may be considered current as of this version.
+   */
+  public long latestVersion() {
+    return my_clock.get();
+  }
+
+  /**
+   * Records a change to the data for the specified key.
+   *
+   * @param the_key The key.
+   */
+  public void invalidate(final K the_key) {
+    my_changes.merge(the_key, my_clock.incrementAndGet(), Math::max);
+  }
+
+  /**
+   * Records a change to the data for all keys.
+   */
+  public void invalidateAll() {
+    my_all_changed.accumulateAndGet(my_clock.incrementAndGet(), Math::max);
+    my_snapshots.clear();
+  }
+
+  /**
+   * Gets the snapshot for the specified key, if it is current.
+   *
+   * @param the_key The key.
+   * @param the_version The current version of the key, as returned by
+   * version().
+   * @return the snapshot, or null if there is none for that version.
+   */
+  public Snapshot get(final K the_key, final long the_version) {
+    final Snapshot result = my_snapshots.get(the_key);
+    if (result == null || result.version() < the_version) {
+      return null;
+    }
+    return result;
+  }
+
+  /**
+   * Stores a snapshot for the specified key, unless a snapshot for a later
+   * version is already stored.
+   *
+   * @param the_key The key.
+   * @param the_version The version read before reading the data the
+   * snapshot was built from.
+   * @param the_body The snapshot contents.
+   * @return the stored snapshot.
+   */
+  public Snapshot put(final K the_key, final long the_version, final String the_body) {
+    final Snapshot snapshot = new Snapshot(the_version, the_body);
+    my_snapshots.merge(the_key, snapshot,
+                       (old, latest) -> old.version() > latest.version() ? old : latest);
+    return snapshot;
+  }
+
+  /**
+   * A serialized response and its entity tag.
+   */
+  public static final class Snapshot {
+    /**
+     * The version of the data.
+     */
+    private final long my_version;
+
+    /**
+     * The contents.
+     */
+    private final String my_body;
+
+    /**
+     * The entity tag, including quotes.
+     */
+    private final String my_etag;
+
+    /**
+     * Constructs a snapshot.
+     *
+     * @param the_version The version of the data.
+     * @param the_body The contents.
+     */
+    protected Snapshot(final long the_version, final String the_body) {
+      my_version = the_version;
+      my_body = the_body;
+      my_etag = etag(the_body);
+    }
+
+    /**
+     * @return the version of the data.
+     */
+    public long version() {
+      return my_version;
+    }
+
+    /**
+     * @return the contents.
+     */
+    public String body() {
+      return my_body;
+    }
+
+    /**
+     * @return the entity tag, including quotes.
+     */
+    public String etag() {
+      return my_etag;
+    }
+
+    /**
+     * Checks an If-None-Match request header against this snapshot.
+     *
+     * @param the_header The header value; may be null.
+     * @return true if the client already has this snapshot.
+     */
+    public boolean matches(final String the_header) {
+      if (the_header == null) {
+        return false;
+      }
+      for (final String tag : the_header.split(",")) {
+        final String trimmed = tag.trim();
+        if ("*".equals(trimmed) || my_etag.equals(trimmed) ||
+            ("W/" + my_etag).equals(trimmed)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Computes the entity tag for the specified contents.
+     *
+     * @param the_body The contents.
+     * @return the entity tag.
+     */
+    private static String etag(final String the_body) {
+      try {
+        final byte[] hash = MessageDigest.getInstance("SHA-256").
+            digest(the_body.getBytes(StandardCharsets.UTF_8));
+        final StringBuilder sb = new StringBuilder(2 * ETAG_BYTES + 2).append('"');
+        for (int i = 0; i < ETAG_BYTES; i++) {
+          sb.append(String.format("%02x", hash[i]));
+        }
+        return sb.append('"').toString();
+      } catch (final NoSuchAlgorithmException e) {
+        throw new IllegalStateException("SHA-256 is unavailable", e);
+      }
+    }
+  }
+}
@@ -0,0 +1,81 @@
+package us.freeandfair.corla.asm;
+
+import java.util.Arrays;
+
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+import us.freeandfair.corla.asm.ASMEvent.AuditBoardDashboardEvent;
+import us.freeandfair.corla.asm.ASMEvent.CountyDashboardEvent;
+import us.freeandfair.corla.asm.ASMEvent.DoSDashboardEvent;
+import us.freeandfair.corla.asm.ASMState.AuditBoardDashboardState;
+import us.freeandfair.corla.asm.ASMState.CountyDashboardState;
+import us.freeandfair.corla.asm.ASMState.DoSDashboardState;
+import us.freeandfair.corla.asm.ASMTransitionFunction.AuditBoardDashboardTransitionFunction;
+import us.freeandfair.corla.asm.ASMTransitionFunction.CountyDashboardTransitionFunction;
+import us.freeandfair.corla.asm.ASMTransitionFunction.DoSDashboardTransitionFunction;
+
+public class ASMTransitionTableTest {
+
+  private ASMState search(final ASMTransitionFunction[] the_functions,
+                          final ASMState the_state, final ASMEvent the_event) {
+    for (final ASMTransition t :
+         AbstractStateMachine.transitionsFor(Arrays.asList(the_functions))) {
+      if (t.startStates().contains(the_state) && t.events().contains(the_event)) {
+        return t.endState();
+      }
+    }
+    return null;
+  }
+
+  private void checkTable(final AbstractStateMachine the_asm,
+                          final ASMTransitionFunction[] the_functions,
+                          final ASMState[] the_states, final ASMEvent[] the_events) {
+    final ASMTransitionTable table = ASMTransitionTable.forASM(the_asm);
+    assertSame(ASMTransitionTable.forClass(the_asm.getClass()), table);
+    for (final ASMState s : the_states) {
+      for (final ASMEvent e : the_events) {
+        final ASMState expected = search(the_functions, s, e);
+        assertEquals(table.next(s, e), expected, s + ", " + e);
+        assertEquals(table.enabledEvents(s).contains(e), expected != null);
+      }
+    }
+  }
+
+  @Test()
+  public void compiledTablesMatchTransitionsTest() {
+    checkTable(new DoSDashboardASM(), DoSDashboardTransitionFunction.values(),
+               DoSDashboardState.values(), DoSDashboardEvent.values());
+    checkTable(new CountyDashboardASM("1"), CountyDashboardTransitionFunction.values(),
+               CountyDashboardState.values(), CountyDashboardEvent.values());
+    checkTable(new AuditBoardDashboardASM("1"),
+               AuditBoardDashboardTransitionFunction.values(),
+               AuditBoardDashboardState.values(), AuditBoardDashboardEvent.values());
+  }
+
+  @Test()
+  public void foreignStatesAndEventsTest() {
+    final ASMTransitionTable table = ASMTransitionTable.forASM(new CountyDashboardASM("1"));
+    // the ordinals are in range, but the constants belong to other machines
+    assertNull(table.next(DoSDashboardState.DOS_INITIAL_STATE,
+                          CountyDashboardEvent.IMPORT_BALLOT_MANIFEST_EVENT));
+    assertNull(table.next(CountyDashboardState.COUNTY_INITIAL_STATE,
+                          DoSDashboardEvent.PARTIAL_AUDIT_INFO_EVENT));
+    assertTrue(table.enabledEvents(DoSDashboardState.DOS_INITIAL_STATE).isEmpty());
+  }
+
+  @Test()
+  public void stepEventTest() {
+    final CountyDashboardASM asm = new CountyDashboardASM("1");
+    assertTrue(asm.enabledASMEvents().contains(
+        CountyDashboardEvent.IMPORT_BALLOT_MANIFEST_EVENT));
+    assertEquals(asm.stepEvent(CountyDashboardEvent.IMPORT_BALLOT_MANIFEST_EVENT),
+                 CountyDashboardState.BALLOT_MANIFEST_OK);
+    assertEquals(asm.currentState(), CountyDashboardState.BALLOT_MANIFEST_OK);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void illegalStepEventTest() {
+    new CountyDashboardASM("1").stepEvent(CountyDashboardEvent.COUNTY_AUDIT_COMPLETE_EVENT);
+  }
+}
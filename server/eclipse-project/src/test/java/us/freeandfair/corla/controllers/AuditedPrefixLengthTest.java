@@ -0,0 +1,140 @@
+package us.freeandfair.corla.controllers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+import us.freeandfair.corla.controller.BallotSelection;
+import us.freeandfair.corla.controller.BallotSelection.AUDITEDQ;
+import us.freeandfair.corla.model.CVRAuditInfo;
+import us.freeandfair.corla.model.CastVoteRecord;
+import us.freeandfair.corla.model.CastVoteRecord.RecordType;
+import us.freeandfair.corla.model.ContestResult;
+import us.freeandfair.corla.persistence.EntityChangeNotifier;
+
+public class AuditedPrefixLengthTest {
+
+  /** a query over a fixed set of audited ids that records what it was asked **/
+  private AUDITEDQ query(final Set<Long> audited, final List<Collection<Long>> asked) {
+    return ids -> {
+      asked.add(new ArrayList<>(ids));
+      final Set<Long> result = new HashSet<>(ids);
+      result.retainAll(audited);
+      return result;
+    };
+  }
+
+  @Test()
+  public void prefixTest() {
+    final Set<Long> audited = new HashSet<>(Arrays.asList(1L, 2L, 3L, 5L));
+    final List<Collection<Long>> asked = new ArrayList<>();
+    final List<Long> ids = Arrays.asList(1L, 2L, 1L, 3L, 4L, 5L);
+
+    assertEquals(BallotSelection.auditedPrefixLength(ids, 0, query(audited, asked)),
+                 Integer.valueOf(4));
+    assertEquals(asked.size(), 1);
+    assertEquals(BallotSelection.auditedPrefixLength(new ArrayList<>(), 0,
+                                                     query(audited, asked)),
+                 Integer.valueOf(0));
+    assertEquals(asked.size(), 1);
+  }
+
+  @Test()
+  public void incrementalTest() {
+    final ContestResult cr = new ContestResult("incremental");
+    cr.setID(-7L);
+    final Set<Long> audited = new HashSet<>(Arrays.asList(1L, 2L));
+    final List<Collection<Long>> asked = new ArrayList<>();
+    cr.addContestCVRIds(Arrays.asList(1L, 2L, 3L));
+
+    assertEquals(BallotSelection.auditedPrefixLength(cr, query(audited, asked)),
+                 Integer.valueOf(2));
+
+    audited.add(3L);
+    cr.addContestCVRIds(Arrays.asList(4L, 5L));
+    assertEquals(BallotSelection.auditedPrefixLength(cr, query(audited, asked)),
+                 Integer.valueOf(3));
+    // only the last known audited id and the ones after it were looked at
+    assertEquals(asked.get(1), Arrays.asList(2L, 3L, 4L, 5L));
+  }
+
+  @Test()
+  public void staleCacheTest() {
+    final ContestResult cr = new ContestResult("stale");
+    cr.setID(-8L);
+    final Set<Long> audited = new HashSet<>(Arrays.asList(1L, 2L));
+    final List<Collection<Long>> asked = new ArrayList<>();
+    cr.addContestCVRIds(Arrays.asList(1L, 2L, 3L));
+    assertEquals(BallotSelection.auditedPrefixLength(cr, query(audited, asked)),
+                 Integer.valueOf(2));
+
+    // the audit of 2 no longer exists, so the cached prefix is ignored
+    audited.remove(2L);
+    assertEquals(BallotSelection.auditedPrefixLength(cr, query(audited, asked)),
+                 Integer.valueOf(1));
+  }
+
+  @Test()
+  public void resetTest() {
+    final ContestResult cr = new ContestResult("reset");
+    cr.setID(-9L);
+    final Set<Long> audited = new HashSet<>(Arrays.asList(1L, 2L, 3L));
+    final List<Collection<Long>> asked = new ArrayList<>();
+    cr.addContestCVRIds(Arrays.asList(1L, 2L, 3L, 4L));
+    assertEquals(BallotSelection.auditedPrefixLength(cr, query(audited, asked)),
+                 Integer.valueOf(3));
+
+    // the data is reset, and the last id of the cached prefix is audited
+    // again but the first is not
+    audited.remove(1L);
+    EntityChangeNotifier.allChanged();
+    assertEquals(BallotSelection.auditedPrefixLength(cr, query(audited, asked)),
+                 Integer.valueOf(0));
+    assertEquals(asked.get(1), Arrays.asList(1L, 2L, 3L, 4L));
+  }
+
+  @Test()
+  public void unauditedTest() {
+    final ContestResult cr = new ContestResult("unaudited");
+    cr.setID(-10L);
+    final Set<Long> audited = new HashSet<>(Arrays.asList(1L, 2L, 3L));
+    final List<Collection<Long>> asked = new ArrayList<>();
+    cr.addContestCVRIds(Arrays.asList(1L, 2L, 3L, 4L));
+    assertEquals(BallotSelection.auditedPrefixLength(cr, query(audited, asked)),
+                 Integer.valueOf(3));
+
+    // the audit of 1 is removed and reported
+    audited.remove(1L);
+    final CastVoteRecord cvr = new CastVoteRecord(RecordType.UPLOADED, null, 1L, 1, 1, 1,
+                                                  "1", 1, "1-1-1", "a", null);
+    cvr.setID(1L);
+    final CVRAuditInfo info = new CVRAuditInfo(cvr);
+    new EntityChangeNotifier().onPostUpdate(new PostUpdateEvent(info, 1L, null, null, null,
+                                                                null, null));
+    assertEquals(BallotSelection.auditedPrefixLength(cr, query(audited, asked)),
+                 Integer.valueOf(0));
+  }
+
+  @Test()
+  public void rebuiltSequenceTest() {
+    final ContestResult cr = new ContestResult("rebuilt");
+    cr.setID(-11L);
+    final Set<Long> audited = new HashSet<>(Arrays.asList(1L, 2L, 3L, 7L));
+    final List<Collection<Long>> asked = new ArrayList<>();
+    cr.addContestCVRIds(Arrays.asList(1L, 2L, 3L, 4L));
+    assertEquals(BallotSelection.auditedPrefixLength(cr, query(audited, asked)),
+                 Integer.valueOf(3));
+
+    // a different sequence whose third id happens to be audited too
+    cr.setContestCVRIds(Arrays.asList(5L, 6L, 7L, 8L));
+    assertEquals(BallotSelection.auditedPrefixLength(cr, query(audited, asked)),
+                 Integer.valueOf(0));
+  }
+}
@@ -0,0 +1,144 @@
+package us.freeandfair.corla.controllers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+import us.freeandfair.corla.controller.ComparisonAuditController;
+import us.freeandfair.corla.model.CVRAuditInfo;
+import us.freeandfair.corla.model.CastVoteRecord;
+import us.freeandfair.corla.model.CastVoteRecord.RecordType;
+
+public class ReplayTest {
+
+  private CVRAuditInfo info(final long id, final boolean audited) {
+    final CastVoteRecord cvr =
+        new CastVoteRecord(RecordType.UPLOADED, null, 1L, (int) id, (int) id, 1,
+                           "1", (int) id, "1-1-" + id, "BALLOT", null);
+    cvr.setID(id);
+    final CVRAuditInfo result = new CVRAuditInfo(cvr);
+    if (audited) {
+      final CastVoteRecord acvr =
+          new CastVoteRecord(RecordType.AUDITOR_ENTERED, null, 1L, (int) id, (int) id, 1,
+                             "1", (int) id, "1-1-" + id, "BALLOT", null);
+      result.setACVR(acvr);
+    }
+    return result;
+  }
+
+  /**
+   * a query over a fixed set of audited ids, which has an unaudited
+   * CVRAuditInfo for every id in unaudited and none for the rest; it records
+   * the windows it was asked for
+   **/
+  private Function<List<Long>, Map<Long, CVRAuditInfo>> query(final Set<Long> audited,
+                                                            final Set<Long> unaudited,
+                                                            final List<List<Long>> asked) {
+    return ids -> {
+      asked.add(new ArrayList<>(ids));
+      final Map<Long, CVRAuditInfo> result = new HashMap<>();
+      for (final Long id : ids) {
+        if (audited.contains(id) || unaudited.contains(id)) {
+          result.put(id, info(id, audited.contains(id)));
+        }
+      }
+      return result;
+    };
+  }
+
+  private List<Long> range(final long from, final long to) {
+    final List<Long> result = new ArrayList<>();
+    for (long i = from; i < to; i++) {
+      result.add(i);
+    }
+    return result;
+  }
+
+  @Test()
+  public void stopsAtUnauditedTest() {
+    final List<Long> subsequence = range(0, 20);
+    final List<List<Long>> asked = new ArrayList<>();
+    final List<Long> replayed = new ArrayList<>();
+    // 9 has a CVRAuditInfo but no ACVR
+    final int index =
+        ComparisonAuditController.replay(subsequence, 0,
+                                         query(new HashSet<>(range(0, 9)),
+                                               new HashSet<>(Arrays.asList(9L)),
+                                               asked),
+                                         cai -> replayed.add(cai.id()));
+    assertEquals(index, 9);
+    assertEquals(replayed, range(0, 9));
+    // windows of 1, 2, 4 and 8
+    assertEquals(asked, Arrays.asList(range(0, 1), range(1, 3), range(3, 7), range(7, 15)));
+  }
+
+  @Test()
+  public void noInfoTest() {
+    final List<List<Long>> asked = new ArrayList<>();
+    final List<Long> replayed = new ArrayList<>();
+    // the usual case: the next CVR has not been audited, and has no CVRAuditInfo
+    final int index =
+        ComparisonAuditController.replay(range(0, 100), 5,
+                                         query(new HashSet<>(range(0, 5)), new HashSet<>(),
+                                               asked),
+                                         cai -> replayed.add(cai.id()));
+    assertEquals(index, 5);
+    assertTrue(replayed.isEmpty());
+    assertEquals(asked, Arrays.asList(range(5, 6)));
+  }
+
+  @Test()
+  public void duplicatesTest() {
+    // repeats within and across the windows [1], [2, 1], [3, 2, 4, 1], [5, 1]
+    final List<Long> subsequence = Arrays.asList(1L, 2L, 1L, 3L, 2L, 4L, 1L, 5L, 1L);
+    final List<List<Long>> asked = new ArrayList<>();
+    final List<Long> replayed = new ArrayList<>();
+    final int index =
+        ComparisonAuditController.replay(subsequence, 0,
+                                         query(new HashSet<>(range(1, 5)), new HashSet<>(),
+                                               asked),
+                                         cai -> replayed.add(cai.id()));
+    assertEquals(index, 7);
+    // each CVR is replayed once, in its first position
+    assertEquals(replayed, Arrays.asList(1L, 2L, 3L, 4L));
+    assertEquals(asked.size(), 4);
+
+    // all audited: the end of the subsequence
+    replayed.clear();
+    assertEquals(ComparisonAuditController.replay(subsequence, 0,
+                                                  query(new HashSet<>(range(1, 6)),
+                                                        new HashSet<>(), asked),
+                                                  cai -> replayed.add(cai.id())),
+                 subsequence.size());
+    assertEquals(replayed, Arrays.asList(1L, 2L, 3L, 4L, 5L));
+  }
+
+  @Test()
+  public void queryCountTest() {
+    for (final int n : new int[] {1, 2, 3, 4, 1000, 1023, 1024, 100000}) {
+      final List<Long> subsequence = range(0, n);
+      final List<List<Long>> asked = new ArrayList<>();
+      final int[] replayed = {0};
+      final int index =
+          ComparisonAuditController.replay(subsequence, 0,
+                                           query(new HashSet<>(subsequence),
+                                                 new HashSet<>(), asked),
+                                           cai -> replayed[0]++);
+      assertEquals(index, n);
+      assertEquals(replayed[0], n);
+      // each id is asked for once, in windows that double in size
+      final List<Long> all = new ArrayList<>();
+      asked.forEach(all::addAll);
+      assertEquals(all, subsequence);
+      assertEquals(asked.size(), 32 - Integer.numberOfLeadingZeros(n), "n = " + n);
+    }
+  }
+}
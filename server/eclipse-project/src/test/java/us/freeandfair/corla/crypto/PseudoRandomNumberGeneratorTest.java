@@ -11,6 +11,11 @@
 
 package us.freeandfair.corla.crypto;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -56,4 +61,43 @@ public class PseudoRandomNumberGeneratorTest {
     Assert.assertEquals((Long)violations, (Long)0L);
 
   }
+
+  /**
+   * Checks the generator against the output of Rivest's sampler.py, for
+   * assorted seeds and ranges, with and without replacement.
+   */
+  @Test()
+  public void testGoldenVectors() throws IOException {
+    int cases = 0;
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+        getClass().getResourceAsStream("/prng_golden_vectors.txt"),
+        StandardCharsets.UTF_8))) {
+      String line = reader.readLine();
+      while (line != null) {
+        if (!line.startsWith("#")) {
+          final String[] halves = line.split(" : ");
+          final String[] params = halves[0].split(" ");
+          final List<Integer> expected = new ArrayList<>();
+          for (final String n : halves[1].split(" ")) {
+            expected.add(Integer.valueOf(n));
+          }
+          final PseudoRandomNumberGenerator gen =
+              new PseudoRandomNumberGenerator(params[0], Boolean.parseBoolean(params[1]),
+                                              Integer.parseInt(params[2]),
+                                              Integer.parseInt(params[3]));
+          final int from = Integer.parseInt(params[4]);
+          final int to = Integer.parseInt(params[5]);
+          // draw in two pieces, to exercise extending an existing sequence
+          final int middle = (from + to) / 2;
+          final List<Integer> numbers = new ArrayList<>(gen.getRandomNumbers(from, middle));
+          numbers.addAll(gen.getRandomNumbers(middle + 1, to));
+          Assert.assertEquals(numbers, expected, halves[0]);
+          Assert.assertEquals(gen.getRandomNumbers(from, to), expected, halves[0]);
+          cases = cases + 1;
+        }
+        line = reader.readLine();
+      }
+    }
+    Assert.assertEquals(cases, 7);
+  }
 }
@@ -0,0 +1,142 @@
+package us.freeandfair.corla.endpoint;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletResponse;
+import javax.servlet.WriteListener;
+
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+import us.freeandfair.corla.util.SnapshotCache;
+import us.freeandfair.corla.util.SnapshotCache.Snapshot;
+
+public class DashboardPublisherTest {
+
+  /** a stream that accepts one write at a time, until the test lets it accept more **/
+  private static class Stream extends ServletOutputStream {
+    private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+    private WriteListener listener;
+    private boolean ready = true;
+    private boolean congested;
+    private boolean completed;
+
+    @Override
+    public boolean isReady() {
+      return ready;
+    }
+
+    @Override
+    public void setWriteListener(final WriteListener the_listener) {
+      listener = the_listener;
+    }
+
+    @Override
+    public void write(final int the_byte) {
+      write(new byte[] {(byte) the_byte}, 0, 1);
+    }
+
+    @Override
+    public void write(final byte[] the_bytes, final int the_offset, final int the_length) {
+      assertTrue(ready, "written while not ready");
+      written.write(the_bytes, the_offset, the_length);
+      ready = !congested;
+    }
+
+    void drained() throws IOException {
+      ready = true;
+      listener.onWritePossible();
+    }
+
+    String text() {
+      return new String(written.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    AsyncContext context() {
+      final ServletResponse response = (ServletResponse) Proxy.newProxyInstance(
+          getClass().getClassLoader(), new Class<?>[] {ServletResponse.class},
+          (proxy, method, args) -> {
+            assertEquals(method.getName(), "getOutputStream");
+            return this;
+          });
+      return (AsyncContext) Proxy.newProxyInstance(
+          getClass().getClassLoader(), new Class<?>[] {AsyncContext.class},
+          (proxy, method, args) -> {
+            if ("getResponse".equals(method.getName())) {
+              return response;
+            }
+            assertEquals(method.getName(), "complete");
+            completed = true;
+            return null;
+          });
+    }
+  }
+
+  private final SnapshotCache<Long> cache = new SnapshotCache<>();
+
+  private Snapshot snapshot(final long the_version, final String the_value) {
+    return cache.put(1L, the_version, "{\"value\":\"" + the_value + "\"}");
+  }
+
+  @Test()
+  public void queuedUntilReadyTest() throws Exception {
+    final Stream stream = new Stream();
+    final DashboardPublisher.Subscriber subscriber =
+        new DashboardPublisher.Subscriber(stream.context(), 1L);
+    subscriber.start(snapshot(1, "a"), null);
+    assertTrue(stream.text().contains("event: dashboard"));
+    assertTrue(stream.text().contains("data: {\"value\":\"a\"}"));
+
+    // the stream stalls; events are queued, not written
+    stream.congested = true;
+    subscriber.send(snapshot(2, "b"));
+    final int length = stream.text().length();
+    subscriber.send(snapshot(3, "c"));
+    subscriber.heartbeat();
+    assertEquals(stream.text().length(), length);
+    assertFalse(subscriber.closed());
+    assertEquals(subscriber.version(), 3);
+
+    // once the stream is ready, the queue is written in order
+    stream.congested = false;
+    stream.drained();
+    final String text = stream.text();
+    assertTrue(text.indexOf("data: {\"value\":\"b\"}") <
+               text.indexOf("data: {\"value\":\"c\"}"));
+    assertTrue(text.endsWith(":\n\n"));
+    assertFalse(stream.completed);
+  }
+
+  @Test()
+  public void slowSubscriberDroppedTest() throws Exception {
+    final Stream stream = new Stream();
+    final DashboardPublisher.Subscriber subscriber =
+        new DashboardPublisher.Subscriber(stream.context(), 1L);
+    subscriber.start(snapshot(1, "a"), null);
+    stream.congested = true;
+    subscriber.send(snapshot(2, "b"));
+
+    // a client that reads nothing is dropped once its queue is full
+    final StringBuilder large = new StringBuilder();
+    while (large.length() < DashboardPublisher.MAX_BUFFERED / 4) {
+      large.append("0123456789");
+    }
+    for (int i = 0; i < 8 && !subscriber.closed(); i++) {
+      subscriber.send(snapshot(3 + i, large.toString() + i));
+    }
+    assertTrue(subscriber.closed());
+    assertTrue(stream.completed);
+
+    // nothing more is written to it
+    final int length = stream.text().length();
+    stream.congested = false;
+    stream.drained();
+    subscriber.heartbeat();
+    assertEquals(stream.text().length(), length);
+  }
+}
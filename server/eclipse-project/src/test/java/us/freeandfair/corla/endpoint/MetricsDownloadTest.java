@@ -0,0 +1,17 @@
+package us.freeandfair.corla.endpoint;
+
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+import us.freeandfair.corla.endpoint.Endpoint.AuthorizationType;
+
+public class MetricsDownloadTest {
+
+  @Test()
+  public void notPublicTest() {
+    final MetricsDownload endpoint = new MetricsDownload();
+    assertEquals(endpoint.requiredAuthorization(), AuthorizationType.STATE);
+    assertFalse(endpoint.auditLogged());
+    assertTrue(endpoint.readOnly());
+  }
+}
@@ -0,0 +1,67 @@
+package us.freeandfair.corla.endpoint;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class RequestSchedulerTest {
+
+  private final ExecutorService other = Executors.newSingleThreadExecutor();
+
+  @AfterClass()
+  public void tearDown() {
+    other.shutdownNow();
+  }
+
+  private boolean enterElsewhere(final RequestScheduler the_scheduler, final String the_lane)
+      throws InterruptedException, ExecutionException {
+    return other.submit(() -> {
+      final boolean entered = the_scheduler.enter(the_lane);
+      the_scheduler.leave();
+      return entered;
+    }).get();
+  }
+
+  @Test()
+  public void countyLanesTest() throws InterruptedException, ExecutionException {
+    final RequestScheduler scheduler = new RequestScheduler(50);
+    assertTrue(scheduler.enter(RequestScheduler.countyLane(1L)));
+    assertTrue(scheduler.inLane());
+    // the same county waits, another county does not
+    assertFalse(enterElsewhere(scheduler, RequestScheduler.countyLane(1L)));
+    assertTrue(enterElsewhere(scheduler, RequestScheduler.countyLane(2L)));
+    // the state lane is not held up by a busy county
+    assertTrue(enterElsewhere(scheduler, RequestScheduler.STATE_LANE));
+    // but the exclusive lane is
+    assertFalse(enterElsewhere(scheduler, RequestScheduler.EXCLUSIVE_LANE));
+
+    scheduler.leave();
+    assertFalse(scheduler.inLane());
+    assertTrue(enterElsewhere(scheduler, RequestScheduler.countyLane(1L)));
+    assertTrue(enterElsewhere(scheduler, RequestScheduler.EXCLUSIVE_LANE));
+  }
+
+  @Test()
+  public void stateLaneTest() throws InterruptedException, ExecutionException {
+    final RequestScheduler scheduler = new RequestScheduler(50);
+    assertTrue(scheduler.enter(RequestScheduler.STATE_LANE));
+    assertTrue(enterElsewhere(scheduler, RequestScheduler.countyLane(1L)));
+    assertFalse(enterElsewhere(scheduler, RequestScheduler.STATE_LANE));
+    scheduler.leave();
+    assertTrue(enterElsewhere(scheduler, RequestScheduler.STATE_LANE));
+  }
+
+  @Test()
+  public void exclusiveLaneTest() throws InterruptedException, ExecutionException {
+    final RequestScheduler scheduler = new RequestScheduler(50);
+    assertTrue(scheduler.enter(RequestScheduler.EXCLUSIVE_LANE));
+    assertFalse(enterElsewhere(scheduler, RequestScheduler.countyLane(1L)));
+    assertFalse(enterElsewhere(scheduler, RequestScheduler.STATE_LANE));
+    scheduler.leave();
+    assertTrue(enterElsewhere(scheduler, RequestScheduler.countyLane(1L)));
+  }
+}
@@ -0,0 +1,81 @@
+package us.freeandfair.corla.filestore;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+import us.freeandfair.corla.crypto.HashChecker;
+
+public class LocalFileStoreTest {
+
+  private File directory;
+
+  private LocalFileStore store;
+
+  @BeforeClass()
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("file-store").toFile();
+    final Properties properties = new Properties();
+    properties.setProperty(LocalFileStore.DIRECTORY_PROPERTY, directory.toString());
+    store = new LocalFileStore();
+    store.initialize(properties);
+  }
+
+  @AfterClass()
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory(directory);
+  }
+
+  private File tempFile(final String the_contents) throws IOException {
+    final File file = File.createTempFile("upload", ".csv");
+    Files.write(file.toPath(), the_contents.getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+
+  @Test()
+  public void storeAndReadTest() throws IOException {
+    final String contents = "CountyID,ScannerID,BatchNumber\n1,1,1\n";
+    final File file = tempFile(contents);
+    final String hash = HashChecker.hashFile(file);
+    assertFalse(store.contains(hash));
+
+    store.store(hash, file);
+    assertTrue(store.contains(hash));
+    assertFalse(file.exists());
+
+    try (InputStream is = store.open(hash)) {
+      assertEquals(IOUtils.toString(is, StandardCharsets.UTF_8), contents);
+    }
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    assertEquals(store.transferTo(hash, Channels.newChannel(baos)), contents.length());
+    assertEquals(new String(baos.toByteArray(), StandardCharsets.UTF_8), contents);
+
+    // storing the same contents again leaves the new file alone
+    final File again = tempFile(contents);
+    store.store(hash, again);
+    assertTrue(again.exists());
+    assertTrue(again.delete());
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void malformedHashTest() throws IOException {
+    store.open("../../etc/passwd");
+  }
+
+  @Test(expectedExceptions = IOException.class)
+  public void noDirectoryTest() throws IOException {
+    new LocalFileStore().initialize(new Properties());
+  }
+}
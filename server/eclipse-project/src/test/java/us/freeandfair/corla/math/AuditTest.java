@@ -30,4 +30,56 @@ public final class AuditTest {
     Assert.assertEquals(34, result.intValue());
   }
 
+  @Test()
+  public void testFastPathMatchesExact() {
+    final BigDecimal[] riskLimits = {
+      BigDecimal.valueOf(0.01), BigDecimal.valueOf(0.03), BigDecimal.valueOf(0.05),
+      BigDecimal.valueOf(0.1), BigDecimal.valueOf(0.5) };
+    final int[] margins = { 1, 7, 50, 333, 1000, 4999 };
+    final long ballots = 100000;
+    for (final BigDecimal riskLimit : riskLimits) {
+      for (final int margin : margins) {
+        final BigDecimal dilutedMargin = Audit.dilutedMargin(margin, ballots);
+        for (int twoUnder = 0; twoUnder < 2; twoUnder++) {
+          for (int oneUnder = 0; oneUnder < 3; oneUnder++) {
+            for (int oneOver = 0; oneOver < 3; oneOver++) {
+              for (int twoOver = 0; twoOver < 3; twoOver++) {
+                Assert.assertEquals(Audit.optimistic(riskLimit, dilutedMargin, Audit.GAMMA,
+                                                     twoUnder, oneUnder, oneOver, twoOver),
+                                    Audit.optimisticExact(riskLimit, dilutedMargin,
+                                                          Audit.GAMMA, twoUnder, oneUnder,
+                                                          oneOver, twoOver));
+              }
+            }
+          }
+        }
+      }
+    }
+  }
+
+  @Test()
+  public void testIntegerBoundaryFallsBack() {
+    // -2 * 2 * ln(e^-3) / 1 is within rounding error of 12, so the
+    // BigDecimal computation decides which way it rounds
+    final BigDecimal riskLimit = new BigDecimal(Math.exp(-3));
+    final BigDecimal gamma = BigDecimal.valueOf(2);
+    final BigDecimal dilutedMargin = BigDecimal.ONE;
+    Assert.assertEquals(Audit.optimistic(riskLimit, dilutedMargin, gamma, 0, 0, 0, 0),
+                        Audit.optimisticExact(riskLimit, dilutedMargin, gamma, 0, 0, 0, 0));
+  }
+
+  @Test()
+  public void testCancellationFallsBack() {
+    // ln(riskLimit) nearly cancels the understatement term, and the tiny
+    // diluted margin magnifies the absolute rounding error of the double
+    // computation (about 1.5e-4 here) far beyond the distance of the exact
+    // value, 100 - 1e-5, from an integer
+    final BigDecimal riskLimit = new BigDecimal("0.5095755376032956548398533737527860");
+    final BigDecimal dilutedMargin = new BigDecimal("1e-12");
+    Assert.assertEquals(Audit.optimisticExact(riskLimit, dilutedMargin, Audit.GAMMA,
+                                              1, 0, 0, 0),
+                        BigDecimal.valueOf(100));
+    Assert.assertEquals(Audit.optimistic(riskLimit, dilutedMargin, Audit.GAMMA, 1, 0, 0, 0),
+                        BigDecimal.valueOf(100));
+  }
 }
@@ -0,0 +1,64 @@
+package us.freeandfair.corla.metrics;
+
+import java.util.Collections;
+
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class MetricsTest {
+
+  private String write(final AbstractMetric the_metric) {
+    final StringBuilder output = new StringBuilder();
+    the_metric.write(output);
+    return output.toString();
+  }
+
+  @Test()
+  public void counterTest() {
+    final Counter counter = new Counter("test_total", "A test counter.", "kind");
+    counter.inc("a");
+    counter.add("a", 2);
+    counter.inc("b\"\n");
+
+    assertEquals(counter.count("a"), 3);
+    assertEquals(counter.count("c"), 0);
+    assertEquals(counter.count(), 0);
+
+    final String text = write(counter);
+    assertTrue(text.startsWith("# HELP test_total A test counter.\n# TYPE test_total counter\n"));
+    assertTrue(text.contains("test_total{kind=\"a\"} 3\n"));
+    assertTrue(text.contains("test_total{kind=\"b\\\"\\n\"} 1\n"));
+  }
+
+  @Test()
+  public void histogramTest() {
+    final Histogram histogram = new Histogram("test_seconds", "A test histogram.", null,
+                                              0.5, 1);
+    histogram.observe(0.25);
+    histogram.observe(0.5);
+    histogram.observe(0.5);
+    histogram.observe(5);
+
+    final String text = write(histogram);
+    assertTrue(text.contains("# TYPE test_seconds histogram\n"));
+    assertTrue(text.contains("test_seconds_bucket{le=\"0.5\"} 3\n"));
+    assertTrue(text.contains("test_seconds_bucket{le=\"1\"} 3\n"));
+    assertTrue(text.contains("test_seconds_bucket{le=\"+Inf\"} 4\n"));
+    assertTrue(text.contains("test_seconds_sum 6.25\n"));
+    assertTrue(text.contains("test_seconds_count 4\n"));
+  }
+
+  @Test()
+  public void scrapeTest() {
+    Metrics.register(Gauge.sampled("test_failing", "A gauge that cannot be sampled.", () -> {
+      throw new IllegalStateException("no value");
+    }));
+    Metrics.register(new Gauge("test_sampled", "A sampled gauge.", "pool", false,
+                               () -> Collections.singletonMap("main", 7)));
+
+    final String text = Metrics.scrape();
+    assertFalse(text.contains("test_failing"));
+    assertTrue(text.contains("test_sampled{pool=\"main\"} 7\n"));
+    assertTrue(text.contains("# TYPE corla_request_duration_seconds histogram\n"));
+  }
+}
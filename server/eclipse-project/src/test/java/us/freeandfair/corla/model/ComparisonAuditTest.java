@@ -0,0 +1,236 @@
+package us.freeandfair.corla.model;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+import us.freeandfair.corla.math.Audit;
+import us.freeandfair.corla.model.CVRContestInfo.ConsensusValue;
+import us.freeandfair.corla.model.CastVoteRecord.RecordType;
+
+public class ComparisonAuditTest {
+
+  private static final String CONTEST = "Mayor";
+
+  // every choice on the ballot; "O" is neither a winner nor a loser
+  private static final List<String> CHOICES = Arrays.asList("W1", "W2", "L1", "L2", "O");
+
+  private final Contest contest;
+
+  public ComparisonAuditTest() {
+    final List<Choice> choices = new ArrayList<>();
+    for (final String name : CHOICES) {
+      choices.add(new Choice(name, "", false, false));
+    }
+    contest = new Contest(CONTEST, new County("Test", 1L), "", choices, 5, 2, 1);
+  }
+
+  private ComparisonAudit audit(final int the_winners_allowed, final Set<String> the_winners,
+                                final Set<String> the_losers) {
+    final ContestResult cr = new ContestResult(CONTEST);
+    cr.setWinnersAllowed(the_winners_allowed);
+    cr.setWinners(new LinkedHashSet<>(the_winners));
+    cr.setLosers(new LinkedHashSet<>(the_losers));
+    cr.setDilutedMargin(new BigDecimal("0.1"));
+    return new ComparisonAudit(cr, new BigDecimal("0.05"), new BigDecimal("0.1"),
+                               Audit.GAMMA, AuditReason.STATE_WIDE_CONTEST);
+  }
+
+  private CastVoteRecord record(final RecordType the_type, final ConsensusValue the_consensus,
+                                final List<String> the_choices) {
+    final List<CVRContestInfo> info = new ArrayList<>();
+    if (the_choices != null) {
+      info.add(new CVRContestInfo(contest, null, the_consensus, the_choices));
+    }
+    return new CastVoteRecord(the_type, Instant.EPOCH, 1L, 1, 1, 1, "1", 1, "1-1-1",
+                              "a", info);
+  }
+
+  private CastVoteRecord cvr(final String... the_choices) {
+    return record(RecordType.UPLOADED, null, Arrays.asList(the_choices));
+  }
+
+  private CastVoteRecord acvr(final String... the_choices) {
+    return record(RecordType.AUDITOR_ENTERED, ConsensusValue.YES, Arrays.asList(the_choices));
+  }
+
+  private static List<String> subset(final int the_bits) {
+    final List<String> result = new ArrayList<>();
+    for (int i = 0; i < CHOICES.size(); i++) {
+      if ((the_bits & (1 << i)) != 0) {
+        result.add(CHOICES.get(i));
+      }
+    }
+    return result;
+  }
+
+  // the set-based algorithm that the bit mask comparison replaced
+  private static OptionalInt referenceDiscrepancy(final int the_winners_allowed,
+                                                  final Set<String> the_winners,
+                                                  final Set<String> the_losers,
+                                                  final List<String> the_cvr_choices,
+                                                  final List<String> the_acvr_choices) {
+    final Set<String> acvr_choices = new HashSet<>();
+    if (the_acvr_choices.size() <= the_winners_allowed) {
+      acvr_choices.addAll(the_acvr_choices);
+    }
+    final Set<String> cvr_choices = new HashSet<>(the_cvr_choices);
+    if (cvr_choices.equals(acvr_choices)) {
+      return OptionalInt.empty();
+    }
+    int raw_result = Integer.MIN_VALUE;
+    boolean possible_understatement = true;
+    for (final String winner : the_winners) {
+      final int winner_change = change(winner, cvr_choices, acvr_choices);
+      if (the_losers.isEmpty()) {
+        raw_result = Math.max(raw_result, -winner_change);
+      } else {
+        for (final String loser : the_losers) {
+          final int discrepancy = change(loser, cvr_choices, acvr_choices) - winner_change;
+          raw_result = Math.max(raw_result, discrepancy);
+          if (discrepancy >= 0) {
+            possible_understatement = false;
+          }
+        }
+      }
+    }
+    if (possible_understatement) {
+      return OptionalInt.of(raw_result);
+    }
+    return OptionalInt.of(Math.max(0, raw_result));
+  }
+
+  private static int change(final String the_choice, final Set<String> the_cvr_choices,
+                            final Set<String> the_acvr_choices) {
+    if (!the_cvr_choices.contains(the_choice) && the_acvr_choices.contains(the_choice)) {
+      return 1;
+    } else if (the_cvr_choices.contains(the_choice) &&
+               !the_acvr_choices.contains(the_choice)) {
+      return -1;
+    }
+    return 0;
+  }
+
+  private static int referencePhantomDiscrepancy(final Set<String> the_losers,
+                                                 final List<String> the_cvr_choices) {
+    final Set<String> winner_votes = new HashSet<>(the_cvr_choices);
+    winner_votes.removeAll(the_losers);
+    return winner_votes.isEmpty() ? 1 : 2;
+  }
+
+  @Test()
+  public void namedCasesTest() {
+    final Set<String> winner = Collections.singleton("W1");
+    final Set<String> losers = new LinkedHashSet<>(Arrays.asList("L1", "L2"));
+    final ComparisonAudit ca = audit(1, winner, losers);
+    final Object[][] cases = {
+        // CVR choices, ACVR choices, expected discrepancy (null for none)
+        {cvr("W1"), acvr("W1"), null},
+        {cvr("W1"), acvr("L1"), 2},
+        {cvr("L1"), acvr("W1"), -1},              // the margin over L2 widens by 1
+        {cvr("L1", "L2"), acvr("W1"), -2},
+        {cvr("W1"), acvr(), 1},                   // undervote found by the audit
+        {cvr(), acvr("W1"), -1},
+        {cvr("W1"), acvr("W1", "L1"), 1},         // overvote found by the audit
+        {cvr(), acvr("W1", "L1"), null},          // overvote on both
+        {cvr("L1"), acvr("L2"), 1},               // L2 gains on the winner
+        {cvr("O"), acvr(), 0},                    // neither winner nor loser
+        {cvr("W1"), acvr("O"), 1},
+    };
+    for (final Object[] c : cases) {
+      final OptionalInt expected =
+          c[2] == null ? OptionalInt.empty() : OptionalInt.of((Integer) c[2]);
+      assertEquals(ca.computeDiscrepancy((CastVoteRecord) c[0], (CastVoteRecord) c[1]),
+                   expected, Arrays.toString(c));
+    }
+  }
+
+  @Test()
+  public void matchesSetAlgorithmTest() {
+    final Object[][] contests = {
+        // winners allowed, winners, losers
+        {1, set("W1"), set("L1", "L2")},
+        {2, set("W1", "W2"), set("L1", "L2")},
+        {1, set("W1"), set()},                    // no losers
+        {2, set("W1", "W2"), set("L1")},
+    };
+    final int subsets = 1 << CHOICES.size();
+    for (final Object[] c : contests) {
+      final int allowed = (Integer) c[0];
+      @SuppressWarnings("unchecked")
+      final Set<String> winners = (Set<String>) c[1];
+      @SuppressWarnings("unchecked")
+      final Set<String> losers = (Set<String>) c[2];
+      final ComparisonAudit ca = audit(allowed, winners, losers);
+      // every CVR and ACVR, including overvotes and undervotes, compared on
+      // several threads at once against the same audit
+      IntStream.range(0, subsets * subsets).parallel().forEach(i -> {
+        final List<String> cvr_choices = subset(i / subsets);
+        final List<String> acvr_choices = subset(i % subsets);
+        assertEquals(ca.computeDiscrepancy(cvr(cvr_choices.toArray(new String[0])),
+                                           acvr(acvr_choices.toArray(new String[0]))),
+                     referenceDiscrepancy(allowed, winners, losers,
+                                          cvr_choices, acvr_choices),
+                     Arrays.toString(c) + " " + cvr_choices + " " + acvr_choices);
+      });
+    }
+  }
+
+  @Test()
+  public void phantomTest() {
+    final Set<String> losers = set("L1", "L2");
+    final ComparisonAudit ca = audit(1, set("W1"), losers);
+    final CastVoteRecord phantom_ballot =
+        record(RecordType.PHANTOM_BALLOT, null, Collections.emptyList());
+    for (int i = 0; i < 1 << CHOICES.size(); i++) {
+      final List<String> choices = subset(i);
+      final CastVoteRecord cvr = cvr(choices.toArray(new String[0]));
+      final OptionalInt expected =
+          OptionalInt.of(referencePhantomDiscrepancy(losers, choices));
+      assertEquals(ca.computeDiscrepancy(cvr, phantom_ballot), expected, choices.toString());
+      // no consensus is treated as a phantom ballot
+      assertEquals(ca.computeDiscrepancy(cvr, record(RecordType.AUDITOR_ENTERED,
+                                                     ConsensusValue.NO, choices)),
+                   expected, choices.toString());
+    }
+    // a phantom ballot for a CVR without the contest
+    assertEquals(ca.computeDiscrepancy(record(RecordType.UPLOADED, null, null),
+                                       phantom_ballot), OptionalInt.of(1));
+    // a phantom record
+    assertEquals(ca.computeDiscrepancy(record(RecordType.PHANTOM_RECORD, null, null),
+                                       acvr("W1")), OptionalInt.of(2));
+  }
+
+  @Test()
+  public void missingACVRTest() {
+    final ComparisonAudit ca = audit(1, set("W1"), set("L1"));
+    // an ACVR without the contest gives no discrepancy
+    assertEquals(ca.computeDiscrepancy(cvr("W1"), record(RecordType.AUDITOR_ENTERED,
+                                                         ConsensusValue.YES, null)),
+                 OptionalInt.empty());
+    // a CVR that has not been audited cannot be compared
+    final CastVoteRecord cvr = cvr("W1");
+    cvr.setID(1L);
+    try {
+      ca.computeDiscrepancy(new CVRAuditInfo(cvr));
+      fail("expected an exception for a missing ACVR");
+    } catch (final IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  private static Set<String> set(final String... the_choices) {
+    return new LinkedHashSet<>(Arrays.asList(the_choices));
+  }
+}
@@ -0,0 +1,49 @@
+package us.freeandfair.corla.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class ContestResultTest {
+
+  @Test()
+  public void multiplicityTest() {
+    final ContestResult cr = new ContestResult("multiplicity");
+    cr.addContestCVRIds(Arrays.asList(1L, 2L, 1L));
+    assertEquals(cr.contestCVRIdMultiplicity(1L), 2);
+    assertEquals(cr.contestCVRIdMultiplicity(2L), 1);
+    assertEquals(cr.contestCVRIdMultiplicity(3L), 0);
+
+    // kept up to date by addContestCVRIds
+    cr.addContestCVRIds(Arrays.asList(3L, 1L));
+    assertEquals(cr.contestCVRIdMultiplicity(1L), 3);
+    assertEquals(cr.contestCVRIdMultiplicity(3L), 1);
+
+    // rebuilt when the list is replaced
+    cr.setContestCVRIds(new ArrayList<>(Arrays.asList(2L, 2L)));
+    assertEquals(cr.contestCVRIdMultiplicity(1L), 0);
+    assertEquals(cr.contestCVRIdMultiplicity(2L), 2);
+  }
+
+  @Test()
+  public void largeSampleTest() {
+    final ContestResult cr = new ContestResult("large");
+    final List<Long> ids = new ArrayList<>();
+    final Map<Long, Integer> expected = new HashMap<>();
+    for (long i = 0; i < 50000; i++) {
+      final long id = i * 7919 % 20011;
+      ids.add(id);
+      expected.merge(id, 1, Integer::sum);
+    }
+    cr.addContestCVRIds(ids);
+    for (long id = 0; id < 20011; id++) {
+      assertEquals(cr.contestCVRIdMultiplicity(id), (int) expected.getOrDefault(id, 0));
+    }
+    assertEquals(cr.contestCVRIdMultiplicity(-1L), 0);
+  }
+}
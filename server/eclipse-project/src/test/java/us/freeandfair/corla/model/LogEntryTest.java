@@ -0,0 +1,47 @@
+package us.freeandfair.corla.model;
+
+import java.time.Instant;
+
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class LogEntryTest {
+
+  @Test()
+  public void chainHashTest() {
+    final Instant now = Instant.now();
+    final LogEntry first = new LogEntry(200, "/upload-file", "admin", "localhost", now, null);
+    final LogEntry second =
+        new LogEntry(404, "/county-dashboard", "admin", "localhost", now, first);
+
+    assertEquals(first.hash(), LogEntry.chainHash(200, "/upload-file", now, null));
+    assertEquals(second.hash(),
+                 LogEntry.chainHash(404, "/county-dashboard", now, first.hash()));
+    assertNotEquals(second.hash(),
+                    LogEntry.chainHash(404, "/county-dashboard", now, null));
+
+    // chaining by a known hash gives the same hash as chaining by the entry
+    final LogEntry by_hash =
+        new LogEntry(404, "/county-dashboard", "admin", "localhost", now, first,
+                     first.hash());
+    assertEquals(by_hash.hash(), second.hash());
+  }
+
+  @Test()
+  public void timestampPrecisionTest() {
+    final Instant nanos = Instant.parse("2017-11-01T12:00:00.123456789Z");
+    final Instant micros = Instant.parse("2017-11-01T12:00:00.123456Z");
+    final LogEntry entry = new LogEntry(200, "/upload-file", "admin", "localhost", nanos, null);
+
+    // the timestamp is stored, hashed and signed as the database keeps it
+    assertEquals(entry.timestamp(), micros);
+    assertEquals(entry.hash(), LogEntry.chainHash(200, "/upload-file", micros, null));
+    assertEquals(LogEntry.chainHash(200, "/upload-file", nanos, null), entry.hash());
+    assertEquals(new PendingLogEntry(200, "/upload-file", null, null, nanos).timestamp(),
+                 micros);
+    final LogCheckpoint checkpoint = new LogCheckpoint(1L, entry.hash(), 1L, nanos, "");
+    assertEquals(checkpoint.timestamp(), micros);
+    assertEquals(checkpoint.signedData(),
+                 LogCheckpoint.signedData(1L, entry.hash(), 1L, micros));
+  }
+}
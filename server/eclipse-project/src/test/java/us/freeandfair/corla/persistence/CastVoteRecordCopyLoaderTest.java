@@ -0,0 +1,226 @@
+package us.freeandfair.corla.persistence;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.persistence.CollectionTable;
+import javax.persistence.Column;
+import javax.persistence.ElementCollection;
+import javax.persistence.ManyToOne;
+import javax.persistence.OrderColumn;
+
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+import us.freeandfair.corla.model.CVRContestInfo;
+import us.freeandfair.corla.model.Choice;
+import us.freeandfair.corla.model.CastVoteRecord;
+import us.freeandfair.corla.model.CastVoteRecord.RecordType;
+import us.freeandfair.corla.model.Contest;
+import us.freeandfair.corla.model.County;
+
+public class CastVoteRecordCopyLoaderTest {
+
+  private static String escaped(final String the_value) {
+    final StringBuilder sb = new StringBuilder();
+    CastVoteRecordCopyLoader.appendEscaped(sb, the_value);
+    return sb.toString();
+  }
+
+  private static String row(final Object... the_values) {
+    final StringBuilder sb = new StringBuilder();
+    CastVoteRecordCopyLoader.appendRow(sb, the_values);
+    return sb.toString();
+  }
+
+  // reads a row the way PostgreSQL's COPY text format does
+  private static List<String> parse(final String the_row) {
+    assertTrue(the_row.endsWith("\n"));
+    final List<String> result = new ArrayList<>();
+    StringBuilder field = new StringBuilder();
+    boolean is_null = false;
+    boolean escape = false;
+    for (int i = 0; i < the_row.length() - 1; i++) {
+      final char c = the_row.charAt(i);
+      if (escape) {
+        switch (c) {
+          case 't': field.append('\t'); break;
+          case 'n': field.append('\n'); break;
+          case 'r': field.append('\r'); break;
+          case 'N': is_null = true; break;
+          default: field.append(c);
+        }
+        escape = false;
+      } else if (c == '\\') {
+        escape = true;
+      } else if (c == '\t') {
+        result.add(is_null ? null : field.toString());
+        field = new StringBuilder();
+        is_null = false;
+      } else {
+        assertFalse(c == '\n' || c == '\r', "unescaped line break in " + the_row);
+        field.append(c);
+      }
+    }
+    assertFalse(escape);
+    result.add(is_null ? null : field.toString());
+    return result;
+  }
+
+  @Test()
+  public void appendEscapedTest() {
+    final String[][] cases = {
+        // value, expected
+        {"", ""},
+        {"plain", "plain"},
+        {"a\tb", "a\\tb"},
+        {"line\nbreak", "line\\nbreak"},
+        {"carriage\r\n", "carriage\\r\\n"},
+        {"back\\slash", "back\\\\slash"},
+        {"\\N", "\\\\N"},                         // a literal, not a null
+        {"Pe\u00f1a \u2013 \u5019\u9009\u4eba \ud83d\uddf3",
+         "Pe\u00f1a \u2013 \u5019\u9009\u4eba \ud83d\uddf3"},
+        {"\"quoted\", 'single'", "\"quoted\", 'single'"},
+    };
+    for (final String[] c : cases) {
+      assertEquals(escaped(c[0]), c[1], c[0]);
+    }
+  }
+
+  @Test()
+  public void appendRowTest() {
+    assertEquals(row(1L, null, "x\ty", "\u00e9"), "1\t\\N\tx\\ty\t\u00e9\n");
+    assertEquals(row((Object) null), "\\N\n");
+    assertEquals(row(""), "\n");
+    assertEquals(row(RecordType.UPLOADED, 0L), "UPLOADED\t0\n");
+
+    final StringBuilder sb = new StringBuilder();
+    CastVoteRecordCopyLoader.appendRow(sb, "a");
+    CastVoteRecordCopyLoader.appendRow(sb, "b");
+    assertEquals(sb.toString(), "a\nb\n");
+  }
+
+  @Test()
+  public void roundTripTest() {
+    final List<String> values = Arrays.asList("tab\there", "new\nline", "cr\rhere",
+                                              "slash\\", "\\N", "\\t", "Zo\u00eb \u6771\u4eac",
+                                              "", " ");
+    assertEquals(parse(row(values.toArray())), values);
+    assertEquals(parse(row("a", null, "b")), Arrays.asList("a", null, "b"));
+  }
+
+  // the column each persistent field is mapped to, by the repository's naming strategy
+  private static Map<String, Field> columns(final Class<?> the_class) {
+    final Map<String, Field> result = new LinkedHashMap<>();
+    for (final Field f : the_class.getDeclaredFields()) {
+      if (Modifier.isStatic(f.getModifiers()) || Modifier.isTransient(f.getModifiers()) ||
+          f.isAnnotationPresent(ElementCollection.class)) {
+        continue;
+      }
+      final Column column = f.getAnnotation(Column.class);
+      String name = f.getName().replaceAll("my_", "");
+      if (column != null && !column.name().isEmpty()) {
+        name = column.name();
+      } else if (f.isAnnotationPresent(ManyToOne.class)) {
+        name = name + "_id";
+      }
+      result.put(name, f);
+    }
+    return result;
+  }
+
+  private static Object value(final Field the_field, final Object the_object) {
+    try {
+      the_field.setAccessible(true);
+      return the_field.get(the_object);
+    } catch (final IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static CastVoteRecord record() {
+    final List<String> names =
+        Arrays.asList("Tab\tName", "\u00d1and\u00fa \"Jr.\"", "back\\slash");
+    final List<Choice> choices = new ArrayList<>();
+    for (final String name : names) {
+      choices.add(new Choice(name, "", false, false));
+    }
+    final Contest contest = new Contest("Mayor", new County("Test", 7L), "", choices, 3, 3, 0);
+    contest.setID(37L);
+    final CVRContestInfo info = new CVRContestInfo(contest, null, null, names);
+    final CastVoteRecord cvr =
+        new CastVoteRecord(RecordType.UPLOADED, null, 7L, 11, 13, 17, "b19", 23,
+                           "17-b19-23", "type 29", Arrays.asList(info, info));
+    cvr.setID(31L);
+    return cvr;
+  }
+
+  @Test()
+  public void recordColumnsTest() {
+    final Map<String, Field> mapped = columns(CastVoteRecord.class);
+    final Set<String> not_copied = new HashSet<>(mapped.keySet());
+    not_copied.removeAll(CastVoteRecordCopyLoader.CVR_COLUMNS);
+    assertTrue(mapped.keySet().containsAll(CastVoteRecordCopyLoader.CVR_COLUMNS),
+               mapped.keySet().toString());
+    // only ACVRs have these
+    assertEquals(not_copied, new HashSet<>(Arrays.asList("timestamp", "revision", "comment")));
+
+    final CastVoteRecord cvr = record();
+    final StringBuilder sb = new StringBuilder();
+    CastVoteRecordCopyLoader.appendRecord(sb, cvr);
+    final List<String> values = parse(sb.toString());
+    assertEquals(values.size(), CastVoteRecordCopyLoader.CVR_COLUMNS.size());
+    for (int i = 0; i < values.size(); i++) {
+      final String column = CastVoteRecordCopyLoader.CVR_COLUMNS.get(i);
+      final Object expected = value(mapped.get(column), cvr);
+      if ("version".equals(column)) {
+        // a new record's first version
+        assertNull(expected);
+        assertEquals(values.get(i), "0");
+      } else {
+        assertEquals(values.get(i), String.valueOf(expected), column);
+      }
+    }
+    for (final String column : not_copied) {
+      assertNull(value(mapped.get(column), cvr), column);
+    }
+  }
+
+  @Test()
+  public void contestInfoColumnsTest() throws NoSuchFieldException {
+    final Field contest_info = CastVoteRecord.class.getDeclaredField("my_contest_info");
+    final Map<String, Field> mapped = columns(CVRContestInfo.class);
+    final List<String> columns = new ArrayList<>();
+    columns.add(contest_info.getAnnotation(CollectionTable.class).joinColumns()[0].name());
+    columns.add(contest_info.getAnnotation(OrderColumn.class).name());
+    columns.addAll(mapped.keySet());
+    assertTrue(columns.containsAll(CastVoteRecordCopyLoader.CONTEST_INFO_COLUMNS),
+               columns.toString());
+    columns.removeAll(CastVoteRecordCopyLoader.CONTEST_INFO_COLUMNS);
+    // only ACVRs have these
+    assertEquals(new HashSet<>(columns), new HashSet<>(Arrays.asList("comment", "consensus")));
+
+    final CastVoteRecord cvr = record();
+    final StringBuilder sb = new StringBuilder();
+    assertEquals(new CastVoteRecordCopyLoader().appendContestInfo(sb, cvr), 2);
+    final String[] rows = sb.toString().split("\n", -1);
+    assertEquals(rows.length, 3);
+    assertEquals(rows[2], "");
+    for (int i = 0; i < 2; i++) {
+      final CVRContestInfo info = cvr.contestInfo().get(i);
+      final List<String> values = parse(rows[i] + "\n");
+      assertEquals(values, Arrays.asList(
+          "31", String.valueOf(i), "37", "7",
+          new StringListConverter().convertToDatabaseColumn(info.choices())));
+      assertEquals(new StringListConverter().convertToEntityAttribute(values.get(4)),
+                   info.choices());
+    }
+  }
+}
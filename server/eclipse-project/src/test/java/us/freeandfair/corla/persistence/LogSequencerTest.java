@@ -0,0 +1,279 @@
+package us.freeandfair.corla.persistence;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import javax.persistence.PersistenceException;
+
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+import us.freeandfair.corla.model.LogEntry;
+import us.freeandfair.corla.model.PendingLogEntry;
+
+public class LogSequencerTest {
+
+  private static final Instant NOW = Instant.parse("2017-11-01T12:00:00Z");
+
+  private static final class MemoryStore implements LogSequencer.Store {
+    private final List<LogEntry> committed = new ArrayList<>();
+    private final List<LogEntry> pending = new ArrayList<>();
+    private final Map<Long, PendingLogEntry> pending_rows = new TreeMap<>();
+    private final Set<Long> claimed = new HashSet<>();
+    private long next_id = 1;
+    private long next_pending_id = 1;
+    private int failures;
+    private String poison;
+    private CountDownLatch gate;
+
+    @Override
+    public void begin() {
+      final CountDownLatch latch;
+      synchronized (this) {
+        latch = gate;
+      }
+      if (latch != null) {
+        try {
+          latch.await();
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      synchronized (this) {
+        pending.clear();
+        claimed.clear();
+      }
+    }
+
+    @Override
+    public synchronized Object[] tail() {
+      if (committed.isEmpty()) {
+        return null;
+      }
+      final LogEntry last = committed.get(committed.size() - 1);
+      return new Object[] {last.id(), last.hash()};
+    }
+
+    @Override
+    public synchronized LogEntry reference(final Long the_id) {
+      for (final LogEntry e : committed) {
+        if (e.id().equals(the_id)) {
+          return e;
+        }
+      }
+      throw new PersistenceException("no entry " + the_id);
+    }
+
+    @Override
+    public synchronized void save(final LogEntry the_entry) {
+      if (the_entry.information().equals(poison)) {
+        throw new PersistenceException("value too long");
+      }
+      the_entry.setID(next_id++);
+      pending.add(the_entry);
+    }
+
+    @Override
+    public synchronized List<PendingLogEntry> pending(final int the_max_results) {
+      final List<PendingLogEntry> result = new ArrayList<>(pending_rows.values());
+      return result.subList(0, Math.min(the_max_results, result.size()));
+    }
+
+    @Override
+    public synchronized boolean claim(final Long the_id) {
+      return pending_rows.containsKey(the_id) && claimed.add(the_id);
+    }
+
+    @Override
+    public synchronized void commit() {
+      if (failures > 0) {
+        failures--;
+        throw new PersistenceException("serialization failure");
+      }
+      committed.addAll(pending);
+      pending.clear();
+      pending_rows.keySet().removeAll(claimed);
+      claimed.clear();
+    }
+
+    @Override
+    public synchronized void rollback() {
+      pending.clear();
+      claimed.clear();
+    }
+
+    // a pending entry saved with the change it describes
+    synchronized PendingLogEntry savePending(final String the_information) {
+      final PendingLogEntry result =
+          new PendingLogEntry(200, the_information, "admin", "host", NOW);
+      result.setID(next_pending_id++);
+      pending_rows.put(result.id(), result);
+      return result;
+    }
+
+    synchronized int pendingCount() {
+      return pending_rows.size();
+    }
+    synchronized List<LogEntry> committed() {
+      return new ArrayList<>(committed);
+    }
+  }
+
+  private List<CompletableFuture<Boolean>> append(final LogSequencer the_sequencer,
+                                                  final String... the_information) {
+    final List<CompletableFuture<Boolean>> result = new ArrayList<>();
+    for (final String information : the_information) {
+      result.add(the_sequencer.enqueue(200, information, "admin", "host", NOW));
+    }
+    return result;
+  }
+
+  private void assertChain(final List<LogEntry> the_entries, final String... the_information) {
+    assertEquals(the_entries.size(), the_information.length);
+    String previous_hash = null;
+    for (int i = 0; i < the_entries.size(); i++) {
+      final LogEntry entry = the_entries.get(i);
+      assertEquals(entry.information(), the_information[i]);
+      if (i == 0) {
+        assertNull(entry.previousEntry());
+      } else {
+        assertSame(entry.previousEntry(), the_entries.get(i - 1));
+        assertTrue(entry.id() > the_entries.get(i - 1).id());
+      }
+      assertEquals(entry.hash(), LogEntry.chainHash(200, the_information[i], NOW,
+                                                    previous_hash));
+      previous_hash = entry.hash();
+    }
+  }
+
+  @Test()
+  public void orderingAndChainingTest() {
+    final MemoryStore store = new MemoryStore();
+    final LogSequencer sequencer = new LogSequencer(2000, 10000, 60000, store);
+    final String[] information = new String[1200];
+    for (int i = 0; i < information.length; i++) {
+      information[i] = "entry " + i;
+    }
+
+    assertTrue(sequencer.await(append(sequencer, information)));
+    assertChain(store.committed(), information);
+    sequencer.stop();
+  }
+
+  @Test()
+  public void retryTest() {
+    final MemoryStore store = new MemoryStore();
+    final LogSequencer sequencer = new LogSequencer(100, 10000, 60000, store);
+    assertTrue(sequencer.await(append(sequencer, "a", "b")));
+    synchronized (store) {
+      store.failures = 3;
+    }
+
+    assertTrue(sequencer.await(append(sequencer, "c", "d", "e")));
+    assertChain(store.committed(), "a", "b", "c", "d", "e");
+    sequencer.stop();
+  }
+
+  @Test()
+  public void failingEntryTest() {
+    final MemoryStore store = new MemoryStore();
+    synchronized (store) {
+      store.poison = "bad";
+    }
+    final LogSequencer sequencer = new LogSequencer(100, 10000, 60000, store);
+
+    final List<CompletableFuture<Boolean>> tickets =
+        append(sequencer, "a", "b", "bad", "c", "d");
+    assertFalse(sequencer.await(tickets));
+    assertFalse(tickets.get(2).join());
+    tickets.remove(2);
+    assertTrue(sequencer.await(tickets));
+    assertChain(store.committed(), "a", "b", "c", "d");
+    sequencer.stop();
+  }
+
+  @Test()
+  public void queueFullTest() {
+    final MemoryStore store = new MemoryStore();
+    final CountDownLatch gate = new CountDownLatch(1);
+    synchronized (store) {
+      store.gate = gate;
+    }
+    final LogSequencer sequencer = new LogSequencer(2, 100, 60000, store);
+
+    final List<CompletableFuture<Boolean>> tickets = new ArrayList<>();
+    CompletableFuture<Boolean> refused = null;
+    for (int i = 0; i < 10 && refused == null; i++) {
+      final CompletableFuture<Boolean> ticket = append(sequencer, "entry " + i).get(0);
+      if (ticket.isDone()) {
+        refused = ticket;
+      } else {
+        tickets.add(ticket);
+      }
+    }
+    assertNotNull(refused);
+    assertFalse(refused.join());
+    // the writer is stuck, so the accepted entries are not written in time
+    assertFalse(sequencer.await(tickets));
+
+    gate.countDown();
+    for (final CompletableFuture<Boolean> ticket : tickets) {
+      assertTrue(ticket.join());
+    }
+    assertEquals(store.committed().size(), tickets.size());
+    sequencer.stop();
+  }
+
+  @Test()
+  public void pendingLeftTest() {
+    final MemoryStore store = new MemoryStore();
+    // left by a server that stopped before writing them
+    final PendingLogEntry a = store.savePending("a");
+    store.savePending("b");
+    final LogSequencer sequencer = new LogSequencer(100, 10000, 60000, store);
+
+    final List<CompletableFuture<Boolean>> tickets = new ArrayList<>();
+    tickets.add(sequencer.enqueue(a));
+    tickets.add(sequencer.enqueue(store.savePending("c")));
+    assertTrue(sequencer.await(tickets));
+    // "a" is written once, whether it was found left or handed over first
+    assertChain(store.committed(), "a", "b", "c");
+    assertEquals(store.pendingCount(), 0);
+    sequencer.stop();
+  }
+
+  @Test()
+  public void pendingGivenUpTest() throws InterruptedException {
+    final MemoryStore store = new MemoryStore();
+    synchronized (store) {
+      store.poison = "bad";
+    }
+    final LogSequencer sequencer = new LogSequencer(100, 10000, 200, store);
+
+    final List<CompletableFuture<Boolean>> tickets = new ArrayList<>();
+    tickets.add(sequencer.enqueue(store.savePending("a")));
+    tickets.add(sequencer.enqueue(store.savePending("bad")));
+    assertFalse(sequencer.await(tickets));
+    assertTrue(tickets.get(0).join());
+    assertFalse(tickets.get(1).join());
+    // the entry given up on is still pending, and is written once it can be
+    assertEquals(store.pendingCount(), 1);
+    synchronized (store) {
+      store.poison = null;
+    }
+    final long deadline = System.currentTimeMillis() + 10000;
+    while (store.pendingCount() > 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(store.pendingCount(), 0);
+    assertChain(store.committed(), "a", "bad");
+    sequencer.stop();
+  }
+}
@@ -0,0 +1,194 @@
+package us.freeandfair.corla.persistence;
+
+import java.time.Instant;
+import java.util.Properties;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+import us.freeandfair.corla.Main;
+import us.freeandfair.corla.model.LogCheckpoint;
+import us.freeandfair.corla.model.LogEntry;
+import us.freeandfair.corla.query.LogCheckpointQueries;
+import us.freeandfair.corla.query.Setup;
+
+@Test(groups = {"integration"})
+public class LogVerifierTest {
+
+  @BeforeMethod()
+  public void setUp() {
+    Setup.setProperties();
+    final Properties properties = new Properties();
+    properties.putAll(Setup.properties);
+    properties.setProperty(LogVerifier.KEY_PROPERTY, "log verifier test key");
+    new Main(properties);
+    Persistence.beginTransaction();
+    // the test sees only its own entries; they are rolled back afterwards
+    Persistence.currentSession().createNativeQuery("delete from log_checkpoint")
+        .executeUpdate();
+    Persistence.currentSession().createNativeQuery("delete from log").executeUpdate();
+  }
+
+  @AfterMethod()
+  public void tearDown() {
+    try {
+      Persistence.rollbackTransaction();
+    } catch (Exception e) {
+    }
+  }
+
+  private LogEntry append(final String the_information, final LogEntry the_previous) {
+    // nanoseconds, as Instant.now() gives on recent JVMs
+    final Instant timestamp = Instant.parse("2017-11-01T12:00:00.123456789Z");
+    final LogEntry entry = new LogEntry(200, the_information, "admin", "localhost",
+                                        timestamp, the_previous);
+    Persistence.save(entry);
+    Persistence.flush();
+    return entry;
+  }
+
+  private void update(final String the_sql, final Long the_id) {
+    Persistence.flush();
+    Persistence.currentSession().createNativeQuery(the_sql)
+        .setParameter("id", the_id).executeUpdate();
+  }
+
+  @Test()
+  public void validChainTest() {
+    final LogEntry first = append("/upload-file", null);
+    final LogEntry second = append("/county-dashboard", first);
+    final LogEntry third = append("/audit-board-sign-in", second);
+
+    final LogVerifier.Result result = LogVerifier.verify(false);
+    assertTrue(result.valid(), result.toString());
+    assertEquals(result.entriesVerified(), 3);
+    assertEquals(result.totalEntries(), 3);
+    assertEquals(result.forks(), 0);
+    assertNull(result.startEntry());
+    assertEquals(result.checkpointEntry(), third.id());
+
+    Persistence.flushAndClear();
+    final LogCheckpoint checkpoint = LogCheckpointQueries.latest();
+    assertEquals(checkpoint.logEntryID(), third.id());
+    assertEquals(checkpoint.logEntryHash(), third.hash());
+    assertEquals((long) checkpoint.entryCount(), 3);
+
+    // the checkpoint, read back from the database, is accepted
+    final LogVerifier.Result again = LogVerifier.verify(false);
+    assertTrue(again.valid(), again.toString());
+    assertFalse(again.checkpointRejected());
+    assertEquals(again.startEntry(), third.id());
+    assertEquals(again.entriesVerified(), 0);
+    assertEquals(again.totalEntries(), 3);
+    assertNull(again.checkpointEntry());
+  }
+
+  @Test()
+  public void tamperedEntryTest() {
+    final LogEntry first = append("/upload-file", null);
+    final LogEntry second = append("/county-dashboard", first);
+    append("/audit-board-sign-in", second);
+    update("update log set information = '/reset-database' where id = :id", second.id());
+
+    final LogVerifier.Result result = LogVerifier.verify(false);
+    assertFalse(result.valid());
+    assertEquals(result.invalidEntries(), 1);
+    assertEquals(result.firstInvalidEntry(), second.id());
+    assertNull(result.checkpointEntry());
+    assertNull(LogCheckpointQueries.latest());
+  }
+
+  @Test()
+  public void forkTest() {
+    final LogEntry first = append("/upload-file", null);
+    append("/county-dashboard", first);
+    append("/audit-board-sign-in", first);
+
+    final LogVerifier.Result result = LogVerifier.verify(false);
+    assertFalse(result.valid());
+    assertEquals(result.invalidEntries(), 0);
+    assertEquals(result.forks(), 1);
+    assertNull(result.checkpointEntry());
+  }
+
+  @Test()
+  public void gapTest() {
+    final LogEntry first = append("/upload-file", null);
+    append("/county-dashboard", first);
+    // a chain restarted in the middle of the log
+    append("/audit-board-sign-in", null);
+
+    final LogVerifier.Result result = LogVerifier.verify(true);
+    assertFalse(result.valid());
+    assertEquals(result.invalidEntries(), 0);
+    assertEquals(result.forks(), 1);
+    assertNull(result.checkpointEntry());
+  }
+
+  @Test()
+  public void resumeTest() {
+    final LogEntry first = append("/upload-file", null);
+    final LogEntry second = append("/county-dashboard", first);
+    assertEquals(LogVerifier.verify(false).checkpointEntry(), second.id());
+
+    final LogEntry third = append("/audit-board-sign-in", second);
+    final LogEntry fourth = append("/acvr", third);
+    Persistence.flushAndClear();
+
+    final LogVerifier.Result result = LogVerifier.verify(false);
+    assertTrue(result.valid(), result.toString());
+    assertEquals(result.startEntry(), second.id());
+    assertEquals(result.entriesVerified(), 2);
+    assertEquals(result.totalEntries(), 4);
+    assertEquals(result.checkpointEntry(), fourth.id());
+    assertEquals((long) LogCheckpointQueries.latest().entryCount(), 4);
+
+    // entries after the checkpoint are checked against the checkpointed one
+    append("/acvr", third);
+    final LogVerifier.Result forked = LogVerifier.verify(false);
+    assertFalse(forked.valid());
+    assertEquals(forked.startEntry(), fourth.id());
+    assertEquals(forked.forks(), 1);
+
+    // entries before the checkpoint are only re-hashed by a full verification
+    update("update log set information = '/reset-database' where id = :id", first.id());
+    assertEquals(LogVerifier.verify(true).firstInvalidEntry(), first.id());
+  }
+
+  @Test()
+  public void badCheckpointTest() {
+    final LogEntry first = append("/upload-file", null);
+    final LogEntry second = append("/county-dashboard", first);
+    Persistence.save(new LogCheckpoint(second.id(), second.hash(), 2L, Instant.now(),
+                                       "0000"));
+    Persistence.flushAndClear();
+
+    final LogVerifier.Result result = LogVerifier.verify(false);
+    assertFalse(result.valid());
+    assertTrue(result.checkpointRejected());
+    // the log is verified from the beginning, but not checkpointed
+    assertNull(result.startEntry());
+    assertEquals(result.entriesVerified(), 2);
+    assertEquals(result.invalidEntries(), 0);
+    assertNull(result.checkpointEntry());
+    assertEquals(LogCheckpointQueries.latest().signature(), "0000");
+  }
+
+  @Test()
+  public void changedCheckpointEntryTest() {
+    final LogEntry first = append("/upload-file", null);
+    final LogEntry second = append("/county-dashboard", first);
+    assertEquals(LogVerifier.verify(false).checkpointEntry(), second.id());
+    // a validly signed checkpoint whose entry no longer has the signed hash
+    update("update log set hash = '" + LogEntry.ROOT_HASH + "' where id = :id",
+           second.id());
+    Persistence.flushAndClear();
+
+    final LogVerifier.Result result = LogVerifier.verify(false);
+    assertFalse(result.valid());
+    assertTrue(result.checkpointRejected());
+    assertEquals(result.firstInvalidEntry(), second.id());
+  }
+}
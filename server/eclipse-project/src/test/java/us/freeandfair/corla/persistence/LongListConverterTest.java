@@ -0,0 +1,62 @@
+package us.freeandfair.corla.persistence;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+import com.google.gson.Gson;
+
+public class LongListConverterTest {
+
+  private final LongListConverter converter = new LongListConverter();
+
+  @Test()
+  public void gsonCompatibleTest() {
+    final List<Long> list = Arrays.asList(3L, -1L, 1234567890123L, 0L);
+    final String json = converter.convertToDatabaseColumn(list);
+    assertEquals(json, new Gson().toJson(list));
+    assertEquals(converter.convertToEntityAttribute(json), list);
+    assertEquals(converter.convertToDatabaseColumn(new ArrayList<>()), "[]");
+    assertEquals(converter.convertToEntityAttribute("[]"), new ArrayList<Long>());
+    assertEquals(converter.convertToDatabaseColumn(null), "null");
+    assertNull(converter.convertToEntityAttribute("null"));
+  }
+
+  @Test()
+  public void otherFormsTest() {
+    assertEquals(converter.convertToEntityAttribute(" [ 1 ,\n2 ] "), Arrays.asList(1L, 2L));
+    // too long to parse directly, and not integers; Gson handles these
+    assertEquals(converter.convertToEntityAttribute("[9223372036854775807]"),
+                 Arrays.asList(Long.MAX_VALUE));
+    assertEquals(converter.convertToEntityAttribute("[1.0]"), Arrays.asList(1L));
+  }
+
+  @Test()
+  public void lazyListTest() {
+    final List<Long> list = converter.convertToEntityAttribute("[1,2,3]");
+    // an unused list is written back as it was read
+    assertEquals(converter.convertToDatabaseColumn(
+                   converter.convertToEntityAttribute("[1, 2, 3]")), "[1, 2, 3]");
+    assertEquals(list, converter.convertToEntityAttribute("[1, 2, 3]"));
+    assertEquals(list.hashCode(), Arrays.asList(1L, 2L, 3L).hashCode());
+
+    list.addAll(Arrays.asList(4L, 5L));
+    list.add(0, 0L);
+    list.remove(2);
+    list.set(1, 7L);
+    assertEquals(list, Arrays.asList(0L, 7L, 3L, 4L, 5L));
+    assertTrue(list.contains(4L));
+    assertFalse(list.contains(2L));
+    assertEquals(converter.convertToDatabaseColumn(list), "[0,7,3,4,5]");
+
+    final List<Long> grown = new LazyLongList();
+    for (long i = 0; i < 1000; i++) {
+      grown.add(i);
+    }
+    assertEquals(grown.size(), 1000);
+    assertEquals(grown.get(999), Long.valueOf(999));
+  }
+}
@@ -0,0 +1,147 @@
+package us.freeandfair.corla.query;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+import us.freeandfair.corla.controller.BallotSelection.Tribute;
+import us.freeandfair.corla.model.CastVoteRecord;
+import us.freeandfair.corla.model.CastVoteRecord.RecordType;
+
+public class AtPositionTest {
+
+  private Tribute tribute(final int position) {
+    final Tribute t = new Tribute();
+    t.countyId = 1L;
+    t.scannerId = 1;
+    t.batchId = "1";
+    t.ballotPosition = position;
+    return t;
+  }
+
+  private CastVoteRecord cvr(final int position) {
+    return new CastVoteRecord(RecordType.UPLOADED, null, 1L, position, position, 1,
+                              "1", position, "1-1-" + position, "BALLOT", null);
+  }
+
+  /** a query that "finds" every even position, and counts its calls **/
+  private Function<List<String>, List<CastVoteRecord>> evenPositions(final int[] calls) {
+    return uris -> {
+      calls[0] = calls[0] + 1;
+      assertTrue(uris.size() <= 1000, "chunk too large: " + uris.size());
+      final List<CastVoteRecord> found = new ArrayList<>();
+      for (final String uri : uris) {
+        final int position = Integer.parseInt(uri.substring(uri.lastIndexOf('-') + 1));
+        if (position % 2 == 0) {
+          found.add(cvr(position));
+        }
+      }
+      return found;
+    };
+  }
+
+  @Test()
+  public void ordersDuplicatesAndPhantomsTest() {
+    final List<Tribute> tributes = new ArrayList<>();
+    for (final int p : new int[] {7, 2, 4, 7, 2, 9}) {
+      tributes.add(tribute(p));
+    }
+    final List<CastVoteRecord> saved = new ArrayList<>();
+    final int[] calls = {0};
+
+    final List<CastVoteRecord> result =
+        CastVoteRecordQueries.atPosition(tributes, evenPositions(calls), saved::add);
+
+    assertEquals(result.size(), tributes.size());
+    for (int i = 0; i < tributes.size(); i++) {
+      assertEquals(result.get(i).getUri(), tributes.get(i).uri());
+    }
+    assertEquals(result.get(0).recordType(), RecordType.PHANTOM_RECORD);
+    assertEquals(result.get(1).recordType(), RecordType.UPLOADED);
+    // the same phantom record is reused for a repeated position
+    assertSame(result.get(0), result.get(3));
+    assertSame(result.get(1), result.get(4));
+    assertEquals(saved.size(), 2);
+    assertEquals(calls[0], 1);
+  }
+
+  @Test()
+  public void emptyTest() {
+    final int[] calls = {0};
+    assertTrue(CastVoteRecordQueries.atPosition(new ArrayList<>(), evenPositions(calls),
+                                                cvr -> fail("nothing to save")).isEmpty());
+    assertEquals(calls[0], 0);
+  }
+
+  /** n tributes, one third of them repeats **/
+  private List<Tribute> tributes(final int n) {
+    final List<Tribute> tributes = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      tributes.add(tribute(i % 3 == 0 ? i / 3 : i));
+    }
+    return tributes;
+  }
+
+  @Test()
+  public void queryCountTest() {
+    for (final int n : new int[] {1, 999, 1000, 1001, 20000, 100000}) {
+      final List<Tribute> tributes = tributes(n);
+      final Set<String> distinct = new HashSet<>();
+      for (final Tribute t : tributes) {
+        distinct.add(t.uri());
+      }
+      final List<String> asked = new ArrayList<>();
+      final int[] calls = {0};
+      final Function<List<String>, List<CastVoteRecord>> query = evenPositions(calls);
+      final List<CastVoteRecord> result =
+          CastVoteRecordQueries.atPosition(tributes, uris -> {
+            asked.addAll(uris);
+            return query.apply(uris);
+          }, cvr -> { });
+
+      assertEquals(result.size(), n);
+      // each position is looked up once, a chunk of up to 1000 at a time
+      assertEquals(asked.size(), distinct.size());
+      assertEquals(new HashSet<>(asked), distinct);
+      assertEquals(calls[0], (distinct.size() + 999) / 1000);
+    }
+  }
+
+  /**
+   * Resolves n tributes (one third of them repeats) and returns the best of
+   * three wall-clock times, in nanoseconds.
+   */
+  private long time(final int n) {
+    final List<Tribute> tributes = tributes(n);
+    long best = Long.MAX_VALUE;
+    for (int run = 0; run < 3; run++) {
+      final int[] calls = {0};
+      final long start = System.nanoTime();
+      final List<CastVoteRecord> result =
+          CastVoteRecordQueries.atPosition(tributes, evenPositions(calls), cvr -> { });
+      best = Math.min(best, System.nanoTime() - start);
+      assertEquals(result.size(), n);
+    }
+    return best;
+  }
+
+  /**
+   * A benchmark showing that resolution scales linearly: five times as many
+   * tributes must not take anywhere near 25 times as long (as it did when the
+   * results were lined up by a nested loop). It depends on the speed and load
+   * of the machine, so it is only run when the benchmark group is included.
+   */
+  @Test(groups = {"benchmark"}, timeOut = 60000)
+  public void linearScalingBenchmark() {
+    time(20000); // warm up
+    final long small = time(20000);
+    final long large = time(100000);
+    final double ratio = (double) large / small;
+    assertTrue(ratio < 15, "100k tributes took " + ratio + "x as long as 20k");
+  }
+}
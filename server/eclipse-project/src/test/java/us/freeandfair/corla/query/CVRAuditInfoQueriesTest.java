@@ -0,0 +1,84 @@
+package us.freeandfair.corla.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.hibernate.Hibernate;
+import org.testng.annotations.AfterTest;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+import us.freeandfair.corla.model.CVRAuditInfo;
+import us.freeandfair.corla.model.CastVoteRecord;
+import us.freeandfair.corla.model.CastVoteRecord.RecordType;
+import us.freeandfair.corla.persistence.Persistence;
+import us.freeandfair.corla.persistence.StatementCounter;
+
+@Test(groups = {"integration"})
+public class CVRAuditInfoQueriesTest {
+
+  @BeforeTest()
+  public void setUp() {
+    Setup.setProperties();
+    Persistence.beginTransaction();
+  }
+
+  @AfterTest()
+  public void tearDown() {
+    try {
+      Persistence.rollbackTransaction();
+    } catch (Exception e) {
+    }
+  }
+
+  private CastVoteRecord cvr(final RecordType the_type, final int the_position) {
+    final CastVoteRecord cvr =
+        new CastVoteRecord(the_type, null, 1L, the_position, the_position, 1, "1",
+                           the_position, "1-1-" + the_position, "BALLOT",
+                           new ArrayList<>());
+    Persistence.save(cvr);
+    return cvr;
+  }
+
+  @Test()
+  public void withRecordsTest() {
+    final CastVoteRecord audited = cvr(RecordType.UPLOADED, 90001);
+    final CastVoteRecord unaudited = cvr(RecordType.UPLOADED, 90002);
+    final CastVoteRecord no_info = cvr(RecordType.UPLOADED, 90003);
+    final CVRAuditInfo audited_info = new CVRAuditInfo(audited);
+    audited_info.setACVR(cvr(RecordType.AUDITOR_ENTERED, 90001));
+    Persistence.save(audited_info);
+    Persistence.save(new CVRAuditInfo(unaudited));
+    Persistence.flushAndClear();
+
+    StatementCounter.reset();
+    final List<Long> ids = Arrays.asList(audited.id(), unaudited.id(), audited.id(),
+                                         no_info.id(), unaudited.id());
+    final Map<Long, CVRAuditInfo> result = CVRAuditInfoQueries.withRecords(ids);
+    // one query for the CVRs and one for the audit infos, for up to
+    // ID_CHUNK_SIZE distinct IDs
+    assertEquals(StatementCounter.count(), 2);
+
+    assertEquals(result.keySet(), new HashSet<>(Arrays.asList(audited.id(), unaudited.id())));
+    final CVRAuditInfo info = result.get(audited.id());
+    assertTrue(Hibernate.isInitialized(info.cvr()));
+    assertTrue(Hibernate.isInitialized(info.acvr()));
+    assertTrue(Hibernate.isInitialized(info.acvr().contestInfo()));
+    assertEquals(info.acvr().recordType(), RecordType.AUDITOR_ENTERED);
+    assertNull(result.get(unaudited.id()).acvr());
+    // the records are loaded, so using them needs no more queries
+    assertTrue(Hibernate.isInitialized(result.get(unaudited.id()).cvr().contestInfo()));
+    assertEquals(StatementCounter.count(), 2);
+  }
+
+  @Test()
+  public void emptyTest() {
+    StatementCounter.reset();
+    assertTrue(CVRAuditInfoQueries.withRecords(new ArrayList<>()).isEmpty());
+    assertEquals(StatementCounter.count(), 0);
+  }
+}
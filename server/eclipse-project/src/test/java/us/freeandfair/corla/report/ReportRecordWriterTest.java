@@ -0,0 +1,43 @@
+package us.freeandfair.corla.report;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class ReportRecordWriterTest {
+
+  @Test()
+  public void csvTest() throws IOException {
+    final StringWriter sw = new StringWriter();
+    try (ReportRecordWriter rw = ReportRecordWriter.csv(sw)) {
+      rw.write(ReportRecord.COUNTY, "Adams", 100, 90, 10, 1);
+    }
+    final String[] lines = sw.toString().split("\r\n");
+    assertEquals(lines.length, 2);
+    assertEquals(lines[0].split(",").length, ReportRecord.allFields().size());
+    assertTrue(lines[0].startsWith("\"record\",\"election_type\","));
+    assertTrue(lines[1].startsWith("\"county\",,,,,,\"Adams\",100,90,10,1,"));
+  }
+
+  @Test()
+  public void jsonTest() throws IOException {
+    final StringWriter sw = new StringWriter();
+    try (ReportRecordWriter rw = ReportRecordWriter.json(sw)) {
+      rw.write(ReportRecord.BALLOT_CARD, "Adams", 1, "1-2-3", true, false, false, null);
+      rw.write(ReportRecord.ROUND, "Adams", 1, 3, 0, 0, 0, 0);
+    }
+    final String[] lines = sw.toString().split("\n");
+    assertEquals(lines.length, 2);
+    assertEquals(lines[0], "{\"record\":\"ballot_card\",\"county\":\"Adams\",\"round\":1," +
+                           "\"imprinted_id\":\"1-2-3\",\"audited\":true," +
+                           "\"discrepancy\":false,\"disagreement\":false}");
+    assertTrue(lines[1].startsWith("{\"record\":\"round\","));
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void wrongValuesTest() throws IOException {
+    ReportRecordWriter.json(new StringWriter()).write(ReportRecord.COUNTY, "Adams");
+  }
+}
@@ -0,0 +1,73 @@
+package us.freeandfair.corla.util;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+import us.freeandfair.corla.controller.BallotSelection;
+import us.freeandfair.corla.model.BallotManifestInfo;
+
+public class BallotManifestIndexTest {
+
+  /** three counties with batches of assorted sizes **/
+  private List<BallotManifestInfo> manifests() {
+    final List<BallotManifestInfo> bmis = new ArrayList<>();
+    final int[][] sizes = {{10, 1, 7}, {3}, {5, 5, 12, 2}};
+    for (int county = 0; county < sizes.length; county++) {
+      long start = 1L;
+      for (int batch = 0; batch < sizes[county].length; batch++) {
+        final int size = sizes[county][batch];
+        bmis.add(new BallotManifestInfo(county + 1L, 1, String.valueOf(batch + 1), size,
+                                        "bin-" + batch, start, start + size - 1));
+        start = start + size;
+      }
+    }
+    return bmis;
+  }
+
+  @Test()
+  public void matchesLinearProjectionTest() {
+    final Set<BallotManifestInfo> sorted = new TreeSet<>(new BallotManifestInfo.Sort());
+    sorted.addAll(manifests());
+    BallotSelection.projectUltimateSequence(sorted);
+    // built from an unordered set, the index must still agree with the projection
+    final BallotManifestIndex index = new BallotManifestIndex(new HashSet<>(manifests()));
+
+    assertEquals(index.size(), 8);
+    assertEquals(index.ultimateLength(), 45L);
+    for (long rand = 1; rand <= index.ultimateLength(); rand++) {
+      BallotManifestInfo expected = null;
+      for (final BallotManifestInfo bmi : sorted) {
+        if (bmi.isHolding(rand)) {
+          expected = bmi;
+          break;
+        }
+      }
+      final BallotManifestInfo actual = index.holding(rand);
+      assertEquals(actual.getUri(), expected.getUri(), "at " + rand);
+      assertEquals(index.translateRand(rand), expected.translateRand((int) rand), "at " + rand);
+    }
+  }
+
+  @Test()
+  public void outOfRangeTest() {
+    final BallotManifestIndex index = new BallotManifestIndex(manifests());
+    assertNull(index.holding(0L));
+    assertNull(index.holding(46L));
+    assertNull(new BallotManifestIndex(new ArrayList<>()).holding(1L));
+  }
+
+  @Test(expectedExceptions = BallotSelection.MissingBallotManifestException.class)
+  public void selectOutOfRangeTest() {
+    final List<Integer> rands = new ArrayList<>();
+    rands.add(46);
+    final Set<Long> counties = new HashSet<>();
+    counties.add(1L);
+    BallotSelection.select(rands, counties, new BallotManifestIndex(manifests()));
+  }
+}
@@ -0,0 +1,33 @@
+package us.freeandfair.corla.util;
+
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+public class JsonMergePatchTest {
+
+  private JsonObject json(final String s) {
+    return new JsonParser().parse(s).getAsJsonObject();
+  }
+
+  @Test()
+  public void unchangedTest() {
+    final JsonObject doc = json("{\"a\":1,\"b\":{\"c\":[1,2]}}");
+    assertEquals(JsonMergePatch.diff(doc, json(doc.toString())).size(), 0);
+  }
+
+  @Test()
+  public void diffTest() {
+    final JsonObject from =
+        json("{\"asm_state\":\"A\",\"gone\":true,\"status\":{\"1\":{\"n\":1},\"2\":{\"n\":2}}," +
+             "\"list\":[1,2,3]}");
+    final JsonObject to =
+        json("{\"asm_state\":\"B\",\"status\":{\"1\":{\"n\":1},\"2\":{\"n\":3}}," +
+             "\"list\":[1,2],\"added\":\"x\"}");
+    assertEquals(JsonMergePatch.diff(from, to),
+                 json("{\"asm_state\":\"B\",\"gone\":null,\"status\":{\"2\":{\"n\":3}}," +
+                      "\"list\":[1,2],\"added\":\"x\"}"));
+  }
+}
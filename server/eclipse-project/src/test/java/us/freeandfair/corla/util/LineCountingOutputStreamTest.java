@@ -0,0 +1,49 @@
+package us.freeandfair.corla.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class LineCountingOutputStreamTest {
+
+  private int countLines(final String the_text) throws IOException {
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    final LineCountingOutputStream os = new LineCountingOutputStream(baos);
+    final byte[] bytes = the_text.getBytes(StandardCharsets.UTF_8);
+    // split the writes so that a CR LF pair can straddle them
+    final int half = bytes.length / 2;
+    os.write(bytes, 0, half);
+    for (int i = half; i < bytes.length; i++) {
+      os.write(bytes[i]);
+    }
+    os.close();
+    assertEquals(baos.toByteArray(), bytes);
+    return os.lineCount();
+  }
+
+  @Test()
+  public void countsTerminatorsTest() throws IOException {
+    assertEquals(countLines(""), 0);
+    assertEquals(countLines("a,b"), 0);
+    assertEquals(countLines("a,b\n"), 1);
+    assertEquals(countLines("a,b\r\nc,d\r\n"), 2);
+    assertEquals(countLines("a\rb\nc\r\n\r\n"), 4);
+    assertEquals(countLines("\r\n"), 1);
+  }
+
+  @Test()
+  public void matchesLineNumberReaderTest() throws IOException {
+    final String text = "header\r\n1,2\n3,4\r5,6\r\n\n";
+    try (LineNumberReader lnr = new LineNumberReader(new StringReader(text))) {
+      while (lnr.read() != -1) {
+        // read to the end
+      }
+      assertEquals(countLines(text), lnr.getLineNumber());
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package us.freeandfair.corla.util;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.testng.Assert.*;
+
+public class OrderedParallelProcessorTest {
+  @Test()
+  public void preservesSourceOrderTest() {
+    final List<Integer> source =
+        IntStream.range(0, 5000).boxed().collect(Collectors.toList());
+    final List<String> result = new ArrayList<>();
+    try (OrderedParallelProcessor<Integer, String> p =
+             new OrderedParallelProcessor<>(source.iterator(),
+                                            (i, n) -> i + ":" + (n * 2),
+                                            4, 16)) {
+      while (p.hasNext()) {
+        result.add(p.next());
+      }
+    }
+    assertEquals(result.size(), 5000);
+    for (int i = 0; i < result.size(); i++) {
+      assertEquals(result.get(i), i + ":" + (i * 2));
+    }
+  }
+
+  @Test()
+  public void emptySourceTest() {
+    try (OrderedParallelProcessor<Integer, Integer> p =
+             new OrderedParallelProcessor<>(new ArrayList<Integer>().iterator(),
+                                            (i, n) -> n, 2, 2)) {
+      assertFalse(p.hasNext());
+    }
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void transformationFailureTest() {
+    final List<Integer> source =
+        IntStream.range(0, 100).boxed().collect(Collectors.toList());
+    try (OrderedParallelProcessor<Integer, Integer> p =
+             new OrderedParallelProcessor<>(source.iterator(), (i, n) -> {
+               if (n == 50) {
+                 throw new IllegalArgumentException("bad element");
+               }
+               return n;
+             }, 3, 8)) {
+      int expected = 0;
+      while (p.hasNext()) {
+        assertEquals(p.next().intValue(), expected);
+        expected = expected + 1;
+      }
+    }
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void sourceFailureTest() {
+    final Iterator<Integer> source = new Iterator<Integer>() {
+      private int my_count;
+
+      public boolean hasNext() {
+        return true;
+      }
+
+      public Integer next() {
+        my_count = my_count + 1;
+        if (my_count > 10) {
+          throw new IllegalStateException("unreadable");
+        }
+        return my_count;
+      }
+    };
+    try (OrderedParallelProcessor<Integer, Integer> p =
+             new OrderedParallelProcessor<>(source, (i, n) -> n, 2, 4)) {
+      while (p.hasNext()) {
+        p.next();
+      }
+    }
+  }
+}
@@ -0,0 +1,58 @@
+package us.freeandfair.corla.util;
+
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+import us.freeandfair.corla.util.SnapshotCache.Snapshot;
+
+public class SnapshotCacheTest {
+
+  @Test()
+  public void servesUntilChangedTest() {
+    final SnapshotCache<Long> cache = new SnapshotCache<>();
+    final long version = cache.version(1L);
+    assertNull(cache.get(1L, version));
+
+    final Snapshot built = cache.put(1L, version, "{\"a\":1}");
+    assertSame(cache.get(1L, cache.version(1L)), built);
+
+    // another key changing does not matter
+    cache.invalidate(2L);
+    assertSame(cache.get(1L, cache.version(1L)), built);
+
+    cache.invalidate(1L);
+    assertNull(cache.get(1L, cache.version(1L)));
+
+    cache.put(1L, cache.version(1L), "{\"a\":2}");
+    cache.invalidateAll();
+    assertNull(cache.get(1L, cache.version(1L)));
+  }
+
+  @Test()
+  public void changeDuringBuildTest() {
+    final SnapshotCache<Long> cache = new SnapshotCache<>();
+    final long version = cache.version(1L);
+    // a change is committed while the snapshot is being built
+    cache.invalidate(1L);
+    cache.put(1L, version, "{\"a\":1}");
+    assertNull(cache.get(1L, cache.version(1L)));
+  }
+
+  @Test()
+  public void etagTest() {
+    final SnapshotCache<Long> cache = new SnapshotCache<>();
+    final Snapshot one = cache.put(1L, 0L, "{\"a\":1}");
+    final Snapshot same = cache.put(2L, 0L, "{\"a\":1}");
+    final Snapshot other = cache.put(3L, 0L, "{\"a\":2}");
+
+    assertEquals(one.etag(), same.etag());
+    assertNotEquals(one.etag(), other.etag());
+    assertTrue(one.etag().startsWith("\"") && one.etag().endsWith("\""));
+    assertTrue(one.matches(one.etag()));
+    assertTrue(one.matches(other.etag() + ", " + one.etag()));
+    assertTrue(one.matches("W/" + one.etag()));
+    assertTrue(one.matches("*"));
+    assertFalse(one.matches(other.etag()));
+    assertFalse(one.matches(null));
+  }
+}